@@ -153,6 +153,10 @@ public abstract class ClassBodyCodegen extends MemberCodegen {
     }
 
     private void generateStaticInitializer() {
+        if (state.getClassBuilderMode() == ClassBuilderMode.FULL && !getDelegatedProperties().isEmpty()) {
+            createOrGetClInitCodegen();
+        }
+
         if (clInitMethod != null) {
             createOrGetClInitMethod();
 
@@ -187,7 +191,14 @@ public abstract class ClassBodyCodegen extends MemberCodegen {
                               Collections.<ValueParameterDescriptor>emptyList(), null, null, Visibilities.PRIVATE, false);
 
             clInitCodegen = new ExpressionCodegen(method, new FrameMap(), Type.VOID_TYPE, context.intoFunction(clInit), state, this);
+            PropertyCodegen.generatePropertyMetadataArray(clInitCodegen, v, getDelegatedProperties());
         }
         return clInitCodegen;
     }
+
+    @NotNull
+    private List<JetProperty> getDelegatedProperties() {
+        if (kind == OwnerKind.TRAIT_IMPL) return Collections.emptyList();
+        return PropertyCodegen.getDelegatedProperties(myClass.getDeclarations());
+    }
 }
@@ -26,6 +26,8 @@ public abstract class ClassBuilder {
     protected static final FieldVisitor EMPTY_FIELD_VISITOR = new FieldVisitor(Opcodes.ASM4) {};
 
     private String thisName;
+    private PsiElement origin;
+    private int access;
 
     private final JvmSerializationBindings serializationBindings = new JvmSerializationBindings();
 
@@ -102,6 +104,8 @@ public abstract class ClassBuilder {
             @NotNull String[] interfaces
     ) {
         thisName = name;
+        this.origin = origin;
+        this.access = access;
         getVisitor().visit(version, access, name, signature, superName, interfaces);
     }
 
@@ -122,4 +126,13 @@ public abstract class ClassBuilder {
         assert thisName != null : "This name isn't set";
         return thisName;
     }
+
+    @Nullable
+    public PsiElement getOrigin() {
+        return origin;
+    }
+
+    public int getAccess() {
+        return access;
+    }
 }
@@ -17,16 +17,20 @@
 package org.jetbrains.jet.codegen;
 
 import com.google.common.collect.Lists;
+import com.intellij.openapi.vfs.CharsetToolkit;
 import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.util.Function;
 import com.intellij.util.containers.ContainerUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.asm4.Type;
 import org.jetbrains.jet.codegen.state.GenerationState;
 import org.jetbrains.jet.codegen.state.GenerationStateAware;
 import org.jetbrains.jet.lang.descriptors.ClassDescriptor;
+import org.jetbrains.jet.lang.psi.JetElement;
 import org.jetbrains.jet.lang.psi.JetFile;
 import org.jetbrains.jet.lang.resolve.name.FqName;
 
@@ -34,6 +38,7 @@ import javax.inject.Inject;
 import java.io.File;
 import java.util.*;
 
+import static org.jetbrains.asm4.Opcodes.ACC_INTERFACE;
 import static org.jetbrains.jet.codegen.AsmUtil.asmTypeByFqNameWithoutInnerClasses;
 import static org.jetbrains.jet.codegen.AsmUtil.isPrimitive;
 import static org.jetbrains.jet.lang.resolve.java.PackageClassUtils.getPackageClassFqName;
@@ -43,6 +48,11 @@ public final class ClassFileFactory extends GenerationStateAware {
 
     private final Map<FqName, NamespaceCodegen> ns2codegen = new HashMap<FqName, NamespaceCodegen>();
     private final Map<String, ClassBuilderAndSourceFileList> generators = new LinkedHashMap<String, ClassBuilderAndSourceFileList>();
+    // Class files created on the current thread while it is inside generateAside()
+    private final ThreadLocal<Map<String, ClassBuilderAndSourceFileList>> pendingGenerators =
+            new ThreadLocal<Map<String, ClassBuilderAndSourceFileList>>();
+    private final Map<String, JetFile> lineIndexFiles = new LinkedHashMap<String, JetFile>();
+    private final Map<JetFile, SourceLineIndex> lineIndices = new HashMap<JetFile, SourceLineIndex>();
     private boolean isDone = false;
 
     public ClassFileFactory(@NotNull GenerationState state) {
@@ -63,21 +73,89 @@ public final class ClassFileFactory extends GenerationStateAware {
     @NotNull
     private ClassBuilder newVisitor(@NotNull Type asmType, @NotNull Collection<? extends PsiFile> sourceFiles) {
         String outputFilePath = asmType.getInternalName() + ".class";
-        state.getProgress().reportOutput(toIoFilesIgnoringNonPhysical(sourceFiles), new File(outputFilePath));
         ClassBuilder answer = builderFactory.newClassBuilder();
-        generators.put(outputFilePath, new ClassBuilderAndSourceFileList(answer, sourceFiles));
+        ClassBuilderAndSourceFileList generator = new ClassBuilderAndSourceFileList(answer, sourceFiles);
+
+        Map<String, ClassBuilderAndSourceFileList> pending = pendingGenerators.get();
+        if (pending != null) {
+            pending.put(outputFilePath, generator);
+        }
+        else {
+            addGenerator(outputFilePath, generator);
+        }
         return answer;
     }
 
+    private synchronized void addGenerator(@NotNull String outputFilePath, @NotNull ClassBuilderAndSourceFileList generator) {
+        state.getProgress().reportOutput(toIoFilesIgnoringNonPhysical(generator.sourceFiles), new File(outputFilePath));
+        generators.put(outputFilePath, generator);
+    }
+
+    /**
+     * Runs the generation on the current thread keeping the class files it creates aside.
+     * They are added to the output by {@link #addGeneratedAside}, so that the order of the output
+     * does not depend on the order in which concurrent generations finish.
+     */
+    @NotNull
+    Map<String, ClassBuilderAndSourceFileList> generateAside(@NotNull Runnable generation) {
+        Map<String, ClassBuilderAndSourceFileList> pending = new LinkedHashMap<String, ClassBuilderAndSourceFileList>();
+        pendingGenerators.set(pending);
+        try {
+            generation.run();
+        }
+        finally {
+            pendingGenerators.remove();
+        }
+        return pending;
+    }
+
+    void addGeneratedAside(@NotNull Map<String, ClassBuilderAndSourceFileList> pending) {
+        for (Map.Entry<String, ClassBuilderAndSourceFileList> entry : pending.entrySet()) {
+            addGenerator(entry.getKey(), entry.getValue());
+        }
+    }
+
     private void done() {
         if (!isDone) {
             isDone = true;
             for (NamespaceCodegen codegen : ns2codegen.values()) {
                 codegen.done();
             }
+            if (state.getClassBuilderMode() == ClassBuilderMode.FULL) {
+                buildLineIndices();
+            }
         }
     }
 
+    private void buildLineIndices() {
+        for (Map.Entry<String, ClassBuilderAndSourceFileList> entry : generators.entrySet()) {
+            ClassBuilder classBuilder = entry.getValue().classBuilder;
+            PsiElement origin = classBuilder.getOrigin();
+            if (!(origin instanceof JetElement)) continue;
+
+            PsiFile file = origin.getContainingFile();
+            if (!(file instanceof JetFile)) continue;
+
+            SourceLineIndex index = getOrCreateLineIndex((JetFile) file);
+            // Namespace parts are found by the name of the file, and interfaces have no code
+            if (origin instanceof JetFile || (classBuilder.getAccess() & ACC_INTERFACE) != 0) continue;
+
+            String classFile = entry.getKey();
+            index.add(origin, classFile.substring(0, classFile.length() - ".class".length()));
+        }
+    }
+
+    @NotNull
+    private SourceLineIndex getOrCreateLineIndex(@NotNull JetFile file) {
+        SourceLineIndex index = lineIndices.get(file);
+        if (index == null) {
+            index = new SourceLineIndex();
+            lineIndices.put(file, index);
+            lineIndexFiles.put(SourceLineIndex.getIndexFilePath(file), file);
+        }
+        return index;
+    }
+
     public String asText(String file) {
         done();
         return builderFactory.asText(generators.get(file).classBuilder);
@@ -93,14 +171,40 @@ public final class ClassFileFactory extends GenerationStateAware {
         return new ArrayList<String>(generators.keySet());
     }
 
+    /**
+     * @return relative paths of the {@link SourceLineIndex} files of the source files
+     */
+    public List<String> lineIndexFiles() {
+        done();
+        return new ArrayList<String>(lineIndexFiles.keySet());
+    }
+
+    public byte[] lineIndexAsBytes(String file) {
+        done();
+        return lineIndices.get(lineIndexFiles.get(file)).serialize().getBytes(CharsetToolkit.UTF8_CHARSET);
+    }
+
+    @Nullable
+    public SourceLineIndex getLineIndex(@NotNull JetFile file) {
+        done();
+        return lineIndices.get(file);
+    }
+
     public List<File> getSourceFiles(String relativeClassFilePath) {
+        Collection<? extends PsiFile> sourceFiles;
         ClassBuilderAndSourceFileList pair = generators.get(relativeClassFilePath);
-        if (pair == null) {
+        if (pair != null) {
+            sourceFiles = pair.sourceFiles;
+        }
+        else if (lineIndexFiles.containsKey(relativeClassFilePath)) {
+            sourceFiles = Collections.singletonList(lineIndexFiles.get(relativeClassFilePath));
+        }
+        else {
             throw new IllegalStateException("No record for binary file " + relativeClassFilePath);
         }
 
         return ContainerUtil.mapNotNull(
-                pair.sourceFiles,
+                sourceFiles,
                 new Function<PsiFile, File>() {
                     @Override
                     public File fun(PsiFile file) {
@@ -127,7 +231,7 @@ public final class ClassFileFactory extends GenerationStateAware {
         return answer.toString();
     }
 
-    public NamespaceCodegen forNamespace(final FqName fqName, final Collection<JetFile> files) {
+    public synchronized NamespaceCodegen forNamespace(final FqName fqName, final Collection<JetFile> files) {
         assert !isDone : "Already done!";
         NamespaceCodegen codegen = ns2codegen.get(fqName);
         if (codegen == null) {
@@ -176,7 +280,7 @@ public final class ClassFileFactory extends GenerationStateAware {
         return result;
     }
 
-    private static class ClassBuilderAndSourceFileList {
+    static class ClassBuilderAndSourceFileList {
         private final ClassBuilder classBuilder;
         private final Collection<? extends PsiFile> sourceFiles;
 
@@ -268,6 +268,17 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
         }
     }
 
+    /**
+     * Makes the given argument of a delegated property call read the PropertyMetadata instance stored in the given local variable
+     */
+    void putPropertyMetadataLocal(@NotNull JetExpression argument, int local) {
+        tempVariables.put(argument, StackValue.local(local, JET_PROPERTY_METADATA_TYPE));
+    }
+
+    void removePropertyMetadataLocal(@NotNull JetExpression argument) {
+        tempVariables.remove(argument);
+    }
+
     public StackValue gen(JetElement expr) {
         StackValue tempVar = tempVariables.get(expr);
         return tempVar != null ? tempVar : genQualified(StackValue.none(), expr);
@@ -2008,7 +2019,9 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
         Callable callable = resolveToCallable(fd, superCall);
         if (callable instanceof CallableMethod) {
             CallableMethod callableMethod = (CallableMethod) callable;
-            invokeMethodWithArguments(callableMethod, resolvedCall, call, receiver);
+            if (!InlineCodegen.inlineCall(this, callableMethod, resolvedCall, call, receiver)) {
+                invokeMethodWithArguments(callableMethod, resolvedCall, call, receiver);
+            }
 
             Type callReturnType = callableMethod.getSignature().getAsmMethod().getReturnType();
             return returnValueAsStackValue(fd, callReturnType);
@@ -3702,6 +3715,33 @@ The "returned" value of try expression with no finally is either the last expres
         Label end = new Label();
         boolean hasElse = JetPsiUtil.checkWhenExpressionHasSingleElse(expression);
 
+        SwitchCodegenUtil.SwitchTable switchTable = subjectLocal != -1
+                                                    ? SwitchCodegenUtil.buildSwitchTable(expression, subjectJetType, subjectType, bindingContext)
+                                                    : null;
+        if (switchTable != null) {
+            generateWhenBySwitch(expression, switchTable, subjectLocal, subjectType, resultType, isStatement, hasElse, end);
+        }
+        else {
+            generateWhenByConditions(expression, subjectLocal, subjectType, resultType, isStatement, hasElse, end);
+        }
+
+        markLineNumber(expression);
+        v.mark(end);
+
+        myFrameMap.leaveTemp(subjectType);
+        tempVariables.remove(expr);
+        return StackValue.onStack(resultType);
+    }
+
+    private void generateWhenByConditions(
+            JetWhenExpression expression,
+            int subjectLocal,
+            Type subjectType,
+            Type resultType,
+            boolean isStatement,
+            boolean hasElse,
+            Label end
+    ) {
         Label nextCondition = null;
         for (JetWhenEntry whenEntry : expression.getEntries()) {
             if (nextCondition != null) {
@@ -3732,25 +3772,67 @@ The "returned" value of try expression with no finally is either the last expres
         }
         if (!hasElse && nextCondition != null) {
             v.mark(nextCondition);
-            if (!isStatement) {
-                // a result is expected
-                if (Boolean.TRUE.equals(bindingContext.get(BindingContext.EXHAUSTIVE_WHEN, expression))) {
-                    // when() is supposed to be exhaustive
-                    throwNewException(CLASS_NO_PATTERN_MATCHED_EXCEPTION);
-                }
-                else {
-                    // non-exhaustive when() with no else -> Unit must be expected
-                    StackValue.putUnitInstance(v);
-                }
+            generateWhenNoMatch(expression, isStatement);
+        }
+    }
+
+    private void generateWhenBySwitch(
+            JetWhenExpression expression,
+            SwitchCodegenUtil.SwitchTable switchTable,
+            int subjectLocal,
+            Type subjectType,
+            Type resultType,
+            boolean isStatement,
+            boolean hasElse,
+            Label end
+    ) {
+        List<JetWhenEntry> entries = expression.getEntries();
+        Label[] entryLabels = new Label[entries.size()];
+        Label defaultLabel = null;
+        for (int i = 0; i < entryLabels.length; i++) {
+            entryLabels[i] = new Label();
+            if (defaultLabel == null && entries.get(i).isElse()) {
+                defaultLabel = entryLabels[i];
             }
         }
+        Label noMatch = new Label();
+        if (defaultLabel == null) {
+            defaultLabel = noMatch;
+        }
 
-        markLineNumber(expression);
-        v.mark(end);
+        SwitchCodegenUtil.generateSwitch(v, switchTable, StackValue.local(subjectLocal, subjectType), entryLabels, defaultLabel);
 
-        myFrameMap.leaveTemp(subjectType);
-        tempVariables.remove(expr);
-        return StackValue.onStack(resultType);
+        for (int i = 0; i < entryLabels.length; i++) {
+            JetWhenEntry whenEntry = entries.get(i);
+            if (!whenEntry.isElse() && !switchTable.isReachable(i)) continue;
+
+            v.mark(entryLabels[i]);
+            FrameMap.Mark mark = myFrameMap.mark();
+            gen(whenEntry.getExpression(), resultType);
+            mark.dropTo();
+            if (!hasElse || i < entryLabels.length - 1) {
+                v.goTo(end);
+            }
+        }
+
+        if (!hasElse) {
+            v.mark(noMatch);
+            generateWhenNoMatch(expression, isStatement);
+        }
+    }
+
+    private void generateWhenNoMatch(JetWhenExpression expression, boolean isStatement) {
+        if (!isStatement) {
+            // a result is expected
+            if (Boolean.TRUE.equals(bindingContext.get(BindingContext.EXHAUSTIVE_WHEN, expression))) {
+                // when() is supposed to be exhaustive
+                throwNewException(CLASS_NO_PATTERN_MATCHED_EXCEPTION);
+            }
+            else {
+                // non-exhaustive when() with no else -> Unit must be expected
+                StackValue.putUnitInstance(v);
+            }
+        }
     }
 
     private StackValue generateWhenCondition(Type subjectType, int subjectLocal, JetWhenCondition condition) {
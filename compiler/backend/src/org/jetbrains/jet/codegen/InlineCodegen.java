@@ -0,0 +1,351 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.jet.codegen;
+
+import com.intellij.psi.PsiElement;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.asm4.Label;
+import org.jetbrains.asm4.Type;
+import org.jetbrains.asm4.commons.InstructionAdapter;
+import org.jetbrains.asm4.commons.Method;
+import org.jetbrains.asm4.tree.*;
+import org.jetbrains.jet.codegen.state.GenerationState;
+import org.jetbrains.jet.codegen.state.JetTypeMapper;
+import org.jetbrains.jet.lang.descriptors.CallableDescriptor;
+import org.jetbrains.jet.lang.descriptors.FunctionDescriptor;
+import org.jetbrains.jet.lang.descriptors.SimpleFunctionDescriptor;
+import org.jetbrains.jet.lang.descriptors.ValueParameterDescriptor;
+import org.jetbrains.jet.lang.descriptors.VariableDescriptor;
+import org.jetbrains.jet.lang.psi.*;
+import org.jetbrains.jet.lang.resolve.BindingContext;
+import org.jetbrains.jet.lang.resolve.BindingContextUtils;
+import org.jetbrains.jet.lang.resolve.calls.model.ExpressionValueArgument;
+import org.jetbrains.jet.lang.resolve.calls.model.ResolvedCall;
+import org.jetbrains.jet.lang.resolve.calls.model.ResolvedValueArgument;
+import org.jetbrains.jet.lang.resolve.calls.model.VariableAsFunctionResolvedCall;
+import org.jetbrains.jet.lang.types.JetType;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.jetbrains.asm4.Opcodes.*;
+import static org.jetbrains.jet.lang.resolve.java.AsmTypeConstants.OBJECT_TYPE;
+
+/**
+ * Generates a call of a library {@code inline} function by copying its bytecode to the call site.
+ * Function literals passed to the function are generated in place of the calls of {@code invoke} on the corresponding parameters,
+ * so neither closure classes nor their instances are needed for them.
+ *
+ * Functions from the sources being compiled, calls with default or vararg arguments and calls that are not statements are not inlined,
+ * see {@link InlineFunctionBodies} for the requirements to the bytecode of the function.
+ */
+class InlineCodegen {
+    private final ExpressionCodegen codegen;
+    private final InstructionAdapter v;
+    private final FrameMap frameMap;
+    private final JetTypeMapper typeMapper;
+    private final BindingContext bindingContext;
+
+    private InlineCodegen(@NotNull ExpressionCodegen codegen) {
+        this.codegen = codegen;
+        this.v = codegen.v;
+        this.frameMap = codegen.myFrameMap;
+        this.typeMapper = codegen.typeMapper;
+        this.bindingContext = codegen.getBindingContext();
+    }
+
+    /**
+     * @return false if the call can't be inlined and nothing was generated
+     */
+    public static boolean inlineCall(
+            @NotNull ExpressionCodegen codegen,
+            @NotNull CallableMethod callableMethod,
+            @NotNull ResolvedCall<? extends CallableDescriptor> resolvedCall,
+            @NotNull Call call,
+            @NotNull StackValue receiver
+    ) {
+        GenerationState state = codegen.getState();
+        if (state.getClassBuilderMode() != ClassBuilderMode.FULL) return false;
+        if (resolvedCall instanceof VariableAsFunctionResolvedCall) return false;
+        if (callableMethod.getInvokeOpcode() != INVOKESTATIC || callableMethod.getGenerateCalleeType() != null) return false;
+
+        CallableDescriptor descriptor = resolvedCall.getResultingDescriptor().getOriginal();
+        if (!(descriptor instanceof SimpleFunctionDescriptor) || !((SimpleFunctionDescriptor) descriptor).isInline()) return false;
+
+        // Functions from sources are not compiled yet
+        if (BindingContextUtils.descriptorToDeclaration(codegen.getBindingContext(), descriptor) != null) return false;
+
+        InlineCodegen inlineCodegen = new InlineCodegen(codegen);
+        if (!inlineCodegen.isStatement(call.getCallElement())) return false;
+
+        Method asmMethod = callableMethod.getSignature().getAsmMethod();
+        InlineFunctionBodies.Body body = state.getInlineFunctionBodies().getBody(
+                callableMethod.getOwner().getInternalName(), asmMethod.getName(), asmMethod.getDescriptor());
+        if (body == null) return false;
+
+        Map<Integer, JetFunctionLiteralExpression> functionLiterals = inlineCodegen.getInlinableFunctionLiterals(
+                resolvedCall, callableMethod, body);
+        if (functionLiterals == null || functionLiterals.isEmpty()) return false;
+
+        inlineCodegen.generate(callableMethod, resolvedCall, receiver, body, functionLiterals);
+        return true;
+    }
+
+    // Parameter local -> function literal passed as its argument
+    @Nullable
+    private Map<Integer, JetFunctionLiteralExpression> getInlinableFunctionLiterals(
+            @NotNull ResolvedCall<? extends CallableDescriptor> resolvedCall,
+            @NotNull CallableMethod callableMethod,
+            @NotNull InlineFunctionBodies.Body body
+    ) {
+        List<ResolvedValueArgument> valueArguments = resolvedCall.getValueArgumentsByIndex();
+        List<Type> valueParameterTypes = callableMethod.getValueParameterTypes();
+        Type[] argumentTypes = callableMethod.getSignature().getAsmMethod().getArgumentTypes();
+        if (valueArguments.size() != valueParameterTypes.size()) return null;
+
+        int local = 0;
+        for (int i = 0; i < argumentTypes.length - valueParameterTypes.size(); i++) {
+            local += argumentTypes[i].getSize();
+        }
+
+        Map<Integer, JetFunctionLiteralExpression> result = new HashMap<Integer, JetFunctionLiteralExpression>();
+        for (int i = 0; i < valueArguments.size(); i++) {
+            ResolvedValueArgument argument = valueArguments.get(i);
+            if (!(argument instanceof ExpressionValueArgument)) return null;
+
+            ValueArgument valueArgument = ((ExpressionValueArgument) argument).getValueArgument();
+            JetExpression expression = valueArgument != null ? JetPsiUtil.deparenthesize(valueArgument.getArgumentExpression()) : null;
+            if (expression instanceof JetFunctionLiteralExpression && body.canInlineFunctionParameter(local) &&
+                isInlinableFunctionLiteral((JetFunctionLiteralExpression) expression)) {
+                result.put(local, (JetFunctionLiteralExpression) expression);
+            }
+            local += valueParameterTypes.get(i).getSize();
+        }
+        return result;
+    }
+
+    // The literal body may be generated several times, so it should not declare anything that is compiled to a class
+    private boolean isInlinableFunctionLiteral(@NotNull JetFunctionLiteralExpression expression) {
+        FunctionDescriptor descriptor = bindingContext.get(BindingContext.FUNCTION, expression.getFunctionLiteral());
+        if (descriptor == null || descriptor.getReceiverParameter() != null) return false;
+
+        final boolean[] inlinable = {true};
+        expression.getFunctionLiteral().acceptChildren(new JetTreeVisitorVoid() {
+            @Override
+            public void visitReturnExpression(JetReturnExpression expression) {
+                inlinable[0] = false;
+            }
+
+            @Override
+            public void visitFunctionLiteralExpression(JetFunctionLiteralExpression expression) {
+                inlinable[0] = false;
+            }
+
+            @Override
+            public void visitCallableReferenceExpression(JetCallableReferenceExpression expression) {
+                inlinable[0] = false;
+            }
+
+            @Override
+            public void visitObjectLiteralExpression(JetObjectLiteralExpression expression) {
+                inlinable[0] = false;
+            }
+
+            @Override
+            public void visitObjectDeclaration(JetObjectDeclaration declaration) {
+                inlinable[0] = false;
+            }
+
+            @Override
+            public void visitClass(JetClass klass) {
+                inlinable[0] = false;
+            }
+
+            @Override
+            public void visitNamedFunction(JetNamedFunction function) {
+                inlinable[0] = false;
+            }
+        });
+        return inlinable[0];
+    }
+
+    private void generate(
+            @NotNull CallableMethod callableMethod,
+            @NotNull ResolvedCall<? extends CallableDescriptor> resolvedCall,
+            @NotNull StackValue receiver,
+            @NotNull InlineFunctionBodies.Body body,
+            @NotNull Map<Integer, JetFunctionLiteralExpression> functionLiterals
+    ) {
+        StackValue receiverValue = StackValue.receiver(resolvedCall, receiver, codegen, callableMethod);
+        receiverValue.put(receiverValue.type, v);
+
+        List<ResolvedValueArgument> valueArguments = resolvedCall.getValueArgumentsByIndex();
+        List<Type> valueParameterTypes = callableMethod.getValueParameterTypes();
+        Type[] argumentTypes = callableMethod.getSignature().getAsmMethod().getArgumentTypes();
+        int firstValueArgument = argumentTypes.length - valueParameterTypes.size();
+
+        int[] argumentLocals = new int[argumentTypes.length];
+        int local = 0;
+        for (int i = 0; i < argumentTypes.length; i++) {
+            argumentLocals[i] = local;
+            local += argumentTypes[i].getSize();
+        }
+
+        for (int i = firstValueArgument; i < argumentTypes.length; i++) {
+            if (functionLiterals.containsKey(argumentLocals[i])) continue;
+            ValueArgument valueArgument = ((ExpressionValueArgument) valueArguments.get(i - firstValueArgument)).getValueArgument();
+            assert valueArgument != null;
+            codegen.gen(valueArgument.getArgumentExpression(), argumentTypes[i]);
+        }
+
+        MethodNode node = body.node;
+        FrameMap.Mark mark = frameMap.mark();
+        int firstLocal = frameMap.enterTemp(Type.INT_TYPE);
+        for (int i = 1; i < node.maxLocals; i++) {
+            frameMap.enterTemp(Type.INT_TYPE);
+        }
+
+        for (int i = argumentTypes.length - 1; i >= 0; i--) {
+            if (!functionLiterals.containsKey(argumentLocals[i])) {
+                v.store(firstLocal + argumentLocals[i], argumentTypes[i]);
+            }
+        }
+
+        Map<LabelNode, LabelNode> labels = new HashMap<LabelNode, LabelNode>();
+        for (AbstractInsnNode insn = node.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+            if (insn instanceof LabelNode) {
+                labels.put((LabelNode) insn, new LabelNode());
+            }
+        }
+
+        Label end = new Label();
+        for (AbstractInsnNode insn = node.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+            int opcode = insn.getOpcode();
+            Integer functionParameter = body.getFunctionParameterUsage(insn);
+            JetFunctionLiteralExpression functionLiteral = functionParameter != null ? functionLiterals.get(functionParameter) : null;
+
+            if (functionLiteral != null) {
+                if (opcode == INVOKEINTERFACE) {
+                    generateFunctionLiteral(functionLiteral);
+                }
+                else {
+                    // The parameter name passed to the not-null assertion
+                    v.pop();
+                }
+            }
+            else if (insn instanceof VarInsnNode) {
+                int var = ((VarInsnNode) insn).var;
+                if (!functionLiterals.containsKey(var) || !body.isFunctionParameterLoad(insn, var)) {
+                    v.visitVarInsn(opcode, firstLocal + var);
+                }
+            }
+            else if (insn instanceof IincInsnNode) {
+                v.iinc(firstLocal + ((IincInsnNode) insn).var, ((IincInsnNode) insn).incr);
+            }
+            else if (opcode >= IRETURN && opcode <= RETURN) {
+                v.goTo(end);
+            }
+            else if (insn instanceof LabelNode) {
+                v.visitLabel(labels.get(insn).getLabel());
+            }
+            else if (!(insn instanceof LineNumberNode) && !(insn instanceof FrameNode)) {
+                insn.clone(labels).accept(v);
+            }
+        }
+
+        // Nested handlers go first in the exception table, so the ones of the function are added after the code of the literals
+        for (TryCatchBlockNode block : node.tryCatchBlocks) {
+            v.visitTryCatchBlock(labels.get(block.start).getLabel(), labels.get(block.end).getLabel(),
+                                 labels.get(block.handler).getLabel(), block.type);
+        }
+
+        v.mark(end);
+        mark.dropTo();
+    }
+
+    private void generateFunctionLiteral(@NotNull JetFunctionLiteralExpression expression) {
+        FunctionDescriptor descriptor = bindingContext.get(BindingContext.FUNCTION, expression.getFunctionLiteral());
+        assert descriptor != null : "Function literal is not resolved to descriptor: " + expression.getText();
+
+        // Arguments of invoke are on the stack, boxed
+        List<ValueParameterDescriptor> parameters = descriptor.getValueParameters();
+        Type[] parameterTypes = new Type[parameters.size()];
+        int[] parameterLocals = new int[parameters.size()];
+        for (int i = 0; i < parameters.size(); i++) {
+            parameterTypes[i] = typeMapper.mapType(parameters.get(i));
+            parameterLocals[i] = frameMap.enter(parameters.get(i), parameterTypes[i]);
+        }
+        for (int i = parameters.size() - 1; i >= 0; i--) {
+            StackValue.coerce(OBJECT_TYPE, parameterTypes[i], v);
+            v.store(parameterLocals[i], parameterTypes[i]);
+        }
+
+        JetType returnType = descriptor.getReturnType();
+        assert returnType != null : "Function literal has no return type: " + expression.getText();
+        Type asmReturnType = typeMapper.mapReturnType(returnType);
+        codegen.gen(expression.getFunctionLiteral().getBodyExpression(), asmReturnType);
+        StackValue.coerce(asmReturnType, OBJECT_TYPE, v);
+
+        for (int i = parameters.size() - 1; i >= 0; i--) {
+            frameMap.leave(parameters.get(i));
+        }
+    }
+
+    // Handlers of the inlined function clear the stack, so nothing may be on it at the call
+    private boolean isStatement(@NotNull PsiElement element) {
+        PsiElement parent = element.getParent();
+        if (parent instanceof JetDotQualifiedExpression && ((JetDotQualifiedExpression) parent).getSelectorExpression() == element) {
+            return isStatement(parent);
+        }
+        if (parent instanceof JetParenthesizedExpression || parent instanceof JetReturnExpression) {
+            return isStatement(parent);
+        }
+        if (parent instanceof JetProperty && ((JetProperty) parent).getInitializer() == element) {
+            // The reference to a shared variable is put on the stack before its initializer
+            VariableDescriptor variable = bindingContext.get(BindingContext.VARIABLE, (JetProperty) parent);
+            return variable != null && typeMapper.getSharedVarType(variable) == null &&
+                   parent.getParent() instanceof JetBlockExpression && isStatement(parent);
+        }
+        if (parent instanceof JetContainerNode) {
+            PsiElement container = parent.getParent();
+            if (container instanceof JetIfExpression &&
+                (((JetIfExpression) container).getThen() == element || ((JetIfExpression) container).getElse() == element)) {
+                return isStatement(container);
+            }
+            if (container instanceof JetLoopExpression && ((JetLoopExpression) container).getBody() == element) {
+                return isStatement(container);
+            }
+            return false;
+        }
+        if (parent instanceof JetBlockExpression) {
+            PsiElement owner = parent.getParent();
+            if (owner instanceof JetFunctionLiteral) {
+                JetFunctionLiteralExpression literal = (JetFunctionLiteralExpression) owner.getParent();
+                // Closure bodies are generated to separate methods, inlined literals are generated at an empty stack
+                return !Boolean.TRUE.equals(bindingContext.get(BindingContext.BLOCK, literal)) || isStatement(literal);
+            }
+            if (owner instanceof JetDeclarationWithBody) {
+                return true;
+            }
+            return isStatement(parent);
+        }
+        return parent instanceof JetDeclarationWithBody && ((JetDeclarationWithBody) parent).getBodyExpression() == element;
+    }
+}
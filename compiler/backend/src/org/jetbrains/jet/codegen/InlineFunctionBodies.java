@@ -0,0 +1,387 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.jet.codegen;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.asm4.ClassReader;
+import org.jetbrains.asm4.Type;
+import org.jetbrains.asm4.tree.*;
+import org.jetbrains.asm4.tree.analysis.Analyzer;
+import org.jetbrains.asm4.tree.analysis.AnalyzerException;
+import org.jetbrains.asm4.tree.analysis.Frame;
+import org.jetbrains.asm4.tree.analysis.SourceInterpreter;
+import org.jetbrains.asm4.tree.analysis.SourceValue;
+import org.jetbrains.jet.codegen.state.GenerationState;
+import org.jetbrains.jet.lang.resolve.kotlin.VirtualFileFinder;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+
+import java.io.IOException;
+import java.util.*;
+
+import static org.jetbrains.asm4.Opcodes.*;
+
+/**
+ * Loads the bytecode of library {@code inline} functions and checks that it can be copied to a call site.
+ *
+ * A function body is inlinable if it only references members accessible from any package and returns with an otherwise empty stack.
+ * A parameter of a function type can be replaced with a function literal if the function object is only used as the receiver
+ * of {@code invoke} at an empty stack or in a not-null assertion.
+ */
+public class InlineFunctionBodies {
+    private static final Object NOT_INLINABLE = new Object();
+
+    private static final String FUNCTION_TYPE_PREFIX = "jet/Function";
+    private static final String INTRINSICS_CLASS = "jet/runtime/Intrinsics";
+    private static final String CHECK_PARAMETER_IS_NOT_NULL = "checkParameterIsNotNull";
+
+    private final GenerationState state;
+
+    // "owner.name(desc)" -> Body or NOT_INLINABLE
+    private final Map<String, Object> bodies = new HashMap<String, Object>();
+
+    // Internal name -> ClassNode or NOT_INLINABLE
+    private final Map<String, Object> classes = new HashMap<String, Object>();
+
+    // Package internal name -> directory of a class file found in it
+    private final Map<String, VirtualFile> packageDirectories = new HashMap<String, VirtualFile>();
+
+    public InlineFunctionBodies(@NotNull GenerationState state) {
+        this.state = state;
+    }
+
+    public static class Body {
+        @NotNull
+        public final MethodNode node;
+
+        // Parameter local -> instructions reading the function object from it; present only for the parameters that can be inlined
+        @NotNull
+        private final Map<Integer, Set<AbstractInsnNode>> functionLoads;
+
+        // Call of invoke or not-null assertion -> parameter local of the function object it consumes
+        @NotNull
+        private final Map<AbstractInsnNode, Integer> functionUsages;
+
+        private Body(
+                @NotNull MethodNode node,
+                @NotNull Map<Integer, Set<AbstractInsnNode>> functionLoads,
+                @NotNull Map<AbstractInsnNode, Integer> functionUsages
+        ) {
+            this.node = node;
+            this.functionLoads = functionLoads;
+            this.functionUsages = functionUsages;
+        }
+
+        public boolean canInlineFunctionParameter(int local) {
+            return functionLoads.containsKey(local);
+        }
+
+        public boolean isFunctionParameterLoad(@NotNull AbstractInsnNode insn, int local) {
+            Set<AbstractInsnNode> loads = functionLoads.get(local);
+            return loads != null && loads.contains(insn);
+        }
+
+        // Returns the parameter local of the function object consumed by insn, if it is a call of invoke or a not-null assertion
+        @Nullable
+        public Integer getFunctionParameterUsage(@NotNull AbstractInsnNode insn) {
+            return functionUsages.get(insn);
+        }
+    }
+
+    @Nullable
+    public synchronized Body getBody(@NotNull String owner, @NotNull String name, @NotNull String desc) {
+        String key = owner + "." + name + desc;
+        Object body = bodies.get(key);
+        if (body == null) {
+            body = loadBody(owner, name, desc);
+            bodies.put(key, body != null ? body : NOT_INLINABLE);
+        }
+        return body == NOT_INLINABLE ? null : (Body) body;
+    }
+
+    @Nullable
+    private Body loadBody(@NotNull String owner, @NotNull String name, @NotNull String desc) {
+        MethodNode method = findMethod(owner, name, desc);
+        if (method == null || (method.access & ACC_STATIC) == 0) return null;
+
+        // Namespace facades delegate to the class compiled from the file declaring the function
+        MethodInsnNode delegation = getFacadeDelegation(method, name, desc);
+        if (delegation != null) {
+            owner = delegation.owner;
+            method = findMethod(owner, name, desc);
+            if (method == null || (method.access & ACC_STATIC) == 0) return null;
+        }
+
+        if ((method.access & (ACC_SYNCHRONIZED | ACC_NATIVE | ACC_ABSTRACT)) != 0) return null;
+
+        Frame<SourceValue>[] frames;
+        try {
+            frames = new Analyzer<SourceValue>(new SourceInterpreter()).analyze(owner, method);
+        }
+        catch (AnalyzerException e) {
+            return null;
+        }
+
+        if (!checkInstructions(owner, method, frames)) return null;
+
+        Map<Integer, Set<AbstractInsnNode>> functionLoads = new HashMap<Integer, Set<AbstractInsnNode>>();
+        Map<AbstractInsnNode, Integer> functionUsages = new HashMap<AbstractInsnNode, Integer>();
+        int local = 0;
+        for (Type parameterType : Type.getArgumentTypes(desc)) {
+            if (parameterType.getSort() == Type.OBJECT && parameterType.getInternalName().startsWith(FUNCTION_TYPE_PREFIX)) {
+                Map<AbstractInsnNode, AbstractInsnNode> usages = findFunctionParameterUsages(method, frames, local);
+                if (usages != null) {
+                    functionLoads.put(local, new HashSet<AbstractInsnNode>(usages.keySet()));
+                    for (AbstractInsnNode usage : usages.values()) {
+                        functionUsages.put(usage, local);
+                    }
+                }
+            }
+            local += parameterType.getSize();
+        }
+
+        return new Body(method, functionLoads, functionUsages);
+    }
+
+    @Nullable
+    private static MethodInsnNode getFacadeDelegation(@NotNull MethodNode method, @NotNull String name, @NotNull String desc) {
+        AbstractInsnNode last = method.instructions.getLast();
+        while (last instanceof LabelNode) {
+            last = last.getPrevious();
+        }
+        if (last == null || last.getOpcode() < IRETURN || last.getOpcode() > RETURN) return null;
+
+        AbstractInsnNode call = last.getPrevious();
+        if (call == null || call.getOpcode() != INVOKESTATIC) return null;
+        MethodInsnNode delegation = (MethodInsnNode) call;
+        if (!delegation.name.equals(name) || !delegation.desc.equals(desc)) return null;
+
+        for (AbstractInsnNode insn = call.getPrevious(); insn != null; insn = insn.getPrevious()) {
+            if (!(insn instanceof LabelNode) && !(insn instanceof VarInsnNode && insn.getOpcode() <= ALOAD)) return null;
+        }
+        return delegation;
+    }
+
+    private boolean checkInstructions(@NotNull String owner, @NotNull MethodNode method, @NotNull Frame<SourceValue>[] frames) {
+        String ownerPackage = getPackage(owner);
+        AbstractInsnNode[] insns = method.instructions.toArray();
+        for (int i = 0; i < insns.length; i++) {
+            AbstractInsnNode insn = insns[i];
+            int opcode = insn.getOpcode();
+            if (opcode == JSR || opcode == RET || opcode == INVOKEDYNAMIC) return false;
+
+            if (opcode >= IRETURN && opcode <= RETURN) {
+                Frame<SourceValue> frame = frames[i];
+                if (frame != null && frame.getStackSize() != (opcode == RETURN ? 0 : 1)) return false;
+            }
+
+            // Package-private members are accessible from the declaring package only
+            if (insn instanceof FieldInsnNode) {
+                FieldInsnNode field = (FieldInsnNode) insn;
+                if (!isAccessibleMember(ownerPackage, field.owner, field.name, field.desc, false)) return false;
+            }
+            else if (insn instanceof MethodInsnNode) {
+                MethodInsnNode call = (MethodInsnNode) insn;
+                if (!isAccessibleMember(ownerPackage, call.owner, call.name, call.desc, true)) return false;
+            }
+            else if (insn instanceof TypeInsnNode) {
+                if (!isAccessibleClass(ownerPackage, ((TypeInsnNode) insn).desc)) return false;
+            }
+            else if (insn instanceof MultiANewArrayInsnNode) {
+                if (!isAccessibleClass(ownerPackage, ((MultiANewArrayInsnNode) insn).desc)) return false;
+            }
+            else if (insn instanceof LdcInsnNode && ((LdcInsnNode) insn).cst instanceof Type) {
+                if (!isAccessibleClass(ownerPackage, ((Type) ((LdcInsnNode) insn).cst).getInternalName())) return false;
+            }
+        }
+
+        for (TryCatchBlockNode block : method.tryCatchBlocks) {
+            if (block.type != null && !isAccessibleClass(ownerPackage, block.type)) return false;
+        }
+        return true;
+    }
+
+    // Returns null if the function object can't be replaced with the function literal, the map from its loads to their consumers otherwise
+    @Nullable
+    private static Map<AbstractInsnNode, AbstractInsnNode> findFunctionParameterUsages(
+            @NotNull MethodNode method,
+            @NotNull Frame<SourceValue>[] frames,
+            int local
+    ) {
+        Map<AbstractInsnNode, AbstractInsnNode> usages = new HashMap<AbstractInsnNode, AbstractInsnNode>();
+        AbstractInsnNode[] insns = method.instructions.toArray();
+        for (int i = 0; i < insns.length; i++) {
+            AbstractInsnNode insn = insns[i];
+            if (insn.getType() != AbstractInsnNode.VAR_INSN || ((VarInsnNode) insn).var != local) continue;
+            if (insn.getOpcode() != ALOAD || frames[i] == null) return null;
+
+            int depth = frames[i].getStackSize();
+            AbstractInsnNode usage = findFunctionObjectUsage(insns, frames, i, depth);
+            if (usage == null) return null;
+
+            // The literal body is generated in place of the call, so nothing may be left on the stack below it
+            if (usage.getOpcode() == INVOKEINTERFACE && depth != 0) return null;
+            usages.put(insn, usage);
+        }
+        return usages;
+    }
+
+    // Follows the function object loaded by insns[load] on the stack until some instruction consumes it
+    @Nullable
+    private static AbstractInsnNode findFunctionObjectUsage(
+            @NotNull AbstractInsnNode[] insns,
+            @NotNull Frame<SourceValue>[] frames,
+            int load,
+            int depth
+    ) {
+        for (int i = load + 1; i < insns.length; i++) {
+            Frame<SourceValue> frame = frames[i];
+            if (!isFunctionObjectOnStack(frame, insns[load], depth)) return null;
+
+            AbstractInsnNode insn = insns[i];
+            int opcode = insn.getOpcode();
+            if (opcode == INVOKEINTERFACE) {
+                MethodInsnNode call = (MethodInsnNode) insn;
+                int argumentCount = Type.getArgumentTypes(call.desc).length;
+                if (frame.getStackSize() - argumentCount - 1 == depth) {
+                    return call.owner.startsWith(FUNCTION_TYPE_PREFIX) && call.name.equals("invoke") ? call : null;
+                }
+            }
+            else if (opcode == INVOKESTATIC) {
+                MethodInsnNode call = (MethodInsnNode) insn;
+                if (frame.getStackSize() - Type.getArgumentTypes(call.desc).length == depth) {
+                    return call.owner.equals(INTRINSICS_CLASS) && call.name.equals(CHECK_PARAMETER_IS_NOT_NULL) ? call : null;
+                }
+            }
+            else if (opcode >= POP && opcode <= SWAP && frame.getStackSize() - 4 <= depth) {
+                // Copies of the function object are not tracked
+                return null;
+            }
+
+            if (insn instanceof JumpInsnNode || insn instanceof TableSwitchInsnNode || insn instanceof LookupSwitchInsnNode ||
+                opcode == ATHROW || (opcode >= IRETURN && opcode <= RETURN)) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isFunctionObjectOnStack(@Nullable Frame<SourceValue> frame, @NotNull AbstractInsnNode load, int depth) {
+        if (frame == null || frame.getStackSize() <= depth) return false;
+        Set<AbstractInsnNode> sources = frame.getStack(depth).insns;
+        return sources.size() == 1 && sources.contains(load);
+    }
+
+    private boolean isAccessibleClass(@NotNull String ownerPackage, @NotNull String internalName) {
+        Type type = Type.getObjectType(internalName);
+        while (type.getSort() == Type.ARRAY) {
+            type = type.getElementType();
+        }
+        if (type.getSort() != Type.OBJECT || !getPackage(type.getInternalName()).equals(ownerPackage)) return true;
+
+        ClassNode classNode = findClass(type.getInternalName());
+        return classNode != null && (classNode.access & ACC_PUBLIC) != 0;
+    }
+
+    private boolean isAccessibleMember(
+            @NotNull String ownerPackage,
+            @NotNull String owner,
+            @NotNull String name,
+            @NotNull String desc,
+            boolean isMethod
+    ) {
+        if (!isAccessibleClass(ownerPackage, owner)) return false;
+        if (owner.startsWith("[") || !getPackage(owner).equals(ownerPackage)) return true;
+
+        ClassNode classNode = findClass(owner);
+        assert classNode != null : "Class should have been loaded when checking its accessibility: " + owner;
+        if (isMethod) {
+            for (MethodNode method : classNode.methods) {
+                if (method.name.equals(name) && method.desc.equals(desc)) return (method.access & ACC_PUBLIC) != 0;
+            }
+        }
+        else {
+            for (FieldNode field : classNode.fields) {
+                if (field.name.equals(name) && field.desc.equals(desc)) return (field.access & ACC_PUBLIC) != 0;
+            }
+        }
+        // Inherited members are not looked up
+        return false;
+    }
+
+    @Nullable
+    private MethodNode findMethod(@NotNull String owner, @NotNull String name, @NotNull String desc) {
+        ClassNode classNode = findClass(owner);
+        if (classNode == null) return null;
+        for (MethodNode method : classNode.methods) {
+            if (method.name.equals(name) && method.desc.equals(desc)) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private ClassNode findClass(@NotNull String internalName) {
+        Object classNode = classes.get(internalName);
+        if (classNode == null) {
+            classNode = loadClass(internalName);
+            classes.put(internalName, classNode != null ? classNode : NOT_INLINABLE);
+        }
+        return classNode == NOT_INLINABLE ? null : (ClassNode) classNode;
+    }
+
+    @Nullable
+    private ClassNode loadClass(@NotNull String internalName) {
+        VirtualFile file = findClassFile(internalName);
+        if (file == null) return null;
+        try {
+            ClassNode classNode = new ClassNode();
+            new ClassReader(file.contentsToByteArray()).accept(classNode, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            return classNode;
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    private VirtualFile findClassFile(@NotNull String internalName) {
+        VirtualFileFinder finder = ServiceManager.getService(state.getProject(), VirtualFileFinder.class);
+        if (finder == null) return null;
+
+        String packageName = getPackage(internalName);
+        VirtualFile file = finder.find(new FqName(internalName.replace('/', '.')));
+        if (file != null) {
+            packageDirectories.put(packageName, file.getParent());
+            return file;
+        }
+
+        // Only Kotlin classes are found by the finder, the others are looked up next to a Kotlin class of the same package
+        VirtualFile directory = packageDirectories.get(packageName);
+        return directory != null ? directory.findChild(internalName.substring(internalName.lastIndexOf('/') + 1) + ".class") : null;
+    }
+
+    @NotNull
+    private static String getPackage(@NotNull String internalName) {
+        int slash = internalName.lastIndexOf('/');
+        return slash < 0 ? "" : internalName.substring(0, slash);
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.jetbrains.jet.codegen;
 
+import com.google.common.collect.Lists;
 import com.intellij.openapi.util.Pair;
 import com.intellij.util.containers.MultiMap;
 import org.jetbrains.annotations.NotNull;
@@ -30,7 +31,9 @@ import org.jetbrains.jet.lang.resolve.name.FqName;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.*;
 
 import static org.jetbrains.jet.codegen.binding.CodegenBinding.registerClassNameForScript;
 
@@ -56,11 +59,69 @@ public class KotlinCodegenFacade {
             namespaceGrouping.putValue(JetPsiUtil.getFQName(file), file);
         }
 
+        if (state.getCodegenThreads() > 1 && namespaceGrouping.size() > 1) {
+            generateNamespacesInParallel(state, namespaceGrouping, errorHandler);
+            return;
+        }
+
         for (Map.Entry<FqName, Collection<JetFile>> entry : namespaceGrouping.entrySet()) {
             generateNamespace(state, entry.getKey(), entry.getValue(), errorHandler);
         }
     }
 
+    private static void generateNamespacesInParallel(
+            @NotNull GenerationState state,
+            @NotNull MultiMap<FqName, JetFile> namespaceGrouping,
+            @NotNull final CompilationErrorHandler errorHandler
+    ) {
+        // Names of all the classes are known after beforeCompile(), so namespaces can be generated independently.
+        // Each namespace puts its class files aside, and they are added to the factory in the sequential order
+        final ClassFileFactory factory = state.getFactory();
+        int threads = Math.min(state.getCodegenThreads(), namespaceGrouping.size());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Map<String, ClassFileFactory.ClassBuilderAndSourceFileList>>> results = Lists.newArrayList();
+            for (Map.Entry<FqName, Collection<JetFile>> entry : namespaceGrouping.entrySet()) {
+                final NamespaceCodegen codegen = factory.forNamespace(entry.getKey(), entry.getValue());
+                results.add(executor.submit(new Callable<Map<String, ClassFileFactory.ClassBuilderAndSourceFileList>>() {
+                    @Override
+                    public Map<String, ClassFileFactory.ClassBuilderAndSourceFileList> call() {
+                        return factory.generateAside(new Runnable() {
+                            @Override
+                            public void run() {
+                                codegen.generate(errorHandler);
+                            }
+                        });
+                    }
+                }));
+            }
+
+            for (Future<Map<String, ClassFileFactory.ClassBuilderAndSourceFileList>> result : results) {
+                factory.addGeneratedAside(getResult(result));
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @NotNull
+    private static <T> T getResult(@NotNull Future<T> future) {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while generating namespaces", e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
     public static void generateNamespace(
             @NotNull GenerationState state,
             @NotNull FqName fqName,
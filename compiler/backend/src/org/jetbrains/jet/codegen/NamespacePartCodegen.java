@@ -99,7 +99,8 @@ public class NamespacePartCodegen extends MemberCodegen {
 
     private void generateStaticInitializers() {
         List<JetProperty> properties = collectPropertiesToInitialize();
-        if (properties.isEmpty()) return;
+        List<JetProperty> delegatedProperties = PropertyCodegen.getDelegatedProperties(jetFile.getDeclarations());
+        if (properties.isEmpty() && delegatedProperties.isEmpty()) return;
 
         MethodVisitor mv = v.newMethod(jetFile, ACC_STATIC, "<clinit>", "()V", null, null);
         if (state.getClassBuilderMode() == ClassBuilderMode.FULL) {
@@ -115,6 +116,7 @@ public class NamespacePartCodegen extends MemberCodegen {
                               Collections.<ValueParameterDescriptor>emptyList(), null, null, Visibilities.PRIVATE, false);
 
             ExpressionCodegen codegen = new ExpressionCodegen(mv, frameMap, Type.VOID_TYPE, this.context.intoFunction(clInit), state, this);
+            PropertyCodegen.generatePropertyMetadataArray(codegen, v, delegatedProperties);
 
             for (JetDeclaration declaration : properties) {
                 ImplementationBodyCodegen.
@@ -16,8 +16,10 @@
 
 package org.jetbrains.jet.codegen;
 
+import com.google.common.collect.Lists;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiElement;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.asm4.FieldVisitor;
@@ -45,13 +47,15 @@ import org.jetbrains.jet.lang.types.ErrorUtils;
 import org.jetbrains.jet.lang.types.JetType;
 import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
 
+import java.util.List;
+
 import static org.jetbrains.asm4.Opcodes.*;
 import static org.jetbrains.jet.codegen.AsmUtil.*;
 import static org.jetbrains.jet.codegen.CodegenUtil.getParentBodyCodegen;
 import static org.jetbrains.jet.codegen.CodegenUtil.isInterface;
 import static org.jetbrains.jet.codegen.JvmSerializationBindings.*;
 import static org.jetbrains.jet.lang.resolve.DescriptorUtils.isTrait;
-import static org.jetbrains.jet.lang.resolve.java.AsmTypeConstants.OBJECT_TYPE;
+import static org.jetbrains.jet.lang.resolve.java.AsmTypeConstants.*;
 
 public class PropertyCodegen extends GenerationStateAware {
     @NotNull
@@ -261,7 +265,8 @@ public class PropertyCodegen extends GenerationStateAware {
             FunctionGenerationStrategy strategy;
             if (defaultGetter) {
                 if (p instanceof JetProperty && ((JetProperty) p).getDelegateExpression() != null) {
-                    strategy = new DefaultPropertyWithDelegateAccessorStrategy(state, getterDescriptor);
+                    strategy = new DefaultPropertyWithDelegateAccessorStrategy(
+                            state, getterDescriptor, v, getPropertyMetadataIndex((JetProperty) p));
                 }
                 else {
                     strategy = new DefaultPropertyAccessorStrategy(state, getterDescriptor);
@@ -292,7 +297,8 @@ public class PropertyCodegen extends GenerationStateAware {
                 FunctionGenerationStrategy strategy;
                 if (defaultSetter) {
                     if (p instanceof JetProperty && ((JetProperty) p).getDelegateExpression() != null) {
-                        strategy = new DefaultPropertyWithDelegateAccessorStrategy(state, setterDescriptor);
+                        strategy = new DefaultPropertyWithDelegateAccessorStrategy(
+                                state, setterDescriptor, v, getPropertyMetadataIndex((JetProperty) p));
                     }
                     else {
                         strategy = new DefaultPropertyAccessorStrategy(state, setterDescriptor);
@@ -366,8 +372,18 @@ public class PropertyCodegen extends GenerationStateAware {
     }
 
     private static class DefaultPropertyWithDelegateAccessorStrategy extends FunctionGenerationStrategy.CodegenBased<PropertyAccessorDescriptor> {
-        public DefaultPropertyWithDelegateAccessorStrategy(@NotNull GenerationState state, @NotNull PropertyAccessorDescriptor descriptor) {
+        private final ClassBuilder owner;
+        private final int propertyMetadataIndex;
+
+        public DefaultPropertyWithDelegateAccessorStrategy(
+                @NotNull GenerationState state,
+                @NotNull PropertyAccessorDescriptor descriptor,
+                @NotNull ClassBuilder owner,
+                int propertyMetadataIndex
+        ) {
             super(state, descriptor);
+            this.owner = owner;
+            this.propertyMetadataIndex = propertyMetadataIndex;
         }
 
         @Override
@@ -388,6 +404,18 @@ public class PropertyCodegen extends GenerationStateAware {
             PropertyDescriptor property = callableDescriptor.getCorrespondingProperty();
             Type asmType = typeMapper.mapType(property);
 
+            JetExpression propertyMetadataArgument = call.getValueArguments().get(1).getArgumentExpression();
+            int propertyMetadataLocal = -1;
+            if (propertyMetadataIndex >= 0) {
+                // Take the cached instance instead of generating the synthesized 'PropertyMetadataImpl("name")' argument
+                propertyMetadataLocal = codegen.myFrameMap.enterTemp(JET_PROPERTY_METADATA_TYPE);
+                iv.getstatic(owner.getThisName(), JvmAbi.PROPERTY_METADATA_ARRAY_NAME, PROPERTY_METADATA_ARRAY_TYPE.getDescriptor());
+                iv.iconst(propertyMetadataIndex);
+                iv.aload(JET_PROPERTY_METADATA_TYPE);
+                iv.store(propertyMetadataLocal, JET_PROPERTY_METADATA_TYPE);
+                codegen.putPropertyMetadataLocal(propertyMetadataArgument, propertyMetadataLocal);
+            }
+
             if (kind != OwnerKind.NAMESPACE) {
                 iv.load(0, OBJECT_TYPE);
             }
@@ -395,6 +423,11 @@ public class PropertyCodegen extends GenerationStateAware {
             StackValue delegatedProperty = codegen.intermediateValueForProperty(property, true, null);
             StackValue lastValue = codegen.invokeFunction(call, delegatedProperty, resolvedCall);
 
+            if (propertyMetadataLocal >= 0) {
+                codegen.removePropertyMetadataLocal(propertyMetadataArgument);
+                codegen.myFrameMap.leaveTemp(JET_PROPERTY_METADATA_TYPE);
+            }
+
             if (lastValue.type != Type.VOID_TYPE) {
                 lastValue.put(asmType, iv);
                 iv.areturn(asmType);
@@ -405,6 +438,61 @@ public class PropertyCodegen extends GenerationStateAware {
         }
     }
 
+    private static final Type PROPERTY_METADATA_ARRAY_TYPE = Type.getType("[" + JET_PROPERTY_METADATA_TYPE.getDescriptor());
+
+    /**
+     * @return the delegated properties among the declarations of a class body or a file, in the order of their instances of
+     * {@code jet.PropertyMetadata} in the {@link JvmAbi#PROPERTY_METADATA_ARRAY_NAME} array of the generated class
+     */
+    @NotNull
+    public static List<JetProperty> getDelegatedProperties(@NotNull List<JetDeclaration> declarations) {
+        List<JetProperty> result = Lists.newArrayList();
+        for (JetDeclaration declaration : declarations) {
+            if (declaration instanceof JetProperty && ((JetProperty) declaration).getDelegateExpression() != null) {
+                result.add((JetProperty) declaration);
+            }
+        }
+        return result;
+    }
+
+    private static int getPropertyMetadataIndex(@NotNull JetProperty property) {
+        PsiElement parent = property.getParent();
+        if (!(parent instanceof JetClassBody || parent instanceof JetFile)) return -1;
+        return getDelegatedProperties(((JetDeclarationContainer) parent).getDeclarations()).indexOf(property);
+    }
+
+    /**
+     * Creates the metadata of all delegated properties of the class once, so that their accessors don't allocate it on each call.
+     * Should be generated first in the static initializer, because the rest of it may already call the accessors
+     */
+    public static void generatePropertyMetadataArray(
+            @NotNull ExpressionCodegen codegen,
+            @NotNull ClassBuilder v,
+            @NotNull List<JetProperty> delegatedProperties
+    ) {
+        if (delegatedProperties.isEmpty()) return;
+
+        v.newField(null, ACC_PRIVATE | ACC_STATIC | ACC_FINAL | ACC_SYNTHETIC, JvmAbi.PROPERTY_METADATA_ARRAY_NAME,
+                   PROPERTY_METADATA_ARRAY_TYPE.getDescriptor(), null, null);
+
+        InstructionAdapter iv = codegen.v;
+        iv.iconst(delegatedProperties.size());
+        iv.newarray(JET_PROPERTY_METADATA_TYPE);
+        for (int i = 0, size = delegatedProperties.size(); i < size; i++) {
+            VariableDescriptor descriptor = codegen.getBindingContext().get(BindingContext.VARIABLE, delegatedProperties.get(i));
+            assert descriptor != null : "Delegated property should have a descriptor: " + delegatedProperties.get(i).getText();
+
+            iv.dup();
+            iv.iconst(i);
+            iv.anew(JET_PROPERTY_METADATA_IMPL_TYPE);
+            iv.dup();
+            iv.aconst(descriptor.getName().asString());
+            iv.invokespecial(JET_PROPERTY_METADATA_IMPL_TYPE.getInternalName(), "<init>", "(Ljava/lang/String;)V");
+            iv.astore(JET_PROPERTY_METADATA_TYPE);
+        }
+        iv.putstatic(v.getThisName(), JvmAbi.PROPERTY_METADATA_ARRAY_NAME, PROPERTY_METADATA_ARRAY_TYPE.getDescriptor());
+    }
+
     public static String getterName(Name propertyName) {
         return JvmAbi.GETTER_PREFIX + StringUtil.capitalizeWithJavaBeanConvention(propertyName.asString());
     }
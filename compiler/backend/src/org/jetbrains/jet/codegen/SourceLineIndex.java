@@ -0,0 +1,141 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.codegen;
+
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.diagnostics.DiagnosticUtils;
+import org.jetbrains.jet.lang.psi.JetFile;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps source ranges of a file to the JVM classes generated for them: classes, objects, closures and trait implementations.
+ * Lets the debugger find the class of a breakpoint without analyzing the file. Code outside of these ranges belongs
+ * to the namespace part of the file.
+ *
+ * The index is written next to the classes of the file, one range per line: "startLine:startColumn endLine:endColumn internalName",
+ * lines and columns are 1-based, the end is exclusive. The index file is named after the namespace part of the file, so that
+ * files with the same name in the same package don't overwrite each other's index.
+ */
+public final class SourceLineIndex {
+    public static final String FILE_EXTENSION = ".kotlin_lines";
+
+    @NotNull
+    public static String getIndexFilePath(@NotNull JetFile file) {
+        return NamespaceCodegen.getNamespacePartInternalName(file) + FILE_EXTENSION;
+    }
+
+    private final List<Entry> entries = new ArrayList<Entry>();
+
+    public void add(@NotNull PsiElement origin, @NotNull String internalName) {
+        PsiFile file = origin.getContainingFile();
+        TextRange range = origin.getTextRange();
+        DiagnosticUtils.LineAndColumn start = DiagnosticUtils.getLineAndColumnInPsiFile(file, range);
+        DiagnosticUtils.LineAndColumn end = DiagnosticUtils.getLineAndColumnInPsiFile(file, TextRange.from(range.getEndOffset(), 0));
+        if (start.getLine() < 0 || end.getLine() < 0) return;
+
+        entries.add(new Entry(start.getLine(), start.getColumn(), end.getLine(), end.getColumn(), internalName));
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * @return the internal name of the class generated for the innermost range containing the given position,
+     *         or null if the position belongs to the namespace part
+     */
+    @Nullable
+    public String findClassName(int line, int column) {
+        Entry result = null;
+        for (Entry entry : entries) {
+            if (!entry.contains(line, column)) continue;
+            if (result == null || compare(entry.startLine, entry.startColumn, result.startLine, result.startColumn) > 0) {
+                result = entry;
+            }
+        }
+        return result == null ? null : result.internalName;
+    }
+
+    @NotNull
+    public String serialize() {
+        StringBuilder sb = new StringBuilder();
+        for (Entry entry : entries) {
+            sb.append(entry.startLine).append(':').append(entry.startColumn).append(' ')
+              .append(entry.endLine).append(':').append(entry.endColumn).append(' ')
+              .append(entry.internalName).append('\n');
+        }
+        return sb.toString();
+    }
+
+    @NotNull
+    public static SourceLineIndex parse(@NotNull String text) {
+        SourceLineIndex index = new SourceLineIndex();
+        for (String line : text.split("\n")) {
+            String[] parts = line.trim().split(" ");
+            if (parts.length != 3) continue;
+
+            int[] start = parsePosition(parts[0]);
+            int[] end = parsePosition(parts[1]);
+            if (start == null || end == null) continue;
+
+            index.entries.add(new Entry(start[0], start[1], end[0], end[1], parts[2]));
+        }
+        return index;
+    }
+
+    @Nullable
+    private static int[] parsePosition(@NotNull String position) {
+        int colon = position.indexOf(':');
+        if (colon < 0) return null;
+        try {
+            return new int[] {Integer.parseInt(position.substring(0, colon)), Integer.parseInt(position.substring(colon + 1))};
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static int compare(int line1, int column1, int line2, int column2) {
+        return line1 != line2 ? line1 - line2 : column1 - column2;
+    }
+
+    private static class Entry {
+        private final int startLine;
+        private final int startColumn;
+        private final int endLine;
+        private final int endColumn;
+        private final String internalName;
+
+        private Entry(int startLine, int startColumn, int endLine, int endColumn, @NotNull String internalName) {
+            this.startLine = startLine;
+            this.startColumn = startColumn;
+            this.endLine = endLine;
+            this.endColumn = endColumn;
+            this.internalName = internalName;
+        }
+
+        private boolean contains(int line, int column) {
+            return compare(startLine, startColumn, line, column) <= 0 && compare(line, column, endLine, endColumn) < 0;
+        }
+    }
+}
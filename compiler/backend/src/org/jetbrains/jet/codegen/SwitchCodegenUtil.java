@@ -0,0 +1,322 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.codegen;
+
+import com.intellij.psi.PsiElement;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.asm4.Label;
+import org.jetbrains.asm4.Type;
+import org.jetbrains.asm4.commons.InstructionAdapter;
+import org.jetbrains.jet.lang.descriptors.ClassDescriptor;
+import org.jetbrains.jet.lang.descriptors.ClassifierDescriptor;
+import org.jetbrains.jet.lang.descriptors.DeclarationDescriptor;
+import org.jetbrains.jet.lang.descriptors.VariableDescriptor;
+import org.jetbrains.jet.lang.psi.*;
+import org.jetbrains.jet.lang.resolve.BindingContext;
+import org.jetbrains.jet.lang.resolve.BindingContextUtils;
+import org.jetbrains.jet.lang.resolve.DescriptorUtils;
+import org.jetbrains.jet.lang.resolve.constants.*;
+import org.jetbrains.jet.lang.types.JetType;
+
+import java.util.*;
+
+import static org.jetbrains.jet.lang.resolve.java.AsmTypeConstants.JAVA_STRING_TYPE;
+
+/**
+ * Compiles a when() over constant conditions into a single TABLESWITCH/LOOKUPSWITCH instead of a chain of comparisons.
+ *
+ * Supported are subjects of types Int, Char, Short and Byte compared to constants of the same type, Strings compared
+ * to String constants (switching on the hash code, then checking equality) and enums declared in the sources being compiled
+ * compared to their entries (switching on the ordinal). Enums from libraries are not supported, since their ordinals may change
+ * without recompiling the code which uses them.
+ */
+public class SwitchCodegenUtil {
+    private SwitchCodegenUtil() {
+    }
+
+    private enum Kind {
+        INT,
+        STRING,
+        ENUM
+    }
+
+    public static class SwitchTable {
+        private final Kind kind;
+        private final boolean subjectNullable;
+        // Keys (Integers or Strings) in the order of appearance mapped to the indices of their when entries,
+        // a key mentioned twice belongs to its first entry as it does in a chain of comparisons
+        private final Map<Object, Integer> entryByKey = new LinkedHashMap<Object, Integer>();
+
+        private SwitchTable(@NotNull Kind kind, boolean subjectNullable) {
+            this.kind = kind;
+            this.subjectNullable = subjectNullable;
+        }
+
+        /**
+         * Returns false for an entry which is never chosen, because all its conditions are matched by previous entries
+         */
+        public boolean isReachable(int entryIndex) {
+            return entryByKey.containsValue(entryIndex);
+        }
+    }
+
+    /**
+     * Returns null if the when() can't be compiled into a switch
+     */
+    @Nullable
+    public static SwitchTable buildSwitchTable(
+            @NotNull JetWhenExpression expression,
+            @Nullable JetType subjectJetType,
+            @NotNull Type subjectType,
+            @NotNull BindingContext bindingContext
+    ) {
+        if (subjectJetType == null) return null;
+
+        Kind kind;
+        Map<String, Integer> ordinals = null;
+        if (isIntLike(subjectType)) {
+            kind = Kind.INT;
+        }
+        else if (subjectType.equals(JAVA_STRING_TYPE)) {
+            kind = Kind.STRING;
+        }
+        else {
+            ordinals = getEnumOrdinals(subjectJetType, bindingContext);
+            if (ordinals == null) return null;
+            kind = Kind.ENUM;
+        }
+
+        SwitchTable table = new SwitchTable(kind, subjectJetType.isNullable());
+        List<JetWhenEntry> entries = expression.getEntries();
+        for (int i = 0; i < entries.size(); i++) {
+            JetWhenEntry entry = entries.get(i);
+            if (entry.isElse()) continue;
+
+            for (JetWhenCondition condition : entry.getConditions()) {
+                if (!(condition instanceof JetWhenConditionWithExpression)) return null;
+                JetExpression pattern = ((JetWhenConditionWithExpression) condition).getExpression();
+                if (pattern == null) return null;
+
+                Object key;
+                switch (kind) {
+                    case INT:
+                        key = getIntKey(pattern, subjectType, bindingContext);
+                        break;
+                    case STRING:
+                        key = getStringKey(pattern, bindingContext);
+                        break;
+                    default:
+                        key = getEnumKey(pattern, subjectJetType, ordinals, bindingContext);
+                }
+                if (key == null) return null;
+
+                if (!table.entryByKey.containsKey(key)) {
+                    table.entryByKey.put(key, i);
+                }
+            }
+        }
+
+        return table.entryByKey.isEmpty() ? null : table;
+    }
+
+    /**
+     * Jumps to {@code entryLabels[i]} if the subject matches a condition of the i-th entry, or to {@code defaultLabel} otherwise
+     */
+    public static void generateSwitch(
+            @NotNull InstructionAdapter v,
+            @NotNull SwitchTable table,
+            @NotNull StackValue subject,
+            @NotNull Label[] entryLabels,
+            @NotNull Label defaultLabel
+    ) {
+        if (table.subjectNullable) {
+            subject.put(subject.type, v);
+            v.ifnull(defaultLabel);
+        }
+
+        switch (table.kind) {
+            case INT:
+                subject.put(subject.type, v);
+                generateIntSwitch(v, toIntTargets(table, entryLabels), defaultLabel);
+                break;
+            case ENUM:
+                subject.put(subject.type, v);
+                v.invokevirtual("java/lang/Enum", "ordinal", "()I");
+                generateIntSwitch(v, toIntTargets(table, entryLabels), defaultLabel);
+                break;
+            case STRING:
+                generateStringSwitch(v, table, subject, entryLabels, defaultLabel);
+                break;
+        }
+    }
+
+    private static void generateStringSwitch(
+            @NotNull InstructionAdapter v,
+            @NotNull SwitchTable table,
+            @NotNull StackValue subject,
+            @NotNull Label[] entryLabels,
+            @NotNull Label defaultLabel
+    ) {
+        // Strings with equal hash codes are checked one by one in the order of appearance
+        Map<Integer, List<String>> stringsByHash = new LinkedHashMap<Integer, List<String>>();
+        for (Object key : table.entryByKey.keySet()) {
+            String string = (String) key;
+            List<String> strings = stringsByHash.get(string.hashCode());
+            if (strings == null) {
+                strings = new ArrayList<String>(1);
+                stringsByHash.put(string.hashCode(), strings);
+            }
+            strings.add(string);
+        }
+
+        SortedMap<Integer, Label> hashLabels = new TreeMap<Integer, Label>();
+        for (Integer hash : stringsByHash.keySet()) {
+            hashLabels.put(hash, new Label());
+        }
+
+        subject.put(subject.type, v);
+        v.invokevirtual("java/lang/String", "hashCode", "()I");
+        generateIntSwitch(v, hashLabels, defaultLabel);
+
+        for (Map.Entry<Integer, List<String>> entry : stringsByHash.entrySet()) {
+            v.mark(hashLabels.get(entry.getKey()));
+            for (String string : entry.getValue()) {
+                subject.put(subject.type, v);
+                v.aconst(string);
+                v.invokevirtual("java/lang/String", "equals", "(Ljava/lang/Object;)Z");
+                v.ifne(entryLabels[table.entryByKey.get(string)]);
+            }
+            v.goTo(defaultLabel);
+        }
+    }
+
+    @NotNull
+    private static SortedMap<Integer, Label> toIntTargets(@NotNull SwitchTable table, @NotNull Label[] entryLabels) {
+        SortedMap<Integer, Label> targets = new TreeMap<Integer, Label>();
+        for (Map.Entry<Object, Integer> entry : table.entryByKey.entrySet()) {
+            targets.put((Integer) entry.getKey(), entryLabels[entry.getValue()]);
+        }
+        return targets;
+    }
+
+    private static void generateIntSwitch(@NotNull InstructionAdapter v, @NotNull SortedMap<Integer, Label> targets, @NotNull Label defaultLabel) {
+        int lo = targets.firstKey();
+        int hi = targets.lastKey();
+        int count = targets.size();
+
+        // The same estimate javac uses to choose between the two instructions
+        long tableSpaceCost = 4 + ((long) hi - lo + 1);
+        long tableTimeCost = 3;
+        long lookupSpaceCost = 3 + 2 * (long) count;
+        long lookupTimeCost = count;
+
+        if (tableSpaceCost + 3 * tableTimeCost <= lookupSpaceCost + 3 * lookupTimeCost) {
+            Label[] labels = new Label[hi - lo + 1];
+            Arrays.fill(labels, defaultLabel);
+            for (Map.Entry<Integer, Label> entry : targets.entrySet()) {
+                labels[entry.getKey() - lo] = entry.getValue();
+            }
+            v.tableswitch(lo, hi, defaultLabel, labels);
+        }
+        else {
+            int[] keys = new int[count];
+            Label[] labels = new Label[count];
+            int i = 0;
+            for (Map.Entry<Integer, Label> entry : targets.entrySet()) {
+                keys[i] = entry.getKey();
+                labels[i] = entry.getValue();
+                i++;
+            }
+            v.lookupswitch(defaultLabel, keys, labels);
+        }
+    }
+
+    private static boolean isIntLike(@NotNull Type type) {
+        int sort = type.getSort();
+        return sort == Type.INT || sort == Type.CHAR || sort == Type.SHORT || sort == Type.BYTE;
+    }
+
+    @Nullable
+    private static Integer getIntKey(@NotNull JetExpression pattern, @NotNull Type subjectType, @NotNull BindingContext bindingContext) {
+        CompileTimeConstant<?> constant = bindingContext.get(BindingContext.COMPILE_TIME_VALUE, pattern);
+        // Only constants of exactly the subject type are compared with IF_ICMPxx in a chain of comparisons
+        switch (subjectType.getSort()) {
+            case Type.INT:
+                return constant instanceof IntValue ? ((IntValue) constant).getValue() : null;
+            case Type.CHAR:
+                return constant instanceof CharValue ? (int) ((CharValue) constant).getValue().charValue() : null;
+            case Type.SHORT:
+                return constant instanceof ShortValue ? ((ShortValue) constant).getValue().intValue() : null;
+            case Type.BYTE:
+                return constant instanceof ByteValue ? ((ByteValue) constant).getValue().intValue() : null;
+            default:
+                return null;
+        }
+    }
+
+    @Nullable
+    private static String getStringKey(@NotNull JetExpression pattern, @NotNull BindingContext bindingContext) {
+        CompileTimeConstant<?> constant = bindingContext.get(BindingContext.COMPILE_TIME_VALUE, pattern);
+        return constant instanceof StringValue ? ((StringValue) constant).getValue() : null;
+    }
+
+    @Nullable
+    private static Integer getEnumKey(
+            @NotNull JetExpression pattern,
+            @NotNull JetType subjectJetType,
+            @NotNull Map<String, Integer> ordinals,
+            @NotNull BindingContext bindingContext
+    ) {
+        JetExpression expression = JetPsiUtil.deparenthesize(pattern);
+        if (expression instanceof JetDotQualifiedExpression) {
+            expression = ((JetDotQualifiedExpression) expression).getSelectorExpression();
+        }
+        if (!(expression instanceof JetSimpleNameExpression)) return null;
+
+        DeclarationDescriptor target = bindingContext.get(BindingContext.REFERENCE_TARGET, (JetSimpleNameExpression) expression);
+        if (!(target instanceof VariableDescriptor)) return null;
+
+        // Enum entries are properties of the class object of the enum class
+        DeclarationDescriptor classObject = target.getContainingDeclaration();
+        if (classObject == null || !DescriptorUtils.isEnumClassObject(classObject)) return null;
+        if (classObject.getContainingDeclaration() != subjectJetType.getConstructor().getDeclarationDescriptor()) return null;
+
+        return ordinals.get(target.getName().asString());
+    }
+
+    /**
+     * Returns the ordinals of the entries by their names, if the type is an enum declared in the sources being compiled
+     */
+    @Nullable
+    private static Map<String, Integer> getEnumOrdinals(@NotNull JetType type, @NotNull BindingContext bindingContext) {
+        ClassifierDescriptor descriptor = type.getConstructor().getDeclarationDescriptor();
+        if (!(descriptor instanceof ClassDescriptor) || !DescriptorUtils.isEnumClass(descriptor)) return null;
+
+        PsiElement declaration = BindingContextUtils.classDescriptorToDeclaration(bindingContext, (ClassDescriptor) descriptor);
+        if (!(declaration instanceof JetClass)) return null;
+
+        // Ordinals are assigned in the order of declaration, see ImplementationBodyCodegen
+        Map<String, Integer> ordinals = new HashMap<String, Integer>();
+        for (JetDeclaration member : ((JetClass) declaration).getDeclarations()) {
+            if (member instanceof JetEnumEntry) {
+                ordinals.put(member.getName(), ordinals.size());
+            }
+        }
+        return ordinals;
+    }
+}
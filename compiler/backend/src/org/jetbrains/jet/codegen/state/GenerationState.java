@@ -28,8 +28,10 @@ import org.jetbrains.jet.lang.psi.JetFile;
 import org.jetbrains.jet.lang.resolve.BindingContext;
 import org.jetbrains.jet.lang.resolve.BindingTrace;
 import org.jetbrains.jet.lang.resolve.DelegatingBindingTrace;
+import org.jetbrains.jet.lang.resolve.LockProtectedTrace;
 
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class GenerationState {
     private boolean used = false;
@@ -58,6 +60,9 @@ public class GenerationState {
     @NotNull
     private final SamWrapperClasses samWrapperClasses = new SamWrapperClasses(this);
 
+    @NotNull
+    private final InlineFunctionBodies inlineFunctionBodies = new InlineFunctionBodies(this);
+
     @NotNull
     private final BindingTrace bindingTrace;
 
@@ -70,6 +75,8 @@ public class GenerationState {
 
     private final boolean generateDeclaredClasses;
 
+    private final int codegenThreads;
+
     @Nullable
     private List<ScriptDescriptor> earlierScriptsForReplInterpreter;
 
@@ -87,12 +94,32 @@ public class GenerationState {
             boolean generateNotNullParamAssertions,
             boolean generateDeclaredClasses
     ) {
+        this(project, builderFactory, progress, bindingContext, files, generateNotNullAssertions, generateNotNullParamAssertions,
+             generateDeclaredClasses, 1);
+    }
+
+    public GenerationState(
+            @NotNull Project project,
+            @NotNull ClassBuilderFactory builderFactory,
+            @NotNull Progress progress,
+            @NotNull BindingContext bindingContext,
+            @NotNull List<JetFile> files,
+            boolean generateNotNullAssertions,
+            boolean generateNotNullParamAssertions,
+            boolean generateDeclaredClasses,
+            int codegenThreads
+    ) {
+        if (codegenThreads < 1) {
+            throw new IllegalArgumentException("At least one codegen thread is needed: " + codegenThreads);
+        }
         this.project = project;
         this.progress = progress;
         this.files = files;
         this.classBuilderMode = builderFactory.getClassBuilderMode();
 
-        bindingTrace = new DelegatingBindingTrace(bindingContext, "trace in GenerationState");
+        DelegatingBindingTrace trace = new DelegatingBindingTrace(bindingContext, "trace in GenerationState");
+        // Namespaces generated concurrently record closures, inner classes and ASM types to the same trace
+        bindingTrace = codegenThreads > 1 ? new LockProtectedTrace(new ReentrantLock(), trace) : trace;
         this.bindingContext = bindingTrace.getBindingContext();
 
         this.typeMapper = new JetTypeMapper(bindingTrace, classBuilderMode);
@@ -105,6 +132,7 @@ public class GenerationState {
         this.generateNotNullAssertions = generateNotNullAssertions;
         this.generateNotNullParamAssertions = generateNotNullParamAssertions;
         this.generateDeclaredClasses = generateDeclaredClasses;
+        this.codegenThreads = codegenThreads;
     }
 
     @NotNull
@@ -157,6 +185,11 @@ public class GenerationState {
         return samWrapperClasses;
     }
 
+    @NotNull
+    public InlineFunctionBodies getInlineFunctionBodies() {
+        return inlineFunctionBodies;
+    }
+
     public boolean isGenerateNotNullAssertions() {
         return generateNotNullAssertions;
     }
@@ -169,6 +202,13 @@ public class GenerationState {
         return generateDeclaredClasses;
     }
 
+    /**
+     * Number of threads namespaces are generated on, see {@link KotlinCodegenFacade#compileCorrectFiles}
+     */
+    public int getCodegenThreads() {
+        return codegenThreads;
+    }
+
     public void beforeCompile() {
         markUsed();
 
@@ -56,10 +56,21 @@ import static org.jetbrains.jet.codegen.CodegenUtil.*;
 import static org.jetbrains.jet.codegen.FunctionTypesUtil.getFunctionTraitClassName;
 import static org.jetbrains.jet.codegen.binding.CodegenBinding.*;
 
+/**
+ * Has no state besides the binding trace and the caches of its results, so it can be used by several threads
+ * if the trace is thread-safe
+ */
 public class JetTypeMapper extends BindingTraceAware {
 
     private final ClassBuilderMode classBuilderMode;
 
+    // Everything the cached results depend on is recorded to the trace before generation (see CodegenBinding.initTrace)
+    private final MappingCache<JetType, Type> types = new MappingCache<JetType, Type>("types");
+    private final MappingCache<SignatureKey, JvmMethodSignature> signatures =
+            new MappingCache<SignatureKey, JvmMethodSignature>("signatures");
+    private final MappingCache<CallableMethodKey, CallableMethod> callableMethods =
+            new MappingCache<CallableMethodKey, CallableMethod>("callable methods");
+
     public JetTypeMapper(BindingTrace bindingTrace, ClassBuilderMode mode) {
         super(bindingTrace);
         classBuilderMode = mode;
@@ -217,17 +228,19 @@ public class JetTypeMapper extends BindingTraceAware {
 
     @NotNull
     public Type mapType(@NotNull JetType jetType) {
-        return mapType(jetType, null, JetTypeMapperMode.VALUE);
+        Type cached = types.get(jetType);
+        if (cached != null) return cached;
+        return types.put(jetType, mapType(jetType, null, JetTypeMapperMode.VALUE));
     }
 
     @NotNull
     public Type mapType(@NotNull VariableDescriptor variableDescriptor) {
-        return mapType(variableDescriptor.getType(), null, JetTypeMapperMode.VALUE);
+        return mapType(variableDescriptor.getType());
     }
 
     @NotNull
     public Type mapType(@NotNull ClassifierDescriptor classifierDescriptor) {
-        return mapType(classifierDescriptor.getDefaultType(), null, JetTypeMapperMode.VALUE);
+        return mapType(classifierDescriptor.getDefaultType());
     }
 
     @NotNull
@@ -442,6 +455,20 @@ public class JetTypeMapper extends BindingTraceAware {
             boolean isInsideClass,
             boolean isInsideModule,
             OwnerKind kind
+    ) {
+        CallableMethodKey key = new CallableMethodKey(functionDescriptor, superCall, isInsideClass, isInsideModule, kind);
+        CallableMethod cached = callableMethods.get(key);
+        if (cached != null) return cached;
+        return callableMethods.put(key, doMapToCallableMethod(functionDescriptor, superCall, isInsideClass, isInsideModule, kind));
+    }
+
+    @NotNull
+    private CallableMethod doMapToCallableMethod(
+            @NotNull FunctionDescriptor functionDescriptor,
+            boolean superCall,
+            boolean isInsideClass,
+            boolean isInsideModule,
+            OwnerKind kind
     ) {
         DeclarationDescriptor functionParent = functionDescriptor.getOriginal().getContainingDeclaration();
 
@@ -613,6 +640,19 @@ public class JetTypeMapper extends BindingTraceAware {
             needGenericSignature = false;
         }
 
+        SignatureKey key = new SignatureKey(methodName, f, needGenericSignature, kind);
+        JvmMethodSignature cached = signatures.get(key);
+        if (cached != null) return cached;
+        return signatures.put(key, doMapSignature(methodName, f, needGenericSignature, kind));
+    }
+
+    @NotNull
+    private JvmMethodSignature doMapSignature(
+            @NotNull String methodName,
+            @NotNull FunctionDescriptor f,
+            boolean needGenericSignature,
+            @NotNull OwnerKind kind
+    ) {
         BothSignatureWriter signatureVisitor = new BothSignatureWriter(BothSignatureWriter.Mode.METHOD, needGenericSignature);
 
         writeFormalTypeParameters(f.getTypeParameters(), signatureVisitor);
@@ -972,4 +1012,90 @@ public class JetTypeMapper extends BindingTraceAware {
     private Type asmTypeOrVoid(@Nullable JetType type) {
         return type == null ? Type.VOID_TYPE : mapType(type);
     }
+
+    /**
+     * @return hits and misses of the caches of mapped types, signatures and callable methods, for the compiler statistics
+     */
+    @NotNull
+    public String getCacheStatistics() {
+        return "Type mapper caches: " + types + "; " + signatures + "; " + callableMethods;
+    }
+
+    private static final class SignatureKey {
+        private final String methodName;
+        private final FunctionDescriptor function;
+        private final boolean needGenericSignature;
+        private final OwnerKind kind;
+
+        private SignatureKey(
+                @NotNull String methodName,
+                @NotNull FunctionDescriptor function,
+                boolean needGenericSignature,
+                @NotNull OwnerKind kind
+        ) {
+            this.methodName = methodName;
+            this.function = function;
+            this.needGenericSignature = needGenericSignature;
+            this.kind = kind;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof SignatureKey)) return false;
+            SignatureKey other = (SignatureKey) o;
+            return function == other.function && needGenericSignature == other.needGenericSignature && kind == other.kind &&
+                   methodName.equals(other.methodName);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(function);
+            result = 31 * result + methodName.hashCode();
+            result = 31 * result + (needGenericSignature ? 1 : 0);
+            result = 31 * result + kind.hashCode();
+            return result;
+        }
+    }
+
+    private static final class CallableMethodKey {
+        private final FunctionDescriptor function;
+        private final boolean superCall;
+        private final boolean isInsideClass;
+        private final boolean isInsideModule;
+        private final OwnerKind kind;
+
+        private CallableMethodKey(
+                @NotNull FunctionDescriptor function,
+                boolean superCall,
+                boolean isInsideClass,
+                boolean isInsideModule,
+                @Nullable OwnerKind kind
+        ) {
+            this.function = function;
+            this.superCall = superCall;
+            this.isInsideClass = isInsideClass;
+            this.isInsideModule = isInsideModule;
+            this.kind = kind;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CallableMethodKey)) return false;
+            CallableMethodKey other = (CallableMethodKey) o;
+            return function == other.function && superCall == other.superCall && isInsideClass == other.isInsideClass &&
+                   isInsideModule == other.isInsideModule && kind == other.kind;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(function);
+            result = 31 * result + (superCall ? 1 : 0);
+            result = 31 * result + (isInsideClass ? 1 : 0);
+            result = 31 * result + (isInsideModule ? 1 : 0);
+            result = 31 * result + (kind != null ? kind.hashCode() : 0);
+            return result;
+        }
+    }
 }
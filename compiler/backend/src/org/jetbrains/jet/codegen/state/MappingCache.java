@@ -0,0 +1,57 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.codegen.state;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of the results of {@link JetTypeMapper} which counts its hits and misses.
+ * Several threads may compute the same value at once, the first one stored wins
+ */
+class MappingCache<K, V> {
+    private final String name;
+    private final ConcurrentMap<K, V> values = new ConcurrentHashMap<K, V>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    MappingCache(@NotNull String name) {
+        this.name = name;
+    }
+
+    @Nullable
+    V get(@NotNull K key) {
+        V value = values.get(key);
+        (value != null ? hits : misses).incrementAndGet();
+        return value;
+    }
+
+    @NotNull
+    V put(@NotNull K key, @NotNull V value) {
+        V oldValue = values.putIfAbsent(key, value);
+        return oldValue != null ? oldValue : value;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + hits.get() + " hits, " + misses.get() + " misses";
+    }
+}
@@ -54,12 +54,19 @@ public class K2JVMCompilerArguments extends CommonCompilerArguments {
     @Argument(value = "notNullParamAssertions", description = "generate not-null assertions on parameters of methods accessible from Java")
     public boolean notNullParamAssertions;
 
+    @Argument(value = "codegenThreads", description = "number of threads to generate bytecode on (experimental)")
+    public Integer codegenThreads;
+
     @Argument(value = "output", description = "output directory")
     public String outputDir;
 
     @Argument(value = "module", description = "module to compile")
     public String module;
 
+    @Argument(value = "moduleCache", description = "directory to cache the modules defined by a module script in, " +
+                                                   "for scripts whose modules depend only on the script text")
+    public String moduleCache;
+
     @Argument(value = "script", description = "evaluate script")
     public boolean script;
 
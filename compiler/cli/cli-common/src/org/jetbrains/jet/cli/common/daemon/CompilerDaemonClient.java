@@ -0,0 +1,114 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.common.daemon;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import static org.jetbrains.jet.cli.common.daemon.CompilerDaemonProtocol.*;
+
+/**
+ * Sends compilations to a compiler daemon running on this machine
+ */
+public class CompilerDaemonClient {
+    /**
+     * The system property build tools check to find out the port of the daemon
+     */
+    public static final String PORT_PROPERTY = "kotlin.daemon.port";
+
+    private CompilerDaemonClient() {
+    }
+
+    @Nullable
+    public static Integer getDaemonPort() {
+        String port = System.getProperty(PORT_PROPERTY);
+        if (port == null) return null;
+        try {
+            return Integer.valueOf(port.trim());
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Runs the compiler in the daemon and copies its output to {@code out}
+     *
+     * @return the exit code of the compiler, or null if there is no daemon listening on the port,
+     *         in which case the caller is expected to run the compiler itself
+     */
+    @Nullable
+    public static Integer compile(int port, @NotNull String compilerClassName, @NotNull String[] arguments, @NotNull PrintStream out)
+            throws IOException {
+        return compile(port, new File("").getAbsoluteFile(), compilerClassName, arguments, out);
+    }
+
+    /**
+     * @param workingDirectory the directory relative paths in the arguments are resolved against
+     */
+    @Nullable
+    public static Integer compile(
+            int port,
+            @NotNull File workingDirectory,
+            @NotNull String compilerClassName,
+            @NotNull String[] arguments,
+            @NotNull PrintStream out
+    ) throws IOException {
+        Socket socket;
+        try {
+            socket = new Socket(InetAddress.getByName(null), port);
+        }
+        catch (ConnectException e) {
+            return null;
+        }
+
+        try {
+            File secretFile = getSecretFile(port);
+            if (!secretFile.isFile()) {
+                throw new IOException("Compiler daemon on port " + port + " has no secret file " + secretFile);
+            }
+
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            output.writeInt(VERSION);
+            writeString(output, readSecret(secretFile));
+            writeString(output, workingDirectory.getAbsolutePath());
+            writeString(output, compilerClassName);
+            output.writeInt(arguments.length);
+            for (String argument : arguments) {
+                writeString(output, argument);
+            }
+            output.flush();
+
+            DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            int exitCode = input.readInt();
+            String text = readString(input);
+            if (exitCode == REJECTED) {
+                throw new IOException("Compiler daemon rejected the request: " + text);
+            }
+            out.print(text);
+            return exitCode;
+        }
+        finally {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.common.daemon;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.charset.Charset;
+
+/**
+ * Wire format of the compiler daemon. A client opens a connection to the loopback interface and sends
+ * the protocol version, the secret of the daemon, its working directory, the name of the compiler class and the arguments;
+ * the daemon answers with the exit code and everything the compiler has printed. Every connection carries exactly one compilation.
+ *
+ * Any local process can connect to the port, so the daemon only serves the clients which can read its secret:
+ * the daemon writes it to a file in the secrets directory that only the user running the daemon can read.
+ */
+public class CompilerDaemonProtocol {
+    public static final int VERSION = 2;
+
+    /**
+     * The system property overriding the directory of the secret files, {@code ~/.kotlin/daemon} by default
+     */
+    public static final String SECRETS_DIRECTORY_PROPERTY = "kotlin.daemon.secrets";
+
+    public static final String K2JVM_COMPILER = "org.jetbrains.jet.cli.jvm.K2JVMCompiler";
+    public static final String K2JS_COMPILER = "org.jetbrains.jet.cli.js.K2JSCompiler";
+
+    // Sent instead of an exit code when the daemon couldn't run the compiler at all
+    public static final int REJECTED = -1;
+
+    // Longer strings are rejected before anything is allocated for them, a malformed frame shouldn't bring the daemon down
+    public static final int MAX_STRING_LENGTH = 64 * 1024 * 1024;
+    public static final int MAX_ARGUMENT_COUNT = 64 * 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private CompilerDaemonProtocol() {
+    }
+
+    @NotNull
+    public static File getSecretFile(int port) {
+        String directory = System.getProperty(SECRETS_DIRECTORY_PROPERTY);
+        File secretsDirectory = directory != null
+                                ? new File(directory)
+                                : new File(new File(System.getProperty("user.home"), ".kotlin"), "daemon");
+        return new File(secretsDirectory, port + ".secret");
+    }
+
+    @NotNull
+    public static String readSecret(@NotNull File secretFile) throws IOException {
+        DataInputStream input = new DataInputStream(new FileInputStream(secretFile));
+        try {
+            return readString(input);
+        }
+        finally {
+            input.close();
+        }
+    }
+
+    // DataOutputStream.writeUTF() is limited to 64K, which a classpath or a compiler output may exceed
+    public static void writeString(@NotNull DataOutputStream out, @NotNull String string) throws IOException {
+        byte[] bytes = string.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @NotNull
+    public static String readString(@NotNull DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_STRING_LENGTH) {
+            throw new IOException("Malformed string length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
@@ -0,0 +1,407 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.common.daemon;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.SystemInfo;
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.cli.common.CLICompiler;
+import org.jetbrains.jet.cli.common.ExitCode;
+import org.jetbrains.jet.cli.js.K2JSCompiler;
+import org.jetbrains.jet.cli.jvm.K2JVMCompiler;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static org.jetbrains.jet.cli.common.daemon.CompilerDaemonProtocol.*;
+
+/**
+ * Runs compilations requested by {@link CompilerDaemonClient} in a single long-lived process.
+ *
+ * The application environment (with the jar file system and the class files cached in it), the built-ins and the JIT-compiled code
+ * survive between compilations. The application environment is recreated as soon as one of the jars it has opened changes on disk.
+ * Independent compilations run concurrently, each in a project of its own.
+ *
+ * Only the clients which can read the secret file of the daemon are served, see {@link CompilerDaemonProtocol}.
+ * Relative paths in the arguments are resolved against the working directory of the client.
+ */
+@SuppressWarnings("UseOfSystemOutOrSystemErr")
+public class CompilerDaemon {
+
+    public static void main(String... args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: " + CompilerDaemon.class.getName() + " <port> [<threads>]");
+            System.exit(ExitCode.INTERNAL_ERROR.getCode());
+        }
+        int port = Integer.parseInt(args[0]);
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        CompilerDaemon daemon = new CompilerDaemon(port, threads);
+        System.err.println("Kotlin compiler daemon is listening on port " + daemon.getPort());
+        daemon.run();
+    }
+
+    // Options taking a path, a list of paths separated by the system path separator, or a comma-separated list of paths
+    private static final Set<String> PATH_OPTIONS = set("-jar", "-output", "-module", "-moduleCache", "-kotlinHome", "-outputPrefix", "-outputPostfix");
+    private static final Set<String> PATH_LIST_OPTIONS = set("-src", "-classpath", "-annotations");
+    private static final Set<String> COMMA_SEPARATED_PATH_OPTIONS = set("-libraryFiles", "-sourceFiles");
+    // Options taking values which are not paths
+    private static final Set<String> OTHER_VALUE_OPTIONS = set("-suppress", "-codegenThreads", "-target", "-main");
+
+    // A client which connects and then stalls shouldn't occupy a compilation thread forever
+    private static final int READ_TIMEOUT_MS = 60 * 1000;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor;
+    private final File secretFile;
+    private final byte[] secret;
+
+    // Compilations share the application environment, replacing it requires that nothing is being compiled
+    private final ReadWriteLock environmentLock = new ReentrantReadWriteLock();
+    @Nullable
+    private Disposable environmentRetainer;
+
+    public CompilerDaemon(int port, int threads) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads should be positive: " + threads);
+        }
+        serverSocket = new ServerSocket(port, 50, InetAddress.getByName(null));
+        secretFile = getSecretFile(serverSocket.getLocalPort());
+        String secretString = generateSecret();
+        try {
+            writeSecret(secretFile, secretString);
+        }
+        catch (IOException e) {
+            closeQuietly(serverSocket);
+            throw e;
+        }
+        secret = secretString.getBytes("UTF-8");
+        executor = Executors.newFixedThreadPool(threads);
+        environmentRetainer = retainEnvironment();
+    }
+
+    @NotNull
+    private static String generateSecret() {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder result = new StringBuilder();
+        for (byte b : bytes) {
+            result.append(String.format("%02x", b & 0xFF));
+        }
+        return result.toString();
+    }
+
+    // The file is made private before the secret is written to it
+    private static void writeSecret(@NotNull File secretFile, @NotNull String secret) throws IOException {
+        File directory = secretFile.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create the directory for the daemon secret: " + directory);
+        }
+        restrictToOwner(directory);
+        if (secretFile.exists() && !secretFile.delete()) {
+            throw new IOException("Can't delete the stale daemon secret: " + secretFile);
+        }
+        if (!secretFile.createNewFile()) {
+            throw new IOException("Can't create the daemon secret: " + secretFile);
+        }
+        restrictToOwner(secretFile);
+
+        DataOutputStream output = new DataOutputStream(new FileOutputStream(secretFile));
+        try {
+            writeString(output, secret);
+        }
+        finally {
+            output.close();
+        }
+    }
+
+    private static void restrictToOwner(@NotNull File file) throws IOException {
+        boolean restricted = file.setReadable(true, true) && file.setWritable(true, true);
+        if (file.isDirectory()) {
+            restricted &= file.setExecutable(true, true);
+        }
+        // Windows can't take the permissions away from others this way, the profile directory is private there anyway
+        if (!SystemInfo.isWindows) {
+            restricted &= file.setReadable(false, false) && file.setReadable(true, true)
+                          && file.setWritable(false, false) && file.setWritable(true, true);
+            if (file.isDirectory()) {
+                restricted &= file.setExecutable(false, false) && file.setExecutable(true, true);
+            }
+        }
+        if (!restricted) {
+            throw new IOException("Can't restrict access to " + file + " to its owner");
+        }
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections until {@link #shutdown()} is called
+     */
+    public void run() {
+        try {
+            while (!serverSocket.isClosed()) {
+                final Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                }
+                catch (SocketException e) {
+                    // The server socket is closed
+                    break;
+                }
+                executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        serve(socket);
+                    }
+                });
+            }
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        finally {
+            shutdown();
+        }
+    }
+
+    /**
+     * Stops accepting connections. Compilations which are already running are completed
+     */
+    public void shutdown() {
+        closeQuietly(serverSocket);
+        executor.shutdown();
+        //noinspection ResultOfMethodCallIgnored
+        secretFile.delete();
+
+        Lock lock = environmentLock.writeLock();
+        lock.lock();
+        try {
+            if (environmentRetainer != null) {
+                Disposer.dispose(environmentRetainer);
+                environmentRetainer = null;
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private void serve(@NotNull Socket socket) {
+        try {
+            socket.setSoTimeout(READ_TIMEOUT_MS);
+            DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            int version = input.readInt();
+            if (version != VERSION) {
+                respond(output, REJECTED, "Unsupported protocol version: " + version);
+                return;
+            }
+            if (!MessageDigest.isEqual(secret, readString(input).getBytes("UTF-8"))) {
+                respond(output, REJECTED, "Wrong secret, it should be read from " + secretFile);
+                return;
+            }
+            String workingDirectoryPath = readString(input);
+            File workingDirectory = new File(workingDirectoryPath);
+            if (!workingDirectory.isAbsolute() || !workingDirectory.isDirectory()) {
+                respond(output, REJECTED, "Working directory should be an absolute path of a directory: '" + workingDirectoryPath + "'");
+                return;
+            }
+            String compilerClassName = readString(input);
+            int argumentCount = input.readInt();
+            if (argumentCount < 0 || argumentCount > MAX_ARGUMENT_COUNT) {
+                respond(output, REJECTED, "Malformed argument count: " + argumentCount);
+                return;
+            }
+            String[] arguments = new String[argumentCount];
+            for (int i = 0; i < argumentCount; i++) {
+                arguments[i] = readString(input);
+            }
+
+            CLICompiler<?> compiler = createCompiler(compilerClassName);
+            if (compiler == null) {
+                respond(output, REJECTED, "Unknown compiler: " + compilerClassName);
+                return;
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            PrintStream out = new PrintStream(bytes, false, "UTF-8");
+            ExitCode exitCode = compile(compiler, out, resolvePaths(arguments, workingDirectory));
+            out.flush();
+            respond(output, exitCode.getCode(), bytes.toString("UTF-8"));
+        }
+        catch (IOException e) {
+            // The client has gone, there's no one to report to
+        }
+        finally {
+            closeQuietly(socket);
+        }
+    }
+
+    // The working directory of the daemon can't be changed for a single compilation, so the paths are made absolute instead
+    @NotNull
+    private static String[] resolvePaths(@NotNull String[] arguments, @NotNull File workingDirectory) {
+        boolean script = Arrays.asList(arguments).contains("-script");
+        boolean firstFreeArgument = true;
+
+        String[] result = arguments.clone();
+        for (int i = 0; i < result.length; i++) {
+            String argument = result[i];
+            boolean hasValue = i + 1 < result.length;
+            if (PATH_OPTIONS.contains(argument) && hasValue) {
+                i++;
+                result[i] = resolvePath(result[i], workingDirectory);
+            }
+            else if (PATH_LIST_OPTIONS.contains(argument) && hasValue) {
+                i++;
+                result[i] = resolvePaths(result[i], File.pathSeparator, workingDirectory);
+            }
+            else if (COMMA_SEPARATED_PATH_OPTIONS.contains(argument) && hasValue) {
+                i++;
+                result[i] = resolvePaths(result[i], ",", workingDirectory);
+            }
+            else if (OTHER_VALUE_OPTIONS.contains(argument)) {
+                i++;
+            }
+            else if (!argument.startsWith("-")) {
+                // Source files, or a script followed by its own arguments
+                if (firstFreeArgument || !script) {
+                    result[i] = resolvePath(argument, workingDirectory);
+                }
+                firstFreeArgument = false;
+            }
+        }
+        return result;
+    }
+
+    @NotNull
+    private static String resolvePaths(@NotNull String paths, @NotNull String separator, @NotNull File workingDirectory) {
+        StringBuilder result = new StringBuilder();
+        for (String path : StringUtil.split(paths, separator)) {
+            if (result.length() > 0) {
+                result.append(separator);
+            }
+            result.append(resolvePath(path, workingDirectory));
+        }
+        return result.toString();
+    }
+
+    @NotNull
+    private static String resolvePath(@NotNull String path, @NotNull File workingDirectory) {
+        File file = new File(path);
+        return file.isAbsolute() ? path : new File(workingDirectory, path).getPath();
+    }
+
+    @NotNull
+    private static Set<String> set(@NotNull String... elements) {
+        return Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(elements)));
+    }
+
+    @NotNull
+    private ExitCode compile(@NotNull CLICompiler<?> compiler, @NotNull PrintStream out, @NotNull String[] arguments) {
+        refreshEnvironmentIfNeeded();
+
+        Lock lock = environmentLock.readLock();
+        lock.lock();
+        try {
+            return compiler.exec(out, arguments);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private void refreshEnvironmentIfNeeded() {
+        if (JetCoreEnvironment.isApplicationEnvironmentUpToDate()) return;
+
+        Lock lock = environmentLock.writeLock();
+        lock.lock();
+        try {
+            if (environmentRetainer == null || JetCoreEnvironment.isApplicationEnvironmentUpToDate()) return;
+
+            // No compilation is running, so the retainer holds the only reference to the application environment
+            Disposer.dispose(environmentRetainer);
+            JetCoreEnvironment.disposeApplicationEnvironment();
+            environmentRetainer = retainEnvironment();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @NotNull
+    private static Disposable retainEnvironment() {
+        Disposable retainer = Disposer.newDisposable();
+        JetCoreEnvironment.retainApplicationEnvironment(retainer);
+        return retainer;
+    }
+
+    @Nullable
+    private static CLICompiler<?> createCompiler(@NotNull String compilerClassName) {
+        if (K2JVM_COMPILER.equals(compilerClassName)) {
+            return new K2JVMCompiler();
+        }
+        if (K2JS_COMPILER.equals(compilerClassName)) {
+            return new K2JSCompiler();
+        }
+        return null;
+    }
+
+    private static void respond(@NotNull DataOutputStream output, int exitCode, @NotNull String text) throws IOException {
+        output.writeInt(exitCode);
+        writeString(output, text);
+        output.flush();
+    }
+
+    // Sockets are not Closeable in Java 6
+    private static void closeQuietly(@NotNull Socket socket) {
+        try {
+            socket.close();
+        }
+        catch (IOException ignored) {
+        }
+    }
+
+    private static void closeQuietly(@NotNull ServerSocket socket) {
+        try {
+            socket.close();
+        }
+        catch (IOException ignored) {
+        }
+    }
+}
@@ -66,6 +66,12 @@ public class K2JVMCompiler extends CLICompiler<K2JVMCompilerArguments> {
         messageCollector.report(CompilerMessageSeverity.LOGGING,
                                 "Using Kotlin home directory " + paths.getHomePath(), CompilerMessageLocation.NO_LOCATION);
 
+        if (arguments.codegenThreads != null && arguments.codegenThreads < 1) {
+            messageCollector.report(CompilerMessageSeverity.ERROR, "Number of codegen threads should be positive: " + arguments.codegenThreads,
+                                    CompilerMessageLocation.NO_LOCATION);
+            return ExitCode.COMPILATION_ERROR;
+        }
+
         CompilerConfiguration configuration = new CompilerConfiguration();
 
         try {
@@ -107,6 +113,9 @@ public class K2JVMCompiler extends CLICompiler<K2JVMCompilerArguments> {
 
         configuration.put(JVMConfigurationKeys.GENERATE_NOT_NULL_ASSERTIONS, arguments.notNullAssertions);
         configuration.put(JVMConfigurationKeys.GENERATE_NOT_NULL_PARAMETER_ASSERTIONS, arguments.notNullParamAssertions);
+        if (arguments.codegenThreads != null) {
+            configuration.put(JVMConfigurationKeys.CODEGEN_THREADS, arguments.codegenThreads);
+        }
 
         configuration.put(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, messageCollector);
 
@@ -120,7 +129,8 @@ public class K2JVMCompiler extends CLICompiler<K2JVMCompilerArguments> {
 
             if (arguments.module != null) {
                 MessageCollector sanitizedCollector = new FilteringMessageCollector(messageCollector, in(CompilerMessageSeverity.VERBOSE));
-                ModuleChunk modules = CompileEnvironmentUtil.loadModuleDescriptions(paths, arguments.module, sanitizedCollector);
+                File moduleCache = arguments.moduleCache != null ? new File(arguments.moduleCache) : null;
+                ModuleChunk modules = CompileEnvironmentUtil.loadModuleDescriptions(paths, arguments.module, moduleCache, sanitizedCollector);
 
                 if (outputDir != null) {
                     messageCollector.report(CompilerMessageSeverity.WARNING, "The '-output' option is ignored because '-module' is specified",
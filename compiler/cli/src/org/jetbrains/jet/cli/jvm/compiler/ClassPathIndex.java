@@ -0,0 +1,141 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.jvm.compiler;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Knows which classpath roots contain each package, so that a class is looked for only in the roots
+ * where it may be found. Roots are read once, when they are added to the index: for jars this only
+ * lists the entries of the central directory, already read by the jar file system.
+ *
+ * A qualified name is resolved in each root the same way CoreJavaFileManager does it: the package
+ * is the longest prefix of the name which is a directory in the root, the rest is the class name.
+ */
+class ClassPathIndex {
+    private final List<VirtualFile> roots = new ArrayList<VirtualFile>();
+
+    // Package path (segments separated by '/') -> indices of the roots where the package directory exists
+    private final Map<String, BitSet> packageDirectories = new HashMap<String, BitSet>();
+
+    // Package path -> indices of the roots where the package directory directly contains class files
+    private final Map<String, BitSet> packagesWithClasses = new HashMap<String, BitSet>();
+
+    public int getRootCount() {
+        return roots.size();
+    }
+
+    public void addRoot(@NotNull VirtualFile root) {
+        int rootIndex = roots.size();
+        roots.add(root);
+        addDirectory(root, "", rootIndex);
+    }
+
+    private void addDirectory(@NotNull VirtualFile directory, @NotNull String path, int rootIndex) {
+        addRootIndex(packageDirectories, path, rootIndex);
+
+        boolean hasClasses = false;
+        for (VirtualFile child : directory.getChildren()) {
+            if (child.isDirectory()) {
+                addDirectory(child, path.isEmpty() ? child.getName() : path + "/" + child.getName(), rootIndex);
+            }
+            else if (!hasClasses && "class".equals(child.getExtension())) {
+                hasClasses = true;
+            }
+        }
+
+        if (hasClasses) {
+            addRootIndex(packagesWithClasses, path, rootIndex);
+        }
+    }
+
+    private static void addRootIndex(@NotNull Map<String, BitSet> map, @NotNull String path, int rootIndex) {
+        BitSet rootIndices = map.get(path);
+        if (rootIndices == null) {
+            rootIndices = new BitSet();
+            map.put(path, rootIndices);
+        }
+        rootIndices.set(rootIndex);
+    }
+
+    /**
+     * @return class files that the given name denotes in the roots, in the classpath order
+     */
+    @NotNull
+    public List<VirtualFile> findClassFiles(@NotNull String qName) {
+        String[] segments = qName.split("\\.");
+
+        // Roots in which the package of the class has exactly i segments
+        BitSet[] rootsByPackageLength = new BitSet[segments.length];
+        BitSet allRoots = new BitSet();
+
+        String packagePath = "";
+        for (int i = 0; i < segments.length; i++) {
+            String longerPackagePath = i + 1 < segments.length ? append(packagePath, segments[i]) : null;
+
+            BitSet withClasses = packagesWithClasses.get(packagePath);
+            if (withClasses != null) {
+                BitSet roots = (BitSet) withClasses.clone();
+                BitSet longerPackageRoots = longerPackagePath != null ? packageDirectories.get(longerPackagePath) : null;
+                if (longerPackageRoots != null) {
+                    roots.andNot(longerPackageRoots);
+                }
+                rootsByPackageLength[i] = roots;
+                allRoots.or(roots);
+            }
+
+            if (longerPackagePath == null || !packageDirectories.containsKey(longerPackagePath)) break;
+            packagePath = longerPackagePath;
+        }
+
+        if (allRoots.isEmpty()) return Collections.emptyList();
+
+        List<VirtualFile> result = new ArrayList<VirtualFile>(1);
+        for (int rootIndex = allRoots.nextSetBit(0); rootIndex >= 0; rootIndex = allRoots.nextSetBit(rootIndex + 1)) {
+            int packageLength = 0;
+            while (rootsByPackageLength[packageLength] == null || !rootsByPackageLength[packageLength].get(rootIndex)) {
+                packageLength++;
+            }
+
+            VirtualFile classFile = roots.get(rootIndex).findFileByRelativePath(classFilePath(segments, packageLength));
+            if (classFile != null) {
+                result.add(classFile);
+            }
+        }
+        return result;
+    }
+
+    @NotNull
+    private static String classFilePath(@NotNull String[] segments, int packageLength) {
+        StringBuilder path = new StringBuilder();
+        for (int i = 0; i < segments.length; i++) {
+            if (i > 0) {
+                path.append(i <= packageLength ? '/' : '$');
+            }
+            path.append(segments[i]);
+        }
+        return path.append(".class").toString();
+    }
+
+    @NotNull
+    private static String append(@NotNull String packagePath, @NotNull String segment) {
+        return packagePath.isEmpty() ? segment : packagePath + "/" + segment;
+    }
+}
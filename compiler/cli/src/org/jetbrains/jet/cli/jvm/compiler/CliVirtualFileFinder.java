@@ -24,11 +24,28 @@ import org.jetbrains.jet.lang.resolve.kotlin.VirtualFileKotlinClass;
 import org.jetbrains.jet.lang.resolve.kotlin.header.KotlinClassHeader;
 import org.jetbrains.jet.lang.resolve.name.FqName;
 
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 public class CliVirtualFileFinder implements VirtualFileFinder {
+    private static final Object NOT_FOUND = new Object();
 
     @NotNull
     private final ClassPath classPath;
 
+    // Filled lazily, because roots are added to the class path after the finder is created. Guarded by this
+    @NotNull
+    private final ClassPathIndex index = new ClassPathIndex();
+    private volatile int indexedRootCount = 0;
+
+    // Class name -> VirtualFile or NOT_FOUND, cleared when new roots are indexed
+    @NotNull
+    private final ConcurrentMap<FqName, Object> foundFiles = new ConcurrentHashMap<FqName, Object>();
+
+    @NotNull
+    private final ConcurrentMap<VirtualFile, Boolean> isKotlinClass = new ConcurrentHashMap<VirtualFile, Boolean>();
+
     public CliVirtualFileFinder(@NotNull ClassPath path) {
         classPath = path;
     }
@@ -36,45 +53,48 @@ public class CliVirtualFileFinder implements VirtualFileFinder {
     @Nullable
     @Override
     public VirtualFile find(@NotNull FqName className) {
-        for (VirtualFile root : classPath) {
-            VirtualFile fileInRoot = findFileInRoot(className.asString(), root);
-            if (fileInRoot != null) {
-                return fileInRoot;
-            }
+        Object found = foundFiles.get(className);
+        if (found == null || indexedRootCount < classPath.size()) {
+            found = findKotlinClass(findClassFiles(className));
+            foundFiles.put(className, found);
         }
-        return null;
+        return found == NOT_FOUND ? null : (VirtualFile) found;
     }
 
-    //NOTE: copied with some changes from CoreJavaFileManager
-    @Nullable
-    private static VirtualFile findFileInRoot(@NotNull String qName, @NotNull VirtualFile root) {
-        String pathRest = qName;
-        VirtualFile cur = root;
-
-        while (true) {
-            int dot = pathRest.indexOf('.');
-            if (dot < 0) break;
-
-            String pathComponent = pathRest.substring(0, dot);
-            VirtualFile child = cur.findChild(pathComponent);
-
-            if (child == null) break;
-            pathRest = pathRest.substring(dot + 1);
-            cur = child;
-        }
-
-        String className = pathRest.replace('.', '$');
-        VirtualFile vFile = cur.findChild(className + ".class");
-        if (vFile != null) {
-            if (!vFile.isValid()) {
+    @NotNull
+    private Object findKotlinClass(@NotNull List<VirtualFile> classFiles) {
+        for (VirtualFile classFile : classFiles) {
+            if (!classFile.isValid()) {
                 //TODO: log
-                return null;
+                continue;
             }
             //NOTE: currently we use VirtualFileFinder to find Kotlin binaries only
-            if (KotlinClassHeader.read(new VirtualFileKotlinClass(vFile)) != null) {
-                return vFile;
+            if (isKotlinClass(classFile)) {
+                return classFile;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    private boolean isKotlinClass(@NotNull VirtualFile classFile) {
+        Boolean result = isKotlinClass.get(classFile);
+        if (result == null) {
+            result = KotlinClassHeader.read(new VirtualFileKotlinClass(classFile)) != null;
+            isKotlinClass.put(classFile, result);
+        }
+        return result;
+    }
+
+    @NotNull
+    private synchronized List<VirtualFile> findClassFiles(@NotNull FqName className) {
+        int rootCount = 0;
+        for (VirtualFile root : classPath) {
+            if (rootCount++ >= index.getRootCount()) {
+                index.addRoot(root);
+                foundFiles.clear();
             }
         }
-        return null;
+        indexedRootCount = index.getRootCount();
+        return index.findClassFiles(className.asString());
     }
 }
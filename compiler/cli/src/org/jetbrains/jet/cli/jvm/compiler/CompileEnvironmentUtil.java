@@ -50,7 +50,9 @@ import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.jar.*;
+import java.util.concurrent.*;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
 
 import static org.jetbrains.jet.cli.common.messages.CompilerMessageLocation.NO_LOCATION;
 import static org.jetbrains.jet.cli.common.messages.CompilerMessageSeverity.ERROR;
@@ -65,6 +67,20 @@ public class CompileEnvironmentUtil {
 
     @NotNull
     public static ModuleChunk loadModuleDescriptions(KotlinPaths paths, String moduleDefinitionFile, MessageCollector messageCollector) {
+        return loadModuleDescriptions(paths, moduleDefinitionFile, null, messageCollector);
+    }
+
+    /**
+     * @param moduleCacheDir if not null, the modules defined by a module script are cached in this directory,
+     *                       and the script is run again only when its text or location changes
+     */
+    @NotNull
+    public static ModuleChunk loadModuleDescriptions(
+            KotlinPaths paths,
+            String moduleDefinitionFile,
+            @Nullable File moduleCacheDir,
+            MessageCollector messageCollector
+    ) {
         File file = new File(moduleDefinitionFile);
         if (!file.exists()) {
             messageCollector.report(ERROR, "Module definition file does not exist: " + moduleDefinitionFile, NO_LOCATION);
@@ -72,22 +88,34 @@ public class CompileEnvironmentUtil {
         }
         String extension = FileUtilRt.getExtension(moduleDefinitionFile);
         if ("kts".equalsIgnoreCase(extension)) {
-            return new ModuleChunk(loadModuleScript(paths, moduleDefinitionFile, messageCollector));
+            if (moduleCacheDir == null) {
+                return new ModuleChunk(loadModuleScript(paths, moduleDefinitionFile, messageCollector));
+            }
+            List<ModuleDescription> cached = ModuleScriptCache.load(moduleCacheDir, file, messageCollector);
+            if (cached != null) {
+                return new ModuleChunk(toModules(cached));
+            }
+            List<Module> modules = loadModuleScript(paths, moduleDefinitionFile, messageCollector);
+            ModuleScriptCache.save(moduleCacheDir, file, modules, messageCollector);
+            return new ModuleChunk(modules);
         }
         if ("xml".equalsIgnoreCase(extension)) {
-            return new ModuleChunk(ContainerUtil.map(
-                    ModuleXmlParser.parse(moduleDefinitionFile, messageCollector),
-                    new Function<ModuleDescription, Module>() {
-                        @Override
-                        public Module fun(ModuleDescription description) {
-                            return new DescriptionToModuleAdapter(description);
-                        }
-                    }));
+            return new ModuleChunk(toModules(ModuleXmlParser.parse(moduleDefinitionFile, messageCollector)));
         }
         messageCollector.report(ERROR, "Unknown module definition type: " + moduleDefinitionFile, NO_LOCATION);
         return ModuleChunk.EMPTY;
     }
 
+    @NotNull
+    private static List<Module> toModules(@NotNull List<ModuleDescription> descriptions) {
+        return ContainerUtil.map(descriptions, new Function<ModuleDescription, Module>() {
+            @Override
+            public Module fun(ModuleDescription description) {
+                return new DescriptionToModuleAdapter(description);
+            }
+        });
+    }
+
     @NotNull
     private static List<Module> loadModuleScript(KotlinPaths paths, String moduleScriptFile, MessageCollector messageCollector) {
         CompilerConfiguration configuration = new CompilerConfiguration();
@@ -177,21 +205,64 @@ public class CompileEnvironmentUtil {
             if (mainClass != null) {
                 mainAttributes.putValue("Main-Class", mainClass.asString());
             }
-            JarOutputStream stream = new JarOutputStream(fos, manifest);
-            for (String file : factory.files()) {
-                stream.putNextEntry(new JarEntry(file));
-                stream.write(factory.asBytes(file));
-            }
+            StreamingJarWriter writer = new StreamingJarWriter(fos);
+            writer.writeManifest(manifest);
+            writeClassesToJar(factory, writer);
             if (includeRuntime) {
-                writeRuntimeToJar(stream);
+                writeRuntimeToJar(writer);
             }
-            stream.finish();
+            writer.finish();
         }
         catch (IOException e) {
             throw new CompileEnvironmentException("Failed to generate jar file", e);
         }
     }
 
+    private static void writeClassesToJar(final ClassFileFactory factory, StreamingJarWriter writer) throws IOException {
+        // Classes are serialized and compressed on a worker pool, and written in the order of the factory as soon as they are ready
+        List<String> files = factory.files();
+        int threads = Math.min(Runtime.getRuntime().availableProcessors(), files.size());
+        if (threads <= 1) {
+            for (String file : files) {
+                writer.write(StreamingJarWriter.deflate(file, factory.asBytes(file)));
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<StreamingJarWriter.Entry>> entries = new ArrayList<Future<StreamingJarWriter.Entry>>(files.size());
+            for (final String file : files) {
+                entries.add(executor.submit(new Callable<StreamingJarWriter.Entry>() {
+                    @Override
+                    public StreamingJarWriter.Entry call() {
+                        return StreamingJarWriter.deflate(file, factory.asBytes(file));
+                    }
+                }));
+            }
+            for (Future<StreamingJarWriter.Entry> entry : entries) {
+                writer.write(getResult(entry));
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @NotNull
+    private static <T> T getResult(@NotNull Future<T> future) {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompileEnvironmentException("Interrupted while writing jar file", e);
+        }
+        catch (ExecutionException e) {
+            throw ExceptionUtils.rethrow(e.getCause());
+        }
+    }
+
     public static void writeToJar(File jarPath, boolean jarRuntime, FqName mainClass, ClassFileFactory moduleFactory) {
         FileOutputStream outputStream = null;
         try {
@@ -210,25 +281,16 @@ public class CompileEnvironmentUtil {
         }
     }
 
-    private static void writeRuntimeToJar(final JarOutputStream stream) throws IOException {
+    private static void writeRuntimeToJar(StreamingJarWriter writer) throws IOException {
         File runtimeJarPath = getRuntimeJarPath();
         if (runtimeJarPath != null) {
-            JarInputStream jis = new JarInputStream(new FileInputStream(runtimeJarPath));
-            try {
-                while (true) {
-                    JarEntry e = jis.getNextJarEntry();
-                    if (e == null) {
-                        break;
-                    }
-                    if (FileUtilRt.extensionEquals(e.getName(), "class")) {
-                        stream.putNextEntry(e);
-                        FileUtil.copy(jis, stream);
-                    }
+            // Compressed data is copied as is, there's no need to inflate and deflate it again
+            writer.copyRawEntries(runtimeJarPath, new StreamingJarWriter.EntryFilter() {
+                @Override
+                public boolean accept(@NotNull String name) {
+                    return FileUtilRt.extensionEquals(name, "class");
                 }
-            }
-            finally {
-                jis.close();
-            }
+            });
         }
         else {
             throw new CompileEnvironmentException("Couldn't find runtime library");
@@ -256,20 +318,33 @@ public class CompileEnvironmentUtil {
             @NotNull OutputDirector outputDirector,
             @NotNull MessageCollector messageCollector
     ) {
-        List<String> files = factory.files();
-        for (String file : files) {
-            List<File> sourceFiles = factory.getSourceFiles(file);
-            File target = new File(outputDirector.getOutputDirectory(sourceFiles), file);
-            messageCollector.report(
-                    CompilerMessageSeverity.OUTPUT,
-                    OutputMessageUtil.formatOutputMessage(sourceFiles, target),
-                    CompilerMessageLocation.NO_LOCATION);
-            try {
-                FileUtil.writeToFile(target, factory.asBytes(file));
-            }
-            catch (IOException e) {
-                throw new CompileEnvironmentException(e);
-            }
+        for (String file : factory.files()) {
+            writeOutputFile(factory, file, factory.asBytes(file), outputDirector, messageCollector);
+        }
+        // Line indices go next to the classes of their source files, so that the debugger can find them in the output of a module
+        for (String file : factory.lineIndexFiles()) {
+            writeOutputFile(factory, file, factory.lineIndexAsBytes(file), outputDirector, messageCollector);
+        }
+    }
+
+    private static void writeOutputFile(
+            @NotNull ClassFileFactory factory,
+            @NotNull String file,
+            @NotNull byte[] bytes,
+            @NotNull OutputDirector outputDirector,
+            @NotNull MessageCollector messageCollector
+    ) {
+        List<File> sourceFiles = factory.getSourceFiles(file);
+        File target = new File(outputDirector.getOutputDirectory(sourceFiles), file);
+        messageCollector.report(
+                CompilerMessageSeverity.OUTPUT,
+                OutputMessageUtil.formatOutputMessage(sourceFiles, target),
+                CompilerMessageLocation.NO_LOCATION);
+        try {
+            FileUtil.writeToFile(target, bytes);
+        }
+        catch (IOException e) {
+            throw new CompileEnvironmentException(e);
         }
     }
 
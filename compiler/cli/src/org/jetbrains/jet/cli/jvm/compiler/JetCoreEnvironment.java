@@ -59,7 +59,9 @@ import org.jetbrains.jet.utils.PathUtil;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.jetbrains.jet.cli.common.messages.CompilerMessageSeverity.ERROR;
 import static org.jetbrains.jet.cli.common.messages.CompilerMessageSeverity.WARNING;
@@ -70,6 +72,8 @@ public class JetCoreEnvironment {
     private static final Object APPLICATION_LOCK = new Object();
     private static JavaCoreApplicationEnvironment ourApplicationEnvironment;
     private static int ourProjectCount = 0;
+    // Jars opened by the shared application environment: their contents are cached in the jar file system until it is disposed
+    private static final Map<File, Long> ourJarTimestamps = new HashMap<File, Long>();
 
     @NotNull
     public static JetCoreEnvironment createForProduction(@NotNull Disposable parentDisposable, @NotNull CompilerConfiguration configuration) {
@@ -124,10 +128,47 @@ public class JetCoreEnvironment {
             if (ourApplicationEnvironment == null) return;
             JavaCoreApplicationEnvironment environment = ourApplicationEnvironment;
             ourApplicationEnvironment = null;
+            ourJarTimestamps.clear();
             Disposer.dispose(environment.getParentDisposable());
         }
     }
 
+    /**
+     * Keeps the shared application environment alive until the given disposable is disposed, even when there are no projects,
+     * so that a long-lived process doesn't reopen the same jars for every compilation
+     */
+    public static void retainApplicationEnvironment(@NotNull Disposable parentDisposable) {
+        synchronized (APPLICATION_LOCK) {
+            getOrCreateApplicationEnvironmentForProduction();
+            ourProjectCount++;
+        }
+        Disposer.register(parentDisposable, new Disposable() {
+            @Override
+            public void dispose() {
+                synchronized (APPLICATION_LOCK) {
+                    if (--ourProjectCount <= 0) {
+                        disposeApplicationEnvironment();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns false if any of the jars opened by the shared application environment has changed on disk since it was opened.
+     * The cached contents of such a jar are stale, and the application environment has to be disposed to drop them
+     */
+    public static boolean isApplicationEnvironmentUpToDate() {
+        synchronized (APPLICATION_LOCK) {
+            for (Map.Entry<File, Long> entry : ourJarTimestamps.entrySet()) {
+                if (entry.getKey().lastModified() != entry.getValue()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
     private static JavaCoreApplicationEnvironment createApplicationEnvironment(Disposable parentDisposable) {
         JavaCoreApplicationEnvironment applicationEnvironment = new JavaCoreApplicationEnvironment(parentDisposable);
 
@@ -224,6 +265,9 @@ public class JetCoreEnvironment {
             report(WARNING, "Annotations path entry points to a non-existent location: " + path);
             return;
         }
+        if (path.isFile()) {
+            registerJar(path);
+        }
         annotationsManager.addExternalAnnotationsRoot(PathUtil.jarFileOrDirectoryToVirtualFile(path));
     }
 
@@ -272,6 +316,7 @@ public class JetCoreEnvironment {
                 report(WARNING, "Classpath entry points to a file that is not a JAR archive: " + path);
                 return;
             }
+            registerJar(path);
             projectEnvironment.addJarToClassPath(path);
             classPath.add(jarFile);
         }
@@ -286,6 +331,16 @@ public class JetCoreEnvironment {
         }
     }
 
+    private void registerJar(@NotNull File path) {
+        synchronized (APPLICATION_LOCK) {
+            if (getMyApplicationEnvironment() != ourApplicationEnvironment) return;
+            File jar = path.getAbsoluteFile();
+            if (!ourJarTimestamps.containsKey(jar)) {
+                ourJarTimestamps.put(jar, jar.lastModified());
+            }
+        }
+    }
+
     public List<JetFile> getSourceFiles() {
         return sourceFiles;
     }
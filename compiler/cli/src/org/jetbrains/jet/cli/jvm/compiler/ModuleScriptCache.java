@@ -0,0 +1,141 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.jvm.compiler;
+
+import com.intellij.openapi.util.io.FileUtil;
+import jet.modules.Module;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.cli.common.messages.CompilerMessageLocation;
+import org.jetbrains.jet.cli.common.messages.CompilerMessageSeverity;
+import org.jetbrains.jet.cli.common.messages.MessageCollector;
+import org.jetbrains.jet.cli.common.modules.ModuleDescription;
+import org.jetbrains.jet.cli.common.modules.ModuleXmlParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+import static com.intellij.openapi.util.text.StringUtil.escapeXml;
+import static org.jetbrains.jet.cli.common.modules.ModuleXmlParser.*;
+
+/**
+ * Keeps the modules defined by a module script in the format of {@link ModuleXmlParser}, in a cache directory,
+ * so that the script is compiled and run only when its text or location changes. A script which computes its modules
+ * from anything else, e.g. by listing directories, must not be cached, that's why the cache is only used on request.
+ *
+ * The cached file starts with a comment containing the hash of the script path and text it was created from.
+ */
+/* package */ class ModuleScriptCache {
+    private static final String HASH_PREFIX = "<!-- Module script hash: ";
+    private static final String HASH_SUFFIX = " -->";
+
+    private ModuleScriptCache() {
+    }
+
+    @NotNull
+    public static File getCacheFile(@NotNull File cacheDir, @NotNull File moduleScript) {
+        // path hashCode to prevent same name / different path collision
+        String path = moduleScript.getAbsolutePath();
+        return new File(cacheDir, moduleScript.getName() + "-" + Integer.toHexString(path.hashCode()) + ".modules.xml");
+    }
+
+    @Nullable
+    public static List<ModuleDescription> load(
+            @NotNull File cacheDir,
+            @NotNull File moduleScript,
+            @NotNull MessageCollector messageCollector
+    ) {
+        File cacheFile = getCacheFile(cacheDir, moduleScript);
+        if (!cacheFile.isFile()) return null;
+
+        try {
+            String cached = FileUtil.loadFile(cacheFile);
+            String expectedHash = HASH_PREFIX + computeHash(moduleScript) + HASH_SUFFIX;
+            if (!cached.startsWith(expectedHash)) return null;
+        }
+        catch (IOException e) {
+            return null;
+        }
+
+        List<ModuleDescription> modules = ModuleXmlParser.parse(cacheFile.getPath(), messageCollector);
+        return modules.isEmpty() ? null : modules;
+    }
+
+    public static void save(
+            @NotNull File cacheDir,
+            @NotNull File moduleScript,
+            @NotNull List<Module> modules,
+            @NotNull MessageCollector messageCollector
+    ) {
+        File cacheFile = getCacheFile(cacheDir, moduleScript);
+        try {
+            StringBuilder xml = new StringBuilder();
+            xml.append(HASH_PREFIX).append(computeHash(moduleScript)).append(HASH_SUFFIX).append("\n");
+            xml.append("<").append(MODULES).append(">\n");
+            for (Module module : modules) {
+                if (module.getModuleName() == null || module.getOutputDirectory() == null) {
+                    // Such a module can't be described in xml, the script will be run every time
+                    return;
+                }
+                xml.append("    <").append(MODULE).append(" ")
+                        .append(NAME).append("=\"").append(escapeXml(module.getModuleName())).append("\" ")
+                        .append(OUTPUT_DIR).append("=\"").append(escapeXml(module.getOutputDirectory())).append("\">\n");
+                appendPaths(xml, SOURCES, module.getSourceFiles());
+                appendPaths(xml, CLASSPATH, module.getClasspathRoots());
+                appendPaths(xml, EXTERNAL_ANNOTATIONS, module.getAnnotationsRoots());
+                xml.append("    </").append(MODULE).append(">\n");
+            }
+            xml.append("</").append(MODULES).append(">\n");
+
+            FileUtil.writeToFile(cacheFile, xml.toString());
+        }
+        catch (IOException e) {
+            // The cache is an optimization only
+            FileUtil.delete(cacheFile);
+            messageCollector.report(CompilerMessageSeverity.LOGGING, "Couldn't write module script cache " + cacheFile + ": " + e,
+                                    CompilerMessageLocation.NO_LOCATION);
+        }
+    }
+
+    private static void appendPaths(@NotNull StringBuilder xml, @NotNull String tag, @Nullable List<String> paths) {
+        if (paths == null) return;
+        for (String path : paths) {
+            xml.append("        <").append(tag).append(" ").append(PATH).append("=\"").append(escapeXml(path)).append("\"/>\n");
+        }
+    }
+
+    @NotNull
+    private static String computeHash(@NotNull File moduleScript) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(moduleScript.getAbsolutePath().getBytes("UTF-8"));
+            digest.update((byte) 0);
+            byte[] hash = digest.digest(FileUtil.loadFileBytes(moduleScript));
+            StringBuilder result = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                result.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return result.toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.jvm.compiler;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.util.*;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/**
+ * Writes a jar file entry by entry, taking the entries already compressed, so that the deflating can be done on other threads
+ * while the previous entries are written. Entries of another jar can be copied without inflating and deflating them again.
+ *
+ * Only the subset of the zip format produced by {@link java.util.jar.JarOutputStream} is supported: no zip64, no encryption.
+ */
+/* package */ class StreamingJarWriter {
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int MAX_ZIP_COMMENT_SIZE = 0xffff;
+
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final int VERSION_STORED = 10;
+    private static final int VERSION_DEFLATED = 20;
+    private static final int UTF8_NAMES_FLAG = 1 << 11;
+
+    public static class Entry {
+        private final String name;
+        private final int method;
+        private final long crc;
+        private final long size;
+        private final byte[] data;
+
+        private Entry(@NotNull String name, int method, long crc, long size, @NotNull byte[] data) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.data = data;
+        }
+
+        @NotNull
+        public String getName() {
+            return name;
+        }
+    }
+
+    private static class WrittenEntry {
+        private final Entry entry;
+        private final byte[] name;
+        private final long offset;
+
+        private WrittenEntry(@NotNull Entry entry, @NotNull byte[] name, long offset) {
+            this.entry = entry;
+            this.name = name;
+            this.offset = offset;
+        }
+    }
+
+    private final OutputStream out;
+    private final int dosTime;
+    private final List<WrittenEntry> entries = new ArrayList<WrittenEntry>();
+    private final Set<String> names = new HashSet<String>();
+    private long offset = 0;
+
+    public StreamingJarWriter(@NotNull OutputStream out) {
+        this.out = new BufferedOutputStream(out, 64 * 1024);
+        this.dosTime = toDosTime(System.currentTimeMillis());
+    }
+
+    /**
+     * Compresses the given data. Is thread-safe and can be called from any thread
+     */
+    @NotNull
+    public static Entry deflate(@NotNull String name, @NotNull byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 2 + 64);
+            byte[] buffer = new byte[8 * 1024];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                compressed.write(buffer, 0, length);
+            }
+            return new Entry(name, DEFLATED, crc.getValue(), data.length, compressed.toByteArray());
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    public void writeManifest(@NotNull Manifest manifest) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        manifest.write(bytes);
+        write(deflate(JarFile.MANIFEST_NAME, bytes.toByteArray()));
+    }
+
+    public void write(@NotNull Entry entry) throws IOException {
+        if (!names.add(entry.name)) {
+            throw new ZipException("duplicate entry: " + entry.name);
+        }
+
+        byte[] name = entry.name.getBytes("UTF-8");
+        entries.add(new WrittenEntry(entry, name, offset));
+
+        writeInt(LOCAL_HEADER_SIGNATURE);
+        writeShort(versionFor(entry));
+        writeShort(UTF8_NAMES_FLAG);
+        writeShort(entry.method);
+        writeInt(dosTime);
+        writeInt((int) entry.crc);
+        writeInt(entry.data.length);
+        writeInt((int) entry.size);
+        writeShort(name.length);
+        writeShort(0);
+        writeBytes(name);
+        writeBytes(entry.data);
+    }
+
+    /**
+     * Copies the entries of the given jar accepted by the filter as they are, without decompressing them
+     */
+    public void copyRawEntries(@NotNull File jar, @NotNull EntryFilter filter) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(jar, "r");
+        try {
+            long centralDirectoryEnd = findEndOfCentralDirectory(file);
+            file.seek(centralDirectoryEnd + 10);
+            int entryCount = readShort(file);
+            file.skipBytes(4);
+            long centralDirectoryOffset = readInt(file);
+
+            long position = centralDirectoryOffset;
+            for (int i = 0; i < entryCount; i++) {
+                file.seek(position);
+                if (readInt(file) != CENTRAL_HEADER_SIGNATURE) {
+                    throw new ZipException("Invalid central directory in " + jar);
+                }
+                file.skipBytes(6);
+                int method = readShort(file);
+                file.skipBytes(4);
+                long crc = readInt(file);
+                long compressedSize = readInt(file);
+                long size = readInt(file);
+                int nameLength = readShort(file);
+                int extraLength = readShort(file);
+                int commentLength = readShort(file);
+                file.skipBytes(8);
+                long localHeaderOffset = readInt(file);
+                byte[] nameBytes = new byte[nameLength];
+                file.readFully(nameBytes);
+                position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+
+                String name = new String(nameBytes, "UTF-8");
+                if ((method != STORED && method != DEFLATED) || !filter.accept(name)) continue;
+
+                file.seek(localHeaderOffset + 26);
+                int localNameLength = readShort(file);
+                int localExtraLength = readShort(file);
+                file.seek(localHeaderOffset + LOCAL_HEADER_SIZE + localNameLength + localExtraLength);
+                byte[] data = new byte[(int) compressedSize];
+                file.readFully(data);
+
+                write(new Entry(name, method, crc, size, data));
+            }
+        }
+        finally {
+            file.close();
+        }
+    }
+
+    public void finish() throws IOException {
+        if (entries.size() > 0xffff || offset > 0xffffffffL) {
+            throw new ZipException("Too many entries or too large output for a jar without zip64 extensions");
+        }
+
+        long centralDirectoryOffset = offset;
+        for (WrittenEntry written : entries) {
+            Entry entry = written.entry;
+            writeInt(CENTRAL_HEADER_SIGNATURE);
+            writeShort(VERSION_DEFLATED);
+            writeShort(versionFor(entry));
+            writeShort(UTF8_NAMES_FLAG);
+            writeShort(entry.method);
+            writeInt(dosTime);
+            writeInt((int) entry.crc);
+            writeInt(entry.data.length);
+            writeInt((int) entry.size);
+            writeShort(written.name.length);
+            writeShort(0);
+            writeShort(0);
+            writeShort(0);
+            writeShort(0);
+            writeInt(0);
+            writeInt((int) written.offset);
+            writeBytes(written.name);
+        }
+        long centralDirectorySize = offset - centralDirectoryOffset;
+
+        writeInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+        writeShort(0);
+        writeShort(0);
+        writeShort(entries.size());
+        writeShort(entries.size());
+        writeInt((int) centralDirectorySize);
+        writeInt((int) centralDirectoryOffset);
+        writeShort(0);
+        out.flush();
+    }
+
+    public interface EntryFilter {
+        boolean accept(@NotNull String name);
+    }
+
+    private static int versionFor(@NotNull Entry entry) {
+        return entry.method == DEFLATED ? VERSION_DEFLATED : VERSION_STORED;
+    }
+
+    private static long findEndOfCentralDirectory(@NotNull RandomAccessFile file) throws IOException {
+        long length = file.length();
+        long lowest = Math.max(0, length - END_OF_CENTRAL_DIRECTORY_SIZE - MAX_ZIP_COMMENT_SIZE);
+        for (long position = length - END_OF_CENTRAL_DIRECTORY_SIZE; position >= lowest; position--) {
+            file.seek(position);
+            if (readInt(file) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                return position;
+            }
+        }
+        throw new ZipException("Not a zip file: end of central directory not found");
+    }
+
+    private static int toDosTime(long millis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(millis);
+        int year = calendar.get(Calendar.YEAR);
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (year - 1980) << 25
+               | (calendar.get(Calendar.MONTH) + 1) << 21
+               | calendar.get(Calendar.DAY_OF_MONTH) << 16
+               | calendar.get(Calendar.HOUR_OF_DAY) << 11
+               | calendar.get(Calendar.MINUTE) << 5
+               | calendar.get(Calendar.SECOND) >> 1;
+    }
+
+    // Zip is little-endian
+    private static int readShort(@NotNull RandomAccessFile file) throws IOException {
+        int b0 = file.read();
+        int b1 = file.read();
+        if ((b0 | b1) < 0) throw new EOFException();
+        return b0 | (b1 << 8);
+    }
+
+    private static long readInt(@NotNull RandomAccessFile file) throws IOException {
+        return readShort(file) | ((long) readShort(file) << 16);
+    }
+
+    private void writeShort(int value) throws IOException {
+        out.write(value & 0xff);
+        out.write((value >>> 8) & 0xff);
+        offset += 2;
+    }
+
+    private void writeInt(int value) throws IOException {
+        writeShort(value & 0xffff);
+        writeShort((value >>> 16) & 0xffff);
+    }
+
+    private void writeBytes(@NotNull byte[] bytes) throws IOException {
+        out.write(bytes);
+        offset += bytes.length;
+    }
+}
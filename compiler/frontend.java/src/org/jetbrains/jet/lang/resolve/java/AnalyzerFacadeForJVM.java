@@ -35,6 +35,7 @@ import org.jetbrains.jet.lang.resolve.*;
 import org.jetbrains.jet.lang.resolve.java.mapping.JavaToKotlinClassMap;
 import org.jetbrains.jet.lang.resolve.lazy.ResolveSession;
 import org.jetbrains.jet.lang.resolve.lazy.declarations.FileBasedDeclarationProviderFactory;
+import org.jetbrains.jet.lang.resolve.lazy.storage.LazyResolveStorageManager;
 import org.jetbrains.jet.lang.resolve.lazy.storage.LockBasedLazyResolveStorageManager;
 import org.jetbrains.jet.lang.resolve.name.FqName;
 import org.jetbrains.jet.lang.resolve.name.Name;
@@ -50,6 +51,8 @@ public enum AnalyzerFacadeForJVM implements AnalyzerFacade {
 
     INSTANCE;
 
+    private static final String PARALLEL_BODY_RESOLUTION_PROPERTY = "kotlin.parallel.body.resolution";
+
     private AnalyzerFacadeForJVM() {
     }
 
@@ -91,11 +94,22 @@ public enum AnalyzerFacadeForJVM implements AnalyzerFacade {
             @NotNull BindingTrace trace,
             @NotNull InjectorForJavaDescriptorResolver injector,
             final boolean addBuiltIns
+    ) {
+        return createLazyResolveSession(project, files, trace, injector, addBuiltIns, new LockBasedLazyResolveStorageManager());
+    }
+
+    @NotNull
+    public static ResolveSession createLazyResolveSession(
+            @NotNull Project project,
+            @NotNull Collection<JetFile> files,
+            @NotNull BindingTrace trace,
+            @NotNull InjectorForJavaDescriptorResolver injector,
+            final boolean addBuiltIns,
+            @NotNull LazyResolveStorageManager storageManager
     ) {
         final JavaClassFinderImpl classFinder = injector.getJavaClassFinder();
 
         // TODO: Replace with stub declaration provider
-        LockBasedLazyResolveStorageManager storageManager = new LockBasedLazyResolveStorageManager();
         FileBasedDeclarationProviderFactory declarationProviderFactory = new FileBasedDeclarationProviderFactory(storageManager, files, new Predicate<FqName>() {
             @Override
             public boolean apply(FqName fqName) {
@@ -190,15 +204,31 @@ public enum AnalyzerFacadeForJVM implements AnalyzerFacade {
             List<AnalyzerScriptParameter> scriptParameters,
             Predicate<PsiFile> filesToAnalyzeCompletely,
             boolean storeContextForBodiesResolve
+    ) {
+        return analyzeFilesWithJavaIntegration(project, files, trace, scriptParameters, filesToAnalyzeCompletely,
+                                               storeContextForBodiesResolve,
+                                               "true".equals(System.getProperty(PARALLEL_BODY_RESOLUTION_PROPERTY)));
+    }
+
+    public static AnalyzeExhaust analyzeFilesWithJavaIntegration(
+            Project project,
+            Collection<JetFile> files,
+            BindingTrace trace,
+            List<AnalyzerScriptParameter> scriptParameters,
+            Predicate<PsiFile> filesToAnalyzeCompletely,
+            boolean storeContextForBodiesResolve,
+            boolean parallelBodyResolution
     ) {
         ModuleDescriptorImpl owner = createJavaModule("<module>");
 
         TopDownAnalysisParameters topDownAnalysisParameters = new TopDownAnalysisParameters(
-                filesToAnalyzeCompletely, false, false, scriptParameters);
+                filesToAnalyzeCompletely, false, false, scriptParameters, parallelBodyResolution);
 
+        // Function bodies resolved in parallel read the trace, and Java classes resolved from them write into it
+        BindingTrace sharedTrace = parallelBodyResolution ? new LockBasedBindingTrace(trace) : trace;
         InjectorForTopDownAnalyzerForJvm injector = new InjectorForTopDownAnalyzerForJvm(
                 project, topDownAnalysisParameters,
-                new ObservableBindingTrace(trace), owner);
+                new ObservableBindingTrace(sharedTrace), owner);
         owner.setModuleConfiguration(injector.getJavaBridgeConfiguration());
         try {
             injector.getTopDownAnalyzer().analyzeFiles(files, scriptParameters);
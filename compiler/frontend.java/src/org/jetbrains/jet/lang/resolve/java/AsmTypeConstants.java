@@ -35,6 +35,8 @@ public class AsmTypeConstants {
     public static final Type JET_FUNCTION1_TYPE = Type.getObjectType("jet/Function1");
     public static final Type JET_ITERATOR_TYPE = Type.getObjectType("jet/Iterator");
     public static final Type JET_INT_RANGE_TYPE = Type.getObjectType("jet/IntRange");
+    public static final Type JET_PROPERTY_METADATA_TYPE = Type.getObjectType("jet/PropertyMetadata");
+    public static final Type JET_PROPERTY_METADATA_IMPL_TYPE = Type.getObjectType("jet/PropertyMetadataImpl");
     public static final Type JET_SHARED_VAR_TYPE = Type.getObjectType("jet/runtime/SharedVar$Object");
     public static final Type JET_SHARED_INT_TYPE = Type.getObjectType("jet/runtime/SharedVar$Int");
     public static final Type JET_SHARED_DOUBLE_TYPE = Type.getObjectType("jet/runtime/SharedVar$Double");
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.kotlin;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.asm4.ClassReader;
+import org.jetbrains.asm4.ClassVisitor;
+import org.jetbrains.asm4.FieldVisitor;
+import org.jetbrains.asm4.MethodVisitor;
+import org.jetbrains.jet.lang.resolve.java.JvmClassName;
+import org.jetbrains.jet.lang.resolve.name.Name;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.jetbrains.asm4.ClassReader.*;
+import static org.jetbrains.asm4.Opcodes.ASM4;
+import static org.jetbrains.jet.lang.resolve.kotlin.KotlinJvmBinaryClass.*;
+
+/**
+ * The name and the annotations of a class file, read in a single pass.
+ * Annotations are kept as they are in the file, and are passed to the visitors of {@link KotlinJvmBinaryClass} on demand,
+ * so that the visitors get the same calls in the same order as if they were visiting the class file itself.
+ */
+/* package */ class ClassFileContent {
+    @NotNull
+    public static ClassFileContent read(@NotNull byte[] bytes) {
+        final ClassFileContent content = new ClassFileContent();
+        new ClassReader(bytes).accept(new ClassVisitor(ASM4) {
+            @Override
+            public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                content.className = JvmClassName.byInternalName(name);
+            }
+
+            @Override
+            public org.jetbrains.asm4.AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+                return recordAnnotation(content.classAnnotations, desc, -1);
+            }
+
+            @Override
+            public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+                final Member field = new Member(name, desc, false);
+                content.members.add(field);
+                return new FieldVisitor(ASM4) {
+                    @Override
+                    public org.jetbrains.asm4.AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+                        return recordAnnotation(field.getAnnotations(), desc, -1);
+                    }
+                };
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+                final Member method = new Member(name, desc, true);
+                content.members.add(method);
+                return new MethodVisitor(ASM4) {
+                    @Override
+                    public org.jetbrains.asm4.AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+                        return recordAnnotation(method.getAnnotations(), desc, -1);
+                    }
+
+                    @Override
+                    public org.jetbrains.asm4.AnnotationVisitor visitParameterAnnotation(int parameter, String desc, boolean visible) {
+                        return recordAnnotation(method.getAnnotations(), desc, parameter);
+                    }
+                };
+            }
+        }, SKIP_CODE | SKIP_DEBUG | SKIP_FRAMES);
+
+        assert content.className != null : "No class name in the class file";
+        return content;
+    }
+
+    private JvmClassName className;
+    private final List<Annotation> classAnnotations = new ArrayList<Annotation>(1);
+    private final List<Member> members = new ArrayList<Member>();
+
+    private ClassFileContent() {
+    }
+
+    @NotNull
+    public JvmClassName getClassName() {
+        return className;
+    }
+
+    public void acceptClassAnnotations(@NotNull AnnotationVisitor visitor) {
+        for (Annotation annotation : classAnnotations) {
+            annotation.accept(visitor);
+        }
+        visitor.visitEnd();
+    }
+
+    public void acceptMemberAnnotations(@NotNull MemberVisitor visitor) {
+        for (Member member : members) {
+            member.accept(visitor);
+        }
+    }
+
+    @NotNull
+    private static org.jetbrains.asm4.AnnotationVisitor recordAnnotation(
+            @NotNull List<Annotation> annotations,
+            @NotNull String desc,
+            int parameter
+    ) {
+        Annotation annotation = new Annotation(classNameFromAsmDesc(desc), parameter);
+        annotations.add(annotation);
+        return recordArguments(annotation.arguments);
+    }
+
+    @NotNull
+    private static org.jetbrains.asm4.AnnotationVisitor recordArguments(@NotNull final List<Argument> arguments) {
+        return new org.jetbrains.asm4.AnnotationVisitor(ASM4) {
+            @Override
+            public void visit(String name, Object value) {
+                arguments.add(new ValueArgument(name, value));
+            }
+
+            @Override
+            public org.jetbrains.asm4.AnnotationVisitor visitArray(String name) {
+                ArrayArgument array = new ArrayArgument(name);
+                arguments.add(array);
+                return recordArguments(array.elements);
+            }
+
+            @Override
+            public void visitEnum(String name, String desc, String value) {
+                arguments.add(new EnumArgument(name, desc, value));
+            }
+        };
+    }
+
+    @NotNull
+    private static JvmClassName classNameFromAsmDesc(@NotNull String desc) {
+        assert desc.startsWith("L") && desc.endsWith(";") : "Not a JVM descriptor: " + desc;
+        return JvmClassName.byInternalName(desc.substring(1, desc.length() - 1));
+    }
+
+    private static class Member {
+        private final String name;
+        private final String desc;
+        private final boolean isMethod;
+        // Most members have no annotations, a list is allocated for the first one
+        private List<Annotation> annotations = Collections.emptyList();
+
+        private Member(@NotNull String name, @NotNull String desc, boolean isMethod) {
+            this.name = name;
+            this.desc = desc;
+            this.isMethod = isMethod;
+        }
+
+        @NotNull
+        private List<Annotation> getAnnotations() {
+            if (annotations == Collections.<Annotation>emptyList()) {
+                annotations = new ArrayList<Annotation>(1);
+            }
+            return annotations;
+        }
+
+        private void accept(@NotNull MemberVisitor visitor) {
+            if (isMethod) {
+                MethodAnnotationVisitor v = visitor.visitMethod(Name.guess(name), desc);
+                if (v == null) return;
+
+                for (Annotation annotation : annotations) {
+                    if (annotation.parameter < 0) {
+                        annotation.accept(v);
+                    }
+                    else {
+                        AnnotationArgumentVisitor av = v.visitParameterAnnotation(annotation.parameter, annotation.className);
+                        if (av != null) {
+                            annotation.acceptArguments(av);
+                        }
+                    }
+                }
+                v.visitEnd();
+            }
+            else {
+                AnnotationVisitor v = visitor.visitField(Name.guess(name), desc);
+                if (v == null) return;
+
+                for (Annotation annotation : annotations) {
+                    annotation.accept(v);
+                }
+                v.visitEnd();
+            }
+        }
+    }
+
+    private static class Annotation {
+        private final JvmClassName className;
+        // Index of the annotated parameter of a method, or -1 if the annotation is not on a parameter
+        private final int parameter;
+        private final List<Argument> arguments = new ArrayList<Argument>(1);
+
+        private Annotation(@NotNull JvmClassName className, int parameter) {
+            this.className = className;
+            this.parameter = parameter;
+        }
+
+        private void accept(@NotNull AnnotationVisitor visitor) {
+            AnnotationArgumentVisitor v = visitor.visitAnnotation(className);
+            if (v != null) {
+                acceptArguments(v);
+            }
+        }
+
+        private void acceptArguments(@NotNull AnnotationArgumentVisitor v) {
+            for (Argument argument : arguments) {
+                argument.accept(v);
+            }
+            v.visitEnd();
+        }
+    }
+
+    private static abstract class Argument {
+        protected final String name;
+
+        protected Argument(@Nullable String name) {
+            this.name = name;
+        }
+
+        protected abstract void accept(@NotNull AnnotationArgumentVisitor visitor);
+    }
+
+    private static class ValueArgument extends Argument {
+        private final Object value;
+
+        private ValueArgument(@Nullable String name, @Nullable Object value) {
+            super(name);
+            this.value = value;
+        }
+
+        @Override
+        protected void accept(@NotNull AnnotationArgumentVisitor visitor) {
+            visitor.visit(name == null ? null : Name.identifier(name), value);
+        }
+    }
+
+    private static class EnumArgument extends Argument {
+        private final String desc;
+        private final String value;
+
+        private EnumArgument(@Nullable String name, @NotNull String desc, @NotNull String value) {
+            super(name);
+            this.desc = desc;
+            this.value = value;
+        }
+
+        @Override
+        protected void accept(@NotNull AnnotationArgumentVisitor visitor) {
+            visitor.visitEnum(Name.identifier(name), classNameFromAsmDesc(desc), Name.identifier(value));
+        }
+    }
+
+    private static class ArrayArgument extends Argument {
+        private final List<Argument> elements = new ArrayList<Argument>();
+
+        private ArrayArgument(@Nullable String name) {
+            super(name);
+        }
+
+        @Override
+        protected void accept(@NotNull AnnotationArgumentVisitor visitor) {
+            AnnotationArgumentVisitor v = visitor.visitArray(Name.guess(name));
+            if (v != null) {
+                for (Argument element : elements) {
+                    element.accept(v);
+                }
+                v.visitEnd();
+            }
+        }
+    }
+}
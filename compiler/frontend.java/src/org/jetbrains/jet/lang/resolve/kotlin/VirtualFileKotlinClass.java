@@ -16,25 +16,21 @@
 
 package org.jetbrains.jet.lang.resolve.kotlin;
 
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.vfs.VirtualFile;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
-import org.jetbrains.asm4.ClassReader;
-import org.jetbrains.asm4.ClassVisitor;
-import org.jetbrains.asm4.FieldVisitor;
-import org.jetbrains.asm4.MethodVisitor;
 import org.jetbrains.jet.lang.resolve.java.JvmClassName;
-import org.jetbrains.jet.lang.resolve.name.Name;
 import org.jetbrains.jet.utils.ExceptionUtils;
 
 import java.io.IOException;
-
-import static org.jetbrains.asm4.ClassReader.*;
-import static org.jetbrains.asm4.Opcodes.ASM4;
+import java.lang.ref.SoftReference;
 
 public class VirtualFileKotlinClass implements KotlinJvmBinaryClass {
+    // Content of the class file shared by all VirtualFileKotlinClass instances for this file
+    private static final Key<SoftReference<StampedContent>> CONTENT_KEY = Key.create("KOTLIN_CLASS_FILE_CONTENT");
+
     private final VirtualFile file;
-    private JvmClassName className;
+    private ClassFileContent content;
 
     public VirtualFileKotlinClass(@NotNull VirtualFile file) {
         this.file = file;
@@ -48,131 +44,54 @@ public class VirtualFileKotlinClass implements KotlinJvmBinaryClass {
     @NotNull
     @Override
     public JvmClassName getClassName() {
-        if (className == null) {
-            try {
-                new ClassReader(file.contentsToByteArray()).accept(new ClassVisitor(ASM4) {
-                    @Override
-                    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
-                        className = JvmClassName.byInternalName(name);
-                    }
-                }, SKIP_CODE | SKIP_DEBUG | SKIP_FRAMES);
-            }
-            catch (IOException e) {
-                throw ExceptionUtils.rethrow(e);
-            }
-        }
-
-        return className;
+        return getContent().getClassName();
     }
 
     @Override
-    public void loadClassAnnotations(@NotNull final AnnotationVisitor annotationVisitor) {
-        try {
-            new ClassReader(file.contentsToByteArray()).accept(new ClassVisitor(ASM4) {
-                @Override
-                public org.jetbrains.asm4.AnnotationVisitor visitAnnotation(String desc, boolean visible) {
-                    return convertAnnotationVisitor(annotationVisitor, desc);
-                }
-
-                @Override
-                public void visitEnd() {
-                    annotationVisitor.visitEnd();
-                }
-            }, SKIP_CODE | SKIP_DEBUG | SKIP_FRAMES);
-        }
-        catch (IOException e) {
-            throw ExceptionUtils.rethrow(e);
-        }
+    public void loadClassAnnotations(@NotNull AnnotationVisitor annotationVisitor) {
+        getContent().acceptClassAnnotations(annotationVisitor);
     }
 
-    @Nullable
-    private static org.jetbrains.asm4.AnnotationVisitor convertAnnotationVisitor(@NotNull AnnotationVisitor visitor, @NotNull String desc) {
-        AnnotationArgumentVisitor v = visitor.visitAnnotation(classNameFromAsmDesc(desc));
-        return v == null ? null : convertAnnotationVisitor(v);
+    @Override
+    public void loadMemberAnnotations(@NotNull MemberVisitor memberVisitor) {
+        getContent().acceptMemberAnnotations(memberVisitor);
     }
 
     @NotNull
-    private static org.jetbrains.asm4.AnnotationVisitor convertAnnotationVisitor(@NotNull final AnnotationArgumentVisitor v) {
-        return new org.jetbrains.asm4.AnnotationVisitor(ASM4) {
-            @Override
-            public void visit(String name, Object value) {
-                v.visit(name == null ? null : Name.identifier(name), value);
-            }
-
-            @Override
-            public org.jetbrains.asm4.AnnotationVisitor visitArray(String name) {
-                AnnotationArgumentVisitor av = v.visitArray(Name.guess(name));
-                return av == null ? null : convertAnnotationVisitor(av);
-            }
-
-            @Override
-            public void visitEnum(String name, String desc, String value) {
-                v.visitEnum(Name.identifier(name), classNameFromAsmDesc(desc), Name.identifier(value));
-            }
-
-            @Override
-            public void visitEnd() {
-                v.visitEnd();
-            }
-        };
+    private ClassFileContent getContent() {
+        if (content == null) {
+            content = readContent(file);
+        }
+        return content;
     }
 
-    @Override
-    public void loadMemberAnnotations(@NotNull final MemberVisitor memberVisitor) {
+    @NotNull
+    private static ClassFileContent readContent(@NotNull VirtualFile file) {
+        long stamp = file.getModificationStamp();
+        SoftReference<StampedContent> reference = file.getUserData(CONTENT_KEY);
+        StampedContent cached = reference == null ? null : reference.get();
+        if (cached != null && cached.stamp == stamp) {
+            return cached.content;
+        }
+
         try {
-            new ClassReader(file.contentsToByteArray()).accept(new ClassVisitor(ASM4) {
-                @Override
-                public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
-                    final AnnotationVisitor v = memberVisitor.visitField(Name.guess(name), desc);
-                    if (v == null) return null;
-
-                    return new FieldVisitor(ASM4) {
-                        @Override
-                        public org.jetbrains.asm4.AnnotationVisitor visitAnnotation(String desc, boolean visible) {
-                            return convertAnnotationVisitor(v, desc);
-                        }
-
-                        @Override
-                        public void visitEnd() {
-                            v.visitEnd();
-                        }
-                    };
-                }
-
-                @Override
-                public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
-                    final MethodAnnotationVisitor v = memberVisitor.visitMethod(Name.guess(name), desc);
-                    if (v == null) return null;
-
-                    return new MethodVisitor(ASM4) {
-                        @Override
-                        public org.jetbrains.asm4.AnnotationVisitor visitAnnotation(String desc, boolean visible) {
-                            return convertAnnotationVisitor(v, desc);
-                        }
-
-                        @Override
-                        public org.jetbrains.asm4.AnnotationVisitor visitParameterAnnotation(int parameter, String desc, boolean visible) {
-                            AnnotationArgumentVisitor av = v.visitParameterAnnotation(parameter, classNameFromAsmDesc(desc));
-                            return av == null ? null : convertAnnotationVisitor(av);
-                        }
-
-                        @Override
-                        public void visitEnd() {
-                            v.visitEnd();
-                        }
-                    };
-                }
-            }, SKIP_CODE | SKIP_DEBUG | SKIP_FRAMES);
+            ClassFileContent content = ClassFileContent.read(file.contentsToByteArray());
+            file.putUserData(CONTENT_KEY, new SoftReference<StampedContent>(new StampedContent(content, stamp)));
+            return content;
         }
         catch (IOException e) {
             throw ExceptionUtils.rethrow(e);
         }
     }
 
-    @NotNull
-    private static JvmClassName classNameFromAsmDesc(@NotNull String desc) {
-        assert desc.startsWith("L") && desc.endsWith(";") : "Not a JVM descriptor: " + desc;
-        return JvmClassName.byInternalName(desc.substring(1, desc.length() - 1));
+    private static class StampedContent {
+        private final ClassFileContent content;
+        private final long stamp;
+
+        private StampedContent(@NotNull ClassFileContent content, long stamp) {
+            this.content = content;
+            this.stamp = stamp;
+        }
     }
 
     @Override
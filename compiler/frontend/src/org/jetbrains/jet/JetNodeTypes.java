@@ -18,6 +18,7 @@ package org.jetbrains.jet;
 
 import com.intellij.psi.tree.IElementType;
 import com.intellij.psi.tree.IFileElementType;
+import org.jetbrains.jet.lang.parsing.JetBlockElementType;
 import org.jetbrains.jet.lang.psi.*;
 import org.jetbrains.jet.lang.psi.stubs.elements.JetStubElementTypes;
 import org.jetbrains.jet.plugin.JetLanguage;
@@ -112,6 +113,8 @@ public interface JetNodeTypes {
     JetNodeType LOOP_RANGE                = new JetNodeType("LOOP_RANGE", JetContainerNode.class);
     JetNodeType BODY                      = new JetNodeType("BODY", JetContainerNode.class);
     JetNodeType BLOCK                     = new JetNodeType("BLOCK", JetBlockExpression.class);
+    // Blocks skipped by JetParsing.parseBlock(), the contents are parsed on first access. Same debug name as BLOCK, since they only differ in laziness
+    JetBlockElementType LAZY_BLOCK        = new JetBlockElementType("BLOCK");
     JetNodeType FUNCTION_LITERAL_EXPRESSION = new JetNodeType("FUNCTION_LITERAL_EXPRESSION", JetFunctionLiteralExpression.class);
     JetNodeType FUNCTION_LITERAL          = new JetNodeType("FUNCTION_LITERAL", JetFunctionLiteral.class);
     JetNodeType ANNOTATED_EXPRESSION      = new JetNodeType("ANNOTATED_EXPRESSION", JetAnnotatedExpression.class);
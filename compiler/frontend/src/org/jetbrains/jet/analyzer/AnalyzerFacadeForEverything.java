@@ -40,12 +40,13 @@ public class AnalyzerFacadeForEverything {
         TopDownAnalysisParameters topDownAnalysisParameters = new TopDownAnalysisParameters(
                 filesToAnalyzeCompletely, false, false, scriptParameters);
 
-        bodiesResolveContext.setTopDownAnalysisParameters(topDownAnalysisParameters);
+        // The context is cached and may be used by several analyses at once, so each of them gets its own copy
+        BodiesResolveContext context = new CachedBodiesResolveContext(bodiesResolveContext, topDownAnalysisParameters);
 
         InjectorForBodyResolve injector = new InjectorForBodyResolve(
                 project, topDownAnalysisParameters,
                 new ObservableBindingTrace(traceContext),
-                bodiesResolveContext, module);
+                context, module);
 
         try {
             injector.getBodyResolver().resolveBodies();
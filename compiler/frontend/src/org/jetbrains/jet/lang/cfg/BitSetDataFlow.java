@@ -0,0 +1,225 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.cfg;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.lang.cfg.PseudocodeTraverser.Edges;
+import org.jetbrains.jet.lang.cfg.PseudocodeTraverser.LookInsideStrategy;
+import org.jetbrains.jet.lang.cfg.PseudocodeTraverser.TraversalOrder;
+import org.jetbrains.jet.lang.cfg.pseudocode.Instruction;
+import org.jetbrains.jet.lang.cfg.pseudocode.LocalDeclarationInstruction;
+import org.jetbrains.jet.lang.cfg.pseudocode.Pseudocode;
+
+import java.util.*;
+
+import static org.jetbrains.jet.lang.cfg.PseudocodeTraverser.*;
+
+/**
+ * Solves dataflow problems whose facts are packed into bit sets, e.g. a few bits per variable.
+ * Facts coming from several edges are merged by a union, so "must" facts have to be encoded negatively
+ * ("may be not initialized" rather than "is initialized"). Instructions which haven't been reached yet have no facts.
+ *
+ * The instructions are visited in the order of {@link PseudocodeTraverser#collectData}, but after the first pass only those
+ * whose incoming facts have changed are recomputed, so the results are the same as the ones of
+ * {@link PseudocodeTraverser#collectData} with the corresponding merge strategy.
+ */
+public class BitSetDataFlow {
+    private static final BitSet EMPTY = new BitSet();
+
+    public interface Transfer {
+        /**
+         * @return {@code false} if the instruction never changes the facts, so that they can be passed through without copying
+         */
+        boolean canChange(@NotNull Instruction instruction);
+
+        /**
+         * Turns the facts on enter to the instruction to the facts on exit from it
+         */
+        void apply(@NotNull Instruction instruction, @NotNull BitSet facts);
+    }
+
+    private static class Node {
+        private final int index;
+        private final Instruction instruction;
+        // For a local declaration which is analysed inside, the only source is the last instruction of its body
+        private final boolean copiesSource;
+        private final Collection<Instruction> sourceInstructions;
+
+        private Node[] sources;
+        private final List<Node> dependents = Lists.newArrayList();
+
+        private BitSet in = EMPTY;
+        private BitSet out = EMPTY;
+
+        private Node(
+                int index,
+                @NotNull Instruction instruction,
+                @NotNull Collection<Instruction> sourceInstructions,
+                boolean copiesSource
+        ) {
+            this.index = index;
+            this.instruction = instruction;
+            this.sourceInstructions = sourceInstructions;
+            this.copiesSource = copiesSource;
+        }
+    }
+
+    @NotNull
+    public static Map<Instruction, Edges<BitSet>> solve(
+            @NotNull Pseudocode pseudocode,
+            @NotNull TraversalOrder traversalOrder,
+            @NotNull LookInsideStrategy lookInside,
+            @NotNull BitSet initialDataValueForEnterInstruction,
+            @NotNull Transfer transfer
+    ) {
+        BitSetDataFlow dataFlow = new BitSetDataFlow(traversalOrder, lookInside);
+
+        Instruction startInstruction = getStartInstruction(pseudocode, traversalOrder);
+        Node start = new Node(-1, startInstruction, Collections.<Instruction>emptyList(), false);
+        start.in = start.out = initialDataValueForEnterInstruction;
+        dataFlow.nodes.put(startInstruction, start);
+
+        dataFlow.flatten(pseudocode, Collections.<Instruction>emptyList(), false);
+        dataFlow.linkNodes();
+        dataFlow.compute(transfer);
+
+        Map<Instruction, Edges<BitSet>> result = Maps.newLinkedHashMap();
+        for (Map.Entry<Instruction, Node> entry : dataFlow.nodes.entrySet()) {
+            Node node = entry.getValue();
+            result.put(entry.getKey(), Edges.create(node.in, node.out));
+        }
+        return result;
+    }
+
+    private final TraversalOrder traversalOrder;
+    private final LookInsideStrategy lookInside;
+
+    private final Map<Instruction, Node> nodes = Maps.newLinkedHashMap();
+    // All the nodes except the start one, in the order of computation
+    private final List<Node> order = Lists.newArrayList();
+
+    private BitSetDataFlow(@NotNull TraversalOrder traversalOrder, @NotNull LookInsideStrategy lookInside) {
+        this.traversalOrder = traversalOrder;
+        this.lookInside = lookInside;
+    }
+
+    // Mirrors the traversal of PseudocodeTraverser.collectDataFromSubgraph()
+    private void flatten(@NotNull Pseudocode pseudocode, @NotNull Collection<Instruction> previousSubGraphInstructions, boolean isLocal) {
+        Instruction startInstruction = getStartInstruction(pseudocode, traversalOrder);
+        for (Instruction instruction : getInstructions(pseudocode, traversalOrder)) {
+            if (!isLocal && isStartInstruction(instruction, traversalOrder)) continue;
+
+            Collection<Instruction> previousInstructions = getPreviousInstruction(instruction, traversalOrder);
+            if (shouldLookInside(instruction, lookInside)) {
+                Pseudocode subroutinePseudocode = ((LocalDeclarationInstruction) instruction).getBody();
+                flatten(subroutinePseudocode, previousInstructions, true);
+                addNode(instruction, Collections.singletonList(getLastInstruction(subroutinePseudocode, traversalOrder)), true);
+                continue;
+            }
+
+            Collection<Instruction> allPreviousInstructions = previousInstructions;
+            if (instruction == startInstruction && !previousSubGraphInstructions.isEmpty()) {
+                allPreviousInstructions = Lists.newArrayList(previousInstructions);
+                allPreviousInstructions.addAll(previousSubGraphInstructions);
+            }
+            addNode(instruction, allPreviousInstructions, false);
+        }
+    }
+
+    private void addNode(@NotNull Instruction instruction, @NotNull Collection<Instruction> sourceInstructions, boolean copiesSource) {
+        Node node = new Node(order.size(), instruction, sourceInstructions, copiesSource);
+        nodes.put(instruction, node);
+        order.add(node);
+    }
+
+    private void linkNodes() {
+        for (Node node : order) {
+            List<Node> sources = Lists.newArrayList();
+            for (Instruction sourceInstruction : node.sourceInstructions) {
+                Node source = nodes.get(sourceInstruction);
+                if (source != null) {
+                    sources.add(source);
+                    source.dependents.add(node);
+                }
+            }
+            node.sources = sources.toArray(new Node[sources.size()]);
+        }
+    }
+
+    private void compute(@NotNull Transfer transfer) {
+        BitSet pending = new BitSet(order.size());
+        pending.set(0, order.size());
+
+        // Nodes after the current one are computed in the same pass, the others in the next one, as PseudocodeTraverser does
+        int index = pending.nextSetBit(0);
+        while (index >= 0) {
+            pending.clear(index);
+            Node node = order.get(index);
+            if (computeNode(node, transfer)) {
+                for (Node dependent : node.dependents) {
+                    if (dependent.index >= 0) {
+                        pending.set(dependent.index);
+                    }
+                }
+            }
+            int next = pending.nextSetBit(index + 1);
+            index = next >= 0 ? next : pending.nextSetBit(0);
+        }
+    }
+
+    /**
+     * @return {@code true} if the facts on exit from the node have changed
+     */
+    private static boolean computeNode(@NotNull Node node, @NotNull Transfer transfer) {
+        BitSet in;
+        BitSet out;
+        if (node.copiesSource) {
+            Node source = node.sources[0];
+            in = source.in;
+            out = source.out;
+        }
+        else {
+            in = merge(node.sources);
+            if (transfer.canChange(node.instruction)) {
+                out = (BitSet) in.clone();
+                transfer.apply(node.instruction, out);
+            }
+            else {
+                out = in;
+            }
+        }
+
+        node.in = in;
+        if (out.equals(node.out)) return false;
+        node.out = out;
+        return true;
+    }
+
+    @NotNull
+    private static BitSet merge(@NotNull Node[] sources) {
+        if (sources.length == 0) return EMPTY;
+        if (sources.length == 1) return sources[0].out;
+
+        BitSet result = (BitSet) sources[0].out.clone();
+        for (int i = 1; i < sources.length; i++) {
+            result.or(sources[i].out);
+        }
+        return result;
+    }
+}
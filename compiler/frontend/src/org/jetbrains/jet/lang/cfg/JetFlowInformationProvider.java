@@ -28,6 +28,7 @@ import org.jetbrains.jet.lang.cfg.pseudocode.*;
 import org.jetbrains.jet.lang.cfg.PseudocodeTraverser.*;
 import org.jetbrains.jet.lang.cfg.PseudocodeVariablesData.VariableInitState;
 import org.jetbrains.jet.lang.cfg.PseudocodeVariablesData.VariableUseState;
+import org.jetbrains.jet.lang.cfg.PseudocodeVariablesData.VariableUseStatusData;
 import org.jetbrains.jet.lang.descriptors.*;
 import org.jetbrains.jet.lang.diagnostics.DiagnosticFactory;
 import org.jetbrains.jet.lang.diagnostics.Diagnostic;
@@ -434,23 +435,18 @@ public class JetFlowInformationProvider {
 //  "Unused variable" & "unused value" analyses
 
     public void markUnusedVariables() {
-        Map<Instruction, Edges<Map<VariableDescriptor, VariableUseState>>> variableStatusData = pseudocodeVariablesData.getVariableUseStatusData();
+        final VariableUseStatusData variableStatusData = pseudocodeVariablesData.getVariableUseStatusData();
         final Map<Instruction, DiagnosticFactory> reportedDiagnosticMap = Maps.newHashMap();
-        InstructionDataAnalyzeStrategy<Map<VariableDescriptor, VariableUseState>> variableStatusAnalyzeStrategy =
-                new InstructionDataAnalyzeStrategy<Map<VariableDescriptor, PseudocodeVariablesData.VariableUseState>>() {
+        InstructionAnalyzeStrategy variableStatusAnalyzeStrategy = new InstructionAnalyzeStrategy() {
             @Override
-            public void execute(@NotNull Instruction instruction,
-                    @Nullable Map<VariableDescriptor, VariableUseState> in,
-                    @Nullable Map<VariableDescriptor, VariableUseState> out) {
-
-                assert in != null && out != null;
-                VariableContext ctxt = new VariableUseContext(instruction, reportedDiagnosticMap, in, out);
+            public void execute(@NotNull Instruction instruction) {
+                VariableContext ctxt = new VariableUseContext(instruction, reportedDiagnosticMap, variableStatusData);
                 Set<VariableDescriptor> declaredVariables = pseudocodeVariablesData.getDeclaredVariables(instruction.getOwner(), false);
                 VariableDescriptor variableDescriptor = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, false,
                                                                       trace.getBindingContext());
                 if (variableDescriptor == null || !declaredVariables.contains(variableDescriptor) ||
                     !DescriptorUtils.isLocal(variableDescriptor.getContainingDeclaration(), variableDescriptor)) return;
-                PseudocodeVariablesData.VariableUseState variableUseState = in.get(variableDescriptor);
+                VariableUseState variableUseState = variableStatusData.getEnterState(instruction, variableDescriptor);
                 if (instruction instanceof WriteValueInstruction) {
                     if (trace.get(CAPTURED_IN_CLOSURE, variableDescriptor) != null) return;
                     JetElement element = ((WriteValueInstruction) instruction).getElement();
@@ -510,7 +506,7 @@ public class JetFlowInformationProvider {
                 }
             }
         };
-        PseudocodeTraverser.traverse(pseudocode, BACKWARD, variableStatusData, variableStatusAnalyzeStrategy);
+        PseudocodeTraverser.traverse(pseudocode, BACKWARD, variableStatusAnalyzeStrategy);
     }
 
 ////////////////////////////////////////////////////////////////////////////////
@@ -640,12 +636,11 @@ public class JetFlowInformationProvider {
         private VariableUseContext(
                 @NotNull Instruction instruction,
                 @NotNull Map<Instruction, DiagnosticFactory> map,
-                @NotNull Map<VariableDescriptor, VariableUseState> in,
-                @NotNull Map<VariableDescriptor, VariableUseState> out
+                @NotNull VariableUseStatusData variableStatusData
         ) {
             super(instruction, map);
-            enterUseState = variableDescriptor != null ? in.get(variableDescriptor) : null;
-            exitUseState = variableDescriptor != null ? out.get(variableDescriptor) : null;
+            enterUseState = variableDescriptor != null ? variableStatusData.getEnterState(instruction, variableDescriptor) : null;
+            exitUseState = variableDescriptor != null ? variableStatusData.getExitState(instruction, variableDescriptor) : null;
         }
     }
 }
@@ -38,26 +38,26 @@ public class PseudocodeTraverser {
     }
     
     @NotNull
-    private static Instruction getStartInstruction(@NotNull Pseudocode pseudocode, @NotNull TraversalOrder traversalOrder) {
+    /* package */ static Instruction getStartInstruction(@NotNull Pseudocode pseudocode, @NotNull TraversalOrder traversalOrder) {
         return traversalOrder == FORWARD ? pseudocode.getEnterInstruction() : pseudocode.getSinkInstruction();
     }
 
     @NotNull
-    private static Instruction getLastInstruction(@NotNull Pseudocode pseudocode, @NotNull TraversalOrder traversalOrder) {
+    /* package */ static Instruction getLastInstruction(@NotNull Pseudocode pseudocode, @NotNull TraversalOrder traversalOrder) {
         return traversalOrder == FORWARD ? pseudocode.getSinkInstruction() : pseudocode.getEnterInstruction();
     }
 
     @NotNull
-    private static List<Instruction> getInstructions(@NotNull Pseudocode pseudocode, @NotNull TraversalOrder traversalOrder) {
+    /* package */ static List<Instruction> getInstructions(@NotNull Pseudocode pseudocode, @NotNull TraversalOrder traversalOrder) {
         return traversalOrder == FORWARD ? pseudocode.getInstructions() : pseudocode.getReversedInstructions();
     }
 
     @NotNull
-    private static Collection<Instruction> getPreviousInstruction(@NotNull Instruction instruction, @NotNull TraversalOrder traversalOrder) {
+    /* package */ static Collection<Instruction> getPreviousInstruction(@NotNull Instruction instruction, @NotNull TraversalOrder traversalOrder) {
         return traversalOrder == FORWARD ? instruction.getPreviousInstructions() : instruction.getNextInstructions();
     }
 
-    private static boolean isStartInstruction(@NotNull Instruction instruction, @NotNull TraversalOrder traversalOrder) {
+    /* package */ static boolean isStartInstruction(@NotNull Instruction instruction, @NotNull TraversalOrder traversalOrder) {
         return traversalOrder == FORWARD ? instruction instanceof SubroutineEnterInstruction
                                          : instruction instanceof SubroutineSinkInstruction;
     }
@@ -67,7 +67,7 @@ public class PseudocodeTraverser {
         SKIP_LOCAL_DECLARATIONS
     }
 
-    private static boolean shouldLookInside(Instruction instruction, LookInsideStrategy lookInside) {
+    /* package */ static boolean shouldLookInside(Instruction instruction, LookInsideStrategy lookInside) {
         return lookInside == LookInsideStrategy.ANALYSE_LOCAL_DECLARATIONS && instruction instanceof LocalDeclarationInstruction;
     }
 
@@ -16,6 +16,7 @@
 
 package org.jetbrains.jet.lang.cfg;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.jetbrains.annotations.NotNull;
@@ -28,10 +29,7 @@ import org.jetbrains.jet.lang.psi.JetDeclaration;
 import org.jetbrains.jet.lang.psi.JetProperty;
 import org.jetbrains.jet.lang.resolve.BindingContext;
 
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
 import static org.jetbrains.jet.lang.cfg.PseudocodeTraverser.LookInsideStrategy.ANALYSE_LOCAL_DECLARATIONS;
 import static org.jetbrains.jet.lang.cfg.PseudocodeTraverser.LookInsideStrategy.SKIP_LOCAL_DECLARATIONS;
@@ -135,24 +133,29 @@ public class PseudocodeVariablesData {
 
         Set<VariableDescriptor> usedVariables = getUsedVariables(pseudocode);
         Set<VariableDescriptor> declaredVariables = getDeclaredVariables(pseudocode, false);
-        Map<VariableDescriptor, VariableInitState> initialMap = Collections.emptyMap();
-        Map<VariableDescriptor, VariableInitState> initialMapForStartInstruction = prepareInitializersMapForStartInstruction(
-                usedVariables, declaredVariables);
 
-        Map<Instruction, Edges<Map<VariableDescriptor, VariableInitState>>> variableInitializersMap = PseudocodeTraverser.collectData(
-                pseudocode, FORWARD, SKIP_LOCAL_DECLARATIONS,
-                initialMap, initialMapForStartInstruction, new PseudocodeTraverser.InstructionDataMergeStrategy<Map<VariableDescriptor, VariableInitState>>() {
+        final VariableIndex index = new VariableIndex(usedVariables, INIT_STATE_BITS);
+        BitSet initialDataForStartInstruction = prepareInitializersForStartInstruction(index, usedVariables, declaredVariables);
+
+        Map<Instruction, Edges<BitSet>> facts = BitSetDataFlow.solve(
+                pseudocode, FORWARD, SKIP_LOCAL_DECLARATIONS, initialDataForStartInstruction, new BitSetDataFlow.Transfer() {
             @Override
-            public Edges<Map<VariableDescriptor, VariableInitState>> execute(
-                    @NotNull Instruction instruction, @NotNull Collection<Map<VariableDescriptor, VariableInitState>> incomingEdgesData) {
+            public boolean canChange(@NotNull Instruction instruction) {
+                return instruction instanceof WriteValueInstruction || instruction instanceof VariableDeclarationInstruction;
+            }
 
-                Map<VariableDescriptor, VariableInitState> enterInstructionData = mergeIncomingEdgesDataForInitializers(incomingEdgesData);
-                Map<VariableDescriptor, VariableInitState> exitInstructionData =
-                        addVariableInitStateFromCurrentInstructionIfAny(instruction, enterInstructionData);
-                return Edges.create(enterInstructionData, exitInstructionData);
+            @Override
+            public void apply(@NotNull Instruction instruction, @NotNull BitSet facts) {
+                addVariableInitStateFromCurrentInstructionIfAny(instruction, index, facts);
             }
         });
 
+        Map<Instruction, Edges<Map<VariableDescriptor, VariableInitState>>> variableInitializersMap = Maps.newLinkedHashMap();
+        for (Map.Entry<Instruction, Edges<BitSet>> entry : facts.entrySet()) {
+            Edges<BitSet> edges = entry.getValue();
+            variableInitializersMap.put(entry.getKey(), Edges.<Map<VariableDescriptor, VariableInitState>>create(
+                    new VariableInitStates(index, edges.in), new VariableInitStates(index, edges.out)));
+        }
 
         for (LocalDeclarationInstruction localDeclarationInstruction : pseudocode.getLocalDeclarations()) {
             Pseudocode localPseudocode = localDeclarationInstruction.getBody();
@@ -170,138 +173,228 @@ public class PseudocodeVariablesData {
     }
 
     @NotNull
-    private static Map<VariableDescriptor, VariableInitState> prepareInitializersMapForStartInstruction(
+    private static BitSet prepareInitializersForStartInstruction(
+            @NotNull VariableIndex index,
             @NotNull Collection<VariableDescriptor> usedVariables,
             @NotNull Collection<VariableDescriptor> declaredVariables) {
 
-        Map<VariableDescriptor, VariableInitState> initialMapForStartInstruction = Maps.newHashMap();
-        VariableInitState initializedForExternalVariable = VariableInitState.create(true);
-        VariableInitState notInitializedForDeclaredVariable = VariableInitState.create(false);
-
+        // Declared variables are not initialized, external ones are; none of them is declared yet
+        BitSet facts = new BitSet();
         for (VariableDescriptor variable : usedVariables) {
+            int offset = index.getOffset(variable);
+            facts.set(offset + PRESENT);
+            facts.set(offset + MAY_BE_NOT_DECLARED);
             if (declaredVariables.contains(variable)) {
-                initialMapForStartInstruction.put(variable, notInitializedForDeclaredVariable);
+                facts.set(offset + MAY_BE_NOT_INITIALIZED);
             }
-            else {
-                initialMapForStartInstruction.put(variable, initializedForExternalVariable);
+        }
+        return facts;
+    }
+
+    private void addVariableInitStateFromCurrentInstructionIfAny(
+            @NotNull Instruction instruction, @NotNull VariableIndex index, @NotNull BitSet facts) {
+
+        VariableDescriptor variable = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, false, bindingContext);
+        if (variable == null) return;
+
+        int offset = index.getOffset(variable);
+        boolean isPresent = facts.get(offset + PRESENT);
+        if (instruction instanceof WriteValueInstruction) {
+            boolean isDeclared = ((WriteValueInstruction) instruction).getElement() instanceof JetProperty ||
+                                 (isPresent && !facts.get(offset + MAY_BE_NOT_DECLARED));
+            facts.set(offset + PRESENT);
+            facts.clear(offset + MAY_BE_NOT_INITIALIZED);
+            facts.set(offset + MAY_BE_NOT_DECLARED, !isDeclared);
+        }
+        else { // instruction instanceof VariableDeclarationInstruction
+            if (!isPresent) {
+                facts.set(offset + PRESENT);
+                facts.set(offset + MAY_BE_NOT_INITIALIZED);
             }
+            facts.clear(offset + MAY_BE_NOT_DECLARED);
         }
-        return initialMapForStartInstruction;
     }
 
+// variable use
+
     @NotNull
-    private static Map<VariableDescriptor, VariableInitState> mergeIncomingEdgesDataForInitializers(
-            @NotNull Collection<Map<VariableDescriptor, VariableInitState>> incomingEdgesData) {
+    public VariableUseStatusData getVariableUseStatusData() {
+        Set<VariableDescriptor> usedVariables = getUsedVariables(pseudocode);
+        final VariableIndex index = new VariableIndex(usedVariables, USE_STATE_BITS);
 
-        Set<VariableDescriptor> variablesInScope = Sets.newHashSet();
-        for (Map<VariableDescriptor, VariableInitState> edgeData : incomingEdgesData) {
-            variablesInScope.addAll(edgeData.keySet());
+        BitSet sinkInstructionData = new BitSet();
+        for (VariableDescriptor usedVariable : usedVariables) {
+            sinkInstructionData.set(index.getOffset(usedVariable) + PRESENT);
         }
 
-        Map<VariableDescriptor, VariableInitState> enterInstructionData = Maps.newHashMap();
-        for (VariableDescriptor variable : variablesInScope) {
-            boolean isInitialized = true;
-            boolean isDeclared = true;
-            for (Map<VariableDescriptor, VariableInitState> edgeData : incomingEdgesData) {
-                VariableInitState initState = edgeData.get(variable);
-                if (initState != null) {
-                    if (!initState.isInitialized) {
-                        isInitialized = false;
-                    }
-                    if (!initState.isDeclared) {
-                        isDeclared = false;
-                    }
+        BitSetDataFlow.Transfer collectVariableUseStatus = new BitSetDataFlow.Transfer() {
+            @Override
+            public boolean canChange(@NotNull Instruction instruction) {
+                return instruction instanceof ReadValueInstruction || instruction instanceof WriteValueInstruction;
+            }
+
+            @Override
+            public void apply(@NotNull Instruction instruction, @NotNull BitSet facts) {
+                VariableDescriptor variableDescriptor = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, true, bindingContext);
+                if (variableDescriptor == null) return;
+
+                int offset = index.getOffset(variableDescriptor);
+                VariableUseState newState;
+                if (instruction instanceof ReadValueInstruction) {
+                    newState = VariableUseState.LAST_READ;
+                }
+                else { //instruction instanceof WriteValueInstruction
+                    VariableUseState variableUseState = decodeUseState(facts, offset);
+                    newState = variableUseState == VariableUseState.LAST_WRITTEN || variableUseState == VariableUseState.LAST_READ
+                               ? VariableUseState.LAST_WRITTEN
+                               : VariableUseState.ONLY_WRITTEN_NEVER_READ;
                 }
+                facts.set(offset + PRESENT);
+                facts.set(offset + USE_STATE_FLAGS, offset + USE_STATE_BITS, false);
+                facts.set(offset + USE_STATE_FLAGS + newState.ordinal());
+            }
+        };
+
+        Map<Instruction, Edges<BitSet>> facts = BitSetDataFlow.solve(
+                pseudocode, BACKWARD, ANALYSE_LOCAL_DECLARATIONS, sinkInstructionData, collectVariableUseStatus);
+        return new VariableUseStatusData(index, facts);
+    }
+
+    // Every variable has a block of bits in the facts, the first one tells if anything is known about the variable at all
+    private static final int PRESENT = 0;
+
+    // Bits of a variable initialization state. Initialization facts from different edges are merged with "and",
+    // so the negations are stored to merge them with "or"
+    private static final int MAY_BE_NOT_INITIALIZED = 1;
+    private static final int MAY_BE_NOT_DECLARED = 2;
+    private static final int INIT_STATE_BITS = 3;
+
+    // A bit for every VariableUseState: the merged state is the most important one among the states set
+    private static final int USE_STATE_FLAGS = 1;
+    private static final int USE_STATE_BITS = USE_STATE_FLAGS + 4;
+
+    @Nullable
+    private static VariableUseState decodeUseState(@NotNull BitSet facts, int offset) {
+        if (!facts.get(offset + PRESENT)) return null;
+        int flag = facts.nextSetBit(offset + USE_STATE_FLAGS);
+        return flag >= 0 && flag < offset + USE_STATE_BITS
+               ? VariableUseState.values()[flag - offset - USE_STATE_FLAGS]
+               : VariableUseState.UNUSED;
+    }
+
+    /**
+     * Numbers the variables of a pseudocode, so that their facts can be stored in bit sets
+     */
+    private static class VariableIndex {
+        private final Map<VariableDescriptor, Integer> indices = Maps.newHashMap();
+        private final List<VariableDescriptor> variables = Lists.newArrayList();
+        private final int bitsPerVariable;
+
+        private VariableIndex(@NotNull Collection<VariableDescriptor> variables, int bitsPerVariable) {
+            this.bitsPerVariable = bitsPerVariable;
+            for (VariableDescriptor variable : variables) {
+                getOffset(variable);
             }
-            enterInstructionData.put(variable, VariableInitState.create(isInitialized, isDeclared));
         }
-        return enterInstructionData;
+
+        private int getOffset(@NotNull VariableDescriptor variable) {
+            Integer index = indices.get(variable);
+            if (index == null) {
+                index = variables.size();
+                indices.put(variable, index);
+                variables.add(variable);
+            }
+            return index * bitsPerVariable;
+        }
+
+        private int getOffsetIfKnown(@Nullable Object variable) {
+            Integer index = indices.get(variable);
+            return index == null ? -1 : index * bitsPerVariable;
+        }
     }
 
-    @NotNull
-    private Map<VariableDescriptor, VariableInitState> addVariableInitStateFromCurrentInstructionIfAny(
-            @NotNull Instruction instruction, @NotNull Map<VariableDescriptor, VariableInitState> enterInstructionData) {
+    /**
+     * A read-only view of the states of variables stored in a bit set
+     */
+    private abstract static class VariableStates<S> extends AbstractMap<VariableDescriptor, S> {
+        protected final VariableIndex index;
+        protected final BitSet facts;
 
-        if (!(instruction instanceof WriteValueInstruction) && !(instruction instanceof VariableDeclarationInstruction)) {
-            return enterInstructionData;
+        protected VariableStates(@NotNull VariableIndex index, @NotNull BitSet facts) {
+            this.index = index;
+            this.facts = facts;
         }
-        VariableDescriptor variable = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, false, bindingContext);
-        if (variable == null) {
-            return enterInstructionData;
+
+        @Nullable
+        protected abstract S decode(int offset);
+
+        @Override
+        public S get(Object key) {
+            int offset = index.getOffsetIfKnown(key);
+            return offset < 0 ? null : decode(offset);
         }
-        Map<VariableDescriptor, VariableInitState> exitInstructionData = Maps.newHashMap(enterInstructionData);
-        if (instruction instanceof WriteValueInstruction) {
-            VariableInitState enterInitState = enterInstructionData.get(variable);
-            VariableInitState initializationAtThisElement =
-                    VariableInitState.create(((WriteValueInstruction) instruction).getElement() instanceof JetProperty, enterInitState);
-            exitInstructionData.put(variable, initializationAtThisElement);
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
         }
-        else { // instruction instanceof VariableDeclarationInstruction
-            VariableInitState enterInitState = enterInstructionData.get(variable);
-            if (enterInitState == null || !enterInitState.isInitialized || !enterInitState.isDeclared) {
-                boolean isInitialized = enterInitState != null && enterInitState.isInitialized;
-                VariableInitState variableDeclarationInfo = VariableInitState.create(isInitialized, true);
-                exitInstructionData.put(variable, variableDeclarationInfo);
+
+        @NotNull
+        @Override
+        public Set<Entry<VariableDescriptor, S>> entrySet() {
+            Set<Entry<VariableDescriptor, S>> entries = Sets.newLinkedHashSet();
+            for (VariableDescriptor variable : index.variables) {
+                S state = decode(index.getOffset(variable));
+                if (state != null) {
+                    entries.add(new SimpleImmutableEntry<VariableDescriptor, S>(variable, state));
+                }
             }
+            return entries;
         }
-        return exitInstructionData;
     }
 
-// variable use
+    private static class VariableInitStates extends VariableStates<VariableInitState> {
+        private VariableInitStates(@NotNull VariableIndex index, @NotNull BitSet facts) {
+            super(index, facts);
+        }
 
-    @NotNull
-    public Map<Instruction, Edges<Map<VariableDescriptor, VariableUseState>>> getVariableUseStatusData() {
-        Map<VariableDescriptor, VariableUseState> sinkInstructionData = Maps.newHashMap();
-        for (VariableDescriptor usedVariable : getUsedVariables(pseudocode)) {
-            sinkInstructionData.put(usedVariable, VariableUseState.UNUSED);
+        @Nullable
+        @Override
+        protected VariableInitState decode(int offset) {
+            if (!facts.get(offset + PRESENT)) return null;
+            return VariableInitState.create(!facts.get(offset + MAY_BE_NOT_INITIALIZED), !facts.get(offset + MAY_BE_NOT_DECLARED));
+        }
+    }
+
+    /**
+     * Use states of the variables on enter to and on exit from the instructions, decoded right from the bit sets
+     */
+    public static class VariableUseStatusData {
+        private final VariableIndex index;
+        private final Map<Instruction, Edges<BitSet>> facts;
+
+        private VariableUseStatusData(@NotNull VariableIndex index, @NotNull Map<Instruction, Edges<BitSet>> facts) {
+            this.index = index;
+            this.facts = facts;
+        }
+
+        @Nullable
+        public VariableUseState getEnterState(@NotNull Instruction instruction, @NotNull VariableDescriptor variable) {
+            Edges<BitSet> edges = facts.get(instruction);
+            return edges != null ? getState(edges.in, variable) : null;
+        }
+
+        @Nullable
+        public VariableUseState getExitState(@NotNull Instruction instruction, @NotNull VariableDescriptor variable) {
+            Edges<BitSet> edges = facts.get(instruction);
+            return edges != null ? getState(edges.out, variable) : null;
+        }
+
+        @Nullable
+        private VariableUseState getState(@NotNull BitSet facts, @NotNull VariableDescriptor variable) {
+            int offset = index.getOffsetIfKnown(variable);
+            return offset >= 0 ? decodeUseState(facts, offset) : null;
         }
-        InstructionDataMergeStrategy<Map<VariableDescriptor, VariableUseState>> collectVariableUseStatusStrategy =
-                new InstructionDataMergeStrategy<Map<VariableDescriptor, VariableUseState>>() {
-                    @Override
-                    public Edges<Map<VariableDescriptor, VariableUseState>> execute(
-                            @NotNull Instruction instruction,
-                            @NotNull Collection<Map<VariableDescriptor, VariableUseState>> incomingEdgesData
-                    ) {
-
-                        Map<VariableDescriptor, VariableUseState> enterResult = Maps.newHashMap();
-                        for (Map<VariableDescriptor, VariableUseState> edgeData : incomingEdgesData) {
-                            for (Map.Entry<VariableDescriptor, VariableUseState> entry : edgeData.entrySet()) {
-                                VariableDescriptor variableDescriptor = entry.getKey();
-                                VariableUseState variableUseState = entry.getValue();
-                                enterResult.put(variableDescriptor, variableUseState.merge(enterResult.get(variableDescriptor)));
-                            }
-                        }
-                        VariableDescriptor variableDescriptor = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, true,
-                                                                                                              bindingContext);
-                        if (variableDescriptor == null ||
-                            (!(instruction instanceof ReadValueInstruction) && !(instruction instanceof WriteValueInstruction))) {
-                            return Edges.create(enterResult, enterResult);
-                        }
-                        Map<VariableDescriptor, VariableUseState> exitResult = Maps.newHashMap(enterResult);
-                        if (instruction instanceof ReadValueInstruction) {
-                            exitResult.put(variableDescriptor, VariableUseState.LAST_READ);
-                        }
-                        else { //instruction instanceof WriteValueInstruction
-                            VariableUseState variableUseState = enterResult.get(variableDescriptor);
-                            if (variableUseState == null) {
-                                variableUseState = VariableUseState.UNUSED;
-                            }
-                            switch (variableUseState) {
-                                case UNUSED:
-                                case ONLY_WRITTEN_NEVER_READ:
-                                    exitResult.put(variableDescriptor, VariableUseState.ONLY_WRITTEN_NEVER_READ);
-                                    break;
-                                case LAST_WRITTEN:
-                                case LAST_READ:
-                                    exitResult.put(variableDescriptor, VariableUseState.LAST_WRITTEN);
-                            }
-                        }
-                        return Edges.create(enterResult, exitResult);
-                    }
-                };
-        return PseudocodeTraverser.collectData(pseudocode, BACKWARD, ANALYSE_LOCAL_DECLARATIONS,
-                                               Collections.<VariableDescriptor, VariableUseState>emptyMap(),
-                                               sinkInstructionData, collectVariableUseStatusStrategy);
     }
 
     public static class VariableInitState {
@@ -327,32 +420,14 @@ public class PseudocodeVariablesData {
             if (isDeclared) return VS_FT;
             return VS_FF;
         }
-
-        private static VariableInitState create(boolean isInitialized) {
-            return create(isInitialized, false);
-        }
-
-        private static VariableInitState create(boolean isDeclaredHere, @Nullable VariableInitState mergedEdgesData) {
-            return create(true, isDeclaredHere || (mergedEdgesData != null && mergedEdgesData.isDeclared));
-        }
     }
 
     public static enum VariableUseState {
-        LAST_READ(3),
-        LAST_WRITTEN(2),
-        ONLY_WRITTEN_NEVER_READ(1),
-        UNUSED(0);
-
-        private final int importance;
-
-        VariableUseState(int importance) {
-            this.importance = importance;
-        }
-
-        private VariableUseState merge(@Nullable VariableUseState variableUseState) {
-            if (variableUseState == null || importance > variableUseState.importance) return this;
-            return variableUseState;
-        }
+        // The states go from the most important to the least important one, merging states gives the most important of them
+        LAST_READ,
+        LAST_WRITTEN,
+        ONLY_WRITTEN_NEVER_READ,
+        UNUSED;
 
         public static boolean isUsed(@Nullable VariableUseState variableUseState) {
             return variableUseState != null && variableUseState != UNUSED;
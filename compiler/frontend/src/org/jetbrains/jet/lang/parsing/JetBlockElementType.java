@@ -0,0 +1,86 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.parsing;
+
+import com.intellij.lang.ASTNode;
+import com.intellij.lang.Language;
+import com.intellij.lang.PsiBuilder;
+import com.intellij.lang.PsiBuilderFactory;
+import com.intellij.lexer.Lexer;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.impl.source.tree.LazyParseableElement;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.tree.IErrorCounterReparseableElementType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.lang.psi.JetBlockExpression;
+import org.jetbrains.jet.lexer.JetLexer;
+import org.jetbrains.jet.lexer.JetTokens;
+import org.jetbrains.jet.plugin.JetLanguage;
+
+/**
+ * Type of block expressions in braces. The parser only skips to the matching closing brace,
+ * the contents are parsed when the block is first accessed, and are reparsed alone when they are edited
+ */
+public class JetBlockElementType extends IErrorCounterReparseableElementType {
+    public JetBlockElementType(@NotNull String debugName) {
+        super(debugName, JetLanguage.INSTANCE);
+    }
+
+    @NotNull
+    public JetBlockExpression createPsi(@NotNull ASTNode node) {
+        assert node.getElementType() == this;
+        return new JetBlockExpression(node);
+    }
+
+    // Without a node of its own the type is never reparsed alone: the incremental reparser skips it
+    @Override
+    public ASTNode createNode(CharSequence text) {
+        return new LazyParseableElement(this, text);
+    }
+
+    @Override
+    public ASTNode parseContents(ASTNode chameleon) {
+        Project project = chameleon.getTreeParent().getPsi().getProject();
+        PsiBuilder builder = PsiBuilderFactory.getInstance().createBuilder(project, chameleon, null, getLanguage(), chameleon.getChars());
+        return JetParser.parseBlockExpression(builder).getFirstChildNode();
+    }
+
+    @Override
+    public int getErrorsCount(CharSequence seq, Language fileLanguage, Project project) {
+        // The text can be reparsed as a block if it is a single block with balanced braces
+        Lexer lexer = new JetLexer();
+        lexer.start(seq);
+        if (lexer.getTokenType() != JetTokens.LBRACE) return FATAL_ERROR;
+        lexer.advance();
+
+        int balance = 1;
+        while (true) {
+            IElementType type = lexer.getTokenType();
+            if (type == null) break;
+            if (balance == 0) return FATAL_ERROR;
+
+            if (type == JetTokens.LBRACE) {
+                balance++;
+            }
+            else if (type == JetTokens.RBRACE) {
+                balance--;
+            }
+            lexer.advance();
+        }
+        return balance;
+    }
+}
@@ -59,6 +59,13 @@ public class JetParser implements PsiParser {
         return psiBuilder.getTreeBuilt();
     }
 
+    @NotNull
+    public static ASTNode parseBlockExpression(PsiBuilder psiBuilder) {
+        JetParsing jetParsing = JetParsing.createForTopLevel(new SemanticWhitespaceAwarePsiBuilderImpl(psiBuilder));
+        jetParsing.parseBlockExpression();
+        return psiBuilder.getTreeBuilt();
+    }
+
     @NotNull
     public static ASTNode parseExpressionCodeFragment(PsiBuilder psiBuilder) {
         JetParsing jetParsing = JetParsing.createForTopLevel(new SemanticWhitespaceAwarePsiBuilderImpl(psiBuilder));
@@ -99,6 +99,9 @@ public class JetParserDefinition implements ParserDefinition {
         else if (elementType == JetNodeTypes.TYPE_CODE_FRAGMENT || elementType == JetNodeTypes.EXPRESSION_CODE_FRAGMENT) {
             return new ASTWrapperPsiElement(astNode);
         }
+        else if (elementType instanceof JetBlockElementType) {
+            return ((JetBlockElementType) elementType).createPsi(astNode);
+        }
         else {
             return ((JetNodeType) elementType).createPsi(astNode);
         }
@@ -1167,6 +1167,35 @@ public class JetParsing extends AbstractJetParsing {
      *   ;
      */
     void parseBlock() {
+        if (!at(LBRACE)) {
+            PsiBuilder.Marker block = mark();
+            error("Expecting '{' to open a block");
+            block.done(BLOCK);
+            return;
+        }
+
+        // The contents are parsed lazily by LAZY_BLOCK, here it's enough to find the matching brace
+        PsiBuilder.Marker block = mark();
+        advance(); // LBRACE
+
+        int balance = 1;
+        while (balance > 0 && !eof()) {
+            if (at(LBRACE)) {
+                balance++;
+            }
+            else if (at(RBRACE)) {
+                balance--;
+            }
+            advance();
+        }
+
+        block.collapse(LAZY_BLOCK);
+    }
+
+    /*
+     * The contents of a lazily parsed block, see parseBlock()
+     */
+    void parseBlockExpression() {
         PsiBuilder.Marker block = mark();
 
         myBuilder.enableNewlines();
@@ -1177,7 +1206,11 @@ public class JetParsing extends AbstractJetParsing {
         expect(RBRACE, "Expecting '}");
         myBuilder.restoreNewlinesState();
 
-        block.done(BLOCK);
+        while (!eof()) {
+            errorAndAdvance("Unexpected token");
+        }
+
+        block.done(LAZY_BLOCK);
     }
 
     /*
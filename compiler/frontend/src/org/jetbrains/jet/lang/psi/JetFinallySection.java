@@ -36,6 +36,6 @@ public class JetFinallySection extends JetElementImpl {
     }
 
     public JetBlockExpression getFinalExpression() {
-        return (JetBlockExpression) findChildByType(JetNodeTypes.BLOCK);
+        return findChildByClass(JetBlockExpression.class);
     }
 }
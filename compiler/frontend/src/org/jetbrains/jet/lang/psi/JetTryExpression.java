@@ -40,7 +40,7 @@ public class JetTryExpression extends JetExpressionImpl {
 
     @NotNull
     public JetBlockExpression getTryBlock() {
-        return (JetBlockExpression) findChildByType(JetNodeTypes.BLOCK);
+        return findChildByClass(JetBlockExpression.class);
     }
 
     @NotNull
@@ -16,10 +16,12 @@
 
 package org.jetbrains.jet.lang.psi.stubs.elements;
 
+import com.intellij.lang.ASTNode;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.stubs.DefaultStubBuilder;
 import com.intellij.psi.stubs.StubElement;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.JetNodeTypes;
 import org.jetbrains.jet.lang.psi.JetFile;
 import org.jetbrains.jet.lang.psi.stubs.impl.PsiJetFileStubImpl;
 
@@ -33,4 +35,10 @@ public class JetFileStubBuilder extends DefaultStubBuilder {
         JetFile jetFile = (JetFile) file;
         return new PsiJetFileStubImpl(jetFile, jetFile.getPackageName(), jetFile.isScript());
     }
+
+    @Override
+    public boolean skipChildProcessingWhenBuildingStubs(@NotNull ASTNode parent, @NotNull ASTNode node) {
+        // No stubs are created inside blocks (see JetStubElementType.shouldCreateStub()), so lazy blocks are not parsed
+        return node.getElementType() == JetNodeTypes.LAZY_BLOCK;
+    }
 }
@@ -16,6 +16,7 @@
 
 package org.jetbrains.jet.lang.resolve;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.intellij.psi.PsiElement;
@@ -46,6 +47,11 @@ import org.jetbrains.jet.util.ReenteringLazyValueComputationException;
 
 import javax.inject.Inject;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.jetbrains.jet.lang.descriptors.ReceiverParameterDescriptor.NO_RECEIVER_PARAMETER;
 import static org.jetbrains.jet.lang.diagnostics.Errors.*;
@@ -409,6 +415,8 @@ public class BodyResolver {
     }
 
     private void resolvePropertyDeclarationBodies() {
+        // Deferred types and annotation arguments are resolved into the shared trace first, see resolveDeclarationBodies()
+        List<DeclarationBody> bodies = Lists.newArrayList();
 
         // Member properties
         Set<JetProperty> processed = Sets.newHashSet();
@@ -421,26 +429,9 @@ public class BodyResolver {
                 PropertyDescriptor propertyDescriptor = this.context.getProperties().get(property);
                 assert propertyDescriptor != null;
 
-                computeDeferredType(propertyDescriptor.getReturnType());
-
-                JetExpression initializer = property.getInitializer();
-                JetScope propertyScope = getScopeForProperty(property);
-                if (initializer != null) {
-                    ConstructorDescriptor primaryConstructor = classDescriptor.getUnsubstitutedPrimaryConstructor();
-                    if (primaryConstructor != null) {
-                        resolvePropertyInitializer(property, propertyDescriptor, initializer, propertyScope);
-                    }
-                }
-
-                JetExpression delegateExpression = property.getDelegateExpression();
-                if (delegateExpression != null) {
-                    assert initializer == null : "Initializer should be null for delegated property : " + property.getText();
-                    resolvePropertyDelegate(property, propertyDescriptor, delegateExpression, classDescriptor.getScopeForMemberResolution(), propertyScope);
-                }
-
-                resolveAnnotationArguments(propertyScope, property);
-
-                resolvePropertyAccessors(property, propertyDescriptor);
+                boolean resolveInitializer = classDescriptor.getUnsubstitutedPrimaryConstructor() != null;
+                bodies.add(preparePropertyBodies(property, propertyDescriptor, getScopeForProperty(property), resolveInitializer,
+                                                 classDescriptor.getScopeForMemberResolution()));
                 processed.add(property);
             }
         }
@@ -451,26 +442,44 @@ public class BodyResolver {
             if (!context.completeAnalysisNeeded(property)) continue;
             if (processed.contains(property)) continue;
 
-            PropertyDescriptor propertyDescriptor = entry.getValue();
+            JetScope propertyScope = getScopeForProperty(property);
+            bodies.add(preparePropertyBodies(property, entry.getValue(), propertyScope, true, propertyScope));
+        }
+
+        resolveDeclarationBodies(bodies);
+    }
 
-            computeDeferredType(propertyDescriptor.getReturnType());
+    @NotNull
+    private DeclarationBody preparePropertyBodies(
+            @NotNull final JetProperty property,
+            @NotNull final PropertyDescriptor propertyDescriptor,
+            @NotNull final JetScope propertyScope,
+            final boolean resolveInitializer,
+            @NotNull final JetScope parentScopeForDelegateAccessor
+    ) {
+        computeDeferredType(propertyDescriptor.getReturnType());
 
-            JetExpression initializer = property.getInitializer();
-            JetScope propertyScope = getScopeForProperty(property);
-            if (initializer != null) {
-                resolvePropertyInitializer(property, propertyDescriptor, initializer, propertyScope);
-            }
+        resolveAnnotationArguments(propertyScope, property);
+        final Map<JetPropertyAccessor, JetScope> accessorScopes = resolvePropertyAccessorAnnotations(property, propertyDescriptor);
 
-            JetExpression delegateExpression = property.getDelegateExpression();
-            if (delegateExpression != null) {
-                assert initializer == null : "Initializer should be null for delegated property : " + property.getText();
-                resolvePropertyDelegate(property, propertyDescriptor, delegateExpression, propertyScope, propertyScope);
-            }
+        return new DeclarationBody(property) {
+            @Override
+            public void resolve(@NotNull BindingTrace trace) {
+                JetExpression initializer = property.getInitializer();
+                if (initializer != null && resolveInitializer) {
+                    resolvePropertyInitializer(trace, property, propertyDescriptor, initializer, propertyScope);
+                }
 
-            resolveAnnotationArguments(propertyScope, property);
+                JetExpression delegateExpression = property.getDelegateExpression();
+                if (delegateExpression != null) {
+                    assert initializer == null : "Initializer should be null for delegated property : " + property.getText();
+                    resolvePropertyDelegate(trace, property, propertyDescriptor, delegateExpression, parentScopeForDelegateAccessor,
+                                            propertyScope);
+                }
 
-            resolvePropertyAccessors(property, propertyDescriptor);
-        }
+                resolvePropertyAccessorBodies(trace, property, propertyDescriptor, accessorScopes);
+            }
+        };
     }
 
     private JetScope makeScopeForPropertyAccessor(@NotNull JetPropertyAccessor accessor, @NotNull PropertyDescriptor descriptor) {
@@ -480,26 +489,56 @@ public class BodyResolver {
     }
 
     public void resolvePropertyAccessors(JetProperty property, PropertyDescriptor propertyDescriptor) {
-        ObservableBindingTrace fieldAccessTrackingTrace = createFieldTrackingTrace(propertyDescriptor);
+        Map<JetPropertyAccessor, JetScope> accessorScopes = resolvePropertyAccessorAnnotations(property, propertyDescriptor);
+        resolvePropertyAccessorBodies(trace, property, propertyDescriptor, accessorScopes);
+    }
+
+    @NotNull
+    private Map<JetPropertyAccessor, JetScope> resolvePropertyAccessorAnnotations(
+            @NotNull JetProperty property,
+            @NotNull PropertyDescriptor propertyDescriptor
+    ) {
+        Map<JetPropertyAccessor, JetScope> accessorScopes = Maps.newLinkedHashMap();
 
         JetPropertyAccessor getter = property.getGetter();
-        PropertyGetterDescriptor getterDescriptor = propertyDescriptor.getGetter();
-        if (getter != null && getterDescriptor != null) {
+        if (getter != null && propertyDescriptor.getGetter() != null) {
             JetScope accessorScope = makeScopeForPropertyAccessor(getter, propertyDescriptor);
             resolveAnnotationArguments(accessorScope, getter);
-            resolveFunctionBody(fieldAccessTrackingTrace, getter, getterDescriptor, accessorScope);
+            accessorScopes.put(getter, accessorScope);
         }
 
         JetPropertyAccessor setter = property.getSetter();
-        PropertySetterDescriptor setterDescriptor = propertyDescriptor.getSetter();
-        if (setter != null && setterDescriptor != null) {
+        if (setter != null && propertyDescriptor.getSetter() != null) {
             JetScope accessorScope = makeScopeForPropertyAccessor(setter, propertyDescriptor);
             resolveAnnotationArguments(accessorScope, setter);
-            resolveFunctionBody(fieldAccessTrackingTrace, setter, setterDescriptor, accessorScope);
+            accessorScopes.put(setter, accessorScope);
+        }
+
+        return accessorScopes;
+    }
+
+    private void resolvePropertyAccessorBodies(
+            @NotNull BindingTrace trace,
+            @NotNull JetProperty property,
+            @NotNull PropertyDescriptor propertyDescriptor,
+            @NotNull Map<JetPropertyAccessor, JetScope> accessorScopes
+    ) {
+        ObservableBindingTrace fieldAccessTrackingTrace = createFieldTrackingTrace(trace, propertyDescriptor);
+
+        JetPropertyAccessor getter = property.getGetter();
+        PropertyGetterDescriptor getterDescriptor = propertyDescriptor.getGetter();
+        if (getter != null && getterDescriptor != null) {
+            resolveFunctionBody(fieldAccessTrackingTrace, getter, getterDescriptor, accessorScopes.get(getter));
+        }
+
+        JetPropertyAccessor setter = property.getSetter();
+        PropertySetterDescriptor setterDescriptor = propertyDescriptor.getSetter();
+        if (setter != null && setterDescriptor != null) {
+            resolveFunctionBody(fieldAccessTrackingTrace, setter, setterDescriptor, accessorScopes.get(setter));
         }
     }
 
-    private ObservableBindingTrace createFieldTrackingTrace(final PropertyDescriptor propertyDescriptor) {
+    private static ObservableBindingTrace createFieldTrackingTrace(final BindingTrace trace, final PropertyDescriptor propertyDescriptor) {
         return new ObservableBindingTrace(trace).addHandler(BindingContext.REFERENCE_TARGET, new ObservableBindingTrace.RecordHandler<JetReferenceExpression, DeclarationDescriptor>() {
             @Override
             public void handleRecord(WritableSlice<JetReferenceExpression, DeclarationDescriptor> slice, JetReferenceExpression expression, DeclarationDescriptor descriptor) {
@@ -522,6 +561,17 @@ public class BodyResolver {
             @NotNull JetExpression delegateExpression,
             @NotNull JetScope parentScopeForAccessor,
             @NotNull JetScope propertyScope
+    ) {
+        resolvePropertyDelegate(trace, jetProperty, propertyDescriptor, delegateExpression, parentScopeForAccessor, propertyScope);
+    }
+
+    private void resolvePropertyDelegate(
+            @NotNull BindingTrace trace,
+            @NotNull JetProperty jetProperty,
+            @NotNull PropertyDescriptor propertyDescriptor,
+            @NotNull JetExpression delegateExpression,
+            @NotNull JetScope parentScopeForAccessor,
+            @NotNull JetScope propertyScope
     ) {
         JetPropertyAccessor getter = jetProperty.getGetter();
         if (getter != null) {
@@ -556,6 +606,16 @@ public class BodyResolver {
             @NotNull PropertyDescriptor propertyDescriptor,
             @NotNull JetExpression initializer,
             @NotNull JetScope scope
+    ) {
+        resolvePropertyInitializer(trace, property, propertyDescriptor, initializer, scope);
+    }
+
+    private void resolvePropertyInitializer(
+            @NotNull BindingTrace trace,
+            @NotNull JetProperty property,
+            @NotNull PropertyDescriptor propertyDescriptor,
+            @NotNull JetExpression initializer,
+            @NotNull JetScope scope
     ) {
         JetScope propertyDeclarationInnerScope = JetScopeUtils.getPropertyDeclarationInnerScopeForInitializer(
                 scope, propertyDescriptor.getTypeParameters(), NO_RECEIVER_PARAMETER, trace);
@@ -577,22 +637,119 @@ public class BodyResolver {
     }
 
     private void resolveFunctionBodies() {
+        // Deferred return types and annotation arguments are resolved into the shared trace first, see resolveDeclarationBodies()
+        List<DeclarationBody> bodies = Lists.newArrayList();
         for (Map.Entry<JetNamedFunction, SimpleFunctionDescriptor> entry : this.context.getFunctions().entrySet()) {
-            JetNamedFunction declaration = entry.getKey();
-            SimpleFunctionDescriptor descriptor = entry.getValue();
+            final JetNamedFunction declaration = entry.getKey();
+            final SimpleFunctionDescriptor descriptor = entry.getValue();
 
             computeDeferredType(descriptor.getReturnType());
 
-            JetScope declaringScope = this.context.getDeclaringScopes().apply(declaration);
+            final JetScope declaringScope = this.context.getDeclaringScopes().apply(declaration);
             assert declaringScope != null;
 
             resolveAnnotationArguments(declaringScope, declaration);
-            resolveFunctionBody(trace, declaration, descriptor, declaringScope);
 
+            bodies.add(new DeclarationBody(declaration) {
+                @Override
+                public void resolve(@NotNull BindingTrace trace) {
+                    resolveFunctionBody(trace, declaration, descriptor, declaringScope);
+                }
+            });
+        }
+
+        resolveDeclarationBodies(bodies);
+
+        for (SimpleFunctionDescriptor descriptor : this.context.getFunctions().values()) {
             assert descriptor.getReturnType() != null;
         }
     }
 
+    /**
+     * Resolves the bodies in the declaration order. By this time everything that the bodies of other declarations may need
+     * is in the shared trace: deferred types (a body may need the type of another declaration) and annotation arguments.
+     *
+     * In parallel mode each body is resolved into its own trace. The shared trace is only read meanwhile
+     * (except by lazy Java resolution, so it must be thread-safe, see LockBasedBindingTrace), and the body traces
+     * are committed in the declaration order when all of them are done, so the result is the same as of the sequential mode.
+     */
+    private void resolveDeclarationBodies(@NotNull List<DeclarationBody> bodies) {
+        if (!topDownAnalysisParameters.isParallelBodyResolution() || bodies.size() <= 1) {
+            for (DeclarationBody body : bodies) {
+                body.resolve(trace);
+            }
+            return;
+        }
+
+        computeRecordedDeferredTypes();
+
+        List<DelegatingBindingTrace> bodyTraces = Lists.newArrayList();
+        int threads = Math.min(Runtime.getRuntime().availableProcessors(), bodies.size());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<DelegatingBindingTrace>> results = Lists.newArrayList();
+            for (final DeclarationBody body : bodies) {
+                results.add(executor.submit(new Callable<DelegatingBindingTrace>() {
+                    @Override
+                    public DelegatingBindingTrace call() {
+                        DelegatingBindingTrace bodyTrace = new DelegatingBindingTrace(
+                                trace.getBindingContext(), "trace to resolve a declaration body in parallel", body.declaration);
+                        body.resolve(bodyTrace);
+                        return bodyTrace;
+                    }
+                }));
+            }
+
+            for (Future<DelegatingBindingTrace> result : results) {
+                bodyTraces.add(getResult(result));
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        for (DelegatingBindingTrace bodyTrace : bodyTraces) {
+            bodyTrace.addAllMyDataTo(trace);
+        }
+    }
+
+    // Lazy values of deferred types are not thread-safe, so the bodies resolved in parallel must not be the first to compute any of them
+    private void computeRecordedDeferredTypes() {
+        int computed = 0;
+        while (true) {
+            Collection<Box<DeferredType>> keys = trace.getKeys(DEFERRED_TYPE);
+            List<Box<DeferredType>> deferredTypes = keys != null ? Lists.newArrayList(keys) : Collections.<Box<DeferredType>>emptyList();
+            if (deferredTypes.size() <= computed) return;
+
+            for (Box<DeferredType> deferredType : deferredTypes.subList(computed, deferredTypes.size())) {
+                try {
+                    computeDeferredType(deferredType.getData());
+                }
+                catch (ReenteringLazyValueComputationException e) {
+                    // A problem should be reported while computing the type
+                }
+            }
+            computed = deferredTypes.size();
+        }
+    }
+
+    @NotNull
+    private static <T> T getResult(@NotNull Future<T> future) {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while resolving function bodies", e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
     public void resolveFunctionBody(
             @NotNull BindingTrace trace,
             @NotNull JetDeclarationWithBody function,
@@ -675,4 +832,14 @@ public class BodyResolver {
         }
     }
 
+    private abstract static class DeclarationBody {
+        @NotNull
+        private final JetDeclaration declaration;
+
+        protected DeclarationBody(@NotNull JetDeclaration declaration) {
+            this.declaration = declaration;
+        }
+
+        public abstract void resolve(@NotNull BindingTrace trace);
+    }
 }
@@ -62,6 +62,20 @@ public class CachedBodiesResolveContext implements BodiesResolveContext {
         topDownAnalysisParameters = context.getTopDownAnalysisParameters();
     }
 
+    public CachedBodiesResolveContext(@NotNull BodiesResolveContext context, @NotNull TopDownAnalysisParameters parameters) {
+        files = context.getFiles();
+        classes = context.getClasses();
+        objects = context.getObjects();
+        properties = context.getProperties();
+        functions = context.getFunctions();
+        declaringScopes = context.getDeclaringScopes();
+        scripts = context.getScripts();
+        scriptScopes = context.getScriptScopes();
+        outerDataFlowInfo = context.getOuterDataFlowInfo();
+
+        topDownAnalysisParameters = parameters;
+    }
+
     @Override
     public Collection<JetFile> getFiles() {
         return files;
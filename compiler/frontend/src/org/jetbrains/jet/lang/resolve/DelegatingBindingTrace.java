@@ -31,7 +31,7 @@ import java.util.Map;
 
 public class DelegatingBindingTrace implements BindingTrace {
     @SuppressWarnings("ConstantConditions")
-    private final MutableSlicedMap map = BindingTraceContext.TRACK_REWRITES ? new TrackingSlicedMap(BindingTraceContext.TRACK_WITH_STACK_TRACES) : SlicedMapImpl.create();
+    private final MutableSlicedMap map = BindingTraceContext.TRACK_REWRITES ? new TrackingSlicedMap(BindingTraceContext.TRACK_WITH_STACK_TRACES) : PerSliceSlicedMap.create();
 
     private final BindingContext parentContext;
     private final List<Diagnostic> diagnostics = Lists.newArrayList();
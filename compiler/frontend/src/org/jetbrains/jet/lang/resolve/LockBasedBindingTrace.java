@@ -0,0 +1,112 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.jet.lang.resolve;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.TestOnly;
+import org.jetbrains.jet.lang.diagnostics.Diagnostic;
+import org.jetbrains.jet.util.slicedmap.ReadOnlySlice;
+import org.jetbrains.jet.util.slicedmap.WritableSlice;
+
+import java.util.Collection;
+
+/**
+ * Makes a trace safe to share between threads: every read and write of the original trace is done under a single lock,
+ * and collections are copied before they are returned.
+ * Nothing is resolved while the lock is held, so it may be taken under any other lock
+ */
+public class LockBasedBindingTrace implements BindingTrace {
+    private final BindingTrace originalTrace;
+    private final Object lock = new Object();
+
+    private final BindingContext bindingContext = new BindingContext() {
+        @NotNull
+        @Override
+        public Diagnostics getDiagnostics() {
+            synchronized (lock) {
+                Collection<Diagnostic> diagnostics = originalTrace.getBindingContext().getDiagnostics().noSuppression().all();
+                return new DiagnosticsWithSuppression(this, Lists.newArrayList(diagnostics));
+            }
+        }
+
+        @Override
+        public <K, V> V get(ReadOnlySlice<K, V> slice, K key) {
+            return LockBasedBindingTrace.this.get(slice, key);
+        }
+
+        @NotNull
+        @Override
+        public <K, V> Collection<K> getKeys(WritableSlice<K, V> slice) {
+            return LockBasedBindingTrace.this.getKeys(slice);
+        }
+
+        @NotNull
+        @TestOnly
+        @Override
+        public <K, V> ImmutableMap<K, V> getSliceContents(@NotNull ReadOnlySlice<K, V> slice) {
+            synchronized (lock) {
+                return originalTrace.getBindingContext().getSliceContents(slice);
+            }
+        }
+    };
+
+    public LockBasedBindingTrace(@NotNull BindingTrace originalTrace) {
+        this.originalTrace = originalTrace;
+    }
+
+    @Override
+    public BindingContext getBindingContext() {
+        return bindingContext;
+    }
+
+    @Override
+    public <K, V> void record(WritableSlice<K, V> slice, K key, V value) {
+        synchronized (lock) {
+            originalTrace.record(slice, key, value);
+        }
+    }
+
+    @Override
+    public <K> void record(WritableSlice<K, Boolean> slice, K key) {
+        record(slice, key, true);
+    }
+
+    @Override
+    public <K, V> V get(ReadOnlySlice<K, V> slice, K key) {
+        synchronized (lock) {
+            return originalTrace.get(slice, key);
+        }
+    }
+
+    @NotNull
+    @Override
+    public <K, V> Collection<K> getKeys(WritableSlice<K, V> slice) {
+        synchronized (lock) {
+            return Lists.newArrayList(originalTrace.getKeys(slice));
+        }
+    }
+
+    @Override
+    public void report(@NotNull Diagnostic diagnostic) {
+        synchronized (lock) {
+            originalTrace.report(diagnostic);
+        }
+    }
+}
@@ -32,16 +32,27 @@ public class TopDownAnalysisParameters {
     private final boolean declaredLocally;
     @NotNull
     private final List<AnalyzerScriptParameter> scriptParameters;
+    private final boolean parallelBodyResolution;
 
     public TopDownAnalysisParameters(
             @NotNull Predicate<PsiFile> analyzeCompletely,
             boolean analyzingBootstrapLibrary,
             boolean declaredLocally,
             @NotNull List<AnalyzerScriptParameter> scriptParameters) {
+        this(analyzeCompletely, analyzingBootstrapLibrary, declaredLocally, scriptParameters, false);
+    }
+
+    public TopDownAnalysisParameters(
+            @NotNull Predicate<PsiFile> analyzeCompletely,
+            boolean analyzingBootstrapLibrary,
+            boolean declaredLocally,
+            @NotNull List<AnalyzerScriptParameter> scriptParameters,
+            boolean parallelBodyResolution) {
         this.analyzeCompletely = analyzeCompletely;
         this.analyzingBootstrapLibrary = analyzingBootstrapLibrary;
         this.declaredLocally = declaredLocally;
         this.scriptParameters = scriptParameters;
+        this.parallelBodyResolution = parallelBodyResolution;
     }
 
     @NotNull
@@ -61,4 +72,13 @@ public class TopDownAnalysisParameters {
     public List<AnalyzerScriptParameter> getScriptParameters() {
         return scriptParameters;
     }
+
+    /**
+     * Experimental: resolve function bodies on several threads, see {@link BodyResolver}.
+     * The trace given to the analyzer must be thread-safe, see {@link LockBasedBindingTrace}.
+     * Only safe when the analyzed declarations are not resolved lazily by someone else at the same time.
+     */
+    public boolean isParallelBodyResolution() {
+        return parallelBodyResolution;
+    }
 }
@@ -16,15 +16,13 @@
 
 package org.jetbrains.jet.lang.resolve.calls.autocasts;
 
-import com.google.common.collect.ImmutableMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.jet.lang.types.JetType;
 
 import java.util.Set;
 
 public interface DataFlowInfo {
-    DataFlowInfo EMPTY = new DelegatingDataFlowInfo(null, ImmutableMap.<DataFlowValue, Nullability>of(),
-                                                    DelegatingDataFlowInfo.newTypeInfo());
+    DataFlowInfo EMPTY = PersistentDataFlowInfo.createEmpty();
 
     @NotNull
     Nullability getNullability(@NotNull DataFlowValue key);
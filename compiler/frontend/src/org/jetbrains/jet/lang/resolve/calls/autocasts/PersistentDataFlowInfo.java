@@ -0,0 +1,276 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.calls.autocasts;
+
+import com.google.common.collect.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.types.JetType;
+import org.jetbrains.jet.lang.types.TypeUtils;
+import org.jetbrains.jet.utils.PersistentHashMap;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.jetbrains.jet.lang.resolve.calls.autocasts.Nullability.NOT_NULL;
+
+/**
+ * Keeps all the facts in a single persistent map, so that lookups don't depend on the number of facts established before,
+ * and a new info shares everything it has not changed with the one it's derived from.
+ *
+ * Every modification works as if a layer of new facts was put on top of the existing ones: possible types of a value
+ * are enriched with their not-null versions according to its nullability at the moment the types are added.
+ */
+/* package */ class PersistentDataFlowInfo implements DataFlowInfo {
+    private static final ImmutableSetMultimap<DataFlowValue, JetType> EMPTY_TYPE_INFO = ImmutableSetMultimap.of();
+
+    private static final class ValueInfo {
+        /** {@code null} if nothing is known about the nullability of the value */
+        @Nullable
+        private final Nullability nullability;
+        /** Types established for the value, the latest ones go first */
+        @NotNull
+        private final ImmutableSet<JetType> rawTypes;
+        /** Raw types enriched with their not-null versions */
+        @NotNull
+        private final ImmutableSet<JetType> possibleTypes;
+
+        private ValueInfo(
+                @Nullable Nullability nullability,
+                @NotNull ImmutableSet<JetType> rawTypes,
+                @NotNull ImmutableSet<JetType> possibleTypes
+        ) {
+            this.nullability = nullability;
+            this.rawTypes = rawTypes;
+            this.possibleTypes = possibleTypes;
+        }
+    }
+
+    @NotNull
+    /* package */ static PersistentDataFlowInfo createEmpty() {
+        return new PersistentDataFlowInfo(PersistentHashMap.<DataFlowValue, ValueInfo>empty(), false);
+    }
+
+    @NotNull
+    private final PersistentHashMap<DataFlowValue, ValueInfo> values;
+
+    /** Whether the last modification has established any types */
+    private final boolean hasTypeInfo;
+
+    private PersistentDataFlowInfo(@NotNull PersistentHashMap<DataFlowValue, ValueInfo> values, boolean hasTypeInfo) {
+        this.values = values;
+        this.hasTypeInfo = hasTypeInfo;
+    }
+
+    @Override
+    @NotNull
+    public Nullability getNullability(@NotNull DataFlowValue key) {
+        if (!key.isStableIdentifier()) return key.getImmanentNullability();
+        ValueInfo info = values.get(key);
+        return info != null && info.nullability != null ? info.nullability : key.getImmanentNullability();
+    }
+
+    private boolean putNullability(@NotNull Map<DataFlowValue, Nullability> map, @NotNull DataFlowValue value, @NotNull Nullability nullability) {
+        if (!value.isStableIdentifier()) return false;
+        map.put(value, nullability);
+        return nullability != getNullability(value);
+    }
+
+    @Override
+    @NotNull
+    public Set<JetType> getPossibleTypes(@NotNull DataFlowValue key) {
+        ValueInfo info = values.get(key);
+        return info != null ? info.possibleTypes : getImmanentPossibleTypes(key);
+    }
+
+    @NotNull
+    private static ImmutableSet<JetType> getImmanentPossibleTypes(@NotNull DataFlowValue key) {
+        JetType originalType = key.getType();
+        if (!key.getImmanentNullability().canBeNull() && originalType.isNullable()) {
+            return ImmutableSet.of(TypeUtils.makeNotNullable(originalType));
+        }
+        return ImmutableSet.of();
+    }
+
+    @Override
+    @NotNull
+    public DataFlowInfo equate(@NotNull DataFlowValue a, @NotNull DataFlowValue b) {
+        Map<DataFlowValue, Nullability> builder = Maps.newHashMap();
+        Nullability nullabilityOfA = getNullability(a);
+        Nullability nullabilityOfB = getNullability(b);
+
+        boolean changed = false;
+        changed |= putNullability(builder, a, nullabilityOfA.refine(nullabilityOfB));
+        changed |= putNullability(builder, b, nullabilityOfB.refine(nullabilityOfA));
+        return changed ? addFacts(builder, EMPTY_TYPE_INFO) : this;
+    }
+
+    @Override
+    @NotNull
+    public DataFlowInfo disequate(@NotNull DataFlowValue a, @NotNull DataFlowValue b) {
+        Map<DataFlowValue, Nullability> builder = Maps.newHashMap();
+        Nullability nullabilityOfA = getNullability(a);
+        Nullability nullabilityOfB = getNullability(b);
+
+        boolean changed = false;
+        changed |= putNullability(builder, a, nullabilityOfA.refine(nullabilityOfB.invert()));
+        changed |= putNullability(builder, b, nullabilityOfB.refine(nullabilityOfA.invert()));
+        return changed ? addFacts(builder, EMPTY_TYPE_INFO) : this;
+    }
+
+    @Override
+    @NotNull
+    public DataFlowInfo establishSubtyping(@NotNull DataFlowValue value, @NotNull JetType type) {
+        if (value.getType().equals(type)) return this;
+        if (getPossibleTypes(value).contains(type)) return this;
+        ImmutableMap<DataFlowValue, Nullability> newNullabilityInfo =
+                type.isNullable() ? ImmutableMap.<DataFlowValue, Nullability>of() : ImmutableMap.of(value, NOT_NULL);
+        return addFacts(newNullabilityInfo, ImmutableSetMultimap.of(value, type));
+    }
+
+    @NotNull
+    @Override
+    public DataFlowInfo and(@NotNull DataFlowInfo otherInfo) {
+        if (otherInfo == EMPTY) return this;
+        if (this == EMPTY) return otherInfo;
+        if (this == otherInfo) return this;
+
+        assert otherInfo instanceof PersistentDataFlowInfo : "Unknown DataFlowInfo type: " + otherInfo;
+        PersistentDataFlowInfo other = (PersistentDataFlowInfo) otherInfo;
+
+        Map<DataFlowValue, Nullability> nullabilityMapBuilder = Maps.newHashMap();
+        SetMultimap<DataFlowValue, JetType> otherTypeInfo = LinkedHashMultimap.create();
+        boolean containsAllTypes = true;
+        for (Map.Entry<DataFlowValue, ValueInfo> entry : other.values) {
+            DataFlowValue key = entry.getKey();
+            ValueInfo otherValueInfo = entry.getValue();
+
+            Nullability otherFlags = otherValueInfo.nullability;
+            if (otherFlags != null) {
+                Nullability thisFlags = getNullability(key);
+                Nullability flags = thisFlags.and(otherFlags);
+                if (flags != thisFlags) {
+                    nullabilityMapBuilder.put(key, flags);
+                }
+            }
+
+            if (!otherValueInfo.rawTypes.isEmpty()) {
+                otherTypeInfo.putAll(key, otherValueInfo.rawTypes);
+                ValueInfo thisValueInfo = values.get(key);
+                if (thisValueInfo == null || !thisValueInfo.rawTypes.containsAll(otherValueInfo.rawTypes)) {
+                    containsAllTypes = false;
+                }
+            }
+        }
+
+        if (nullabilityMapBuilder.isEmpty() && containsAllTypes) {
+            return this;
+        }
+
+        return addFacts(nullabilityMapBuilder, otherTypeInfo);
+    }
+
+    @NotNull
+    @Override
+    public DataFlowInfo or(@NotNull DataFlowInfo otherInfo) {
+        if (otherInfo == EMPTY) return EMPTY;
+        if (this == EMPTY) return EMPTY;
+        if (this == otherInfo) return this;
+
+        assert otherInfo instanceof PersistentDataFlowInfo : "Unknown DataFlowInfo type: " + otherInfo;
+        PersistentDataFlowInfo other = (PersistentDataFlowInfo) otherInfo;
+
+        Map<DataFlowValue, Nullability> nullabilityMapBuilder = Maps.newHashMap();
+        SetMultimap<DataFlowValue, JetType> newTypeInfo = LinkedHashMultimap.create();
+        for (Map.Entry<DataFlowValue, ValueInfo> entry : other.values) {
+            DataFlowValue key = entry.getKey();
+            ValueInfo otherValueInfo = entry.getValue();
+
+            Nullability otherFlags = otherValueInfo.nullability;
+            if (otherFlags != null) {
+                nullabilityMapBuilder.put(key, getNullability(key).or(otherFlags));
+            }
+
+            ValueInfo thisValueInfo = values.get(key);
+            if (thisValueInfo != null && !otherValueInfo.rawTypes.isEmpty()) {
+                newTypeInfo.putAll(key, Sets.intersection(thisValueInfo.rawTypes, otherValueInfo.rawTypes));
+            }
+        }
+
+        if (nullabilityMapBuilder.isEmpty() && newTypeInfo.isEmpty()) {
+            return EMPTY;
+        }
+
+        return createEmpty().addFacts(nullabilityMapBuilder, newTypeInfo);
+    }
+
+    @NotNull
+    private PersistentDataFlowInfo addFacts(
+            @NotNull Map<DataFlowValue, Nullability> nullabilityInfo,
+            @NotNull SetMultimap<DataFlowValue, JetType> typeInfo
+    ) {
+        PersistentHashMap<DataFlowValue, ValueInfo> result = values;
+        for (DataFlowValue key : Sets.union(nullabilityInfo.keySet(), typeInfo.keySet())) {
+            ValueInfo oldInfo = values.get(key);
+            Nullability nullability = nullabilityInfo.containsKey(key)
+                                      ? nullabilityInfo.get(key)
+                                      : oldInfo != null ? oldInfo.nullability : null;
+            Nullability effectiveNullability =
+                    key.isStableIdentifier() && nullability != null ? nullability : key.getImmanentNullability();
+
+            Set<JetType> types = typeInfo.get(key);
+            ImmutableSet.Builder<JetType> possibleTypes = ImmutableSet.builder();
+            if (effectiveNullability.canBeNull()) {
+                possibleTypes.addAll(types);
+            }
+            else {
+                JetType originalType = key.getType();
+                if (originalType.isNullable()) {
+                    possibleTypes.add(TypeUtils.makeNotNullable(originalType));
+                }
+                for (JetType type : types) {
+                    possibleTypes.add(TypeUtils.makeNotNullable(type));
+                }
+            }
+
+            ImmutableSet.Builder<JetType> rawTypes = ImmutableSet.<JetType>builder().addAll(types);
+            if (oldInfo != null) {
+                possibleTypes.addAll(oldInfo.possibleTypes);
+                rawTypes.addAll(oldInfo.rawTypes);
+            }
+            else {
+                possibleTypes.addAll(getImmanentPossibleTypes(key));
+            }
+
+            result = result.put(key, new ValueInfo(nullability, rawTypes.build(), possibleTypes.build()));
+        }
+        return new PersistentDataFlowInfo(result, !typeInfo.isEmpty());
+    }
+
+    @Override
+    public boolean hasTypeInfoConstraints() {
+        return hasTypeInfo;
+    }
+
+    @Override
+    public String toString() {
+        if (values.isEmpty()) {
+            return "EMPTY";
+        }
+        return "Non-trivial DataFlowInfo";
+    }
+}
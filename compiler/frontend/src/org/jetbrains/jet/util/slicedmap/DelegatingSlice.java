@@ -53,6 +53,16 @@ public class DelegatingSlice<K, V> implements WritableSlice<K, V> {
         return delegate.makeKey(key);
     }
 
+    @Override
+    public WritableSlice<K, V> getStorageSlice() {
+        return delegate.getStorageSlice();
+    }
+
+    @Override
+    public K normalizeKey(K key) {
+        return delegate.normalizeKey(key);
+    }
+
     @Override
     public V computeValue(SlicedMap map, K key, V value, boolean valueNotFound) {
         return delegate.computeValue(map, key, value, valueNotFound);
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.util.slicedmap;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Multimaps;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.utils.CommonSuppliers;
+
+import java.util.*;
+
+/**
+ * Keeps a separate map for each slice, so that neither {@link #get} nor {@link #put} creates a {@link SlicedMapKey}.
+ * Absent values are told from {@code null} ones by a single lookup: {@code null} values are stored as {@link #NULL_VALUE}.
+ *
+ * The iteration order is the order of writes within each slice, slices go in the order of their first write.
+ */
+public class PerSliceSlicedMap implements MutableSlicedMap {
+
+    private static final Object NULL_VALUE = new Object() {
+        @Override
+        public String toString() {
+            return "NULL_VALUE";
+        }
+    };
+
+    public static PerSliceSlicedMap create() {
+        return new PerSliceSlicedMap();
+    }
+
+    private final Map<WritableSlice<?, ?>, Map<Object, Object>> sliceMaps = Maps.newLinkedHashMap();
+    private final Multimap<WritableSlice<?, ?>, Object> collectiveSliceKeys = Multimaps.newListMultimap(new HashMap<WritableSlice<?, ?>, Collection<Object>>(), CommonSuppliers.getArrayListSupplier());
+
+    protected PerSliceSlicedMap() {
+    }
+
+    @Override
+    public <K, V> void put(WritableSlice<K, V> slice, K key, V value) {
+        if (!slice.check(key, value)) {
+            return;
+        }
+
+        WritableSlice<K, V> storageSlice = slice.getStorageSlice();
+        K storageKey = slice.normalizeKey(key);
+        Map<Object, Object> sliceMap = sliceMaps.get(storageSlice);
+
+        RewritePolicy rewritePolicy = slice.getRewritePolicy();
+        if (sliceMap != null && rewritePolicy.rewriteProcessingNeeded(key)) {
+            Object oldValue = sliceMap.get(storageKey);
+            if (oldValue != null) {
+                //noinspection unchecked
+                if (!rewritePolicy.processRewrite(slice, key, (V) unescape(oldValue), value)) {
+                    return;
+                }
+            }
+        }
+
+        if (slice.isCollective()) {
+            collectiveSliceKeys.put(slice, key);
+        }
+
+        if (sliceMap == null) {
+            sliceMap = Maps.newLinkedHashMap();
+            sliceMaps.put(storageSlice, sliceMap);
+        }
+        sliceMap.put(storageKey, value == null ? NULL_VALUE : value);
+        slice.afterPut(this, key, value);
+    }
+
+    @Override
+    public void clear() {
+        sliceMaps.clear();
+    }
+
+    @Override
+    public <K, V> V get(ReadOnlySlice<K, V> slice, K key) {
+        Map<Object, Object> sliceMap = sliceMaps.get(slice.getStorageSlice());
+        Object value = sliceMap == null ? null : sliceMap.get(slice.normalizeKey(key));
+        //noinspection unchecked
+        return slice.computeValue(this, key, (V) unescape(value), value == null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> Collection<K> getKeys(WritableSlice<K, V> slice) {
+        assert slice.isCollective() : "Keys are not collected for slice " + slice;
+        return (Collection<K>) collectiveSliceKeys.get(slice);
+    }
+
+    @Override
+    public <K, V> V remove(RemovableSlice<K, V> slice, K key) {
+        Map<Object, Object> sliceMap = sliceMaps.get(slice.getStorageSlice());
+        if (sliceMap == null) return null;
+        //noinspection unchecked
+        return (V) unescape(sliceMap.remove(slice.normalizeKey(key)));
+    }
+
+    @NotNull
+    @Override
+    public Iterator<Map.Entry<SlicedMapKey<?, ?>, ?>> iterator() {
+        final Iterator<Map.Entry<WritableSlice<?, ?>, Map<Object, Object>>> slices = sliceMaps.entrySet().iterator();
+        return new Iterator<Map.Entry<SlicedMapKey<?, ?>, ?>>() {
+            private WritableSlice<?, ?> slice = null;
+            private Iterator<Map.Entry<Object, Object>> entries = Collections.<Map.Entry<Object, Object>>emptySet().iterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!entries.hasNext()) {
+                    if (!slices.hasNext()) return false;
+                    Map.Entry<WritableSlice<?, ?>, Map<Object, Object>> next = slices.next();
+                    slice = next.getKey();
+                    entries = next.getValue().entrySet().iterator();
+                }
+                return true;
+            }
+
+            @Override
+            public Map.Entry<SlicedMapKey<?, ?>, ?> next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                Map.Entry<Object, Object> entry = entries.next();
+                //noinspection unchecked
+                SlicedMapKey<?, ?> key = new SlicedMapKey<Object, Object>((WritableSlice<Object, Object>) slice, entry.getKey());
+                return new AbstractMap.SimpleImmutableEntry<SlicedMapKey<?, ?>, Object>(key, unescape(entry.getValue()));
+            }
+
+            @Override
+            public void remove() {
+                entries.remove();
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> ImmutableMap<K, V> getSliceContents(@NotNull ReadOnlySlice<K, V> slice) {
+        ImmutableMap.Builder<K, V> builder = ImmutableMap.builder();
+        Map<Object, Object> sliceMap = sliceMaps.get(slice.getStorageSlice());
+        if (sliceMap != null) {
+            for (Map.Entry<Object, Object> entry : sliceMap.entrySet()) {
+                builder.put((K) entry.getKey(), (V) unescape(entry.getValue()));
+            }
+        }
+        return builder.build();
+    }
+
+    private static Object unescape(Object value) {
+        return value == NULL_VALUE ? null : value;
+    }
+}
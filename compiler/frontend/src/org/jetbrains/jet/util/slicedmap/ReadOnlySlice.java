@@ -19,6 +19,16 @@ package org.jetbrains.jet.util.slicedmap;
 public interface ReadOnlySlice<K, V> {
     SlicedMapKey<K, V> makeKey(K key);
 
+    /**
+     * @return the same as {@code makeKey(key).getSlice()}, without creating a key
+     */
+    WritableSlice<K, V> getStorageSlice();
+
+    /**
+     * @return the same as {@code makeKey(key).getKey()}, without creating a key
+     */
+    K normalizeKey(K key);
+
     V computeValue(SlicedMap map, K key, V value, boolean valueNotFound);
 
     /**
@@ -111,8 +111,9 @@ public class SlicedMapImpl implements MutableSlicedMap {
     @Override
     public <K, V> ImmutableMap<K, V> getSliceContents(@NotNull ReadOnlySlice<K, V> slice) {
         ImmutableMap.Builder<K, V> builder = ImmutableMap.builder();
+        WritableSlice<K, V> storageSlice = slice.getStorageSlice();
         for (Map.Entry<SlicedMapKey<?, ?>, ?> entry : map.entrySet()) {
-            if (entry.getKey().getSlice() == slice) {
+            if (entry.getKey().getSlice() == storageSlice) {
                 builder.put((K) entry.getKey().getKey(), (V) entry.getValue());
             }
         }
@@ -17,18 +17,28 @@
 package org.jetbrains.jet.asJava;
 
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.Key;
 import com.intellij.psi.*;
 import com.intellij.psi.impl.PsiModificationTrackerImpl;
 import com.intellij.psi.impl.PsiTreeChangeEventImpl;
 import com.intellij.psi.impl.PsiTreeChangePreprocessor;
 import com.intellij.psi.util.PsiModificationTracker;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.JetNodeTypes;
 import org.jetbrains.jet.lang.psi.JetBlockExpression;
 import org.jetbrains.jet.lang.psi.JetClass;
+import org.jetbrains.jet.lang.psi.JetDeclaration;
 import org.jetbrains.jet.lang.psi.JetFile;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 public class JetCodeBlockModificationListener implements PsiTreeChangePreprocessor {
     private static final Logger LOG = Logger.getInstance("#org.jetbrains.jet.asJava.JetCodeBlockModificationListener");
     
+    private static final Key<Long> MODIFICATION_STAMP = Key.create("JET_MODIFICATION_STAMP");
+    private static final AtomicLong lastModificationStamp = new AtomicLong();
+
     private final PsiModificationTrackerImpl myModificationTracker;
 
     public JetCodeBlockModificationListener(PsiModificationTracker modificationTracker) {
@@ -47,9 +57,18 @@ public class JetCodeBlockModificationListener implements PsiTreeChangePreprocess
             case BEFORE_CHILD_REMOVAL:
                 break;
 
+            case CHILD_REPLACED:
+                if (isLazyBlockReplacement(event.getOldChild(), event.getChild())) {
+                    // The reparser replaces an edited body as a whole, what has changed is the inside of the block
+                    processChange(event.getChild(), event.getOldChild(), event.getChild());
+                }
+                else {
+                    processChange(event.getParent(), event.getOldChild(), event.getChild());
+                }
+                break;
+
             case CHILD_ADDED:
             case CHILD_REMOVED:
-            case CHILD_REPLACED:
                 processChange(event.getParent(), event.getOldChild(), event.getChild());
                 break;
 
@@ -61,7 +80,13 @@ public class JetCodeBlockModificationListener implements PsiTreeChangePreprocess
                 break;
 
             case CHILD_MOVED:
+                markModified(event.getOldParent());
+                markModified(event.getNewParent());
+                myModificationTracker.incCounter();
+                break;
+
             case PROPERTY_CHANGED:
+                markModified(event.getElement());
                 myModificationTracker.incCounter();
                 break;
 
@@ -71,8 +96,31 @@ public class JetCodeBlockModificationListener implements PsiTreeChangePreprocess
         }
     }
 
+    /**
+     * Returns a stamp that changes whenever anything inside the given declaration or file is modified.
+     * Unlike {@link PsiModificationTracker#MODIFICATION_COUNT} it stays the same when some other declaration is edited
+     */
+    public static long getModificationStamp(@NotNull PsiElement declarationOrFile) {
+        Long stamp = declarationOrFile.getUserData(MODIFICATION_STAMP);
+        return stamp == null ? 0 : stamp;
+    }
+
+    private static void markModified(@Nullable PsiElement element) {
+        long stamp = lastModificationStamp.incrementAndGet();
+        PsiElement current = element;
+        while (current != null && !(current instanceof PsiDirectory)) {
+            if (current instanceof JetDeclaration || current instanceof PsiFile) {
+                current.putUserData(MODIFICATION_STAMP, stamp);
+            }
+            if (current instanceof PsiFile) break;
+            current = current.getParent();
+        }
+    }
+
     private void processChange(PsiElement parent, PsiElement child1, PsiElement child2) {
         try {
+            markModified(parent);
+
             if (!isInsideCodeBlock(parent)) {
                 if (parent != null && parent.getContainingFile() instanceof JetFile) {
                     myModificationTracker.incCounter();
@@ -91,6 +139,12 @@ public class JetCodeBlockModificationListener implements PsiTreeChangePreprocess
         }
     }
 
+    private static boolean isLazyBlockReplacement(@Nullable PsiElement oldChild, @Nullable PsiElement newChild) {
+        if (!(oldChild instanceof JetBlockExpression) || !(newChild instanceof JetBlockExpression)) return false;
+        return oldChild.getNode().getElementType() == JetNodeTypes.LAZY_BLOCK
+               || newChild.getNode().getElementType() == JetNodeTypes.LAZY_BLOCK;
+    }
+
     private static boolean containsClassesInside(PsiElement element) {
         if (element == null) return false;
         if (element instanceof PsiClass) return true;
@@ -0,0 +1,41 @@
+class Delegate {
+    var metadata: PropertyMetadata? = null
+
+    fun get(t: Any?, p: PropertyMetadata): String {
+        if (metadata == null) {
+            metadata = p
+        }
+        return if (metadata === p) p.name else "fail: new metadata for ${p.name}"
+    }
+
+    fun set(t: Any?, p: PropertyMetadata, value: String) {
+        get(t, p)
+    }
+}
+
+val topLevel by Delegate()
+
+val sharedDelegate = Delegate()
+
+class A {
+    val a by Delegate()
+    var b by Delegate()
+    val shared by sharedDelegate
+
+    class object {
+        val c by Delegate()
+    }
+}
+
+fun box(): String {
+    for (i in 0..2) {
+        if (topLevel != "topLevel") return topLevel
+        val x = A()
+        if (x.a != "a") return x.a
+        x.b = "b"
+        if (x.b != "b") return x.b
+        if (x.shared != "shared") return x.shared
+        if (A.c != "c") return A.c
+    }
+    return "OK"
+}
@@ -0,0 +1,19 @@
+class Delegate {
+    fun get(t: Any?, p: PropertyMetadata): String = p.name
+}
+
+val x by Delegate()
+val y = x
+
+class A {
+    class object {
+        val z by Delegate()
+        val w = z
+    }
+}
+
+fun box(): String {
+    if (y != "x") return "fail top level: $y"
+    if (A.w != "z") return "fail class object: ${A.w}"
+    return "OK"
+}
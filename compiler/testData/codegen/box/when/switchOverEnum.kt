@@ -0,0 +1,32 @@
+enum class Season {
+    WINTER
+    SPRING
+    SUMMER
+    AUTUMN
+}
+
+fun isWarm(season: Season?): Boolean = when (season) {
+    Season.SPRING, Season.SUMMER -> true
+    Season.WINTER, Season.AUTUMN -> false
+    else -> false
+}
+
+fun name(season: Season): String {
+    var result = "none"
+    when (season) {
+        Season.WINTER -> result = "winter"
+        Season.AUTUMN -> result = "autumn"
+    }
+    return result
+}
+
+fun box(): String {
+    if (!isWarm(Season.SPRING)) return "Fail 1"
+    if (!isWarm(Season.SUMMER)) return "Fail 2"
+    if (isWarm(Season.WINTER)) return "Fail 3"
+    if (isWarm(null)) return "Fail 4"
+    if (name(Season.WINTER) != "winter") return "Fail 5"
+    if (name(Season.AUTUMN) != "autumn") return "Fail 6"
+    if (name(Season.SUMMER) != "none") return "Fail 7"
+    return "OK"
+}
@@ -0,0 +1,43 @@
+fun dense(x: Int): String = when (x) {
+    1 -> "one"
+    2, 3 -> "two or three"
+    4 -> "four"
+    5 -> "five"
+    2 -> "unreachable"
+    else -> "other"
+}
+
+fun sparse(x: Int): Int = when (x) {
+    -1000000 -> 1
+    0 -> 2
+    1000000 -> 3
+    2147483647 -> 4
+    else -> 5
+}
+
+fun char(c: Char): String = when (c) {
+    'a', 'e', 'i', 'o', 'u' -> "vowel"
+    ' ' -> "space"
+    else -> "consonant"
+}
+
+fun box(): String {
+    if (dense(1) != "one") return "Fail 1"
+    if (dense(2) != "two or three") return "Fail 2"
+    if (dense(3) != "two or three") return "Fail 3"
+    if (dense(5) != "five") return "Fail 5"
+    if (dense(0) != "other") return "Fail 0"
+    if (dense(6) != "other") return "Fail 6"
+
+    if (sparse(-1000000) != 1) return "Fail sparse 1"
+    if (sparse(0) != 2) return "Fail sparse 2"
+    if (sparse(1000000) != 3) return "Fail sparse 3"
+    if (sparse(2147483647) != 4) return "Fail sparse 4"
+    if (sparse(42) != 5) return "Fail sparse 5"
+
+    if (char('e') != "vowel") return "Fail char 1"
+    if (char(' ') != "space") return "Fail char 2"
+    if (char('x') != "consonant") return "Fail char 3"
+
+    return "OK"
+}
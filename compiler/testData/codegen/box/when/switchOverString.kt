@@ -0,0 +1,20 @@
+fun parse(s: String?): Int = when (s) {
+    "zero" -> 0
+    "one" -> 1
+    // "Aa" and "BB" have the same hash code
+    "Aa" -> 2
+    "BB" -> 3
+    "" -> 4
+    else -> -1
+}
+
+fun box(): String {
+    if (parse("zero") != 0) return "Fail 0"
+    if (parse("one") != 1) return "Fail 1"
+    if (parse("Aa") != 2) return "Fail 2"
+    if (parse("BB") != 3) return "Fail 3"
+    if (parse("") != 4) return "Fail 4"
+    if (parse("two") != -1) return "Fail 5"
+    if (parse(null) != -1) return "Fail 6"
+    return "OK"
+}
@@ -0,0 +1,24 @@
+fun callerName(): String = Throwable().getStackTrace()!![1]!!.getMethodName()!!
+
+fun box(): String {
+    var sum = 0
+    intArray(1, 2, 3).forEach { sum += it }
+    if (sum != 6) return "fail 1: $sum"
+
+    val result = StringBuilder()
+    for (s in listOf("a", "b")) {
+        listOf(s, s.toUpperCase()).forEach {
+            result.append(it)
+        }
+    }
+    if (result.toString() != "aAbB") return "fail 2: $result"
+
+    var caller = ""
+    listOf(1).forEach { caller = callerName() }
+    if (caller != "box") return "fail 3: literal is generated to $caller"
+
+    if (!listOf(1, 2, 3).all { it > 0 }) return "fail 4"
+    if (listOf(1, 2, 3).count { x -> x % 2 == 1 } != 2) return "fail 5"
+
+    return "OK"
+}
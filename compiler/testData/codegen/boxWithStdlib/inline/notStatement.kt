@@ -0,0 +1,20 @@
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+fun callerName(): String = Throwable().getStackTrace()!![1]!!.getMethodName()!!
+
+fun concat(a: String, b: String) = a + b
+
+fun box(): String {
+    val lock = ReentrantLock()
+
+    // The lock handler would clear "O" from the stack, so the call is not inlined
+    val result = concat("O", lock.withLock { "K" })
+    if (result != "OK") return "fail 1: $result"
+
+    val caller = concat("", lock.withLock { callerName() })
+    if (caller == "box") return "fail 2: literal is inlined at a non-empty stack"
+
+    val f = { "OK" }
+    return lock.withLock(f)
+}
@@ -0,0 +1,28 @@
+import java.io.Closeable
+
+class Resource : Closeable {
+    var closed = false
+
+    override fun close() {
+        closed = true
+    }
+}
+
+fun box(): String {
+    val resource = Resource()
+    val length = resource.use { r -> if (r.closed) -1 else "OK".length }
+    if (length != 2) return "fail 1: $length"
+    if (!resource.closed) return "fail 2: resource is not closed"
+
+    val failing = Resource()
+    try {
+        failing.use { throw UnsupportedOperationException() }
+        return "fail 3: exception is not rethrown"
+    }
+    catch (e: UnsupportedOperationException) {
+        // expected
+    }
+    if (!failing.closed) return "fail 4: resource is not closed"
+
+    return "OK"
+}
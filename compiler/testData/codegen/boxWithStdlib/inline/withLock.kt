@@ -0,0 +1,32 @@
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+fun callerName(): String = Throwable().getStackTrace()!![1]!!.getMethodName()!!
+
+fun box(): String {
+    val lock = ReentrantLock()
+
+    var counter = 0
+    lock.withLock {
+        counter++
+    }
+    if (counter != 1) return "fail 1: $counter"
+
+    val caller = lock.withLock { callerName() }
+    if (caller != "box") return "fail 2: literal is generated to $caller"
+
+    try {
+        lock.withLock {
+            throw IllegalStateException()
+        }
+    }
+    catch (e: IllegalStateException) {
+        // expected
+    }
+    if (lock.isLocked()) return "fail 3: lock is not released"
+
+    val held = lock.withLock { lock.isHeldByCurrentThread() }
+    if (!held) return "fail 4"
+
+    return lock.withLock { "O" } + "K"
+}
@@ -0,0 +1,19 @@
+class Delegate {
+    fun get(t: Any?, p: PropertyMetadata): Int = 0
+    fun set(t: Any?, p: PropertyMetadata, value: Int) {}
+}
+
+val topLevel by Delegate()
+
+class A {
+    val a by Delegate()
+    var b by Delegate()
+}
+
+fun test(x: A): Int {
+    x.b = x.a + topLevel
+    return x.b
+}
+
+// 3 NEW jet/PropertyMetadataImpl
+// 4 GETSTATIC .*\.\$propertyMetadata
@@ -0,0 +1,15 @@
+enum class E {
+    A
+    B
+    C
+}
+
+fun foo(e: E): Int = when (e) {
+    E.A -> 1
+    E.B -> 2
+    E.C -> 3
+}
+
+// 1 java/lang/Enum.ordinal
+// 1 TABLESWITCH
+// 0 areEqual
@@ -0,0 +1,10 @@
+fun foo(x: Int): Int = when (x) {
+    1 -> 10
+    1000 -> 20
+    1000000 -> 30
+    else -> 0
+}
+
+// 0 TABLESWITCH
+// 1 LOOKUPSWITCH
+// 0 IF_ICMPNE
@@ -0,0 +1,10 @@
+fun foo(s: String): Int = when (s) {
+    "a" -> 1
+    "b" -> 2
+    "c" -> 3
+    else -> 0
+}
+
+// 1 java/lang/String.hashCode
+// 3 java/lang/String.equals
+// 0 areEqual
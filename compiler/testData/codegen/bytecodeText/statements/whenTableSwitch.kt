@@ -0,0 +1,11 @@
+fun foo(x: Int): Int = when (x) {
+    1 -> 10
+    2 -> 20
+    3 -> 30
+    4 -> 40
+    else -> 0
+}
+
+// 1 TABLESWITCH
+// 0 LOOKUPSWITCH
+// 0 IF_ICMPNE
@@ -0,0 +1,349 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.jet.cfg;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.JetLiteFixture;
+import org.jetbrains.jet.JetTestCaseBuilder;
+import org.jetbrains.jet.JetTestUtils;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.lang.cfg.BitSetDataFlow;
+import org.jetbrains.jet.lang.cfg.PseudocodeTraverser;
+import org.jetbrains.jet.lang.cfg.PseudocodeTraverser.*;
+import org.jetbrains.jet.lang.cfg.PseudocodeVariablesData;
+import org.jetbrains.jet.lang.cfg.PseudocodeVariablesData.VariableInitState;
+import org.jetbrains.jet.lang.cfg.PseudocodeVariablesData.VariableUseState;
+import org.jetbrains.jet.lang.cfg.PseudocodeVariablesData.VariableUseStatusData;
+import org.jetbrains.jet.lang.cfg.pseudocode.*;
+import org.jetbrains.jet.lang.descriptors.VariableDescriptor;
+import org.jetbrains.jet.lang.psi.JetDeclaration;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.psi.JetProperty;
+import org.jetbrains.jet.lang.resolve.BindingContext;
+
+import java.io.File;
+import java.util.*;
+
+import static org.jetbrains.jet.lang.cfg.PseudocodeTraverser.LookInsideStrategy.ANALYSE_LOCAL_DECLARATIONS;
+import static org.jetbrains.jet.lang.cfg.PseudocodeTraverser.LookInsideStrategy.SKIP_LOCAL_DECLARATIONS;
+import static org.jetbrains.jet.lang.cfg.PseudocodeTraverser.TraversalOrder.BACKWARD;
+import static org.jetbrains.jet.lang.cfg.PseudocodeTraverser.TraversalOrder.FORWARD;
+
+/**
+ * Checks that the bit set based variable data is the same as the one computed by {@link PseudocodeTraverser#collectData}
+ * over maps, which is how it used to be computed, for the control flow test data
+ */
+public class PseudocodeVariablesDataTest extends JetLiteFixture {
+    static {
+        System.setProperty("idea.platform.prefix", "Idea");
+    }
+
+    private final String myName;
+    private BindingContext bindingContext;
+
+    public PseudocodeVariablesDataTest(String dataPath, String name) {
+        super(dataPath);
+        myName = name;
+    }
+
+    @Override
+    protected JetCoreEnvironment createEnvironment() {
+        return createEnvironmentWithMockJdk(ConfigurationKind.JDK_ONLY);
+    }
+
+    @Override
+    public String getName() {
+        return "test" + myName;
+    }
+
+    @Override
+    protected void runTest() throws Throwable {
+        JetFile file = loadPsiFile(myName + ".kt");
+        bindingContext = JetTestUtils.analyzeFile(file).getBindingContext();
+        for (JetDeclaration declaration : file.getDeclarations()) {
+            Pseudocode pseudocode = PseudocodeUtil.generatePseudocode(declaration, bindingContext);
+            checkDataFlow(pseudocode);
+            checkVariableInitializers(pseudocode);
+            checkVariableUseStatus(pseudocode);
+        }
+    }
+
+    private void checkDataFlow(@NotNull Pseudocode pseudocode) {
+        BitSet initial = new BitSet();
+        initial.set(READ);
+        for (TraversalOrder traversalOrder : TraversalOrder.values()) {
+            for (LookInsideStrategy lookInside : LookInsideStrategy.values()) {
+                Map<Instruction, Edges<BitSet>> expected = PseudocodeTraverser.collectData(
+                        pseudocode, traversalOrder, lookInside, new BitSet(), initial, new InstructionDataMergeStrategy<BitSet>() {
+                    @Override
+                    public Edges<BitSet> execute(@NotNull Instruction instruction, @NotNull Collection<BitSet> incomingEdgesData) {
+                        BitSet in = new BitSet();
+                        for (BitSet edgeData : incomingEdgesData) {
+                            in.or(edgeData);
+                        }
+                        BitSet out = (BitSet) in.clone();
+                        LAST_ACCESS.apply(instruction, out);
+                        return Edges.create(in, out);
+                    }
+                });
+                Map<Instruction, Edges<BitSet>> actual = BitSetDataFlow.solve(pseudocode, traversalOrder, lookInside, initial, LAST_ACCESS);
+
+                String message = traversalOrder + ", " + lookInside + ": ";
+                assertEquals(message, expected.keySet(), actual.keySet());
+                for (Instruction instruction : expected.keySet()) {
+                    assertEquals(message + instruction, expected.get(instruction), actual.get(instruction));
+                }
+            }
+        }
+    }
+
+    private static final int READ = 0;
+    private static final int WRITTEN = 1;
+
+    // Whether a variable has been read or written last
+    private static final BitSetDataFlow.Transfer LAST_ACCESS = new BitSetDataFlow.Transfer() {
+        @Override
+        public boolean canChange(@NotNull Instruction instruction) {
+            return instruction instanceof ReadValueInstruction || instruction instanceof WriteValueInstruction;
+        }
+
+        @Override
+        public void apply(@NotNull Instruction instruction, @NotNull BitSet facts) {
+            if (!canChange(instruction)) return;
+            boolean isRead = instruction instanceof ReadValueInstruction;
+            facts.set(READ, isRead);
+            facts.set(WRITTEN, !isRead);
+        }
+    };
+
+    private void checkVariableInitializers(@NotNull Pseudocode pseudocode) {
+        PseudocodeVariablesData pseudocodeVariablesData = new PseudocodeVariablesData(pseudocode, bindingContext);
+        Map<Instruction, Edges<Map<VariableDescriptor, InitState>>> expected = collectVariableInitializers(pseudocode, pseudocodeVariablesData);
+        Map<Instruction, Edges<Map<VariableDescriptor, VariableInitState>>> actual = pseudocodeVariablesData.getVariableInitializers();
+
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Instruction instruction : expected.keySet()) {
+            Edges<Map<VariableDescriptor, InitState>> expectedEdges = expected.get(instruction);
+            Edges<Map<VariableDescriptor, VariableInitState>> actualEdges = actual.get(instruction);
+            assertEquals("in: " + instruction, expectedEdges.in, toInitStates(actualEdges.in));
+            assertEquals("out: " + instruction, expectedEdges.out, toInitStates(actualEdges.out));
+        }
+    }
+
+    private void checkVariableUseStatus(@NotNull Pseudocode pseudocode) {
+        PseudocodeVariablesData pseudocodeVariablesData = new PseudocodeVariablesData(pseudocode, bindingContext);
+        final Set<VariableDescriptor> usedVariables = pseudocodeVariablesData.getUsedVariables(pseudocode);
+        final Map<Instruction, Edges<Map<VariableDescriptor, VariableUseState>>> expected = collectVariableUseStatus(pseudocode, usedVariables);
+        final VariableUseStatusData actual = pseudocodeVariablesData.getVariableUseStatusData();
+
+        PseudocodeTraverser.traverse(pseudocode, BACKWARD, new InstructionAnalyzeStrategy() {
+            @Override
+            public void execute(@NotNull Instruction instruction) {
+                Edges<Map<VariableDescriptor, VariableUseState>> expectedEdges = expected.get(instruction);
+                for (VariableDescriptor variable : usedVariables) {
+                    String message = variable.getName() + " at " + instruction;
+                    assertEquals("in: " + message, expectedEdges != null ? expectedEdges.in.get(variable) : null,
+                                 actual.getEnterState(instruction, variable));
+                    assertEquals("out: " + message, expectedEdges != null ? expectedEdges.out.get(variable) : null,
+                                 actual.getExitState(instruction, variable));
+                }
+            }
+        });
+    }
+
+    @NotNull
+    private static Map<VariableDescriptor, InitState> toInitStates(@NotNull Map<VariableDescriptor, VariableInitState> states) {
+        Map<VariableDescriptor, InitState> result = Maps.newHashMap();
+        for (Map.Entry<VariableDescriptor, VariableInitState> entry : states.entrySet()) {
+            result.put(entry.getKey(), new InitState(entry.getValue().isInitialized, entry.getValue().isDeclared));
+        }
+        return result;
+    }
+
+    private static class InitState {
+        private final boolean isInitialized;
+        private final boolean isDeclared;
+
+        private InitState(boolean isInitialized, boolean isDeclared) {
+            this.isInitialized = isInitialized;
+            this.isDeclared = isDeclared;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof InitState)) return false;
+            InitState state = (InitState) o;
+            return isInitialized == state.isInitialized && isDeclared == state.isDeclared;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (isInitialized ? 1 : 0) + (isDeclared ? 1 : 0);
+        }
+
+        @Override
+        public String toString() {
+            return "initialized=" + isInitialized + ", declared=" + isDeclared;
+        }
+    }
+
+    // The map based computations below are the ones PseudocodeVariablesData used before the bit sets
+
+    @NotNull
+    private Map<Instruction, Edges<Map<VariableDescriptor, InitState>>> collectVariableInitializers(
+            @NotNull Pseudocode pseudocode,
+            @NotNull PseudocodeVariablesData pseudocodeVariablesData
+    ) {
+        Set<VariableDescriptor> usedVariables = pseudocodeVariablesData.getUsedVariables(pseudocode);
+        Set<VariableDescriptor> declaredVariables = pseudocodeVariablesData.getDeclaredVariables(pseudocode, false);
+        Map<VariableDescriptor, InitState> initialMapForStartInstruction = Maps.newHashMap();
+        for (VariableDescriptor variable : usedVariables) {
+            initialMapForStartInstruction.put(variable, new InitState(!declaredVariables.contains(variable), false));
+        }
+
+        Map<Instruction, Edges<Map<VariableDescriptor, InitState>>> result = PseudocodeTraverser.collectData(
+                pseudocode, FORWARD, SKIP_LOCAL_DECLARATIONS, Collections.<VariableDescriptor, InitState>emptyMap(),
+                initialMapForStartInstruction, new InstructionDataMergeStrategy<Map<VariableDescriptor, InitState>>() {
+            @Override
+            public Edges<Map<VariableDescriptor, InitState>> execute(
+                    @NotNull Instruction instruction, @NotNull Collection<Map<VariableDescriptor, InitState>> incomingEdgesData
+            ) {
+                Map<VariableDescriptor, InitState> enterInstructionData = mergeInitializers(incomingEdgesData);
+                return Edges.create(enterInstructionData, addInitStateFromInstruction(instruction, enterInstructionData));
+            }
+        });
+
+        for (LocalDeclarationInstruction localDeclarationInstruction : pseudocode.getLocalDeclarations()) {
+            result.putAll(collectVariableInitializers(localDeclarationInstruction.getBody(), pseudocodeVariablesData));
+        }
+        return result;
+    }
+
+    @NotNull
+    private static Map<VariableDescriptor, InitState> mergeInitializers(@NotNull Collection<Map<VariableDescriptor, InitState>> incomingEdgesData) {
+        Set<VariableDescriptor> variablesInScope = Sets.newHashSet();
+        for (Map<VariableDescriptor, InitState> edgeData : incomingEdgesData) {
+            variablesInScope.addAll(edgeData.keySet());
+        }
+
+        Map<VariableDescriptor, InitState> enterInstructionData = Maps.newHashMap();
+        for (VariableDescriptor variable : variablesInScope) {
+            boolean isInitialized = true;
+            boolean isDeclared = true;
+            for (Map<VariableDescriptor, InitState> edgeData : incomingEdgesData) {
+                InitState initState = edgeData.get(variable);
+                if (initState != null) {
+                    isInitialized &= initState.isInitialized;
+                    isDeclared &= initState.isDeclared;
+                }
+            }
+            enterInstructionData.put(variable, new InitState(isInitialized, isDeclared));
+        }
+        return enterInstructionData;
+    }
+
+    @NotNull
+    private Map<VariableDescriptor, InitState> addInitStateFromInstruction(
+            @NotNull Instruction instruction,
+            @NotNull Map<VariableDescriptor, InitState> enterInstructionData
+    ) {
+        if (!(instruction instanceof WriteValueInstruction) && !(instruction instanceof VariableDeclarationInstruction)) {
+            return enterInstructionData;
+        }
+        VariableDescriptor variable = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, false, bindingContext);
+        if (variable == null) {
+            return enterInstructionData;
+        }
+        Map<VariableDescriptor, InitState> exitInstructionData = Maps.newHashMap(enterInstructionData);
+        InitState enterInitState = enterInstructionData.get(variable);
+        if (instruction instanceof WriteValueInstruction) {
+            boolean isDeclared = ((WriteValueInstruction) instruction).getElement() instanceof JetProperty ||
+                                 (enterInitState != null && enterInitState.isDeclared);
+            exitInstructionData.put(variable, new InitState(true, isDeclared));
+        }
+        else if (enterInitState == null || !enterInitState.isInitialized || !enterInitState.isDeclared) {
+            exitInstructionData.put(variable, new InitState(enterInitState != null && enterInitState.isInitialized, true));
+        }
+        return exitInstructionData;
+    }
+
+    @NotNull
+    private Map<Instruction, Edges<Map<VariableDescriptor, VariableUseState>>> collectVariableUseStatus(
+            @NotNull Pseudocode pseudocode,
+            @NotNull Set<VariableDescriptor> usedVariables
+    ) {
+        Map<VariableDescriptor, VariableUseState> sinkInstructionData = Maps.newHashMap();
+        for (VariableDescriptor usedVariable : usedVariables) {
+            sinkInstructionData.put(usedVariable, VariableUseState.UNUSED);
+        }
+        return PseudocodeTraverser.collectData(
+                pseudocode, BACKWARD, ANALYSE_LOCAL_DECLARATIONS, Collections.<VariableDescriptor, VariableUseState>emptyMap(),
+                sinkInstructionData, new InstructionDataMergeStrategy<Map<VariableDescriptor, VariableUseState>>() {
+            @Override
+            public Edges<Map<VariableDescriptor, VariableUseState>> execute(
+                    @NotNull Instruction instruction, @NotNull Collection<Map<VariableDescriptor, VariableUseState>> incomingEdgesData
+            ) {
+                Map<VariableDescriptor, VariableUseState> enterResult = Maps.newHashMap();
+                for (Map<VariableDescriptor, VariableUseState> edgeData : incomingEdgesData) {
+                    for (Map.Entry<VariableDescriptor, VariableUseState> entry : edgeData.entrySet()) {
+                        enterResult.put(entry.getKey(), mergeUseStates(entry.getValue(), enterResult.get(entry.getKey())));
+                    }
+                }
+                VariableDescriptor variableDescriptor = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, true, bindingContext);
+                if (variableDescriptor == null ||
+                    (!(instruction instanceof ReadValueInstruction) && !(instruction instanceof WriteValueInstruction))) {
+                    return Edges.create(enterResult, enterResult);
+                }
+                Map<VariableDescriptor, VariableUseState> exitResult = Maps.newHashMap(enterResult);
+                if (instruction instanceof ReadValueInstruction) {
+                    exitResult.put(variableDescriptor, VariableUseState.LAST_READ);
+                }
+                else {
+                    VariableUseState variableUseState = enterResult.get(variableDescriptor);
+                    boolean isRead = variableUseState == VariableUseState.LAST_READ || variableUseState == VariableUseState.LAST_WRITTEN;
+                    exitResult.put(variableDescriptor, isRead ? VariableUseState.LAST_WRITTEN : VariableUseState.ONLY_WRITTEN_NEVER_READ);
+                }
+                return Edges.create(enterResult, exitResult);
+            }
+        });
+    }
+
+    // The states are declared from the most important one to the least important one
+    @NotNull
+    private static VariableUseState mergeUseStates(@NotNull VariableUseState state, @Nullable VariableUseState other) {
+        return other == null || state.ordinal() < other.ordinal() ? state : other;
+    }
+
+    public static TestSuite suite() {
+        TestSuite suite = new TestSuite();
+        suite.addTest(JetTestCaseBuilder.suiteForDirectory(JetTestCaseBuilder.getTestDataPathBase(), "/cfg/", true, new JetTestCaseBuilder.NamedTestFactory() {
+            @NotNull
+            @Override
+            public Test createTest(@NotNull String dataPath, @NotNull String name, @NotNull File file) {
+                return new PseudocodeVariablesDataTest(dataPath, name);
+            }
+        }));
+        return suite;
+    }
+}
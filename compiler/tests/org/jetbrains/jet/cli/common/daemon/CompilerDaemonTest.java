@@ -0,0 +1,195 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.common.daemon;
+
+import junit.framework.TestCase;
+import org.jetbrains.jet.JetTestUtils;
+import org.jetbrains.jet.cli.common.ExitCode;
+import org.jetbrains.jet.lang.resolve.java.PackageClassUtils;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+public class CompilerDaemonTest extends TestCase {
+    private CompilerDaemon daemon;
+    private Thread daemonThread;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        System.setProperty(CompilerDaemonProtocol.SECRETS_DIRECTORY_PROPERTY, JetTestUtils.tmpDir("daemonSecrets").getPath());
+        daemon = new CompilerDaemon(0, 4);
+        daemonThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                daemon.run();
+            }
+        }, "Compiler daemon");
+        daemonThread.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        daemon.shutdown();
+        daemonThread.join();
+        System.clearProperty(CompilerDaemonProtocol.SECRETS_DIRECTORY_PROPERTY);
+        super.tearDown();
+    }
+
+    public void testCompile() throws Exception {
+        File outputDir = JetTestUtils.tmpDirForTest(this);
+        assertEquals(ExitCode.OK.getCode(), compile(outputDir));
+        assertTrue(new File(outputDir, PackageClassUtils.getPackageClassName(FqName.ROOT) + ".class").isFile());
+    }
+
+    public void testConcurrentCompilations() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < 8; i++) {
+                final File outputDir = JetTestUtils.tmpDir("daemon" + i);
+                futures.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws IOException {
+                        return compile(outputDir);
+                    }
+                }));
+            }
+            for (Future<Integer> future : futures) {
+                assertEquals(ExitCode.OK.getCode(), (int) future.get(5, TimeUnit.MINUTES));
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testUnknownCompiler() throws Exception {
+        try {
+            CompilerDaemonClient.compile(daemon.getPort(), "java.lang.String", new String[0], new PrintStream(new ByteArrayOutputStream()));
+            fail("Unknown compiler should be rejected");
+        }
+        catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("java.lang.String"));
+        }
+    }
+
+    public void testRelativePathsResolvedAgainstClient() throws Exception {
+        File outputDir = JetTestUtils.tmpDirForTest(this);
+        String[] arguments = {"-src", "simple.kt", "-output", outputDir.getAbsolutePath()};
+        Integer exitCode = CompilerDaemonClient.compile(daemon.getPort(), new File("compiler/testData/cli").getAbsoluteFile(),
+                                                        CompilerDaemonProtocol.K2JVM_COMPILER, arguments,
+                                                        new PrintStream(new ByteArrayOutputStream()));
+        assertEquals(ExitCode.OK.getCode(), (int) exitCode);
+        assertTrue(new File(outputDir, PackageClassUtils.getPackageClassName(FqName.ROOT) + ".class").isFile());
+    }
+
+    public void testSecretFile() throws Exception {
+        File secretFile = CompilerDaemonProtocol.getSecretFile(daemon.getPort());
+        assertTrue(secretFile.isFile());
+        assertTrue(secretFile.canRead());
+
+        tearDown();
+        assertFalse(secretFile.exists());
+        setUp();
+    }
+
+    public void testWrongSecret() throws Exception {
+        String response = sendRequest("wrong", new File("").getAbsolutePath());
+        assertTrue(response, response.startsWith(CompilerDaemonProtocol.REJECTED + " Wrong secret"));
+    }
+
+    public void testOversizedStringRejected() throws Exception {
+        Socket socket = new Socket(InetAddress.getByName(null), daemon.getPort());
+        try {
+            DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+            output.writeInt(CompilerDaemonProtocol.VERSION);
+            output.writeInt(CompilerDaemonProtocol.MAX_STRING_LENGTH + 1);
+            output.flush();
+
+            // The daemon drops the connection without reading the string
+            assertEquals(-1, socket.getInputStream().read());
+        }
+        finally {
+            socket.close();
+        }
+    }
+
+    public void testReadStringRejectsOversizedLength() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(CompilerDaemonProtocol.MAX_STRING_LENGTH + 1);
+        try {
+            CompilerDaemonProtocol.readString(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+            fail("Oversized string should be rejected");
+        }
+        catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Malformed string length"));
+        }
+    }
+
+    public void testNoWorkingDirectory() throws Exception {
+        String secret = CompilerDaemonProtocol.readSecret(CompilerDaemonProtocol.getSecretFile(daemon.getPort()));
+        String response = sendRequest(secret, "");
+        assertTrue(response, response.startsWith(CompilerDaemonProtocol.REJECTED + " Working directory"));
+    }
+
+    // Returns the exit code and the text of the response
+    private String sendRequest(String secret, String workingDirectory) throws IOException {
+        Socket socket = new Socket(InetAddress.getByName(null), daemon.getPort());
+        try {
+            DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+            output.writeInt(CompilerDaemonProtocol.VERSION);
+            CompilerDaemonProtocol.writeString(output, secret);
+            CompilerDaemonProtocol.writeString(output, workingDirectory);
+            CompilerDaemonProtocol.writeString(output, CompilerDaemonProtocol.K2JVM_COMPILER);
+            output.writeInt(0);
+            output.flush();
+
+            DataInputStream input = new DataInputStream(socket.getInputStream());
+            int exitCode = input.readInt();
+            return exitCode + " " + CompilerDaemonProtocol.readString(input);
+        }
+        finally {
+            socket.close();
+        }
+    }
+
+    public void testNoDaemon() throws Exception {
+        int port = daemon.getPort();
+        tearDown();
+        assertNull(CompilerDaemonClient.compile(port, CompilerDaemonProtocol.K2JVM_COMPILER, new String[0],
+                                                new PrintStream(new ByteArrayOutputStream())));
+        setUp();
+    }
+
+    private int compile(File outputDir) throws IOException {
+        String[] arguments = {
+                "-src", new File("compiler/testData/cli/simple.kt").getAbsolutePath(),
+                "-output", outputDir.getAbsolutePath()};
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Integer exitCode = CompilerDaemonClient.compile(daemon.getPort(), CompilerDaemonProtocol.K2JVM_COMPILER, arguments,
+                                                        new PrintStream(bytes));
+        assertNotNull("Daemon is not running", exitCode);
+        return exitCode;
+    }
+}
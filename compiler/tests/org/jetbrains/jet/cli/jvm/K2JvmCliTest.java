@@ -64,4 +64,13 @@ public class K2JvmCliTest extends CliBaseTest {
                 "-output", tmpdir.getTmpDir().getPath()};
         executeCompilerCompareOutputJVM(args);
     }
+
+    @Test
+    public void wrongCodegenThreads() {
+        String[] args = {
+                "-src", "compiler/testData/cli/simple.kt",
+                "-codegenThreads", "0",
+                "-output", tmpdir.getTmpDir().getPath()};
+        executeCompilerCompareOutputJVM(args);
+    }
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.jet.cli.jvm.compiler;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.JetTestUtils;
+import org.jetbrains.jet.lang.resolve.lazy.KotlinTestWithEnvironment;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ClassPathIndexTest extends KotlinTestWithEnvironment {
+    private File tmpDir;
+    private ClassPathIndex index;
+
+    @Override
+    protected JetCoreEnvironment createEnvironment() {
+        return createEnvironmentWithMockJdk(ConfigurationKind.JDK_ONLY);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        tmpDir = JetTestUtils.tmpDirForTest(this);
+
+        index = new ClassPathIndex();
+        index.addRoot(root("first", "a/b/C.class", "a/b/C$Nested.class", "a/b/C$Nested$Deeper.class", "Top.class"));
+        index.addRoot(root("second", "a/b/C.class", "a/D.class", "a/d/E.class"));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtil.delete(tmpDir);
+        super.tearDown();
+    }
+
+    public void testPresentClass() {
+        assertEquals(Arrays.asList("first/a/b/C.class", "second/a/b/C.class"), findClassFiles("a.b.C"));
+        assertEquals(Arrays.asList("second/a/D.class"), findClassFiles("a.D"));
+        assertEquals(Arrays.asList("second/a/d/E.class"), findClassFiles("a.d.E"));
+    }
+
+    public void testDefaultPackage() {
+        assertEquals(Arrays.asList("first/Top.class"), findClassFiles("Top"));
+    }
+
+    public void testNestedClass() {
+        assertEquals(Arrays.asList("first/a/b/C$Nested.class"), findClassFiles("a.b.C.Nested"));
+        assertEquals(Arrays.asList("first/a/b/C$Nested$Deeper.class"), findClassFiles("a.b.C.Nested.Deeper"));
+        assertEquals(Collections.<String>emptyList(), findClassFiles("a.D.Nested"));
+    }
+
+    public void testMissingClass() {
+        assertEquals(Collections.<String>emptyList(), findClassFiles("a.b.Missing"));
+        assertEquals(Collections.<String>emptyList(), findClassFiles("x.y.Z"));
+        assertEquals(Collections.<String>emptyList(), findClassFiles("Missing"));
+        // A package is not a class
+        assertEquals(Collections.<String>emptyList(), findClassFiles("a.b"));
+    }
+
+    public void testRootAddedLater() {
+        assertEquals(Collections.<String>emptyList(), findClassFiles("a.F"));
+        index.addRoot(root("third", "a/F.class"));
+        assertEquals(3, index.getRootCount());
+        assertEquals(Arrays.asList("third/a/F.class"), findClassFiles("a.F"));
+    }
+
+    @NotNull
+    private List<String> findClassFiles(@NotNull String qName) {
+        String tmpPath = FileUtil.toSystemIndependentName(tmpDir.getAbsolutePath());
+        List<String> result = new ArrayList<String>();
+        for (VirtualFile classFile : index.findClassFiles(qName)) {
+            result.add(FileUtil.getRelativePath(tmpPath, classFile.getPath(), '/'));
+        }
+        return result;
+    }
+
+    @NotNull
+    private VirtualFile root(@NotNull String name, @NotNull String... classFiles) throws IOException {
+        File root = new File(tmpDir, name);
+        for (String classFile : classFiles) {
+            FileUtil.writeToFile(new File(root, classFile), "");
+        }
+        VirtualFile virtualFile = VirtualFileManager.getInstance().findFileByUrl(
+                "file://" + FileUtil.toSystemIndependentName(root.getAbsolutePath()));
+        assertNotNull(virtualFile);
+        return virtualFile;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.jet.cli.jvm.compiler;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.codegen.forTestCompile.ForTestCompileRuntime;
+import org.jetbrains.jet.lang.resolve.lazy.KotlinTestWithEnvironment;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+
+public class CliVirtualFileFinderTest extends KotlinTestWithEnvironment {
+    private ClassPath classPath;
+    private CliVirtualFileFinder finder;
+
+    @Override
+    protected JetCoreEnvironment createEnvironment() {
+        return createEnvironmentWithMockJdk(ConfigurationKind.JDK_ONLY);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        classPath = new ClassPath();
+        classPath.add(runtimeRoot());
+        finder = new CliVirtualFileFinder(classPath);
+    }
+
+    public void testKotlinClass() {
+        VirtualFile file = finder.find(new FqName("kotlin.concurrent.FunctionalList"));
+        assertNotNull(file);
+        assertEquals("FunctionalList.class", file.getName());
+        assertSame(file, finder.find(new FqName("kotlin.concurrent.FunctionalList")));
+    }
+
+    public void testJavaClassIsNotFound() {
+        assertNotNull(runtimeRoot().findFileByRelativePath("jet/IntRange.class"));
+        assertNull(finder.find(new FqName("jet.IntRange")));
+    }
+
+    public void testMissingClass() {
+        assertNull(finder.find(new FqName("kotlin.Missing")));
+        assertNull(finder.find(new FqName("kotlin.Missing")));
+        assertNull(finder.find(new FqName("missing.Missing")));
+    }
+
+    public void testNotFoundIsForgottenWhenRootIsAdded() {
+        ClassPath emptyClassPath = new ClassPath();
+        CliVirtualFileFinder finder = new CliVirtualFileFinder(emptyClassPath);
+        assertNull(finder.find(new FqName("kotlin.concurrent.FunctionalList")));
+
+        emptyClassPath.add(runtimeRoot());
+        assertNotNull(finder.find(new FqName("kotlin.concurrent.FunctionalList")));
+    }
+
+    @NotNull
+    private static VirtualFile runtimeRoot() {
+        String path = FileUtil.toSystemIndependentName(ForTestCompileRuntime.runtimeJarForTests().getAbsolutePath());
+        VirtualFile root = VirtualFileManager.getInstance().findFileByUrl("jar://" + path + "!/");
+        assertNotNull(root);
+        return root;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.jvm.compiler;
+
+import com.intellij.openapi.util.io.FileUtil;
+import jet.modules.Module;
+import junit.framework.TestCase;
+import org.jetbrains.jet.cli.common.messages.MessageCollector;
+import org.jetbrains.jet.cli.common.modules.ModuleDescription;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ModuleScriptCacheTest extends TestCase {
+    private File tmpDir;
+    private File cacheDir;
+    private File script;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        tmpDir = FileUtil.createTempDirectory("moduleScriptCache", null);
+        cacheDir = new File(tmpDir, "cache");
+        script = new File(tmpDir, "module.kts");
+        FileUtil.writeToFile(script, "fun project() { module(\"m\") { } }");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtil.delete(tmpDir);
+        super.tearDown();
+    }
+
+    public void testNoCache() {
+        assertNull(ModuleScriptCache.load(cacheDir, script, MessageCollector.NONE));
+    }
+
+    public void testSaveAndLoad() {
+        ModuleScriptCache.save(cacheDir, script, Arrays.asList(
+                module("first", "out/first", Arrays.asList("src/a.kt", "src/<b>.kt"), Arrays.asList("lib/x.jar"),
+                       Collections.<String>emptyList()),
+                module("second", "out/second", Arrays.asList("src2"), Collections.<String>emptyList(), Arrays.asList("annotations"))
+        ), MessageCollector.NONE);
+
+        List<ModuleDescription> modules = ModuleScriptCache.load(cacheDir, script, MessageCollector.NONE);
+        assertNotNull(modules);
+        assertEquals(2, modules.size());
+
+        ModuleDescription first = modules.get(0);
+        assertEquals("first", first.getModuleName());
+        assertEquals("out/first", first.getOutputDir());
+        assertEquals(Arrays.asList("src/a.kt", "src/<b>.kt"), first.getSourceFiles());
+        assertEquals(Arrays.asList("lib/x.jar"), first.getClasspathRoots());
+        assertTrue(first.getAnnotationsRoots().isEmpty());
+
+        ModuleDescription second = modules.get(1);
+        assertEquals("second", second.getModuleName());
+        assertEquals(Arrays.asList("annotations"), second.getAnnotationsRoots());
+    }
+
+    public void testScriptChanged() throws Exception {
+        ModuleScriptCache.save(cacheDir, script, Arrays.asList(
+                module("m", "out", Arrays.asList("src"), Collections.<String>emptyList(), Collections.<String>emptyList())
+        ), MessageCollector.NONE);
+        assertNotNull(ModuleScriptCache.load(cacheDir, script, MessageCollector.NONE));
+
+        FileUtil.writeToFile(script, "fun project() { module(\"other\") { } }");
+        assertNull(ModuleScriptCache.load(cacheDir, script, MessageCollector.NONE));
+    }
+
+    public void testCacheIsNotWrittenNextToScript() {
+        ModuleScriptCache.save(cacheDir, script, Arrays.asList(
+                module("m", "out", Arrays.asList("src"), Collections.<String>emptyList(), Collections.<String>emptyList())
+        ), MessageCollector.NONE);
+
+        assertTrue(ModuleScriptCache.getCacheFile(cacheDir, script).isFile());
+        assertEquals(cacheDir, ModuleScriptCache.getCacheFile(cacheDir, script).getParentFile());
+        File[] files = tmpDir.listFiles();
+        assertNotNull(files);
+        assertEquals(2, files.length);
+    }
+
+    public void testSameTextInOtherDirectory() throws Exception {
+        ModuleScriptCache.save(cacheDir, script, Arrays.asList(
+                module("m", "out", Arrays.asList("src"), Collections.<String>emptyList(), Collections.<String>emptyList())
+        ), MessageCollector.NONE);
+
+        File otherScript = new File(new File(tmpDir, "other"), script.getName());
+        assertTrue(otherScript.getParentFile().mkdirs());
+        FileUtil.copy(script, otherScript);
+        assertNull(ModuleScriptCache.load(cacheDir, otherScript, MessageCollector.NONE));
+        assertNotNull(ModuleScriptCache.load(cacheDir, script, MessageCollector.NONE));
+    }
+
+    private static Module module(
+            final String name,
+            final String outputDirectory,
+            final List<String> sources,
+            final List<String> classpath,
+            final List<String> annotations
+    ) {
+        return new Module() {
+            @Override
+            public String getModuleName() {
+                return name;
+            }
+
+            @Override
+            public String getOutputDirectory() {
+                return outputDirectory;
+            }
+
+            @Override
+            public List<String> getSourceFiles() {
+                return sources;
+            }
+
+            @Override
+            public List<String> getClasspathRoots() {
+                return classpath;
+            }
+
+            @Override
+            public List<String> getAnnotationsRoots() {
+                return annotations;
+            }
+        };
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.jvm.compiler;
+
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.util.*;
+import java.util.jar.*;
+import java.util.zip.CRC32;
+
+public class StreamingJarWriterTest extends TestCase {
+    private File tmpDir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        tmpDir = FileUtil.createTempDirectory("streamingJarWriter", null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtil.delete(tmpDir);
+        super.tearDown();
+    }
+
+    public void testEntriesAndManifest() throws Exception {
+        byte[] data = new byte[100000];
+        new Random(42).nextBytes(data);
+
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().putValue("Manifest-Version", "1.0");
+        manifest.getMainAttributes().putValue("Main-Class", "foo.Bar");
+
+        File jar = new File(tmpDir, "out.jar");
+        OutputStream out = new FileOutputStream(jar);
+        try {
+            StreamingJarWriter writer = new StreamingJarWriter(out);
+            writer.writeManifest(manifest);
+            writer.write(StreamingJarWriter.deflate("foo/Bar.class", data));
+            writer.write(StreamingJarWriter.deflate("foo/Empty.class", new byte[0]));
+            writer.finish();
+        }
+        finally {
+            out.close();
+        }
+
+        JarFile jarFile = new JarFile(jar);
+        try {
+            assertEquals("foo.Bar", jarFile.getManifest().getMainAttributes().getValue("Main-Class"));
+            assertTrue(Arrays.equals(data, readEntry(jarFile, "foo/Bar.class")));
+            assertEquals(0, readEntry(jarFile, "foo/Empty.class").length);
+        }
+        finally {
+            jarFile.close();
+        }
+
+        JarInputStream stream = new JarInputStream(new FileInputStream(jar));
+        try {
+            assertNotNull(stream.getManifest());
+            assertEquals("foo/Bar.class", stream.getNextJarEntry().getName());
+        }
+        finally {
+            stream.close();
+        }
+    }
+
+    public void testCopyRawEntries() throws Exception {
+        File source = new File(tmpDir, "source.jar");
+        JarOutputStream sourceStream = new JarOutputStream(new FileOutputStream(source), new Manifest());
+        try {
+            sourceStream.putNextEntry(new JarEntry("a/A.class"));
+            sourceStream.write("class A class A class A".getBytes("UTF-8"));
+            sourceStream.putNextEntry(new JarEntry("a/readme.txt"));
+            sourceStream.write("not a class".getBytes("UTF-8"));
+
+            byte[] storedData = "class B".getBytes("UTF-8");
+            CRC32 crc = new CRC32();
+            crc.update(storedData);
+            JarEntry stored = new JarEntry("a/B.class");
+            stored.setMethod(JarEntry.STORED);
+            stored.setSize(storedData.length);
+            stored.setCrc(crc.getValue());
+            sourceStream.putNextEntry(stored);
+            sourceStream.write(storedData);
+        }
+        finally {
+            sourceStream.close();
+        }
+
+        File jar = new File(tmpDir, "out.jar");
+        OutputStream out = new FileOutputStream(jar);
+        try {
+            StreamingJarWriter writer = new StreamingJarWriter(out);
+            writer.write(StreamingJarWriter.deflate("Main.class", new byte[] {1, 2, 3}));
+            writer.copyRawEntries(source, new StreamingJarWriter.EntryFilter() {
+                @Override
+                public boolean accept(@NotNull String name) {
+                    return name.endsWith(".class");
+                }
+            });
+            writer.finish();
+        }
+        finally {
+            out.close();
+        }
+
+        JarFile jarFile = new JarFile(jar);
+        try {
+            List<String> names = new ArrayList<String>();
+            for (Enumeration<JarEntry> entries = jarFile.entries(); entries.hasMoreElements(); ) {
+                names.add(entries.nextElement().getName());
+            }
+            assertEquals(Arrays.asList("Main.class", "a/A.class", "a/B.class"), names);
+            assertEquals("class A class A class A", new String(readEntry(jarFile, "a/A.class"), "UTF-8"));
+            assertEquals("class B", new String(readEntry(jarFile, "a/B.class"), "UTF-8"));
+        }
+        finally {
+            jarFile.close();
+        }
+    }
+
+    public void testDuplicateEntry() throws Exception {
+        StreamingJarWriter writer = new StreamingJarWriter(new ByteArrayOutputStream());
+        writer.write(StreamingJarWriter.deflate("A.class", new byte[] {1}));
+        try {
+            writer.write(StreamingJarWriter.deflate("A.class", new byte[] {2}));
+            fail("Duplicate entries should not be allowed");
+        }
+        catch (IOException e) {
+            // expected
+        }
+    }
+
+    @NotNull
+    private static byte[] readEntry(@NotNull JarFile jarFile, @NotNull String name) throws IOException {
+        JarEntry entry = jarFile.getJarEntry(name);
+        assertNotNull("No entry " + name, entry);
+        return FileUtil.loadBytes(jarFile.getInputStream(entry));
+    }
+}
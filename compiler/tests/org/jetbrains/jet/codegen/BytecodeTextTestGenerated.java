@@ -97,6 +97,11 @@ public class BytecodeTextTestGenerated extends AbstractBytecodeTextTest {
         doTest("compiler/testData/codegen/bytecodeText/privateDefaultArgs.kt");
     }
     
+    @TestMetadata("propertyMetadataCached.kt")
+    public void testPropertyMetadataCached() throws Exception {
+        doTest("compiler/testData/codegen/bytecodeText/propertyMetadataCached.kt");
+    }
+    
     @TestMetadata("topLevelFunWithDefaultArgs.kt")
     public void testTopLevelFunWithDefaultArgs() throws Exception {
         doTest("compiler/testData/codegen/bytecodeText/topLevelFunWithDefaultArgs.kt");
@@ -156,11 +161,31 @@ public class BytecodeTextTestGenerated extends AbstractBytecodeTextTest {
             doTest("compiler/testData/codegen/bytecodeText/statements/when.kt");
         }
         
+        @TestMetadata("whenEnumSwitch.kt")
+        public void testWhenEnumSwitch() throws Exception {
+            doTest("compiler/testData/codegen/bytecodeText/statements/whenEnumSwitch.kt");
+        }
+        
+        @TestMetadata("whenLookupSwitch.kt")
+        public void testWhenLookupSwitch() throws Exception {
+            doTest("compiler/testData/codegen/bytecodeText/statements/whenLookupSwitch.kt");
+        }
+        
+        @TestMetadata("whenStringSwitch.kt")
+        public void testWhenStringSwitch() throws Exception {
+            doTest("compiler/testData/codegen/bytecodeText/statements/whenStringSwitch.kt");
+        }
+        
         @TestMetadata("whenSubject.kt")
         public void testWhenSubject() throws Exception {
             doTest("compiler/testData/codegen/bytecodeText/statements/whenSubject.kt");
         }
         
+        @TestMetadata("whenTableSwitch.kt")
+        public void testWhenTableSwitch() throws Exception {
+            doTest("compiler/testData/codegen/bytecodeText/statements/whenTableSwitch.kt");
+        }
+        
     }
     
     public static Test suite() {
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.codegen;
+
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.lang.resolve.java.JvmAbi;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Checks that accesses to delegated properties pass the same property metadata instance
+ * instead of allocating a new one every time
+ */
+public class DelegatedPropertyAllocationTest extends CodegenTestCase {
+    private static final String TEXT =
+            "import java.util.ArrayList\n" +
+            "\n" +
+            "class Recorder {\n" +
+            "    val seen = ArrayList<PropertyMetadata>()\n" +
+            "    fun get(thisRef: Any?, desc: PropertyMetadata): Int {\n" +
+            "        seen.add(desc)\n" +
+            "        return seen.size()\n" +
+            "    }\n" +
+            "}\n" +
+            "\n" +
+            "class Holder {\n" +
+            "    val recorder = Recorder()\n" +
+            "    val p: Int by recorder\n" +
+            "}\n" +
+            "\n" +
+            "fun sameMetadata(): Boolean {\n" +
+            "    val first = Holder()\n" +
+            "    val second = Holder()\n" +
+            "    first.p\n" +
+            "    first.p\n" +
+            "    second.p\n" +
+            "    val seen = first.recorder.seen\n" +
+            "    return seen.size() == 2 && seen[0] === seen[1] && seen[0] === second.recorder.seen[0]\n" +
+            "}\n";
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        createEnvironmentWithMockJdkAndIdeaAnnotations(ConfigurationKind.ALL);
+    }
+
+    public void testMetadataIsShared() throws Exception {
+        loadText(TEXT);
+        Method sameMetadata = generateFunction("sameMetadata");
+        Class<?> holderClass = initializedClassLoader.loadClass("Holder");
+
+        Field metadata = holderClass.getDeclaredField(JvmAbi.PROPERTY_METADATA_ARRAY_NAME);
+        assertTrue(Modifier.isStatic(metadata.getModifiers()));
+
+        assertEquals(Boolean.TRUE, sameMetadata.invoke(null));
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.codegen;
+
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.codegen.state.GenerationState;
+import org.jetbrains.jet.codegen.state.JetTypeMapper;
+import org.jetbrains.jet.lang.descriptors.FunctionDescriptor;
+import org.jetbrains.jet.lang.psi.JetNamedFunction;
+import org.jetbrains.jet.lang.resolve.BindingContext;
+
+import java.util.regex.Pattern;
+
+public class JetTypeMapperCacheTest extends CodegenTestCase {
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        createEnvironmentWithMockJdkAndIdeaAnnotations(ConfigurationKind.JDK_ONLY);
+    }
+
+    public void testRepeatedCallsAreCached() {
+        loadText("fun <T> foo(t: T, s: String): List<T>? = null\n" +
+                 "fun bar() { foo(1, \"\"); foo(2, \"\"); foo(3, \"\") }");
+        GenerationState state = GenerationUtils.compileFileGetGenerationStateForTest(myFiles.getPsiFile());
+        JetTypeMapper typeMapper = state.getTypeMapper();
+
+        String statistics = typeMapper.getCacheStatistics();
+        assertTrue(statistics, Pattern.compile("signatures: [1-9]\\d* hits").matcher(statistics).find());
+        assertTrue(statistics, Pattern.compile("callable methods: [1-9]\\d* hits").matcher(statistics).find());
+
+        JetNamedFunction foo = (JetNamedFunction) myFiles.getPsiFile().getDeclarations().get(0);
+        FunctionDescriptor descriptor = state.getBindingContext().get(BindingContext.FUNCTION, foo);
+        assertNotNull(descriptor);
+        assertSame(typeMapper.mapSignature(descriptor, true, OwnerKind.NAMESPACE),
+                   typeMapper.mapSignature(descriptor, true, OwnerKind.NAMESPACE));
+        assertSame(typeMapper.mapType(descriptor.getReturnType()), typeMapper.mapType(descriptor.getReturnType()));
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.codegen;
+
+import com.google.common.base.Predicates;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.analyzer.AnalyzeExhaust;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.codegen.state.GenerationState;
+import org.jetbrains.jet.codegen.state.Progress;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.psi.JetPsiFactory;
+import org.jetbrains.jet.lang.resolve.AnalyzerScriptParameter;
+import org.jetbrains.jet.lang.resolve.java.AnalyzerFacadeForJVM;
+import org.jetbrains.jet.lang.resolve.lazy.KotlinTestWithEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ParallelCodegenTest extends KotlinTestWithEnvironment {
+    private static final int PACKAGES = 10;
+    private static final int FILES_PER_PACKAGE = 3;
+
+    @Override
+    protected JetCoreEnvironment createEnvironment() {
+        return createEnvironmentWithMockJdk(ConfigurationKind.JDK_ONLY);
+    }
+
+    public void testOutputIsTheSameAsSequential() {
+        List<JetFile> files = generateFiles();
+        AnalyzeExhaust exhaust = AnalyzerFacadeForJVM.analyzeFilesWithJavaIntegrationAndCheckForErrors(
+                getProject(), files, Collections.<AnalyzerScriptParameter>emptyList(), Predicates.<PsiFile>alwaysTrue());
+        exhaust.throwIfError();
+
+        ClassFileFactory sequential = generate(exhaust, files, 1);
+        for (int threads : new int[] {2, 4, 8}) {
+            ClassFileFactory parallel = generate(exhaust, files, threads);
+            assertEquals(sequential.files(), parallel.files());
+            for (String file : sequential.files()) {
+                assertTrue(file + " differs when generated on " + threads + " threads",
+                           Arrays.equals(sequential.asBytes(file), parallel.asBytes(file)));
+            }
+        }
+    }
+
+    @NotNull
+    private ClassFileFactory generate(@NotNull AnalyzeExhaust exhaust, @NotNull List<JetFile> files, int threads) {
+        GenerationState state = new GenerationState(
+                getProject(), ClassBuilderFactories.BINARIES, Progress.DEAF, exhaust.getBindingContext(), files,
+                true, true, true, threads);
+        KotlinCodegenFacade.compileCorrectFiles(state, CompilationErrorHandler.THROW_EXCEPTION);
+        return state.getFactory();
+    }
+
+    @NotNull
+    private List<JetFile> generateFiles() {
+        List<JetFile> files = new ArrayList<JetFile>();
+        for (int i = 0; i < PACKAGES; i++) {
+            int next = (i + 1) % PACKAGES;
+            for (int j = 0; j < FILES_PER_PACKAGE; j++) {
+                StringBuilder text = new StringBuilder();
+                text.append("package p").append(i).append("\n\n");
+                text.append("fun f").append(j).append("(x: Int): () -> Int {\n");
+                text.append("    val o = object : Runnable { override fun run() {} }\n");
+                text.append("    return { o.run(); p").append(next).append(".f").append(j).append("(x - 1)() + x }\n");
+                text.append("}\n\n");
+                text.append("class C").append(j).append("(val s: String) {\n");
+                text.append("    class Nested { fun g(): () -> Int = { 42 } }\n");
+                text.append("    fun h(c: p").append(next).append(".C").append(j).append(") = { c.s + s }\n");
+                text.append("}\n");
+                files.add(JetPsiFactory.createFile(getProject(), "file" + i + "_" + j + ".kt", text.toString()));
+            }
+        }
+        return files;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.jet.codegen;
+
+import com.intellij.psi.PsiFileFactory;
+import com.intellij.psi.impl.PsiFileFactoryImpl;
+import com.intellij.testFramework.LightVirtualFile;
+import com.intellij.util.PathUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.plugin.JetLanguage;
+
+public class SourceLineIndexTest extends CodegenTestCase {
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        createEnvironmentWithMockJdkAndIdeaAnnotations(ConfigurationKind.JDK_ONLY);
+    }
+
+    public void testIndexIsNamedAfterNamespacePart() {
+        JetFile file = createFile("/src/a.kt", "package test\n\nfun foo() = 42\n");
+        String path = SourceLineIndex.getIndexFilePath(file);
+        assertEquals(NamespaceCodegen.getNamespacePartInternalName(file) + SourceLineIndex.FILE_EXTENSION, path);
+        assertTrue(path, path.startsWith("test/"));
+    }
+
+    public void testSameFileNameInSamePackage() {
+        JetFile first = createFile("/src/first/a.kt", "package test\n\nfun foo() = 1\n");
+        JetFile second = createFile("/src/second/a.kt", "package test\n\nfun bar() = 2\n");
+        assertFalse(SourceLineIndex.getIndexFilePath(first).equals(SourceLineIndex.getIndexFilePath(second)));
+    }
+
+    @NotNull
+    private JetFile createFile(@NotNull final String path, @NotNull String text) {
+        LightVirtualFile virtualFile = new LightVirtualFile(PathUtil.getFileName(path), JetLanguage.INSTANCE, text) {
+            @NotNull
+            @Override
+            public String getPath() {
+                return path;
+            }
+        };
+        PsiFileFactoryImpl factory = (PsiFileFactoryImpl) PsiFileFactory.getInstance(myEnvironment.getProject());
+        return (JetFile) factory.trySetupPsiForFile(virtualFile, JetLanguage.INSTANCE, true, false);
+    }
+}
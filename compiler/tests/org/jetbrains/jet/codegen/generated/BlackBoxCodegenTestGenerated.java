@@ -1887,6 +1887,16 @@ public class BlackBoxCodegenTestGenerated extends AbstractBlackBoxCodegenTest {
             doTest("compiler/testData/codegen/box/delegatedProperty/privateVar.kt");
         }
         
+        @TestMetadata("propertyMetadataCached.kt")
+        public void testPropertyMetadataCached() throws Exception {
+            doTest("compiler/testData/codegen/box/delegatedProperty/propertyMetadataCached.kt");
+        }
+        
+        @TestMetadata("propertyMetadataInStaticInitializer.kt")
+        public void testPropertyMetadataInStaticInitializer() throws Exception {
+            doTest("compiler/testData/codegen/box/delegatedProperty/propertyMetadataInStaticInitializer.kt");
+        }
+        
         @TestMetadata("setAsExtensionFun.kt")
         public void testSetAsExtensionFun() throws Exception {
             doTest("compiler/testData/codegen/box/delegatedProperty/setAsExtensionFun.kt");
@@ -4526,6 +4536,21 @@ public class BlackBoxCodegenTestGenerated extends AbstractBlackBoxCodegenTest {
             doTest("compiler/testData/codegen/box/when/range.kt");
         }
         
+        @TestMetadata("switchOverEnum.kt")
+        public void testSwitchOverEnum() throws Exception {
+            doTest("compiler/testData/codegen/box/when/switchOverEnum.kt");
+        }
+        
+        @TestMetadata("switchOverInt.kt")
+        public void testSwitchOverInt() throws Exception {
+            doTest("compiler/testData/codegen/box/when/switchOverInt.kt");
+        }
+        
+        @TestMetadata("switchOverString.kt")
+        public void testSwitchOverString() throws Exception {
+            doTest("compiler/testData/codegen/box/when/switchOverString.kt");
+        }
+        
         @TestMetadata("whenArgumentIsEvaluatedOnlyOnce.kt")
         public void testWhenArgumentIsEvaluatedOnlyOnce() throws Exception {
             doTest("compiler/testData/codegen/box/when/whenArgumentIsEvaluatedOnlyOnce.kt");
@@ -31,7 +31,7 @@ import org.jetbrains.jet.codegen.generated.AbstractBlackBoxCodegenTest;
 /** This class is generated by {@link org.jetbrains.jet.generators.tests.GenerateTests}. DO NOT MODIFY MANUALLY */
 @SuppressWarnings("all")
 @TestMetadata("compiler/testData/codegen/boxWithStdlib")
-@InnerTestClasses({BlackBoxWithStdlibCodegenTestGenerated.Annotations.class, BlackBoxWithStdlibCodegenTestGenerated.Arrays.class, BlackBoxWithStdlibCodegenTestGenerated.Casts.class, BlackBoxWithStdlibCodegenTestGenerated.DataClasses.class, BlackBoxWithStdlibCodegenTestGenerated.FullJdk.class, BlackBoxWithStdlibCodegenTestGenerated.JdkAnnotations.class, BlackBoxWithStdlibCodegenTestGenerated.Ranges.class, BlackBoxWithStdlibCodegenTestGenerated.Regressions.class, BlackBoxWithStdlibCodegenTestGenerated.Strings.class, BlackBoxWithStdlibCodegenTestGenerated.ToArray.class})
+@InnerTestClasses({BlackBoxWithStdlibCodegenTestGenerated.Annotations.class, BlackBoxWithStdlibCodegenTestGenerated.Arrays.class, BlackBoxWithStdlibCodegenTestGenerated.Casts.class, BlackBoxWithStdlibCodegenTestGenerated.DataClasses.class, BlackBoxWithStdlibCodegenTestGenerated.FullJdk.class, BlackBoxWithStdlibCodegenTestGenerated.Inline.class, BlackBoxWithStdlibCodegenTestGenerated.JdkAnnotations.class, BlackBoxWithStdlibCodegenTestGenerated.Ranges.class, BlackBoxWithStdlibCodegenTestGenerated.Regressions.class, BlackBoxWithStdlibCodegenTestGenerated.Strings.class, BlackBoxWithStdlibCodegenTestGenerated.ToArray.class})
 public class BlackBoxWithStdlibCodegenTestGenerated extends AbstractBlackBoxCodegenTest {
     public void testAllFilesPresentInBoxWithStdlib() throws Exception {
         JetTestUtils.assertAllTestsPresentByMetadata(this.getClass(), "org.jetbrains.jet.generators.tests.GenerateTests", new File("compiler/testData/codegen/boxWithStdlib"), Pattern.compile("^(.+)\\.kt$"), true);
@@ -439,6 +439,34 @@ public class BlackBoxWithStdlibCodegenTestGenerated extends AbstractBlackBoxCode
         
     }
     
+    @TestMetadata("compiler/testData/codegen/boxWithStdlib/inline")
+    public static class Inline extends AbstractBlackBoxCodegenTest {
+        public void testAllFilesPresentInInline() throws Exception {
+            JetTestUtils.assertAllTestsPresentByMetadata(this.getClass(), "org.jetbrains.jet.generators.tests.GenerateTests", new File("compiler/testData/codegen/boxWithStdlib/inline"), Pattern.compile("^(.+)\\.kt$"), true);
+        }
+        
+        @TestMetadata("forEach.kt")
+        public void testForEach() throws Exception {
+            doTestWithStdlib("compiler/testData/codegen/boxWithStdlib/inline/forEach.kt");
+        }
+        
+        @TestMetadata("notStatement.kt")
+        public void testNotStatement() throws Exception {
+            doTestWithStdlib("compiler/testData/codegen/boxWithStdlib/inline/notStatement.kt");
+        }
+        
+        @TestMetadata("use.kt")
+        public void testUse() throws Exception {
+            doTestWithStdlib("compiler/testData/codegen/boxWithStdlib/inline/use.kt");
+        }
+        
+        @TestMetadata("withLock.kt")
+        public void testWithLock() throws Exception {
+            doTestWithStdlib("compiler/testData/codegen/boxWithStdlib/inline/withLock.kt");
+        }
+        
+    }
+    
     @TestMetadata("compiler/testData/codegen/boxWithStdlib/jdkAnnotations")
     public static class JdkAnnotations extends AbstractBlackBoxCodegenTest {
         public void testAllFilesPresentInJdkAnnotations() throws Exception {
@@ -976,6 +1004,7 @@ public class BlackBoxWithStdlibCodegenTestGenerated extends AbstractBlackBoxCode
         suite.addTestSuite(Casts.class);
         suite.addTest(DataClasses.innerSuite());
         suite.addTestSuite(FullJdk.class);
+        suite.addTestSuite(Inline.class);
         suite.addTestSuite(JdkAnnotations.class);
         suite.addTest(Ranges.innerSuite());
         suite.addTestSuite(Regressions.class);
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.jet.lang.resolve;
+
+import com.google.common.base.Predicates;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.lang.descriptors.CallableDescriptor;
+import org.jetbrains.jet.lang.descriptors.DeclarationDescriptor;
+import org.jetbrains.jet.lang.diagnostics.Diagnostic;
+import org.jetbrains.jet.lang.psi.JetElement;
+import org.jetbrains.jet.lang.psi.JetExpression;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.psi.JetPsiFactory;
+import org.jetbrains.jet.lang.psi.JetReferenceExpression;
+import org.jetbrains.jet.lang.resolve.calls.model.ResolvedCall;
+import org.jetbrains.jet.lang.resolve.java.AnalyzerFacadeForJVM;
+import org.jetbrains.jet.lang.resolve.lazy.KotlinTestWithEnvironment;
+import org.jetbrains.jet.lang.resolve.scopes.receivers.ReceiverValue;
+import org.jetbrains.jet.lang.types.JetType;
+import org.jetbrains.jet.renderer.DescriptorRenderer;
+
+import java.util.*;
+
+/**
+ * Resolves function and property bodies which use Java classes not seen in the declarations in parallel,
+ * and checks that the bindings and diagnostics are the same, in the same order, as after a sequential run
+ */
+public class ParallelBodyResolutionTest extends KotlinTestWithEnvironment {
+    private static final int FILES = 40;
+
+    @Override
+    protected JetCoreEnvironment createEnvironment() {
+        return createEnvironmentWithMockJdk(ConfigurationKind.JDK_ONLY);
+    }
+
+    public void testSameBindingsAsSequential() {
+        List<JetFile> files = generateFiles();
+
+        String sequential = dump(analyze(files, false));
+        String parallel = dump(analyze(files, true));
+
+        assertEquals(sequential, parallel);
+    }
+
+    @NotNull
+    private BindingContext analyze(@NotNull List<JetFile> files, boolean parallel) {
+        return AnalyzerFacadeForJVM.analyzeFilesWithJavaIntegration(
+                getProject(), files, new BindingTraceContext(), Collections.<AnalyzerScriptParameter>emptyList(),
+                Predicates.<PsiFile>alwaysTrue(), false, parallel).getBindingContext();
+    }
+
+    @NotNull
+    private static String dump(@NotNull BindingContext context) {
+        List<String> lines = new ArrayList<String>();
+        for (Map.Entry<JetExpression, JetType> entry : context.getSliceContents(BindingContext.EXPRESSION_TYPE).entrySet()) {
+            lines.add(location(entry.getKey()) + " type " + DescriptorRenderer.TEXT.renderType(entry.getValue()));
+        }
+        for (Map.Entry<JetReferenceExpression, DeclarationDescriptor> entry : context.getSliceContents(BindingContext.REFERENCE_TARGET).entrySet()) {
+            lines.add(location(entry.getKey()) + " target " + DescriptorRenderer.TEXT.render(entry.getValue()));
+        }
+        for (Map.Entry<JetElement, ResolvedCall<? extends CallableDescriptor>> entry : context.getSliceContents(BindingContext.RESOLVED_CALL).entrySet()) {
+            ResolvedCall<? extends CallableDescriptor> call = entry.getValue();
+            ReceiverValue receiver = call.getReceiverArgument();
+            lines.add(location(entry.getKey()) + " call " + DescriptorRenderer.TEXT.render(call.getResultingDescriptor()) +
+                      (receiver.exists() ? " on " + DescriptorRenderer.TEXT.renderType(receiver.getType()) : ""));
+        }
+        for (Diagnostic diagnostic : context.getDiagnostics().all()) {
+            lines.add(location(diagnostic.getPsiElement()) + " diagnostic " + diagnostic.getFactory().getName());
+        }
+
+        StringBuilder result = new StringBuilder();
+        for (String line : lines) {
+            result.append(line).append("\n");
+        }
+        return result.toString();
+    }
+
+    @NotNull
+    private static String location(@NotNull PsiElement element) {
+        return element.getContainingFile().getName() + ":" + String.format("%06d", element.getTextOffset()) + " " + element.getText();
+    }
+
+    @NotNull
+    private List<JetFile> generateFiles() {
+        List<JetFile> files = new ArrayList<JetFile>();
+        for (int i = 0; i < FILES; i++) {
+            int next = (i + 1) % FILES;
+            StringBuilder text = new StringBuilder();
+            text.append("package p").append(i).append("\n\n");
+            text.append("fun f").append(i).append("(s: String): Int {\n");
+            text.append("    val map = java.util.concurrent.ConcurrentHashMap<String, java.util.ArrayList<Int>>()\n");
+            text.append("    val list = java.util.LinkedList<java.util.Date>()\n");
+            text.append("    list.add(java.util.Date(").append(i).append("L))\n");
+            text.append("    map.put(s, java.util.ArrayList<Int>())\n");
+            text.append("    val builder = StringBuilder(s)\n");
+            text.append("    builder.append(list.getFirst()).reverse()\n");
+            text.append("    val unresolved = list.noSuchMethod").append(i).append("()\n");
+            text.append("    return map.size() + builder.length() + p").append(next).append(".f").append(next).append("(s)\n");
+            text.append("}\n\n");
+            text.append("val v").append(i).append(" = java.util.TreeSet<String>(java.util.Arrays.asList(\"").append(i).append("\"))\n");
+            text.append("val w").append(i).append(": Int\n");
+            text.append("    get() = v").append(i).append(".size() + p").append(next).append(".v").append(next).append(".first()!!.length()\n\n");
+            text.append("class C").append(i).append(" : java.util.AbstractList<String>() {\n");
+            text.append("    override fun get(index: Int): String = java.util.Collections.emptyList<String>().get(index)\n");
+            text.append("    override fun size(): Int = java.util.concurrent.atomic.AtomicInteger(").append(i).append(").get()\n");
+            text.append("    val queue: java.util.Queue<String> = java.util.ArrayDeque<String>()\n");
+            text.append("    val random = java.util.Random(").append(i).append("L).nextInt()\n");
+            text.append("    var text: String = \"\"\n");
+            text.append("        get() = java.util.Locale.ROOT.toString() + $text\n");
+            text.append("        set(value) { $text = java.util.UUID.randomUUID().toString() + value.noSuchMethod").append(i).append("() }\n");
+            text.append("}\n");
+            files.add(JetPsiFactory.createFile(getProject(), "file" + i + ".kt", text.toString()));
+        }
+        return files;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.calls.autocasts;
+
+import com.google.common.base.Predicates;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.analyzer.AnalyzeExhaust;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.lang.diagnostics.Diagnostic;
+import org.jetbrains.jet.lang.diagnostics.DiagnosticUtils;
+import org.jetbrains.jet.lang.diagnostics.Severity;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.psi.JetPsiFactory;
+import org.jetbrains.jet.lang.resolve.AnalyzerScriptParameter;
+import org.jetbrains.jet.lang.resolve.java.AnalyzerFacadeForJVM;
+import org.jetbrains.jet.lang.resolve.lazy.KotlinTestWithEnvironment;
+
+import java.util.Collections;
+
+/**
+ * Analyzes generated functions with deeply nested autocasts, which use the facts of all the enclosing levels
+ */
+public class DataFlowInfoNestedAutocastsTest extends KotlinTestWithEnvironment {
+    private static final int FUNCTIONS = 2;
+    private static final int VARIABLES = 60;
+
+    @Override
+    protected JetCoreEnvironment createEnvironment() {
+        return createEnvironmentWithMockJdk(ConfigurationKind.JDK_ONLY);
+    }
+
+    public void testNestedAutocasts() {
+        JetFile file = JetPsiFactory.createFile(getProject(), "autocasts.kt", generateText());
+
+        AnalyzeExhaust exhaust = AnalyzerFacadeForJVM.analyzeFilesWithJavaIntegrationAndCheckForErrors(
+                getProject(), Collections.singletonList(file), Collections.<AnalyzerScriptParameter>emptyList(),
+                Predicates.<PsiFile>alwaysTrue());
+        exhaust.throwIfError();
+
+        for (Diagnostic diagnostic : exhaust.getBindingContext().getDiagnostics()) {
+            assertFalse(DiagnosticUtils.atLocation(diagnostic.getPsiElement()) + ": " + diagnostic.getFactory().getName(),
+                        diagnostic.getSeverity() == Severity.ERROR);
+        }
+    }
+
+    @NotNull
+    private static String generateText() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < FUNCTIONS; i++) {
+            text.append("fun f").append(i).append("(");
+            for (int j = 0; j < VARIABLES; j++) {
+                if (j > 0) text.append(", ");
+                text.append("x").append(j).append(": Any?");
+            }
+            text.append("): Int {\n");
+            text.append("    var sum = 0\n");
+            // Every level adds a fact, uses the facts of all the enclosing levels and merges two branches
+            for (int j = 0; j < VARIABLES; j++) {
+                indent(text, j + 1).append("if (x").append(j).append(" is String && x").append(j).append(" != null) {\n");
+                indent(text, j + 2).append("sum += x").append(j).append(".length()");
+                if (j > 0) {
+                    text.append(" + x").append(j / 2).append(".length()");
+                }
+                text.append("\n");
+                indent(text, j + 2).append("if (sum > ").append(j).append(" || x").append(j).append(".length() > 0) sum++\n");
+            }
+            for (int j = VARIABLES - 1; j >= 0; j--) {
+                indent(text, j + 1).append("}\n");
+            }
+            text.append("    return sum\n");
+            text.append("}\n\n");
+        }
+        return text.toString();
+    }
+
+    @NotNull
+    private static StringBuilder indent(@NotNull StringBuilder text, int level) {
+        for (int i = 0; i < level; i++) {
+            text.append("    ");
+        }
+        return text;
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.jet.lang.resolve.kotlin;
+
+import com.intellij.testFramework.LightVirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.asm4.ClassWriter;
+import org.jetbrains.asm4.FieldVisitor;
+import org.jetbrains.asm4.MethodVisitor;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.lang.resolve.java.JvmClassName;
+import org.jetbrains.jet.lang.resolve.lazy.KotlinTestWithEnvironment;
+import org.jetbrains.jet.lang.resolve.name.Name;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.jetbrains.asm4.Opcodes.*;
+import static org.jetbrains.jet.lang.resolve.kotlin.KotlinJvmBinaryClass.*;
+
+public class ClassFileContentTest extends KotlinTestWithEnvironment {
+    @Override
+    protected JetCoreEnvironment createEnvironment() {
+        return createEnvironmentWithMockJdk(ConfigurationKind.JDK_ONLY);
+    }
+
+    public void testClassName() {
+        assertEquals("test/Annotated", ClassFileContent.read(annotatedClass("test/Annotated")).getClassName().getInternalName());
+    }
+
+    public void testClassAnnotations() {
+        List<String> log = new ArrayList<String>();
+        ClassFileContent.read(annotatedClass("test/Annotated")).acceptClassAnnotations(new LoggingVisitor(log, "class"));
+        assertEquals(Arrays.asList(
+                "annotation test/A",
+                "x = 1",
+                "e = test/E.ONE",
+                "array arr",
+                "null = a",
+                "null = b",
+                "end",
+                "end",
+                "annotation test/B",
+                "end",
+                "end class"
+        ), log);
+    }
+
+    public void testMemberAnnotations() {
+        final List<String> log = new ArrayList<String>();
+        ClassFileContent.read(annotatedClass("test/Annotated")).acceptMemberAnnotations(new MemberVisitor() {
+            @Nullable
+            @Override
+            public MethodAnnotationVisitor visitMethod(@NotNull Name name, @NotNull String desc) {
+                log.add("method " + name + desc);
+                return new LoggingVisitor(log, "method");
+            }
+
+            @Nullable
+            @Override
+            public AnnotationVisitor visitField(@NotNull Name name, @NotNull String desc) {
+                log.add("field " + name + " " + desc);
+                return new LoggingVisitor(log, "field");
+            }
+        });
+        assertEquals(Arrays.asList(
+                "field annotated I",
+                "annotation test/B",
+                "end",
+                "end field",
+                "field plain I",
+                "end field",
+                "method annotated(Ljava/lang/String;I)V",
+                "annotation test/A",
+                "end",
+                "parameter 1 test/B",
+                "name = p",
+                "end",
+                "end method",
+                "method plain()V",
+                "end method"
+        ), log);
+    }
+
+    public void testContentIsSharedUntilFileChanges() {
+        ClassFile file = new ClassFile(annotatedClass("test/First"));
+        assertEquals("test/First", new VirtualFileKotlinClass(file).getClassName().getInternalName());
+        assertEquals("test/First", new VirtualFileKotlinClass(file).getClassName().getInternalName());
+        assertEquals(1, file.reads);
+
+        file.setBytes(annotatedClass("test/Second"));
+        assertEquals("test/Second", new VirtualFileKotlinClass(file).getClassName().getInternalName());
+        assertEquals(2, file.reads);
+    }
+
+    // A class file with the modification stamp bumped on each change, and a count of reads of its contents
+    private static class ClassFile extends LightVirtualFile {
+        private byte[] bytes;
+        private long stamp = 1;
+        private int reads = 0;
+
+        private ClassFile(@NotNull byte[] bytes) {
+            super("Annotated.class");
+            this.bytes = bytes;
+        }
+
+        private void setBytes(@NotNull byte[] bytes) {
+            this.bytes = bytes;
+            stamp++;
+        }
+
+        @NotNull
+        @Override
+        public byte[] contentsToByteArray() {
+            reads++;
+            return bytes;
+        }
+
+        @Override
+        public long getModificationStamp() {
+            return stamp;
+        }
+    }
+
+    private static class LoggingVisitor implements MethodAnnotationVisitor {
+        private final List<String> log;
+        private final String owner;
+
+        private LoggingVisitor(@NotNull List<String> log, @NotNull String owner) {
+            this.log = log;
+            this.owner = owner;
+        }
+
+        @Nullable
+        @Override
+        public AnnotationArgumentVisitor visitAnnotation(@NotNull JvmClassName className) {
+            log.add("annotation " + className.getInternalName());
+            return new LoggingArgumentVisitor(log);
+        }
+
+        @Nullable
+        @Override
+        public AnnotationArgumentVisitor visitParameterAnnotation(int index, @NotNull JvmClassName className) {
+            log.add("parameter " + index + " " + className.getInternalName());
+            return new LoggingArgumentVisitor(log);
+        }
+
+        @Override
+        public void visitEnd() {
+            log.add("end " + owner);
+        }
+    }
+
+    private static class LoggingArgumentVisitor implements AnnotationArgumentVisitor {
+        private final List<String> log;
+
+        private LoggingArgumentVisitor(@NotNull List<String> log) {
+            this.log = log;
+        }
+
+        @Override
+        public void visit(@Nullable Name name, @Nullable Object value) {
+            log.add(name + " = " + value);
+        }
+
+        @Override
+        public void visitEnum(@NotNull Name name, @NotNull JvmClassName enumClassName, @NotNull Name enumEntryName) {
+            log.add(name + " = " + enumClassName.getInternalName() + "." + enumEntryName);
+        }
+
+        @Nullable
+        @Override
+        public AnnotationArgumentVisitor visitArray(@NotNull Name name) {
+            log.add("array " + name);
+            return this;
+        }
+
+        @Override
+        public void visitEnd() {
+            log.add("end");
+        }
+    }
+
+    @NotNull
+    private static byte[] annotatedClass(@NotNull String internalName) {
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(V1_6, ACC_PUBLIC | ACC_ABSTRACT, internalName, null, "java/lang/Object", null);
+
+        org.jetbrains.asm4.AnnotationVisitor a = writer.visitAnnotation("Ltest/A;", true);
+        a.visit("x", 1);
+        a.visitEnum("e", "Ltest/E;", "ONE");
+        org.jetbrains.asm4.AnnotationVisitor array = a.visitArray("arr");
+        array.visit(null, "a");
+        array.visit(null, "b");
+        array.visitEnd();
+        a.visitEnd();
+        writer.visitAnnotation("Ltest/B;", false).visitEnd();
+
+        FieldVisitor annotatedField = writer.visitField(ACC_PUBLIC, "annotated", "I", null, null);
+        annotatedField.visitAnnotation("Ltest/B;", true).visitEnd();
+        annotatedField.visitEnd();
+        writer.visitField(ACC_PUBLIC, "plain", "I", null, null).visitEnd();
+
+        MethodVisitor annotatedMethod = writer.visitMethod(ACC_PUBLIC | ACC_ABSTRACT, "annotated", "(Ljava/lang/String;I)V", null, null);
+        annotatedMethod.visitAnnotation("Ltest/A;", true).visitEnd();
+        org.jetbrains.asm4.AnnotationVisitor parameterAnnotation = annotatedMethod.visitParameterAnnotation(1, "Ltest/B;", true);
+        parameterAnnotation.visit("name", "p");
+        parameterAnnotation.visitEnd();
+        annotatedMethod.visitEnd();
+        writer.visitMethod(ACC_PUBLIC | ACC_ABSTRACT, "plain", "()V", null, null).visitEnd();
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.lazy;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.di.InjectorForJavaDescriptorResolver;
+import org.jetbrains.jet.lang.descriptors.ClassDescriptor;
+import org.jetbrains.jet.lang.psi.JetClass;
+import org.jetbrains.jet.lang.psi.JetDeclaration;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.psi.JetPsiFactory;
+import org.jetbrains.jet.lang.resolve.BindingTraceContext;
+import org.jetbrains.jet.lang.resolve.java.AnalyzerFacadeForJVM;
+import org.jetbrains.jet.lang.resolve.lazy.storage.ConcurrentLazyResolveStorageManager;
+import org.jetbrains.jet.lang.resolve.lazy.storage.LazyResolveStorageManager;
+import org.jetbrains.jet.lang.resolve.lazy.storage.LockBasedLazyResolveStorageManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Forces all descriptors of a generated project from several threads at once
+ * with different storage managers, and checks that all the threads get the same descriptors
+ */
+public class LazyResolveContentionTest extends KotlinTestWithEnvironment {
+    private static final int FILES = 50;
+    private static final int THREADS = 4;
+
+    @Override
+    protected JetCoreEnvironment createEnvironment() {
+        return createEnvironmentWithMockJdk(ConfigurationKind.JDK_ONLY);
+    }
+
+    public void testLockBased() throws Exception {
+        doTest(new LockBasedLazyResolveStorageManager());
+    }
+
+    public void testConcurrent() throws Exception {
+        doTest(new ConcurrentLazyResolveStorageManager());
+    }
+
+    private void doTest(@NotNull LazyResolveStorageManager storageManager) throws Exception {
+        List<JetFile> files = generateFiles();
+        BindingTraceContext trace = new BindingTraceContext();
+        InjectorForJavaDescriptorResolver injector = new InjectorForJavaDescriptorResolver(getProject(), trace);
+        final ResolveSession session = AnalyzerFacadeForJVM.createLazyResolveSession(
+                getProject(), files, trace, injector, true, storageManager);
+
+        final List<JetClass> classes = new ArrayList<JetClass>();
+        for (JetFile file : files) {
+            for (JetDeclaration declaration : file.getDeclarations()) {
+                if (declaration instanceof JetClass) {
+                    classes.add((JetClass) declaration);
+                }
+            }
+        }
+
+        final ClassDescriptor[][] descriptors = new ClassDescriptor[THREADS][classes.size()];
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < THREADS; i++) {
+                final int thread = i;
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Every thread walks all the classes, starting at its own position
+                        int offset = thread * classes.size() / THREADS;
+                        for (int j = 0; j < classes.size(); j++) {
+                            int index = (offset + j) % classes.size();
+                            ClassDescriptor descriptor = session.getClassDescriptor(classes.get(index));
+                            ForceResolveUtil.forceResolveAllContents(descriptor);
+                            descriptors[thread][index] = descriptor;
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(5, TimeUnit.MINUTES);
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        for (int index = 0; index < classes.size(); index++) {
+            ClassDescriptor descriptor = descriptors[0][index];
+            for (int thread = 1; thread < THREADS; thread++) {
+                assertSame(descriptor, descriptors[thread][index]);
+            }
+            assertEquals(classes.get(index).getName(), descriptor.getName().asString());
+        }
+    }
+
+    @NotNull
+    private List<JetFile> generateFiles() {
+        List<JetFile> files = new ArrayList<JetFile>();
+        for (int i = 0; i < FILES; i++) {
+            int next = (i + 1) % FILES;
+            StringBuilder text = new StringBuilder();
+            text.append("package p").append(i % 10).append("\n\n");
+            text.append("import p").append(next % 10).append(".*\n\n");
+            text.append("open class C").append(i).append("<T>(val t: T) : Base").append(i).append("() {\n");
+            for (int j = 0; j < 10; j++) {
+                text.append("    fun f").append(j).append("(c: C").append(next).append("<T>): List<C").append(next).append("<String>> = null!!\n");
+                text.append("    val p").append(j).append(": C").append(next).append("<Int>? = null\n");
+            }
+            text.append("}\n\n");
+            text.append("open class Base").append(i).append(" {\n");
+            text.append("    open fun g(): C").append(next).append("<Base").append(next).append(">? = null\n");
+            text.append("}\n");
+            files.add(JetPsiFactory.createFile(getProject(), "file" + i + ".kt", text.toString()));
+        }
+        return files;
+    }
+}
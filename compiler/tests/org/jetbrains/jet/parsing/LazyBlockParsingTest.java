@@ -0,0 +1,139 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.parsing;
+
+import com.intellij.lang.ASTNode;
+import com.intellij.psi.impl.source.tree.LazyParseableElement;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.JetNodeTypes;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.lang.psi.*;
+import org.jetbrains.jet.lang.resolve.lazy.KotlinTestWithEnvironment;
+
+import java.util.List;
+
+public class LazyBlockParsingTest extends KotlinTestWithEnvironment {
+    private static final int FUNCTIONS = 20;
+
+    @Override
+    protected JetCoreEnvironment createEnvironment() {
+        return createEnvironmentWithMockJdk(ConfigurationKind.JDK_ONLY);
+    }
+
+    public void testFunctionBodyIsParsedOnAccess() {
+        JetFile file = createFile("fun f() {\n    val x = 1\n    x + 1\n}");
+        JetNamedFunction function = (JetNamedFunction) file.getDeclarations().get(0);
+        JetBlockExpression body = (JetBlockExpression) function.getBodyExpression();
+        assertNotNull(body);
+
+        LazyParseableElement node = (LazyParseableElement) body.getNode();
+        assertFalse(node.isParsed());
+
+        List<JetElement> statements = body.getStatements();
+        assertTrue(node.isParsed());
+        assertEquals(2, statements.size());
+        assertTrue(statements.get(0) instanceof JetProperty);
+    }
+
+    public void testCreatedNodeIsLazyBlock() {
+        ASTNode node = JetNodeTypes.LAZY_BLOCK.createNode("{\n    1\n}");
+        assertTrue(node instanceof LazyParseableElement);
+        assertEquals(JetNodeTypes.LAZY_BLOCK, node.getElementType());
+        assertFalse(((LazyParseableElement) node).isParsed());
+        assertEquals("{\n    1\n}", node.getText());
+    }
+
+    public void testUnbalancedBlockTakesTheRestOfFile() {
+        String text = "fun f() {\n    if (x) {\n    }\n\nfun g() {\n}\n";
+        JetFile file = createFile(text);
+        assertEquals(text, file.getText());
+
+        List<JetDeclaration> declarations = file.getDeclarations();
+        assertEquals(1, declarations.size());
+        JetBlockExpression body = (JetBlockExpression) ((JetNamedFunction) declarations.get(0)).getBodyExpression();
+        assertNotNull(body);
+        assertTrue(body.getStatements().get(1) instanceof JetNamedFunction);
+    }
+
+    public void testNestedBlocksAreLazy() {
+        JetFile file = createFile("class A {\n    {\n        try {\n            foo()\n        }\n        finally {\n        }\n    }\n}");
+        JetClass jetClass = (JetClass) file.getDeclarations().get(0);
+        JetClassInitializer initializer = jetClass.getAnonymousInitializers().get(0);
+        JetBlockExpression body = (JetBlockExpression) initializer.getBody();
+        JetTryExpression tryExpression = (JetTryExpression) body.getStatements().get(0);
+        ASTNode tryBlock = tryExpression.getTryBlock().getNode();
+        assertFalse(((LazyParseableElement) tryBlock).isParsed());
+        assertEquals(1, tryExpression.getTryBlock().getStatements().size());
+    }
+
+    public void testBlocksOfExpressionsAreNotLazy() {
+        JetFile file = createFile("fun f() {\n    if (x) { a } else { b }\n    val l = { c }\n}");
+        JetBlockExpression body = (JetBlockExpression) ((JetNamedFunction) file.getDeclarations().get(0)).getBodyExpression();
+        assertEquals(JetNodeTypes.LAZY_BLOCK, body.getNode().getElementType());
+
+        JetIfExpression ifExpression = (JetIfExpression) body.getStatements().get(0);
+        assertEquals(JetNodeTypes.BLOCK, ifExpression.getThen().getNode().getElementType());
+        assertEquals(JetNodeTypes.BLOCK, ifExpression.getElse().getNode().getElementType());
+
+        JetProperty property = (JetProperty) body.getStatements().get(1);
+        JetFunctionLiteralExpression literal = (JetFunctionLiteralExpression) property.getInitializer();
+        assertEquals(JetNodeTypes.BLOCK, literal.getBodyExpression().getNode().getElementType());
+    }
+
+    public void testScriptBlockIsNotLazy() {
+        JetFile file = JetPsiFactory.createFile(getProject(), "dummy.ktscript", "val x = 1\nfun f() {\n}\n");
+        JetScript script = file.getScript();
+        assertNotNull(script);
+        assertEquals(JetNodeTypes.BLOCK, script.getBlockExpression().getNode().getElementType());
+    }
+
+    public void testDeclarationsDoNotParseBodies() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < FUNCTIONS; i++) {
+            text.append("fun f").append(i).append("(a: Int, b: String): Int {\n");
+            text.append("    val c = a + b.length\n");
+            text.append("    for (i in 0..c) {\n");
+            text.append("        if (i % 2 == 0) println(\"$i ${b.substring(i)}\") else { return i * c }\n");
+            text.append("    }\n");
+            text.append("    return when (a) { 1 -> 2; else -> { c } }\n");
+            text.append("}\n\n");
+        }
+
+        JetFile file = createFile(text.toString());
+        List<JetDeclaration> declarations = file.getDeclarations();
+        assertEquals(FUNCTIONS, declarations.size());
+        for (JetDeclaration declaration : declarations) {
+            JetExpression body = ((JetNamedFunction) declaration).getBodyExpression();
+            assertNotNull(body);
+            assertFalse(((LazyParseableElement) body.getNode()).isParsed());
+        }
+
+        file.accept(new JetTreeVisitorVoid());
+        for (JetDeclaration declaration : declarations) {
+            JetBlockExpression body = (JetBlockExpression) ((JetNamedFunction) declaration).getBodyExpression();
+            assertTrue(((LazyParseableElement) body.getNode()).isParsed());
+            assertEquals(3, body.getStatements().size());
+        }
+        assertEquals(text.toString(), file.getText());
+    }
+
+    @NotNull
+    private JetFile createFile(@NotNull String text) {
+        return JetPsiFactory.createFile(getProject(), "dummy.kt", text);
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.storage;
+
+import jet.Function0;
+import jet.Function1;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConcurrentStorageManagerTest extends StorageManagerTest {
+
+    private static final int THREADS = 8;
+
+    @NotNull
+    @Override
+    protected StorageManager createStorageManager() {
+        return new ConcurrentStorageManager();
+    }
+
+    public void testLazyValueComputedOnceByManyThreads() throws Exception {
+        final AtomicInteger counter = new AtomicInteger();
+        final NotNullLazyValue<String> value = m.createLazyValue(new Function0<String>() {
+            @Override
+            public String invoke() {
+                sleep(50);
+                return "ok" + counter.incrementAndGet();
+            }
+        });
+
+        List<String> results = invokeConcurrently(new Callable<String>() {
+            @Override
+            public String call() {
+                return value.invoke();
+            }
+        });
+
+        assertEquals(1, counter.get());
+        for (String result : results) {
+            assertEquals("ok1", result);
+        }
+    }
+
+    public void testMemoizedFunctionComputesEachKeyOnce() throws Exception {
+        final AtomicInteger counter = new AtomicInteger();
+        final MemoizedFunctionToNotNull<Integer, String> function = m.createMemoizedFunction(new Function1<Integer, String>() {
+            @Override
+            public String invoke(Integer key) {
+                counter.incrementAndGet();
+                sleep(10);
+                return "ok" + key;
+            }
+        });
+
+        invokeConcurrently(new Callable<String>() {
+            @Override
+            public String call() {
+                for (int i = 0; i < 10; i++) {
+                    assertEquals("ok" + i, function.invoke(i));
+                }
+                return null;
+            }
+        });
+
+        assertEquals(10, counter.get());
+    }
+
+    public void testCrossThreadCycleIsTreatedAsRecursion() throws Exception {
+        final CountDownLatch bothStarted = new CountDownLatch(2);
+        final List<NotNullLazyValue<String>> values = new ArrayList<NotNullLazyValue<String>>();
+        for (int i = 0; i < 2; i++) {
+            final int other = 1 - i;
+            values.add(m.createRecursionTolerantLazyValue(new Function0<String>() {
+                @Override
+                public String invoke() {
+                    bothStarted.countDown();
+                    await(bothStarted);
+                    return "(" + values.get(other).invoke() + ")";
+                }
+            }, "rec"));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<String>> futures = new ArrayList<Future<String>>();
+            for (final NotNullLazyValue<String> value : values) {
+                futures.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return value.invoke();
+                    }
+                }));
+            }
+
+            // Exactly one of the values sees the recursion, the other one waits for it
+            String first = futures.get(0).get(10, TimeUnit.SECONDS);
+            String second = futures.get(1).get(10, TimeUnit.SECONDS);
+            assertTrue(first + " " + second,
+                       (first.equals("(rec)") && second.equals("((rec))")) || (first.equals("((rec))") && second.equals("(rec)")));
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testCrossThreadCycleInMemoizedFunctionKeepsResults() throws Exception {
+        final CountDownLatch bothStarted = new CountDownLatch(2);
+        //noinspection unchecked
+        final MemoizedFunctionToNotNull<Integer, String>[] function = new MemoizedFunctionToNotNull[1];
+        function[0] = m.createMemoizedFunction(new Function1<Integer, String>() {
+            @Override
+            public String invoke(Integer key) {
+                bothStarted.countDown();
+                await(bothStarted);
+                try {
+                    return "(" + function[0].invoke(1 - key) + ")";
+                }
+                catch (IllegalStateException e) {
+                    return "rec";
+                }
+            }
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<String>> futures = new ArrayList<Future<String>>();
+            for (int i = 0; i < 2; i++) {
+                final int key = i;
+                futures.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return function[0].invoke(key);
+                    }
+                }));
+            }
+
+            // The thread which has detected the cycle must not replace the result of the other thread with its failure
+            for (int i = 0; i < 2; i++) {
+                assertEquals(futures.get(i).get(10, TimeUnit.SECONDS), function[0].invoke(i));
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testComputeIsExclusive() throws Exception {
+        final AtomicInteger inside = new AtomicInteger();
+        invokeConcurrently(new Callable<String>() {
+            @Override
+            public String call() {
+                for (int i = 0; i < 10; i++) {
+                    m.compute(new Function0<Object>() {
+                        @Override
+                        public Object invoke() {
+                            assertEquals(1, inside.incrementAndGet());
+                            sleep(1);
+                            inside.decrementAndGet();
+                            return null;
+                        }
+                    });
+                }
+                return null;
+            }
+        });
+    }
+
+    @NotNull
+    private static <T> List<T> invokeConcurrently(@NotNull Callable<T> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<T>> futures = new ArrayList<Future<T>>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(task));
+            }
+            List<T> results = new ArrayList<T>();
+            for (Future<T> future : futures) {
+                results.add(future.get(10, TimeUnit.SECONDS));
+            }
+            return results;
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void await(@NotNull CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        }
+        catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
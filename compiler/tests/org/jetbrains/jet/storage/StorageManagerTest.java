@@ -4,6 +4,7 @@ import jet.Function0;
 import jet.Function1;
 import jet.Unit;
 import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.jet.util.ReenteringLazyValueComputationException;
 
 import java.util.ArrayList;
@@ -13,12 +14,17 @@ import java.util.List;
 
 public class StorageManagerTest extends TestCase {
 
-    private StorageManager m;
+    protected StorageManager m;
 
     @Override
     public void setUp() throws Exception {
         super.setUp();
-        m = new LockBasedStorageManager();
+        m = createStorageManager();
+    }
+
+    @NotNull
+    protected StorageManager createStorageManager() {
+        return new LockBasedStorageManager();
     }
 
     public static <T> void doTestComputesOnce(Function0<T> v, T expected, Counter counter) throws Exception {
@@ -384,6 +390,68 @@ public class StorageManagerTest extends TestCase {
         assertEquals("second", c.rec.invoke());
     }
 
+    public void testRunAfterComputeWaitsForOutermostCompute() throws Exception {
+        final LockBasedStorageManager storageManager = new LockBasedStorageManager();
+        final List<String> log = new ArrayList<String>();
+
+        storageManager.compute(new Function0<Unit>() {
+            @Override
+            public Unit invoke() {
+                storageManager.compute(new Function0<Unit>() {
+                    @Override
+                    public Unit invoke() {
+                        storageManager.runAfterCompute(new Runnable() {
+                            @Override
+                            public void run() {
+                                log.add("published");
+                            }
+                        });
+                        return Unit.VALUE;
+                    }
+                });
+                log.add("inner compute finished");
+                return Unit.VALUE;
+            }
+        });
+        log.add("outer compute finished");
+
+        assertEquals(Arrays.asList("inner compute finished", "published", "outer compute finished"), log);
+
+        storageManager.runAfterCompute(new Runnable() {
+            @Override
+            public void run() {
+                log.add("outside of compute");
+            }
+        });
+        assertEquals("outside of compute", log.get(log.size() - 1));
+    }
+
+    public void testRunAfterComputeSkippedOnException() throws Exception {
+        final LockBasedStorageManager storageManager = new LockBasedStorageManager();
+        final List<String> log = new ArrayList<String>();
+
+        try {
+            storageManager.compute(new Function0<Unit>() {
+                @Override
+                public Unit invoke() {
+                    storageManager.runAfterCompute(new Runnable() {
+                        @Override
+                        public void run() {
+                            log.add("published");
+                        }
+                    });
+                    throw new UnsupportedOperationException();
+                }
+            });
+            fail();
+        }
+        catch (UnsupportedOperationException e) {
+            // OK
+        }
+
+        assertTrue(log.isEmpty());
+    }
+
     // Utilities
 
     private static <K, V> Function0<V> apply(final Function1<K, V> f, final K x) {
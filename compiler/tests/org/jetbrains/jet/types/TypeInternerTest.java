@@ -0,0 +1,191 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.types;
+
+import com.google.common.base.Predicates;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.analyzer.AnalyzeExhaust;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.lang.descriptors.ClassDescriptor;
+import org.jetbrains.jet.lang.descriptors.FunctionDescriptor;
+import org.jetbrains.jet.lang.descriptors.TypeParameterDescriptor;
+import org.jetbrains.jet.lang.psi.JetClass;
+import org.jetbrains.jet.lang.psi.JetExpression;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.psi.JetNamedFunction;
+import org.jetbrains.jet.lang.psi.JetPsiFactory;
+import org.jetbrains.jet.lang.resolve.AnalyzerScriptParameter;
+import org.jetbrains.jet.lang.resolve.BindingContext;
+import org.jetbrains.jet.lang.resolve.java.AnalyzerFacadeForJVM;
+import org.jetbrains.jet.lang.resolve.lazy.KotlinTestWithEnvironment;
+import org.jetbrains.jet.lang.resolve.name.Name;
+import org.jetbrains.jet.lang.types.*;
+import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
+
+import java.util.*;
+
+public class TypeInternerTest extends KotlinTestWithEnvironment {
+    private static final int FILES = 3;
+
+    @Override
+    protected JetCoreEnvironment createEnvironment() {
+        return createEnvironmentWithMockJdk(ConfigurationKind.JDK_ONLY);
+    }
+
+    public void testEqualSubstitutionsShareType() {
+        JetType first = substituteListOfString();
+        JetType second = substituteListOfString();
+
+        assertSame(first, second);
+        assertSame(first.getMemberScope(), second.getMemberScope());
+        assertTrue(TypeInterner.isInterned(first));
+    }
+
+    public void testNullableVersionSharesMemberScope() {
+        JetType type = substituteListOfString();
+        JetType nullable = TypeUtils.makeNullable(type);
+
+        assertTrue(nullable.isNullable());
+        assertSame(nullable, TypeUtils.makeNullable(type));
+        assertSame(type.getMemberScope(), nullable.getMemberScope());
+        assertSame(type, TypeUtils.makeNotNullable(nullable));
+    }
+
+    public void testInnerClassMembersDependOnOuterArguments() {
+        JetFile file = JetPsiFactory.createFile(getProject(), "inner.kt",
+                "class Outer<T>(val t: T) {\n" +
+                "    inner class Inner<S> {\n" +
+                "        fun get(): T = t\n" +
+                "    }\n" +
+                "}\n");
+        ClassDescriptor inner = getClassDescriptor(file, "Inner");
+        TypeParameterDescriptor outerParameter = ((ClassDescriptor) inner.getContainingDeclaration()).getTypeConstructor().getParameters().get(0);
+
+        doTestMembersDependOnEnclosingArguments(inner, outerParameter);
+    }
+
+    public void testLocalClassMembersDependOnFunctionArguments() {
+        JetFile file = JetPsiFactory.createFile(getProject(), "local.kt",
+                "fun <T> f(t: T): Any {\n" +
+                "    class Local<S> {\n" +
+                "        fun get(): T = t\n" +
+                "    }\n" +
+                "    return Local<Long>()\n" +
+                "}\n");
+        ClassDescriptor local = getClassDescriptor(file, "Local");
+        TypeParameterDescriptor functionParameter = ((FunctionDescriptor) local.getContainingDeclaration()).getTypeParameters().get(0);
+
+        doTestMembersDependOnEnclosingArguments(local, functionParameter);
+    }
+
+    // Both substitutions produce the same arguments of the class, but different types of its members
+    private static void doTestMembersDependOnEnclosingArguments(
+            @NotNull ClassDescriptor classDescriptor,
+            @NotNull TypeParameterDescriptor enclosingParameter
+    ) {
+        KotlinBuiltIns builtIns = KotlinBuiltIns.getInstance();
+        JetType withString = substituteWithEnclosing(classDescriptor, enclosingParameter, builtIns.getStringType());
+        JetType withInt = substituteWithEnclosing(classDescriptor, enclosingParameter, builtIns.getIntType());
+
+        assertEquals(builtIns.getStringType(), getReturnTypeOfGet(withString));
+        assertEquals(builtIns.getIntType(), getReturnTypeOfGet(withInt));
+        assertFalse(TypeInterner.isInterned(withString));
+        assertFalse(TypeInterner.isInterned(withInt));
+    }
+
+    @NotNull
+    private static JetType substituteWithEnclosing(
+            @NotNull ClassDescriptor classDescriptor,
+            @NotNull TypeParameterDescriptor enclosingParameter,
+            @NotNull JetType enclosingArgument
+    ) {
+        TypeParameterDescriptor ownParameter = classDescriptor.getTypeConstructor().getParameters().get(0);
+        Map<TypeConstructor, TypeProjection> substitution = new HashMap<TypeConstructor, TypeProjection>();
+        substitution.put(enclosingParameter.getTypeConstructor(), new TypeProjectionImpl(enclosingArgument));
+        substitution.put(ownParameter.getTypeConstructor(), new TypeProjectionImpl(KotlinBuiltIns.getInstance().getLongType()));
+
+        JetType result = TypeSubstitutor.create(substitution).substitute(classDescriptor.getDefaultType(), Variance.INVARIANT);
+        assertNotNull(result);
+        return result;
+    }
+
+    @NotNull
+    private static JetType getReturnTypeOfGet(@NotNull JetType type) {
+        Collection<FunctionDescriptor> functions = type.getMemberScope().getFunctions(Name.identifier("get"));
+        assertEquals(1, functions.size());
+        JetType returnType = functions.iterator().next().getReturnType();
+        assertNotNull(returnType);
+        return returnType;
+    }
+
+    @NotNull
+    private static ClassDescriptor getClassDescriptor(@NotNull JetFile file, @NotNull String name) {
+        BindingContext context = AnalyzerFacadeForJVM.analyzeOneFileWithJavaIntegrationAndCheckForErrors(
+                file, Collections.<AnalyzerScriptParameter>emptyList()).getBindingContext();
+        for (JetClass jetClass : PsiTreeUtil.findChildrenOfType(file, JetClass.class)) {
+            if (name.equals(jetClass.getName())) {
+                ClassDescriptor descriptor = context.get(BindingContext.CLASS, jetClass);
+                assertNotNull(descriptor);
+                return descriptor;
+            }
+        }
+        throw new AssertionError("No class " + name + " in " + file.getText());
+    }
+
+    public void testCallsInDifferentFilesShareType() {
+        List<JetFile> files = new ArrayList<JetFile>();
+        for (int i = 0; i < FILES; i++) {
+            files.add(JetPsiFactory.createFile(getProject(), "file" + i + ".kt",
+                    "package p" + i + "\n\nfun f(list: List<String>) = list.subList(0, 1)\n"));
+        }
+
+        AnalyzeExhaust exhaust = AnalyzerFacadeForJVM.analyzeFilesWithJavaIntegrationAndCheckForErrors(
+                getProject(), files, Collections.<AnalyzerScriptParameter>emptyList(), Predicates.<PsiFile>alwaysTrue());
+        exhaust.throwIfError();
+
+        JetType first = null;
+        for (JetFile file : files) {
+            JetNamedFunction function = (JetNamedFunction) file.getDeclarations().get(0);
+            JetExpression body = function.getBodyExpression();
+            assertNotNull(body);
+            JetType type = exhaust.getBindingContext().get(BindingContext.EXPRESSION_TYPE, body);
+            assertNotNull(type);
+            assertTrue(TypeInterner.isInterned(type));
+            if (first == null) {
+                first = type;
+            }
+            assertSame(first, type);
+        }
+    }
+
+    @NotNull
+    private static JetType substituteListOfString() {
+        KotlinBuiltIns builtIns = KotlinBuiltIns.getInstance();
+        ClassDescriptor list = builtIns.getList();
+        TypeParameterDescriptor parameter = list.getTypeConstructor().getParameters().get(0);
+
+        // A new substitutor every time, as different calls would do
+        TypeSubstitutor substitutor = TypeSubstitutor.create(Collections.<TypeConstructor, TypeProjection>singletonMap(
+                parameter.getTypeConstructor(), new TypeProjectionImpl(builtIns.getStringType())));
+        JetType result = substitutor.substitute(list.getDefaultType(), Variance.INVARIANT);
+        assertNotNull(result);
+        return result;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.util.slicemap;
+
+import junit.framework.TestCase;
+import org.jetbrains.jet.util.slicedmap.*;
+
+import java.util.*;
+
+public class PerSliceSlicedMapTest extends TestCase {
+    private static final WritableSlice<String, Integer> NAME_COLOR = Slices.<String, Integer>sliceBuilder().setDebugName("NAME_COLOR").build();
+    private static final WritableSlice<Integer, String> COLOR_NAME = Slices.<Integer, String>sliceBuilder().setDebugName("COLOR_NAME").build();
+    private static final WritableSlice<String, Integer> NAME_COLOR_WITH_OPPOSITE =
+            Slices.<String, Integer>sliceBuilder().setOpposite(COLOR_NAME).setDebugName("NAME_COLOR_WITH_OPPOSITE").build();
+    private static final WritableSlice<String, Integer> NAME_COLOR_WITH_DEFAULT =
+            Slices.<String, Integer>sliceBuilder().setDefaultValue(-1).setDebugName("NAME_COLOR_WITH_DEFAULT").build();
+    private static final WritableSlice<String, Integer> CASE_INSENSITIVE_NAME_COLOR = Slices.<String, Integer>sliceBuilder()
+            .setKeyNormalizer(new Slices.KeyNormalizer<String>() {
+                @Override
+                public String normalize(String key) {
+                    return key.toLowerCase();
+                }
+            }).setDebugName("CASE_INSENSITIVE_NAME_COLOR").build();
+    private static final WritableSlice<String, Boolean> USED_NAMES = Slices.createCollectiveSetSlice();
+
+    private static final int KEYS = 1000;
+
+    public void testGetAndPut() {
+        for (MutableSlicedMap map : createMaps()) {
+            map.put(NAME_COLOR, "RED", 0xff0000);
+            assertEquals(0xff0000, (int) map.get(NAME_COLOR, "RED"));
+            assertNull(map.get(NAME_COLOR, "GREEN"));
+            assertNull(map.get(COLOR_NAME, 0xff0000));
+        }
+    }
+
+    public void testRewriteToEqualValue() {
+        for (MutableSlicedMap map : createMaps()) {
+            map.put(NAME_COLOR, "RED", 0xff0000);
+            map.put(NAME_COLOR, "RED", 0xff0000);
+            try {
+                map.put(NAME_COLOR, "RED", 0x00ff00);
+                fail("Rewrite should not be allowed");
+            }
+            catch (IllegalStateException e) {
+                // expected
+            }
+            assertEquals(0xff0000, (int) map.get(NAME_COLOR, "RED"));
+        }
+    }
+
+    public void testOpposite() {
+        for (MutableSlicedMap map : createMaps()) {
+            map.put(NAME_COLOR_WITH_OPPOSITE, "RED", 0xff0000);
+            assertEquals("RED", map.get(COLOR_NAME, 0xff0000));
+        }
+    }
+
+    public void testDefaultValue() {
+        for (MutableSlicedMap map : createMaps()) {
+            assertEquals(-1, (int) map.get(NAME_COLOR_WITH_DEFAULT, "RED"));
+            map.put(NAME_COLOR_WITH_DEFAULT, "RED", 0xff0000);
+            assertEquals(0xff0000, (int) map.get(NAME_COLOR_WITH_DEFAULT, "RED"));
+        }
+    }
+
+    public void testKeyNormalizer() {
+        for (MutableSlicedMap map : createMaps()) {
+            map.put(CASE_INSENSITIVE_NAME_COLOR, "Red", 0xff0000);
+            assertEquals(0xff0000, (int) map.get(CASE_INSENSITIVE_NAME_COLOR, "RED"));
+        }
+    }
+
+    public void testSetSliceAndKeys() {
+        for (MutableSlicedMap map : createMaps()) {
+            assertFalse(map.get(USED_NAMES, "a"));
+            map.put(USED_NAMES, "a", true);
+            map.put(USED_NAMES, "b", true);
+            assertTrue(map.get(USED_NAMES, "a"));
+            assertEquals(Arrays.asList("a", "b"), new ArrayList<String>(map.getKeys(USED_NAMES)));
+        }
+    }
+
+    public void testRemove() {
+        for (MutableSlicedMap map : createMaps()) {
+            RemovableSlice<String, Integer> slice = (RemovableSlice<String, Integer>) NAME_COLOR;
+            map.put(slice, "RED", 0xff0000);
+            assertEquals(0xff0000, (int) map.remove(slice, "RED"));
+            assertNull(map.get(slice, "RED"));
+            assertNull(map.remove(slice, "RED"));
+        }
+    }
+
+    public void testIterationContainsAllEntries() {
+        List<Set<String>> contents = new ArrayList<Set<String>>();
+        for (MutableSlicedMap map : createMaps()) {
+            map.put(NAME_COLOR_WITH_OPPOSITE, "RED", 0xff0000);
+            map.put(NAME_COLOR, "GREEN", 0x00ff00);
+            map.put(NAME_COLOR_WITH_OPPOSITE, "BLUE", 0x0000ff);
+
+            Set<String> entries = new HashSet<String>();
+            for (Map.Entry<SlicedMapKey<?, ?>, ?> entry : map) {
+                entries.add(entry.getKey() + " = " + entry.getValue());
+            }
+            contents.add(entries);
+        }
+        assertEquals(5, contents.get(0).size());
+        assertEquals(contents.get(0), contents.get(1));
+    }
+
+    public void testGetSliceContents() {
+        for (MutableSlicedMap map : createMaps()) {
+            map.put(NAME_COLOR, "RED", 0xff0000);
+            map.put(NAME_COLOR, "GREEN", 0x00ff00);
+            map.put(COLOR_NAME, 0, "BLACK");
+            assertEquals(2, map.getSliceContents(NAME_COLOR).size());
+            assertEquals(0x00ff00, (int) map.getSliceContents(NAME_COLOR).get("GREEN"));
+        }
+    }
+
+    public void testGetSliceContentsThroughDelegatingSlice() {
+        WritableSlice<String, Integer> delegatingSlice = new DelegatingSlice<String, Integer>(NAME_COLOR);
+        for (MutableSlicedMap map : createMaps()) {
+            map.put(delegatingSlice, "RED", 0xff0000);
+            assertEquals(0xff0000, (int) map.get(NAME_COLOR, "RED"));
+            assertEquals(0xff0000, (int) map.getSliceContents(delegatingSlice).get("RED"));
+            assertEquals(1, map.getSliceContents(NAME_COLOR).size());
+        }
+    }
+
+    public void testManyKeys() {
+        for (MutableSlicedMap map : createMaps()) {
+            for (int i = 0; i < KEYS; i++) {
+                map.put(NAME_COLOR, "key" + i, i);
+            }
+            for (int i = 0; i < KEYS; i++) {
+                assertEquals(i, (int) map.get(NAME_COLOR, "key" + i));
+            }
+            assertNull(map.get(NAME_COLOR, "key" + KEYS));
+            assertNull(map.get(COLOR_NAME, 0));
+            assertEquals(KEYS, map.getKeys(NAME_COLOR).size());
+        }
+    }
+
+    private static List<MutableSlicedMap> createMaps() {
+        return Arrays.<MutableSlicedMap>asList(SlicedMapImpl.create(), PerSliceSlicedMap.create());
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.utils;
+
+import junit.framework.TestCase;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class PersistentHashMapTest extends TestCase {
+    private static final class BadHash {
+        private final int id;
+        private final int hash;
+
+        BadHash(int id, int hash) {
+            this.id = id;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof BadHash && ((BadHash) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + id;
+        }
+    }
+
+    public void testEmpty() {
+        PersistentHashMap<String, Integer> map = PersistentHashMap.empty();
+        assertTrue(map.isEmpty());
+        assertNull(map.get("a"));
+        assertFalse(map.iterator().hasNext());
+    }
+
+    public void testPutAndGet() {
+        PersistentHashMap<String, Integer> map = PersistentHashMap.empty();
+        Map<String, Integer> expected = new HashMap<String, Integer>();
+        for (int i = 0; i < 5000; i++) {
+            map = map.put("key" + i, i);
+            expected.put("key" + i, i);
+        }
+        assertContents(expected, map);
+    }
+
+    public void testOverwrite() {
+        PersistentHashMap<String, Integer> map = PersistentHashMap.<String, Integer>empty().put("a", 1).put("b", 2);
+        assertSame(map, map.put("a", 1));
+
+        PersistentHashMap<String, Integer> updated = map.put("a", 3);
+        assertEquals(2, updated.size());
+        assertEquals(3, (int) updated.get("a"));
+        assertEquals(1, (int) map.get("a"));
+    }
+
+    public void testOldVersionsAreUnchanged() {
+        PersistentHashMap<Integer, Integer> map = PersistentHashMap.empty();
+        PersistentHashMap<Integer, Integer> half = null;
+        for (int i = 0; i < 1000; i++) {
+            if (i == 500) half = map;
+            map = map.put(i, i);
+        }
+        assertNotNull(half);
+        assertEquals(500, half.size());
+        assertNull(half.get(700));
+        assertEquals(700, (int) map.get(700));
+    }
+
+    public void testCollisions() {
+        PersistentHashMap<BadHash, String> map = PersistentHashMap.empty();
+        Map<BadHash, String> expected = new HashMap<BadHash, String>();
+        for (int i = 0; i < 300; i++) {
+            // Full collisions in groups of ten, and many partial ones
+            BadHash key = new BadHash(i, (i / 10) << 25);
+            map = map.put(key, "v" + i);
+            expected.put(key, "v" + i);
+        }
+        assertContents(expected, map);
+
+        BadHash first = new BadHash(0, 0);
+        PersistentHashMap<BadHash, String> updated = map.put(first, "new");
+        assertEquals("new", updated.get(first));
+        assertEquals("v0", map.get(first));
+        assertSame(updated, updated.put(first, "new"));
+        assertNull(map.get(new BadHash(1000, 0)));
+    }
+
+    private static <K, V> void assertContents(Map<K, V> expected, PersistentHashMap<K, V> map) {
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<K, V> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        Map<K, V> iterated = new HashMap<K, V>();
+        for (Map.Entry<K, V> entry : map) {
+            assertNull("Duplicate key " + entry.getKey(), iterated.put(entry.getKey(), entry.getValue()));
+        }
+        assertEquals(expected, iterated);
+    }
+}
@@ -45,6 +45,7 @@ public final class JvmAbi {
 
     public static final String INSTANCE_FIELD = "instance$";
     public static final String CLASS_OBJECT_FIELD = "object$";
+    public static final String PROPERTY_METADATA_ARRAY_NAME = "$propertyMetadata";
 
     public static final JvmClassName JET_OBJECT = JvmClassName.byFqNameWithoutInnerClasses("jet.JetObject");
 
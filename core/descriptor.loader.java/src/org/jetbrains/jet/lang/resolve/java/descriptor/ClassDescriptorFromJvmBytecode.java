@@ -16,6 +16,7 @@
 
 package org.jetbrains.jet.lang.resolve.java.descriptor;
 
+import jet.Function0;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.lang.descriptors.ClassKind;
@@ -25,6 +26,7 @@ import org.jetbrains.jet.lang.descriptors.impl.MutableClassDescriptorLite;
 import org.jetbrains.jet.lang.resolve.java.scope.JavaClassNonStaticMembersScope;
 import org.jetbrains.jet.lang.resolve.name.Name;
 import org.jetbrains.jet.lang.types.JetType;
+import org.jetbrains.jet.storage.LockBasedStorageManager;
 
 import java.util.Collection;
 
@@ -32,42 +34,62 @@ import java.util.Collection;
  * @see org.jetbrains.jet.lang.resolve.lazy.descriptors.LazyClassDescriptor
  */
 public class ClassDescriptorFromJvmBytecode extends MutableClassDescriptorLite implements JavaClassDescriptor {
+    private final LockBasedStorageManager storageManager;
     private JetType functionTypeForSamInterface;
     private JavaClassNonStaticMembersScope scopeForConstructorResolve;
-    private ConstructorDescriptor primaryConstructor;
     private Collection<ConstructorDescriptor> constructors;
+    // Set once the constructors are resolved completely, read without taking the storage manager lock
+    private volatile Collection<ConstructorDescriptor> publishedConstructors;
 
     public ClassDescriptorFromJvmBytecode(
+            @NotNull LockBasedStorageManager storageManager,
             @NotNull DeclarationDescriptor containingDeclaration,
             @NotNull Name name,
             @NotNull ClassKind kind,
             boolean isInner
     ) {
         super(containingDeclaration, name, kind, isInner);
+        this.storageManager = storageManager;
     }
 
     @NotNull
     @Override
     public Collection<ConstructorDescriptor> getConstructors() {
-        assert scopeForConstructorResolve != null;
-        if (constructors == null) {
-            constructors = scopeForConstructorResolve.getConstructors();
+        Collection<ConstructorDescriptor> published = publishedConstructors;
+        if (published != null) {
+            return published;
         }
-        return constructors;
+
+        assert scopeForConstructorResolve != null;
+        return storageManager.compute(new Function0<Collection<ConstructorDescriptor>>() {
+            @Override
+            public Collection<ConstructorDescriptor> invoke() {
+                if (constructors == null) {
+                    final Collection<ConstructorDescriptor> resolvedConstructors = scopeForConstructorResolve.getConstructors();
+                    constructors = resolvedConstructors;
+                    storageManager.runAfterCompute(new Runnable() {
+                        @Override
+                        public void run() {
+                            publishedConstructors = resolvedConstructors;
+                        }
+                    });
+                }
+                return constructors;
+            }
+        });
     }
 
     @Nullable
     @Override
     public ConstructorDescriptor getUnsubstitutedPrimaryConstructor() {
-        if (primaryConstructor == null) {
-            for (ConstructorDescriptor constructor : getConstructors()) {
-                if (constructor.isPrimary()) {
-                    if (primaryConstructor != null) {
-                        throw new IllegalStateException(
-                                "Class has more than one primary constructor: " + primaryConstructor + "\n" + constructor);
-                    }
-                    primaryConstructor = constructor;
+        ConstructorDescriptor primaryConstructor = null;
+        for (ConstructorDescriptor constructor : getConstructors()) {
+            if (constructor.isPrimary()) {
+                if (primaryConstructor != null) {
+                    throw new IllegalStateException(
+                            "Class has more than one primary constructor: " + primaryConstructor + "\n" + constructor);
                 }
+                primaryConstructor = constructor;
             }
         }
         return primaryConstructor;
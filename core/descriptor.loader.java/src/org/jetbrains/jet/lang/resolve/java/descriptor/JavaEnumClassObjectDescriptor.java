@@ -37,7 +37,8 @@ public class JavaEnumClassObjectDescriptor extends MutableClassDescriptorLite {
         super(enumClass, getClassObjectName(enumClass.getName()), ClassKind.CLASS_OBJECT, false);
     }
 
-    private void initConstructor() {
+    // Only creates a descriptor, so the monitor is never held while resolving anything
+    private synchronized void initConstructor() {
         if (constructor == null) {
             ConstructorDescriptorImpl constructor = DescriptorFactory.createPrimaryConstructorForObject(this);
             constructor.setReturnType(getDefaultType());
@@ -16,6 +16,7 @@
 
 package org.jetbrains.jet.lang.resolve.java.resolver;
 
+import jet.Function0;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.lang.descriptors.*;
@@ -46,9 +47,12 @@ import org.jetbrains.jet.lang.types.JetType;
 import org.jetbrains.jet.lang.types.TypeUtils;
 import org.jetbrains.jet.lang.types.checker.JetTypeChecker;
 import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
+import org.jetbrains.jet.storage.LockBasedStorageManager;
 
 import javax.inject.Inject;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static org.jetbrains.jet.lang.resolve.DescriptorUtils.getClassObjectName;
 import static org.jetbrains.jet.lang.resolve.java.DescriptorSearchRule.INCLUDE_KOTLIN_SOURCES;
@@ -60,6 +64,12 @@ public final class JavaClassResolver {
     @NotNull
     private final Set<FqNameUnsafe> unresolvedCache = new HashSet<FqNameUnsafe>();
 
+    // Copies of the entries above whose resolution is finished, they are read without taking the storage manager lock
+    @NotNull
+    private final ConcurrentMap<FqNameUnsafe, ClassDescriptor> publishedClasses = new ConcurrentHashMap<FqNameUnsafe, ClassDescriptor>();
+    @NotNull
+    private final Set<FqNameUnsafe> publishedUnresolvedClasses = Collections.newSetFromMap(new ConcurrentHashMap<FqNameUnsafe, Boolean>());
+
     private JavaResolverCache cache;
     private JavaTypeParameterResolver typeParameterResolver;
     private JavaMemberResolver memberResolver;
@@ -70,6 +80,7 @@ public final class JavaClassResolver {
     private JavaFunctionResolver functionResolver;
     private DeserializedDescriptorResolver deserializedDescriptorResolver;
     private KotlinClassFinder kotlinClassFinder;
+    private LockBasedStorageManager storageManager;
 
     public JavaClassResolver() {
     }
@@ -124,16 +135,46 @@ public final class JavaClassResolver {
         this.kotlinClassFinder = kotlinClassFinder;
     }
 
+    @Inject
+    public void setStorageManager(LockBasedStorageManager storageManager) {
+        this.storageManager = storageManager;
+    }
+
     @Nullable
-    public ClassDescriptor resolveClass(@NotNull FqName qualifiedName, @NotNull DescriptorSearchRule searchRule) {
-        PostponedTasks postponedTasks = new PostponedTasks();
-        ClassDescriptor classDescriptor = resolveClass(qualifiedName, searchRule, postponedTasks);
-        postponedTasks.performTasks();
-        return classDescriptor;
+    public ClassDescriptor resolveClass(@NotNull final FqName qualifiedName, @NotNull final DescriptorSearchRule searchRule) {
+        final FqNameUnsafe fqName = javaClassToKotlinFqName(qualifiedName);
+        if (publishedClasses.containsKey(fqName) || publishedUnresolvedClasses.contains(fqName)) {
+            return lookUpClass(qualifiedName, searchRule, publishedClasses);
+        }
+
+        return storageManager.compute(new Function0<ClassDescriptor>() {
+            @Override
+            public ClassDescriptor invoke() {
+                PostponedTasks postponedTasks = new PostponedTasks();
+                ClassDescriptor classDescriptor = lookUpOrResolveClass(qualifiedName, searchRule, postponedTasks);
+                postponedTasks.performTasks();
+                publish(fqName);
+                return classDescriptor;
+            }
+        });
     }
 
     @Nullable
     public ClassDescriptor resolveClass(
+            @NotNull final FqName qualifiedName,
+            @NotNull final DescriptorSearchRule searchRule,
+            @NotNull final PostponedTasks tasks
+    ) {
+        return storageManager.compute(new Function0<ClassDescriptor>() {
+            @Override
+            public ClassDescriptor invoke() {
+                return lookUpOrResolveClass(qualifiedName, searchRule, tasks);
+            }
+        });
+    }
+
+    @Nullable
+    private ClassDescriptor lookUpOrResolveClass(
             @NotNull FqName qualifiedName,
             @NotNull DescriptorSearchRule searchRule,
             @NotNull PostponedTasks tasks
@@ -142,6 +183,24 @@ public final class JavaClassResolver {
             return null;
         }
 
+        ClassDescriptor classDescriptor = lookUpClass(qualifiedName, searchRule, classDescriptorCache);
+        if (classDescriptor != null) {
+            return classDescriptor;
+        }
+
+        if (unresolvedCache.contains(javaClassToKotlinFqName(qualifiedName))) {
+            return null;
+        }
+
+        return doResolveClass(qualifiedName, tasks);
+    }
+
+    @Nullable
+    private ClassDescriptor lookUpClass(
+            @NotNull FqName qualifiedName,
+            @NotNull DescriptorSearchRule searchRule,
+            @NotNull Map<FqNameUnsafe, ClassDescriptor> resolvedClasses
+    ) {
         ClassDescriptor builtinClassDescriptor = getKotlinBuiltinClassDescriptor(qualifiedName);
         if (builtinClassDescriptor != null) {
             return builtinClassDescriptor;
@@ -154,17 +213,24 @@ public final class JavaClassResolver {
             }
         }
 
-        FqNameUnsafe fqName = javaClassToKotlinFqName(qualifiedName);
-        ClassDescriptor cachedDescriptor = classDescriptorCache.get(fqName);
-        if (cachedDescriptor != null) {
-            return cachedDescriptor;
-        }
-
-        if (unresolvedCache.contains(fqName)) {
-            return null;
-        }
+        return resolvedClasses.get(javaClassToKotlinFqName(qualifiedName));
+    }
 
-        return doResolveClass(qualifiedName, tasks);
+    private void publish(@NotNull final FqNameUnsafe fqName) {
+        final ClassDescriptor classDescriptor = classDescriptorCache.get(fqName);
+        if (classDescriptor == null && !unresolvedCache.contains(fqName)) return;
+
+        storageManager.runAfterCompute(new Runnable() {
+            @Override
+            public void run() {
+                if (classDescriptor != null) {
+                    publishedClasses.put(fqName, classDescriptor);
+                }
+                else {
+                    publishedUnresolvedClasses.add(fqName);
+                }
+            }
+        });
     }
 
     @Nullable
@@ -245,7 +311,8 @@ public final class JavaClassResolver {
             @NotNull ClassOrNamespaceDescriptor containingDeclaration
     ) {
         ClassDescriptorFromJvmBytecode classDescriptor =
-                new ClassDescriptorFromJvmBytecode(containingDeclaration, javaClass.getName(), determineClassKind(javaClass), isInnerClass(javaClass));
+                new ClassDescriptorFromJvmBytecode(storageManager, containingDeclaration, javaClass.getName(),
+                                                   determineClassKind(javaClass), isInnerClass(javaClass));
 
         cache(javaClassToKotlinFqName(fqName), classDescriptor);
 
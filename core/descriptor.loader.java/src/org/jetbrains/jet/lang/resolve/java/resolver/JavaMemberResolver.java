@@ -23,6 +23,7 @@ import org.jetbrains.jet.lang.resolve.java.DescriptorSearchRule;
 import org.jetbrains.jet.lang.resolve.java.scope.NamedMembers;
 import org.jetbrains.jet.lang.resolve.java.structure.JavaClass;
 import org.jetbrains.jet.lang.resolve.name.FqName;
+import org.jetbrains.jet.storage.LockBasedStorageManager;
 
 import javax.inject.Inject;
 import java.util.Collection;
@@ -34,6 +35,7 @@ public class JavaMemberResolver {
     private JavaFunctionResolver functionResolver;
     private JavaPropertyResolver propertyResolver;
     private JavaConstructorResolver constructorResolver;
+    private LockBasedStorageManager storageManager;
 
     @Inject
     public void setClassResolver(JavaClassResolver classResolver) {
@@ -60,6 +62,20 @@ public class JavaMemberResolver {
         this.constructorResolver = constructorResolver;
     }
 
+    @Inject
+    public void setStorageManager(LockBasedStorageManager storageManager) {
+        this.storageManager = storageManager;
+    }
+
+    /**
+     * Everything resolved lazily from Java and Kotlin binaries is computed under the lock of this storage manager,
+     * finished results are published with {@link LockBasedStorageManager#runAfterCompute} and read without the lock
+     */
+    @NotNull
+    public LockBasedStorageManager getStorageManager() {
+        return storageManager;
+    }
+
     @Nullable
     public ClassDescriptor resolveClass(@NotNull FqName qualifiedName, @NotNull DescriptorSearchRule searchRule) {
         return classResolver.resolveClass(qualifiedName, searchRule);
@@ -16,6 +16,7 @@
 
 package org.jetbrains.jet.lang.resolve.java.resolver;
 
+import jet.Function0;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.lang.descriptors.ModuleDescriptor;
@@ -40,9 +41,12 @@ import org.jetbrains.jet.lang.resolve.kotlin.KotlinJvmBinaryClass;
 import org.jetbrains.jet.lang.resolve.name.FqName;
 import org.jetbrains.jet.lang.resolve.name.Name;
 import org.jetbrains.jet.lang.resolve.scopes.JetScope;
+import org.jetbrains.jet.storage.LockBasedStorageManager;
 
 import javax.inject.Inject;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static org.jetbrains.jet.lang.resolve.java.DescriptorSearchRule.INCLUDE_KOTLIN_SOURCES;
 
@@ -57,12 +61,19 @@ public final class JavaNamespaceResolver {
     @NotNull
     private final Set<FqName> unresolvedCache = new HashSet<FqName>();
 
+    // Copies of the entries above whose resolution is finished, they are read without taking the storage manager lock
+    @NotNull
+    private final ConcurrentMap<FqName, JetScope> publishedNamespaces = new ConcurrentHashMap<FqName, JetScope>();
+    @NotNull
+    private final Set<FqName> publishedUnresolvedNamespaces = Collections.newSetFromMap(new ConcurrentHashMap<FqName, Boolean>());
+
     private JavaClassFinder javaClassFinder;
     private JavaResolverCache cache;
     private JavaMemberResolver memberResolver;
 
     private DeserializedDescriptorResolver deserializedDescriptorResolver;
     private KotlinClassFinder kotlinClassFinder;
+    private LockBasedStorageManager storageManager;
 
     @Inject
     public void setKotlinClassFinder(KotlinClassFinder kotlinClassFinder) {
@@ -89,8 +100,33 @@ public final class JavaNamespaceResolver {
         this.deserializedDescriptorResolver = deserializedDescriptorResolver;
     }
 
+    @Inject
+    public void setStorageManager(LockBasedStorageManager storageManager) {
+        this.storageManager = storageManager;
+    }
+
     @Nullable
-    public NamespaceDescriptor resolveNamespace(@NotNull FqName qualifiedName, @NotNull DescriptorSearchRule searchRule) {
+    public NamespaceDescriptor resolveNamespace(@NotNull final FqName qualifiedName, @NotNull final DescriptorSearchRule searchRule) {
+        if (publishedNamespaces.containsKey(qualifiedName) || publishedUnresolvedNamespaces.contains(qualifiedName)) {
+            return lookUpNamespace(qualifiedName, searchRule, publishedNamespaces);
+        }
+
+        return storageManager.compute(new Function0<NamespaceDescriptor>() {
+            @Override
+            public NamespaceDescriptor invoke() {
+                NamespaceDescriptor namespaceDescriptor = doResolveNamespace(qualifiedName, searchRule);
+                publish(qualifiedName);
+                return namespaceDescriptor;
+            }
+        });
+    }
+
+    @Nullable
+    private NamespaceDescriptor lookUpNamespace(
+            @NotNull FqName qualifiedName,
+            @NotNull DescriptorSearchRule searchRule,
+            @NotNull Map<FqName, JetScope> resolvedNamespaces
+    ) {
         if (searchRule == INCLUDE_KOTLIN_SOURCES) {
             NamespaceDescriptor kotlinNamespaceDescriptor = cache.getPackageResolvedFromSource(qualifiedName);
             if (kotlinNamespaceDescriptor != null) {
@@ -98,13 +134,20 @@ public final class JavaNamespaceResolver {
             }
         }
 
+        JetScope scope = resolvedNamespaces.get(qualifiedName);
+        return scope != null ? (NamespaceDescriptor) scope.getContainingDeclaration() : null;
+    }
+
+    @Nullable
+    private NamespaceDescriptor doResolveNamespace(@NotNull FqName qualifiedName, @NotNull DescriptorSearchRule searchRule) {
+        NamespaceDescriptor cachedNamespaceDescriptor = lookUpNamespace(qualifiedName, searchRule, resolvedNamespaceCache);
+        if (cachedNamespaceDescriptor != null) {
+            return cachedNamespaceDescriptor;
+        }
+
         if (unresolvedCache.contains(qualifiedName)) {
             return null;
         }
-        JetScope scope = resolvedNamespaceCache.get(qualifiedName);
-        if (scope != null) {
-            return (NamespaceDescriptor) scope.getContainingDeclaration();
-        }
 
         NamespaceDescriptorParent parentNs = resolveParentNamespace(qualifiedName);
         if (parentNs == null) {
@@ -205,9 +248,46 @@ public final class JavaNamespaceResolver {
         }
     }
 
+    private void publish(@NotNull final FqName fqName) {
+        final JetScope packageScope = resolvedNamespaceCache.get(fqName);
+        if (packageScope == null && !unresolvedCache.contains(fqName)) return;
+
+        storageManager.runAfterCompute(new Runnable() {
+            @Override
+            public void run() {
+                if (packageScope != null) {
+                    publishedNamespaces.put(fqName, packageScope);
+                }
+                else {
+                    publishedUnresolvedNamespaces.add(fqName);
+                }
+            }
+        });
+    }
+
+    @Nullable
+    public JetScope getJavaPackageScopeForExistingNamespaceDescriptor(@NotNull final NamespaceDescriptor namespaceDescriptor) {
+        final FqName fqName = DescriptorUtils.getFQName(namespaceDescriptor).toSafe();
+        JetScope publishedScope = publishedNamespaces.get(fqName);
+        if (publishedScope != null) {
+            return publishedScope;
+        }
+
+        return storageManager.compute(new Function0<JetScope>() {
+            @Override
+            public JetScope invoke() {
+                JetScope scope = doGetJavaPackageScopeForExistingNamespaceDescriptor(fqName, namespaceDescriptor);
+                publish(fqName);
+                return scope;
+            }
+        });
+    }
+
     @Nullable
-    public JetScope getJavaPackageScopeForExistingNamespaceDescriptor(@NotNull NamespaceDescriptor namespaceDescriptor) {
-        FqName fqName = DescriptorUtils.getFQName(namespaceDescriptor).toSafe();
+    private JetScope doGetJavaPackageScopeForExistingNamespaceDescriptor(
+            @NotNull FqName fqName,
+            @NotNull NamespaceDescriptor namespaceDescriptor
+    ) {
         if (unresolvedCache.contains(fqName)) {
             throw new IllegalStateException(
                     "This means that we are trying to create a Java package, but have a package with the same FQN defined in Kotlin: " +
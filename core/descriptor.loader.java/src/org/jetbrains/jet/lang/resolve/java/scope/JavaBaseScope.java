@@ -16,6 +16,7 @@
 
 package org.jetbrains.jet.lang.resolve.java.scope;
 
+import jet.Function0;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.lang.descriptors.*;
@@ -23,8 +24,11 @@ import org.jetbrains.jet.lang.resolve.java.resolver.JavaMemberResolver;
 import org.jetbrains.jet.lang.resolve.java.resolver.ProgressChecker;
 import org.jetbrains.jet.lang.resolve.name.Name;
 import org.jetbrains.jet.lang.resolve.scopes.JetScopeImpl;
+import org.jetbrains.jet.storage.LockBasedStorageManager;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public abstract class JavaBaseScope extends JetScopeImpl {
     @NotNull
@@ -32,6 +36,8 @@ public abstract class JavaBaseScope extends JetScopeImpl {
     @NotNull
     protected final MembersProvider membersProvider;
     @NotNull
+    protected final LockBasedStorageManager storageManager;
+    @NotNull
     private final Map<Name, Set<FunctionDescriptor>> functionDescriptors = new HashMap<Name, Set<FunctionDescriptor>>();
     @NotNull
     private final Map<Name, Set<VariableDescriptor>> propertyDescriptors = new HashMap<Name, Set<VariableDescriptor>>();
@@ -39,6 +45,18 @@ public abstract class JavaBaseScope extends JetScopeImpl {
     private Collection<DeclarationDescriptor> allDescriptors = null;
     @Nullable
     private Set<ClassDescriptor> objectDescriptors = null;
+
+    // Results whose resolution is finished, they are read without taking the storage manager lock
+    @NotNull
+    private final ConcurrentMap<Name, Collection<FunctionDescriptor>> publishedFunctions =
+            new ConcurrentHashMap<Name, Collection<FunctionDescriptor>>();
+    @NotNull
+    private final ConcurrentMap<Name, Collection<VariableDescriptor>> publishedProperties =
+            new ConcurrentHashMap<Name, Collection<VariableDescriptor>>();
+    @Nullable
+    private volatile Collection<DeclarationDescriptor> publishedAllDescriptors = null;
+    @Nullable
+    private volatile Set<ClassDescriptor> publishedObjectDescriptors = null;
     @NotNull
     protected final ClassOrNamespaceDescriptor descriptor;
 
@@ -53,6 +71,7 @@ public abstract class JavaBaseScope extends JetScopeImpl {
         this.memberResolver = memberResolver;
         this.membersProvider = membersProvider;
         this.descriptor = descriptor;
+        this.storageManager = memberResolver.getStorageManager();
     }
 
     @NotNull
@@ -63,7 +82,22 @@ public abstract class JavaBaseScope extends JetScopeImpl {
 
     @NotNull
     @Override
-    public Collection<VariableDescriptor> getProperties(@NotNull Name name) {
+    public Collection<VariableDescriptor> getProperties(@NotNull final Name name) {
+        Collection<VariableDescriptor> published = publishedProperties.get(name);
+        if (published != null) return published;
+
+        return storageManager.compute(new Function0<Collection<VariableDescriptor>>() {
+            @Override
+            public Collection<VariableDescriptor> invoke() {
+                Collection<VariableDescriptor> properties = doGetProperties(name);
+                publish(publishedProperties, name, properties);
+                return properties;
+            }
+        });
+    }
+
+    @NotNull
+    private Collection<VariableDescriptor> doGetProperties(@NotNull Name name) {
         Set<VariableDescriptor> cached = propertyDescriptors.get(name);
         if (cached != null) return cached;
 
@@ -87,7 +121,35 @@ public abstract class JavaBaseScope extends JetScopeImpl {
 
     @NotNull
     @Override
-    public Collection<FunctionDescriptor> getFunctions(@NotNull Name name) {
+    public Collection<FunctionDescriptor> getFunctions(@NotNull final Name name) {
+        Collection<FunctionDescriptor> published = publishedFunctions.get(name);
+        if (published != null) return published;
+
+        return storageManager.compute(new Function0<Collection<FunctionDescriptor>>() {
+            @Override
+            public Collection<FunctionDescriptor> invoke() {
+                Collection<FunctionDescriptor> functions = doGetFunctions(name);
+                publish(publishedFunctions, name, functions);
+                return functions;
+            }
+        });
+    }
+
+    private <D> void publish(
+            @NotNull final ConcurrentMap<Name, Collection<D>> published,
+            @NotNull final Name name,
+            @NotNull final Collection<D> descriptors
+    ) {
+        storageManager.runAfterCompute(new Runnable() {
+            @Override
+            public void run() {
+                published.put(name, descriptors);
+            }
+        });
+    }
+
+    @NotNull
+    private Collection<FunctionDescriptor> doGetFunctions(@NotNull Name name) {
         Set<FunctionDescriptor> cached = functionDescriptors.get(name);
         if (cached != null) return cached;
 
@@ -106,13 +168,25 @@ public abstract class JavaBaseScope extends JetScopeImpl {
     @NotNull
     @Override
     public Collection<DeclarationDescriptor> getAllDescriptors() {
-        if (allDescriptorsComputed()) {
-            return allDescriptors;
-        }
-
-        allDescriptors = computeAllDescriptors();
+        Collection<DeclarationDescriptor> published = publishedAllDescriptors;
+        if (published != null) return published;
 
-        return allDescriptors;
+        return storageManager.compute(new Function0<Collection<DeclarationDescriptor>>() {
+            @Override
+            public Collection<DeclarationDescriptor> invoke() {
+                if (!allDescriptorsComputed()) {
+                    final Collection<DeclarationDescriptor> descriptors = computeAllDescriptors();
+                    allDescriptors = descriptors;
+                    storageManager.runAfterCompute(new Runnable() {
+                        @Override
+                        public void run() {
+                            publishedAllDescriptors = descriptors;
+                        }
+                    });
+                }
+                return allDescriptors;
+            }
+        });
     }
 
     private boolean allDescriptorsComputed() {
@@ -130,10 +204,25 @@ public abstract class JavaBaseScope extends JetScopeImpl {
     @NotNull
     @Override
     public Set<ClassDescriptor> getObjectDescriptors() {
-        if (objectDescriptors == null) {
-            objectDescriptors = new HashSet<ClassDescriptor>(filterObjects(getInnerClasses(), true));
-        }
-        return objectDescriptors;
+        Set<ClassDescriptor> published = publishedObjectDescriptors;
+        if (published != null) return published;
+
+        return storageManager.compute(new Function0<Set<ClassDescriptor>>() {
+            @Override
+            public Set<ClassDescriptor> invoke() {
+                if (objectDescriptors == null) {
+                    final Set<ClassDescriptor> descriptors = new HashSet<ClassDescriptor>(filterObjects(getInnerClasses(), true));
+                    objectDescriptors = descriptors;
+                    storageManager.runAfterCompute(new Runnable() {
+                        @Override
+                        public void run() {
+                            publishedObjectDescriptors = descriptors;
+                        }
+                    });
+                }
+                return objectDescriptors;
+            }
+        });
     }
 
     @NotNull
@@ -16,6 +16,7 @@
 
 package org.jetbrains.jet.lang.resolve.java.scope;
 
+import jet.Function0;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.jet.lang.descriptors.*;
 import org.jetbrains.jet.lang.resolve.java.resolver.JavaMemberResolver;
@@ -26,6 +27,8 @@ import java.util.*;
 
 public abstract class JavaClassMembersScope extends JavaBaseScope {
     private Map<Name, ClassDescriptor> innerClassesMap = null;
+    // Set once the inner classes are resolved completely, read without taking the storage manager lock
+    private volatile Map<Name, ClassDescriptor> publishedInnerClassesMap = null;
 
     protected JavaClassMembersScope(
             @NotNull ClassOrNamespaceDescriptor descriptor,
@@ -54,14 +57,29 @@ public abstract class JavaClassMembersScope extends JavaBaseScope {
 
     @NotNull
     private Map<Name, ClassDescriptor> getInnerClassesMap() {
-        if (innerClassesMap == null) {
-            Collection<ClassDescriptor> innerClasses = getInnerClasses();
-            innerClassesMap = new HashMap<Name, ClassDescriptor>();
-            for (ClassDescriptor innerClass : innerClasses) {
-                innerClassesMap.put(innerClass.getName(), innerClass);
+        Map<Name, ClassDescriptor> published = publishedInnerClassesMap;
+        if (published != null) return published;
+
+        return storageManager.compute(new Function0<Map<Name, ClassDescriptor>>() {
+            @Override
+            public Map<Name, ClassDescriptor> invoke() {
+                if (innerClassesMap == null) {
+                    Collection<ClassDescriptor> innerClasses = getInnerClasses();
+                    final Map<Name, ClassDescriptor> map = new HashMap<Name, ClassDescriptor>();
+                    for (ClassDescriptor innerClass : innerClasses) {
+                        map.put(innerClass.getName(), innerClass);
+                    }
+                    innerClassesMap = map;
+                    storageManager.runAfterCompute(new Runnable() {
+                        @Override
+                        public void run() {
+                            publishedInnerClassesMap = map;
+                        }
+                    });
+                }
+                return innerClassesMap;
             }
-        }
-        return innerClassesMap;
+        });
     }
 
     @Override
@@ -16,6 +16,7 @@
 
 package org.jetbrains.jet.lang.resolve.java.scope;
 
+import jet.Function0;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.jet.lang.descriptors.ClassDescriptor;
 import org.jetbrains.jet.lang.descriptors.ConstructorDescriptor;
@@ -47,7 +48,12 @@ public final class JavaClassNonStaticMembersScope extends JavaClassMembersScope
 
     @NotNull
     public Collection<ConstructorDescriptor> getConstructors() {
-        return memberResolver.resolveConstructors(javaClass, descriptor);
+        return storageManager.compute(new Function0<Collection<ConstructorDescriptor>>() {
+            @Override
+            public Collection<ConstructorDescriptor> invoke() {
+                return memberResolver.resolveConstructors(javaClass, descriptor);
+            }
+        });
     }
 
     @NotNull
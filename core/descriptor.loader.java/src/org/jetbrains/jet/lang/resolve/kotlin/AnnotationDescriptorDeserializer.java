@@ -58,25 +58,26 @@ public class AnnotationDescriptorDeserializer implements AnnotationDeserializer
     private KotlinClassFinder kotlinClassFinder;
     private ErrorReporter errorReporter;
 
-    // TODO: a single instance of StorageManager for all computations in resolve-java
-    private final LockBasedStorageManager storageManager = new LockBasedStorageManager();
-
-    private final MemoizedFunctionToNotNull<KotlinJvmBinaryClass, Map<MemberSignature, List<AnnotationDescriptor>>> memberAnnotations =
-            storageManager.createMemoizedFunction(
-                    new Function1<KotlinJvmBinaryClass, Map<MemberSignature, List<AnnotationDescriptor>>>() {
-                        @NotNull
-                        @Override
-                        public Map<MemberSignature, List<AnnotationDescriptor>> invoke(@NotNull KotlinJvmBinaryClass kotlinClass) {
-                            try {
-                                return loadMemberAnnotationsFromClass(kotlinClass);
-                            }
-                            catch (IOException e) {
-                                errorReporter.reportAnnotationLoadingError(
-                                        "Error loading member annotations from Kotlin class: " + kotlinClass, e);
-                                return Collections.emptyMap();
-                            }
+    private MemoizedFunctionToNotNull<KotlinJvmBinaryClass, Map<MemberSignature, List<AnnotationDescriptor>>> memberAnnotations;
+
+    @Inject
+    public void setStorageManager(LockBasedStorageManager storageManager) {
+        this.memberAnnotations = storageManager.createMemoizedFunction(
+                new Function1<KotlinJvmBinaryClass, Map<MemberSignature, List<AnnotationDescriptor>>>() {
+                    @NotNull
+                    @Override
+                    public Map<MemberSignature, List<AnnotationDescriptor>> invoke(@NotNull KotlinJvmBinaryClass kotlinClass) {
+                        try {
+                            return loadMemberAnnotationsFromClass(kotlinClass);
                         }
-                    });
+                        catch (IOException e) {
+                            errorReporter.reportAnnotationLoadingError(
+                                    "Error loading member annotations from Kotlin class: " + kotlinClass, e);
+                            return Collections.emptyMap();
+                        }
+                    }
+                });
+    }
 
     @Inject
     public void setJavaClassResolver(JavaClassResolver javaClassResolver) {
@@ -45,7 +45,7 @@ import static org.jetbrains.jet.lang.resolve.kotlin.DeserializedResolverUtils.ko
 public final class DeserializedDescriptorResolver {
     private AnnotationDescriptorDeserializer annotationDeserializer;
 
-    private final LockBasedStorageManager storageManager = new LockBasedStorageManager();
+    private LockBasedStorageManager storageManager;
 
     private JavaNamespaceResolver javaNamespaceResolver;
 
@@ -94,6 +94,12 @@ public final class DeserializedDescriptorResolver {
         this.errorReporter = errorReporter;
     }
 
+    // Shared with the Java resolver: deserialized descriptors resolve Java classes and vice versa, and separate locks could deadlock
+    @Inject
+    public void setStorageManager(LockBasedStorageManager storageManager) {
+        this.storageManager = storageManager;
+    }
+
     @Nullable
     public ClassDescriptor resolveClass(@NotNull KotlinJvmBinaryClass kotlinClass) {
         String[] data = readData(kotlinClass);
@@ -16,7 +16,6 @@
 
 package org.jetbrains.jet.lang.resolve.scopes;
 
-import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -27,16 +26,19 @@ import org.jetbrains.jet.lang.types.TypeSubstitutor;
 
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class SubstitutingScope implements JetScope {
+    private static final Object NULL_DESCRIPTOR = new Object();
 
     private final JetScope workerScope;
     private final TypeSubstitutor substitutor;
 
-    private Map<DeclarationDescriptor, DeclarationDescriptor> substitutedDescriptors = null;
-    private Collection<DeclarationDescriptor> allDescriptors = null;
+    // Member scopes of interned types are shared, so the scope may be used from several threads
+    private volatile ConcurrentMap<DeclarationDescriptor, Object> substitutedDescriptors = null;
+    private volatile Collection<DeclarationDescriptor> allDescriptors = null;
 
     public SubstitutingScope(JetScope workerScope, @NotNull TypeSubstitutor substitutor) {
         this.workerScope = workerScope;
@@ -48,20 +50,35 @@ public class SubstitutingScope implements JetScope {
         if (descriptor == null) return null;
         if (substitutor.isEmpty()) return descriptor;
 
-        if (substitutedDescriptors == null) {
-            substitutedDescriptors = Maps.newHashMap();
-        }
-
-        DeclarationDescriptor substituted = substitutedDescriptors.get(descriptor);
-        if (substituted == null && !substitutedDescriptors.containsKey(descriptor)) {
-            substituted = descriptor.substitute(substitutor);
+        ConcurrentMap<DeclarationDescriptor, Object> substitutedDescriptors = getSubstitutedDescriptors();
+        Object substituted = substitutedDescriptors.get(descriptor);
+        if (substituted == null) {
+            DeclarationDescriptor newDescriptor = descriptor.substitute(substitutor);
+            substituted = newDescriptor == null ? NULL_DESCRIPTOR : newDescriptor;
 
-            //noinspection ConstantConditions
-            substitutedDescriptors.put(descriptor, substituted);
+            Object oldDescriptor = substitutedDescriptors.putIfAbsent(descriptor, substituted);
+            if (oldDescriptor != null) {
+                substituted = oldDescriptor;
+            }
         }
 
         //noinspection unchecked
-        return (D) substituted;
+        return substituted == NULL_DESCRIPTOR ? null : (D) substituted;
+    }
+
+    @NotNull
+    private ConcurrentMap<DeclarationDescriptor, Object> getSubstitutedDescriptors() {
+        ConcurrentMap<DeclarationDescriptor, Object> result = substitutedDescriptors;
+        if (result == null) {
+            synchronized (this) {
+                result = substitutedDescriptors;
+                if (result == null) {
+                    result = new ConcurrentHashMap<DeclarationDescriptor, Object>();
+                    substitutedDescriptors = result;
+                }
+            }
+        }
+        return result;
     }
 
     @NotNull
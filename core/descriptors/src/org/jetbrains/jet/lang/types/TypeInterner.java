@@ -0,0 +1,161 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.types;
+
+import com.google.common.collect.MapMaker;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.descriptors.ClassDescriptor;
+import org.jetbrains.jet.lang.descriptors.ClassifierDescriptor;
+import org.jetbrains.jet.lang.descriptors.DeclarationDescriptor;
+import org.jetbrains.jet.lang.descriptors.NamespaceDescriptor;
+import org.jetbrains.jet.lang.descriptors.annotations.AnnotationDescriptor;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Makes equal instantiations of classes (e.g. all the {@code List<String>} types created by substitutions) share a single
+ * {@link JetType} instance, and hence a single member scope with its memoized substituted descriptors.
+ *
+ * Only types without annotations whose arguments are already computed are interned, so that interning never forces lazy types.
+ * Only classes whose members may refer to no type parameters but their own are interned: the member scope of an inner class
+ * of {@code Outer<T>} or of a class local to {@code fun <T>} depends on the substitution for {@code T}, which is not in the key.
+ * Interned types are weakly referenced and go away together with the descriptors they refer to.
+ */
+public final class TypeInterner {
+    private static final int MAX_ARGUMENT_DEPTH = 10;
+
+    private static final ConcurrentMap<Key, JetType> TYPES = new MapMaker().weakValues().makeMap();
+    // Weak keys are compared by identity
+    private static final ConcurrentMap<JetType, Boolean> INTERNED = new MapMaker().weakKeys().makeMap();
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    private TypeInterner() {
+    }
+
+    /**
+     * @return the interned type with the given constructor, nullability and arguments, or {@code null} if there's none
+     */
+    @Nullable
+    public static JetType get(@NotNull TypeConstructor constructor, boolean nullable, @NotNull List<TypeProjection> arguments) {
+        if (!isInternable(constructor, arguments)) return null;
+        JetType type = TYPES.get(new Key(constructor, nullable, arguments));
+        if (type != null) {
+            hits.incrementAndGet();
+        }
+        else {
+            misses.incrementAndGet();
+        }
+        return type;
+    }
+
+    /**
+     * @return the type equal to the given one which was interned first, or the given type itself if it can't be interned
+     */
+    @NotNull
+    public static JetType intern(@NotNull JetType type) {
+        if (!type.getAnnotations().isEmpty() || !isInternable(type.getConstructor(), type.getArguments())) return type;
+        JetType existing = TYPES.putIfAbsent(new Key(type.getConstructor(), type.isNullable(), type.getArguments()), type);
+        if (existing != null) return existing;
+        INTERNED.put(type, Boolean.TRUE);
+        return type;
+    }
+
+    public static boolean isInterned(@NotNull JetType type) {
+        return INTERNED.containsKey(type);
+    }
+
+    /**
+     * Creates or finds an interned copy of an interned type with the given nullability. Both share the member scope.
+     */
+    @NotNull
+    /* package */ static JetType makeNullableAsSpecified(@NotNull JetType internedType, boolean nullable) {
+        assert isInterned(internedType) : "Type is not interned: " + internedType;
+        JetType type = get(internedType.getConstructor(), nullable, internedType.getArguments());
+        if (type != null) return type;
+        return intern(new JetTypeImpl(Collections.<AnnotationDescriptor>emptyList(), internedType.getConstructor(), nullable,
+                                      internedType.getArguments(), internedType.getMemberScope()));
+    }
+
+    @NotNull
+    public static String getStatistics() {
+        return "Interned types: " + TYPES.size() + ", " + hits.get() + " hits, " + misses.get() + " misses";
+    }
+
+    private static boolean isInternable(@NotNull TypeConstructor constructor, @NotNull List<TypeProjection> arguments) {
+        ClassifierDescriptor classifier = constructor.getDeclarationDescriptor();
+        return classifier instanceof ClassDescriptor
+               && isDeterminedByOwnArguments((ClassDescriptor) classifier)
+               && areArgumentsComputed(arguments, 0);
+    }
+
+    // Nested (but not inner) classes of top-level classes can't see any type parameters of their containers
+    private static boolean isDeterminedByOwnArguments(@NotNull ClassDescriptor classDescriptor) {
+        DeclarationDescriptor descriptor = classDescriptor;
+        while (descriptor instanceof ClassDescriptor) {
+            if (((ClassDescriptor) descriptor).isInner()) return false;
+            descriptor = descriptor.getContainingDeclaration();
+        }
+        return descriptor instanceof NamespaceDescriptor;
+    }
+
+    private static boolean areArgumentsComputed(@NotNull List<TypeProjection> arguments, int depth) {
+        if (arguments.isEmpty()) return true;
+        if (depth >= MAX_ARGUMENT_DEPTH) return false;
+        for (TypeProjection argument : arguments) {
+            JetType type = TypeUtils.unwrapKnownNullability(argument.getType());
+            if (!(type instanceof JetTypeImpl)) return false;
+            if (!areArgumentsComputed(type.getArguments(), depth + 1)) return false;
+        }
+        return true;
+    }
+
+    private static final class Key {
+        private final TypeConstructor constructor;
+        private final boolean nullable;
+        private final List<TypeProjection> arguments;
+        private final int hashCode;
+
+        private Key(@NotNull TypeConstructor constructor, boolean nullable, @NotNull List<TypeProjection> arguments) {
+            this.constructor = constructor;
+            this.nullable = nullable;
+            this.arguments = arguments;
+            this.hashCode = 31 * (31 * constructor.hashCode() + arguments.hashCode()) + (nullable ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return hashCode == other.hashCode
+                   && nullable == other.nullable
+                   && constructor.equals(other.constructor)
+                   && arguments.equals(other.arguments);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
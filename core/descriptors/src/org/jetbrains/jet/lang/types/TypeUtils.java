@@ -119,6 +119,11 @@ public class TypeUtils {
             return type;
         }
 
+        // Interned types share the member scope with their interned counterparts of the other nullability
+        if (TypeInterner.isInterned(type)) {
+            return TypeInterner.makeNullableAsSpecified(type, nullable);
+        }
+
         // Wrapping serves two purposes here
         // 1. It's requires less memory than copying with a changed nullability flag: a copy has many fields, while a wrapper has only one
         // 2. It preserves laziness of types
@@ -131,6 +136,14 @@ public class TypeUtils {
         return nullable ? new NullableType(type) : new NotNullType(type);
     }
 
+    /**
+     * @return the type wrapped by {@link #makeNullableAsSpecified}, or the type itself if it's not a wrapper
+     */
+    @NotNull
+    /* package */ static JetType unwrapKnownNullability(@NotNull JetType type) {
+        return type instanceof AbstractTypeWithKnownNullability ? ((AbstractTypeWithKnownNullability) type).delegate : type;
+    }
+
     public static boolean isIntersectionEmpty(@NotNull JetType typeA, @NotNull JetType typeB) {
         return intersect(JetTypeChecker.INSTANCE, Sets.newLinkedHashSet(Lists.newArrayList(typeA, typeB))) == null;
     }
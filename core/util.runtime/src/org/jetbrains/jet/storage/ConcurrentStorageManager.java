@@ -0,0 +1,504 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.storage;
+
+import jet.Function0;
+import jet.Function1;
+import jet.Unit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.utils.ExceptionUtils;
+import org.jetbrains.jet.utils.WrappedValues;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A storage manager that lets different threads compute different values at the same time.
+ *
+ * Unlike {@link LockBasedStorageManager}, no lock is held while a value is being computed: a value being computed is owned by
+ * the computing thread, other threads requesting it wait for the result. A thread that would close a cycle of such waits
+ * (T1 computes A and needs B, while T2 computes B and needs A) is treated as if it made a recursive call:
+ * with a single lock both computations would have happened on one thread and the recursion would have been detected there.
+ *
+ * The monitor is only held for short state transitions, computed values are read without any locking.
+ */
+public class ConcurrentStorageManager implements StorageManager {
+
+    private final Object monitor = new Object();
+
+    // Guarded by monitor
+    private final Map<Thread, Computation> waitingFor = new HashMap<Thread, Computation>();
+    // Guarded by monitor
+    @Nullable
+    private Computation computeLockOwner = null;
+    // Guarded by monitor
+    private int computeLockHoldCount = 0;
+
+    @NotNull
+    @Override
+    public <K, V> MemoizedFunctionToNotNull<K, V> createMemoizedFunction(@NotNull Function1<K, V> compute) {
+        return createMemoizedFunction(compute, new ConcurrentHashMap<K, Object>());
+    }
+
+    @NotNull
+    protected <K, V> MemoizedFunctionToNotNull<K, V> createMemoizedFunction(
+            @NotNull Function1<K, V> compute,
+            @NotNull ConcurrentMap<K, Object> map
+    ) {
+        return new MapBasedMemoizedFunctionToNotNull<K, V>(map, compute);
+    }
+
+    @NotNull
+    @Override
+    public <K, V> MemoizedFunctionToNullable<K, V> createMemoizedFunctionWithNullableValues(@NotNull Function1<K, V> compute) {
+        return createMemoizedFunctionWithNullableValues(compute, new ConcurrentHashMap<K, Object>());
+    }
+
+    @NotNull
+    protected <K, V> MemoizedFunctionToNullable<K, V> createMemoizedFunctionWithNullableValues(
+            @NotNull Function1<K, V> compute,
+            @NotNull ConcurrentMap<K, Object> map
+    ) {
+        return new MapBasedMemoizedFunction<K, V>(map, compute);
+    }
+
+    @NotNull
+    @Override
+    public <T> NotNullLazyValue<T> createLazyValue(@NotNull Function0<T> computable) {
+        return new ConcurrentNotNullLazyValue<T>(computable);
+    }
+
+    @NotNull
+    @Override
+    public <T> NotNullLazyValue<T> createRecursionTolerantLazyValue(
+            @NotNull Function0<T> computable, @NotNull final T onRecursiveCall
+    ) {
+        return new ConcurrentNotNullLazyValue<T>(computable) {
+            @Override
+            protected T recursionDetected(boolean firstTime) {
+                return onRecursiveCall;
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public <T> NotNullLazyValue<T> createLazyValueWithPostCompute(
+            @NotNull Function0<T> computable,
+            final Function1<Boolean, T> onRecursiveCall,
+            @NotNull final Function1<T, Unit> postCompute
+    ) {
+        return new ConcurrentNotNullLazyValue<T>(computable) {
+            @Nullable
+            @Override
+            protected T recursionDetected(boolean firstTime) {
+                if (onRecursiveCall == null) {
+                    return super.recursionDetected(firstTime);
+                }
+                return onRecursiveCall.invoke(firstTime);
+            }
+
+            @Override
+            protected void postCompute(@NotNull T value) {
+                postCompute.invoke(value);
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public <T> NullableLazyValue<T> createNullableLazyValue(@NotNull Function0<T> computable) {
+        return new ConcurrentLazyValue<T>(computable);
+    }
+
+    @NotNull
+    @Override
+    public <T> NullableLazyValue<T> createRecursionTolerantNullableLazyValue(@NotNull Function0<T> computable, final T onRecursiveCall) {
+        return new ConcurrentLazyValue<T>(computable) {
+            @Override
+            protected T recursionDetected(boolean firstTime) {
+                return onRecursiveCall;
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public <T> NullableLazyValue<T> createNullableLazyValueWithPostCompute(
+            @NotNull Function0<T> computable, @NotNull final Function1<T, Unit> postCompute
+    ) {
+        return new ConcurrentLazyValue<T>(computable) {
+            @Override
+            protected void postCompute(@Nullable T value) {
+                postCompute.invoke(value);
+            }
+        };
+    }
+
+    /**
+     * Runs {@code computable} exclusively with respect to other {@code compute()} calls of this storage manager.
+     * If waiting for the exclusive access would deadlock, the call is treated as a reentrant one
+     */
+    @Override
+    public <T> T compute(@NotNull Function0<T> computable) {
+        boolean acquired = acquireComputeLock();
+        try {
+            return computable.invoke();
+        }
+        finally {
+            if (acquired) {
+                releaseComputeLock();
+            }
+        }
+    }
+
+    private boolean acquireComputeLock() {
+        Thread currentThread = Thread.currentThread();
+        boolean interrupted = false;
+        try {
+            synchronized (monitor) {
+                while (true) {
+                    Computation owner = computeLockOwner;
+                    if (owner == null) {
+                        computeLockOwner = new Computation(currentThread);
+                        computeLockHoldCount = 1;
+                        return true;
+                    }
+                    if (owner.thread == currentThread) {
+                        computeLockHoldCount++;
+                        return true;
+                    }
+                    if (wouldDeadlock(owner)) {
+                        return false;
+                    }
+                    interrupted |= waitFor(owner);
+                }
+            }
+        }
+        finally {
+            if (interrupted) {
+                currentThread.interrupt();
+            }
+        }
+    }
+
+    private void releaseComputeLock() {
+        synchronized (monitor) {
+            assert computeLockOwner != null && computeLockOwner.thread == Thread.currentThread() : "Compute lock is not held";
+            if (--computeLockHoldCount == 0) {
+                Computation owner = computeLockOwner;
+                computeLockOwner = null;
+                completed(owner);
+            }
+        }
+    }
+
+    // Must be called under the monitor
+    private boolean wouldDeadlock(@NotNull Computation computation) {
+        Thread currentThread = Thread.currentThread();
+        Computation awaited = computation;
+        while (awaited != null) {
+            if (awaited.thread == currentThread) return true;
+            awaited = waitingFor.get(awaited.thread);
+        }
+        return false;
+    }
+
+    // Must be called under the monitor
+    private void completed(@NotNull Computation computation) {
+        // Nobody waits for this computation any more, stale edges would give false deadlocks
+        for (Iterator<Computation> iterator = waitingFor.values().iterator(); iterator.hasNext(); ) {
+            if (iterator.next() == computation) {
+                iterator.remove();
+            }
+        }
+        monitor.notifyAll();
+    }
+
+    // Must be called under the monitor, returns true if the thread was interrupted while waiting
+    private boolean waitFor(@NotNull Computation computation) {
+        Thread currentThread = Thread.currentThread();
+        waitingFor.put(currentThread, computation);
+        try {
+            monitor.wait();
+            return false;
+        }
+        catch (InterruptedException e) {
+            return true;
+        }
+        finally {
+            waitingFor.remove(currentThread);
+        }
+    }
+
+    private static class Computation {
+        private final Thread thread;
+
+        // Accessed only by the computing thread
+        private boolean recursionDetected = false;
+        private boolean hasResult = false;
+        private Object result = null;
+
+        private Computation(@NotNull Thread thread) {
+            this.thread = thread;
+        }
+    }
+
+    private enum NotValue {
+        NOT_COMPUTED,
+        RECURSION_WAS_DETECTED
+    }
+
+    private class ConcurrentLazyValue<T> implements NullableLazyValue<T> {
+        private final Function0<T> computable;
+
+        // NotValue, Computation or an escaped value
+        @Nullable
+        private volatile Object value = NotValue.NOT_COMPUTED;
+
+        public ConcurrentLazyValue(@NotNull Function0<T> computable) {
+            this.computable = computable;
+        }
+
+        @Override
+        public boolean isComputed() {
+            Object _value = value;
+            return _value != NotValue.NOT_COMPUTED && !(_value instanceof Computation);
+        }
+
+        @Override
+        public T invoke() {
+            Object _value = value;
+            if (isValue(_value)) return WrappedValues.unescapeThrowable(_value);
+
+            Thread currentThread = Thread.currentThread();
+            Computation computation = null;
+            boolean recursionFirstTime = false;
+            boolean interrupted = false;
+            try {
+                synchronized (monitor) {
+                    while (true) {
+                        _value = value;
+                        if (isValue(_value)) return WrappedValues.unescapeThrowable(_value);
+
+                        if (_value == NotValue.NOT_COMPUTED) {
+                            computation = new Computation(currentThread);
+                            value = computation;
+                            break;
+                        }
+
+                        if (_value == NotValue.RECURSION_WAS_DETECTED) {
+                            break;
+                        }
+
+                        Computation running = (Computation) _value;
+                        if (running.thread == currentThread) {
+                            if (running.hasResult) {
+                                //noinspection unchecked
+                                return (T) running.result;
+                            }
+                            recursionFirstTime = !running.recursionDetected;
+                            running.recursionDetected = true;
+                            break;
+                        }
+
+                        if (wouldDeadlock(running)) {
+                            recursionFirstTime = true;
+                            break;
+                        }
+
+                        interrupted |= waitFor(running);
+                    }
+                }
+            }
+            finally {
+                if (interrupted) {
+                    currentThread.interrupt();
+                }
+            }
+
+            if (computation == null) {
+                return recursionDetected(recursionFirstTime);
+            }
+
+            try {
+                T typedValue = computable.invoke();
+                computation.result = typedValue;
+                computation.hasResult = true;
+                postCompute(typedValue);
+                publish(computation, typedValue);
+                return typedValue;
+            }
+            catch (Throwable throwable) {
+                if (computation.hasResult) {
+                    publish(computation, computation.result);
+                }
+                else if (computation.recursionDetected) {
+                    // Do not store what was thrown through recursionDetected(), as a lock-based value would
+                    publish(computation, NotValue.RECURSION_WAS_DETECTED);
+                }
+                else {
+                    publish(computation, WrappedValues.escapeThrowable(throwable));
+                }
+                throw ExceptionUtils.rethrow(throwable);
+            }
+        }
+
+        private void publish(@NotNull Computation computation, @Nullable Object newValue) {
+            synchronized (monitor) {
+                value = newValue;
+                published(newValue);
+                completed(computation);
+            }
+        }
+
+        private boolean isValue(@Nullable Object value) {
+            return !(value instanceof NotValue) && !(value instanceof Computation);
+        }
+
+        /**
+         * @param firstTime {@code true} when recursion has been just detected, {@code false} otherwise
+         * @return a value to be returned on a recursive call or subsequent calls
+         */
+        @Nullable
+        protected T recursionDetected(boolean firstTime) {
+            throw new IllegalStateException("Recursive call in a lazy value");
+        }
+
+        protected void postCompute(T value) {
+            // Doing something in post-compute helps prevent infinite recursion
+        }
+
+        /**
+         * Called under the monitor on the computing thread only, before the waiting threads are woken up.
+         * Threads which have only waited for the value, or have detected a recursion, never get here
+         *
+         * @param newValue the computed value, an escaped throwable or {@link NotValue#RECURSION_WAS_DETECTED}
+         */
+        protected void published(@Nullable Object newValue) {
+        }
+    }
+
+    private class ConcurrentNotNullLazyValue<T> extends ConcurrentLazyValue<T> implements NotNullLazyValue<T> {
+
+        public ConcurrentNotNullLazyValue(@NotNull Function0<T> computable) {
+            super(computable);
+        }
+
+        @Override
+        @NotNull
+        public T invoke() {
+            T result = super.invoke();
+            assert result != null : "compute() returned null";
+            return result;
+        }
+    }
+
+    private class MapBasedMemoizedFunction<K, V> implements MemoizedFunctionToNullable<K, V> {
+        private final ConcurrentMap<K, Object> cache;
+        private final Function1<K, V> compute;
+
+        public MapBasedMemoizedFunction(@NotNull ConcurrentMap<K, Object> map, @NotNull Function1<K, V> compute) {
+            this.cache = map;
+            this.compute = compute;
+        }
+
+        @Override
+        @Nullable
+        public V invoke(@NotNull final K input) {
+            Object value = cache.get(input);
+            if (value != null && !(value instanceof PendingValue)) return WrappedValues.unescapeExceptionOrNull(value);
+
+            // The computation of each key is a lazy value: threads asking for the same key wait for one computation,
+            // different keys are computed independently. The lazy value replaces itself in the cache when it is computed
+            PendingValue<K, V> pending;
+            if (value != null) {
+                //noinspection unchecked
+                pending = (PendingValue<K, V>) value;
+            }
+            else {
+                PendingValue<K, V> newPending = new PendingValue<K, V>(cache, input, new Function0<V>() {
+                    @Override
+                    public V invoke() {
+                        return compute.invoke(input);
+                    }
+                });
+                Object existing = cache.putIfAbsent(input, newPending);
+                if (existing == null) {
+                    pending = newPending;
+                }
+                else if (existing instanceof PendingValue) {
+                    //noinspection unchecked
+                    pending = (PendingValue<K, V>) existing;
+                }
+                else {
+                    return WrappedValues.unescapeExceptionOrNull(existing);
+                }
+            }
+
+            return pending.invoke();
+        }
+    }
+
+    private class PendingValue<K, V> extends ConcurrentLazyValue<V> {
+        private final ConcurrentMap<K, Object> cache;
+        private final K input;
+
+        public PendingValue(@NotNull ConcurrentMap<K, Object> cache, @NotNull K input, @NotNull Function0<V> computable) {
+            super(computable);
+            this.cache = cache;
+            this.input = input;
+        }
+
+        @Nullable
+        @Override
+        protected V recursionDetected(boolean firstTime) {
+            throw new IllegalStateException("Recursive call in a memoized function");
+        }
+
+        @Override
+        protected void published(@Nullable Object newValue) {
+            // After a recursion on the computing thread the entry stays pending, and every later call fails in recursionDetected().
+            // Whether another thread has run into this computation depends on timing, so that thread never touches the entry
+            if (newValue != NotValue.RECURSION_WAS_DETECTED) {
+                cache.replace(input, this, WrappedValues.escapeNull(newValue));
+            }
+        }
+    }
+
+    private class MapBasedMemoizedFunctionToNotNull<K, V> extends MapBasedMemoizedFunction<K, V> implements MemoizedFunctionToNotNull<K, V> {
+
+        public MapBasedMemoizedFunctionToNotNull(
+                @NotNull ConcurrentMap<K, Object> map,
+                @NotNull Function1<K, V> compute
+        ) {
+            super(map, compute);
+        }
+
+        @NotNull
+        @Override
+        public V invoke(@NotNull K input) {
+            V result = super.invoke(input);
+            assert result != null : "compute() returned null";
+            return result;
+        }
+    }
+}
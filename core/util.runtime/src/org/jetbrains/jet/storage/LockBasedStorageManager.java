@@ -24,6 +24,8 @@ import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.utils.ExceptionUtils;
 import org.jetbrains.jet.utils.WrappedValues;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.Lock;
@@ -40,6 +42,9 @@ public class LockBasedStorageManager implements StorageManager {
 
     protected final Lock lock;
 
+    // Actions to run once the current thread leaves its outermost compute() call, null outside of compute()
+    private final ThreadLocal<List<Runnable>> afterComputeActions = new ThreadLocal<List<Runnable>>();
+
     public LockBasedStorageManager() {
         this(new ReentrantLock());
     }
@@ -151,12 +156,45 @@ public class LockBasedStorageManager implements StorageManager {
 
     @Override
     public <T> T compute(@NotNull Function0<T> computable) {
+        List<Runnable> actions = afterComputeActions.get();
+        boolean outermost = actions == null;
+        if (outermost) {
+            actions = new ArrayList<Runnable>();
+            afterComputeActions.set(actions);
+        }
+
+        T result;
         lock.lock();
         try {
-            return computable.invoke();
+            result = computable.invoke();
         }
         finally {
             lock.unlock();
+            if (outermost) {
+                afterComputeActions.remove();
+            }
+        }
+
+        if (outermost) {
+            for (Runnable action : actions) {
+                action.run();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Runs the action after the current thread has successfully left its outermost {@link #compute} call, or right away outside of it.
+     * Results computed under the lock may depend on work that is finished only by an outer computation,
+     * so this is the earliest point where they can be shared with readers that do not take the lock.
+     */
+    public void runAfterCompute(@NotNull Runnable action) {
+        List<Runnable> actions = afterComputeActions.get();
+        if (actions == null) {
+            action.run();
+        }
+        else {
+            actions.add(action);
         }
     }
 
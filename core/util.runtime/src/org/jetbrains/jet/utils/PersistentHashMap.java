@@ -0,0 +1,315 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable hash map: {@link #put} returns a new map which shares all the unchanged nodes with the old one.
+ *
+ * Implemented as a hash array mapped trie: every node maps the next 5 bits of the key hash to its entries through a bitmap,
+ * so lookups and updates take O(log32 n). Neither keys nor values can be null.
+ */
+public final class PersistentHashMap<K, V> implements Iterable<Map.Entry<K, V>> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    // 7 levels of bitmap nodes for 32-bit hashes and one level of collision nodes
+    private static final int MAX_DEPTH = 8;
+
+    @SuppressWarnings("unchecked")
+    private static final PersistentHashMap EMPTY = new PersistentHashMap(null, 0);
+
+    @NotNull
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return EMPTY;
+    }
+
+    @Nullable
+    private final Node root;
+    private final int size;
+
+    private PersistentHashMap(@Nullable Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V get(@NotNull K key) {
+        return root == null ? null : (V) root.get(key, hash(key), 0);
+    }
+
+    public boolean containsKey(@NotNull K key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return this map if it already maps the key to an equal value
+     */
+    @NotNull
+    public PersistentHashMap<K, V> put(@NotNull K key, @NotNull V value) {
+        int hash = hash(key);
+        if (root == null) {
+            return new PersistentHashMap<K, V>(new BitmapNode(1 << (hash & MASK), new Object[] {key, value}), 1);
+        }
+        boolean[] addedLeaf = new boolean[1];
+        Node newRoot = root.put(key, value, hash, 0, addedLeaf);
+        if (newRoot == root) return this;
+        return new PersistentHashMap<K, V>(newRoot, addedLeaf[0] ? size + 1 : size);
+    }
+
+    @NotNull
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new EntryIterator<K, V>(root);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        for (Map.Entry<K, V> entry : this) {
+            if (builder.length() > 1) {
+                builder.append(", ");
+            }
+            builder.append(entry.getKey()).append("=").append(entry.getValue());
+        }
+        return builder.append("}").toString();
+    }
+
+    private static int hash(@NotNull Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * The entries of a node are stored in {@code array} as pairs: a key and its value, or {@code null} and a child node
+     */
+    private abstract static class Node {
+        protected final Object[] array;
+
+        protected Node(@NotNull Object[] array) {
+            this.array = array;
+        }
+
+        @Nullable
+        abstract Object get(@NotNull Object key, int hash, int shift);
+
+        @NotNull
+        abstract Node put(@NotNull Object key, @NotNull Object value, int hash, int shift, @NotNull boolean[] addedLeaf);
+    }
+
+    private static final class BitmapNode extends Node {
+        private final int bitmap;
+
+        BitmapNode(int bitmap, @NotNull Object[] array) {
+            super(array);
+            this.bitmap = bitmap;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Nullable
+        @Override
+        Object get(@NotNull Object key, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) return null;
+            int index = index(bit);
+            Object keyOrNull = array[2 * index];
+            Object valueOrNode = array[2 * index + 1];
+            if (keyOrNull == null) {
+                return ((Node) valueOrNode).get(key, hash, shift + BITS);
+            }
+            return key.equals(keyOrNull) ? valueOrNode : null;
+        }
+
+        @NotNull
+        @Override
+        Node put(@NotNull Object key, @NotNull Object value, int hash, int shift, @NotNull boolean[] addedLeaf) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            int index = index(bit);
+
+            if ((bitmap & bit) == 0) {
+                Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, 2 * index);
+                newArray[2 * index] = key;
+                newArray[2 * index + 1] = value;
+                System.arraycopy(array, 2 * index, newArray, 2 * index + 2, array.length - 2 * index);
+                addedLeaf[0] = true;
+                return new BitmapNode(bitmap | bit, newArray);
+            }
+
+            Object keyOrNull = array[2 * index];
+            Object valueOrNode = array[2 * index + 1];
+            if (keyOrNull == null) {
+                Node node = (Node) valueOrNode;
+                Node newNode = node.put(key, value, hash, shift + BITS, addedLeaf);
+                return newNode == node ? this : replace(2 * index + 1, newNode);
+            }
+            if (key.equals(keyOrNull)) {
+                return value.equals(valueOrNode) ? this : replace(2 * index + 1, value);
+            }
+
+            addedLeaf[0] = true;
+            Node newNode = createNode(keyOrNull, valueOrNode, hash(keyOrNull), key, value, hash, shift + BITS);
+            Object[] newArray = array.clone();
+            newArray[2 * index] = null;
+            newArray[2 * index + 1] = newNode;
+            return new BitmapNode(bitmap, newArray);
+        }
+
+        @NotNull
+        private BitmapNode replace(int position, @NotNull Object valueOrNode) {
+            Object[] newArray = array.clone();
+            newArray[position] = valueOrNode;
+            return new BitmapNode(bitmap, newArray);
+        }
+
+        @NotNull
+        private static Node createNode(
+                @NotNull Object key1, @NotNull Object value1, int hash1,
+                @NotNull Object key2, @NotNull Object value2, int hash2,
+                int shift
+        ) {
+            if (hash1 == hash2) {
+                return new CollisionNode(hash1, new Object[] {key1, value1, key2, value2});
+            }
+            boolean[] addedLeaf = new boolean[1];
+            Node node = new BitmapNode(1 << ((hash1 >>> shift) & MASK), new Object[] {key1, value1});
+            return node.put(key2, value2, hash2, shift, addedLeaf);
+        }
+    }
+
+    /**
+     * Keeps the entries whose keys have the same full hash
+     */
+    private static final class CollisionNode extends Node {
+        private final int hash;
+
+        CollisionNode(int hash, @NotNull Object[] array) {
+            super(array);
+            this.hash = hash;
+        }
+
+        private int indexOf(@NotNull Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) return i;
+            }
+            return -1;
+        }
+
+        @Nullable
+        @Override
+        Object get(@NotNull Object key, int hash, int shift) {
+            int index = indexOf(key);
+            return index < 0 ? null : array[index + 1];
+        }
+
+        @NotNull
+        @Override
+        Node put(@NotNull Object key, @NotNull Object value, int hash, int shift, @NotNull boolean[] addedLeaf) {
+            if (hash != this.hash) {
+                // Push this node one level down
+                Node node = new BitmapNode(1 << ((this.hash >>> shift) & MASK), new Object[] {null, this});
+                return node.put(key, value, hash, shift, addedLeaf);
+            }
+
+            int index = indexOf(key);
+            if (index >= 0) {
+                if (value.equals(array[index + 1])) return this;
+                Object[] newArray = array.clone();
+                newArray[index + 1] = value;
+                return new CollisionNode(hash, newArray);
+            }
+
+            Object[] newArray = new Object[array.length + 2];
+            System.arraycopy(array, 0, newArray, 0, array.length);
+            newArray[array.length] = key;
+            newArray[array.length + 1] = value;
+            addedLeaf[0] = true;
+            return new CollisionNode(hash, newArray);
+        }
+    }
+
+    private static final class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+        private final Object[][] arrays = new Object[MAX_DEPTH][];
+        private final int[] positions = new int[MAX_DEPTH];
+        private int depth = -1;
+
+        EntryIterator(@Nullable Node root) {
+            if (root != null) {
+                push(root);
+            }
+        }
+
+        private void push(@NotNull Node node) {
+            depth++;
+            arrays[depth] = node.array;
+            positions[depth] = 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (depth >= 0) {
+                Object[] array = arrays[depth];
+                int position = positions[depth];
+                if (position >= array.length) {
+                    arrays[depth--] = null;
+                }
+                else if (array[position] == null) {
+                    positions[depth] += 2;
+                    push((Node) array[position + 1]);
+                }
+                else {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Map.Entry<K, V> next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Object[] array = arrays[depth];
+            int position = positions[depth];
+            positions[depth] += 2;
+            return new AbstractMap.SimpleImmutableEntry<K, V>((K) array[position], (V) array[position + 1]);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -26,6 +26,8 @@ import com.sampullara.cli.ArgumentUtils;
 import org.jetbrains.jet.cli.common.arguments.CommonCompilerArguments;
 import org.jetbrains.jet.cli.common.arguments.K2JSCompilerArguments;
 import org.jetbrains.jet.cli.common.arguments.K2JVMCompilerArguments;
+import org.jetbrains.jet.cli.common.daemon.CompilerDaemonClient;
+import org.jetbrains.jet.cli.common.daemon.CompilerDaemonProtocol;
 import org.jetbrains.jet.cli.common.messages.CompilerMessageLocation;
 import org.jetbrains.jet.cli.common.messages.CompilerMessageSeverity;
 import org.jetbrains.jet.cli.common.messages.MessageCollector;
@@ -37,8 +39,8 @@ import java.io.PrintStream;
 import java.util.List;
 
 public class KotlinCompilerRunner {
-    private static final String K2JVM_COMPILER = "org.jetbrains.jet.cli.jvm.K2JVMCompiler";
-    private static final String K2JS_COMPILER = "org.jetbrains.jet.cli.js.K2JSCompiler";
+    private static final String K2JVM_COMPILER = CompilerDaemonProtocol.K2JVM_COMPILER;
+    private static final String K2JS_COMPILER = CompilerDaemonProtocol.K2JS_COMPILER;
     private static final K2JVMCompilerArguments DEFAULT_K2JVM_ARGUMENTS = new K2JVMCompilerArguments();
     private static final K2JSCompilerArguments DEFAULT_K2JS_ARGUMENTS = new K2JSCompilerArguments();
 
@@ -108,6 +110,17 @@ public class KotlinCompilerRunner {
                                     "Using kotlinHome=" + environment.getKotlinPaths().getHomePath(),
                                     CompilerMessageLocation.NO_LOCATION);
 
+            Integer port = CompilerDaemonClient.getDaemonPort();
+            if (port != null) {
+                Integer exitCode = CompilerDaemonClient.compile(port, compilerClassName, arguments, out);
+                if (exitCode != null) {
+                    return exitCode;
+                }
+                messageCollector.report(CompilerMessageSeverity.INFO,
+                                        "No compiler daemon is listening on port " + port + ", compiling in process",
+                                        CompilerMessageLocation.NO_LOCATION);
+            }
+
             Object rc = CompilerRunnerUtil.invokeExecMethod(compilerClassName, arguments, environment,
                                                             messageCollector, out, /*usePreloader=*/true);
             // exec() returns a K2JVMCompiler.ExitCode object, that class is not accessible here,
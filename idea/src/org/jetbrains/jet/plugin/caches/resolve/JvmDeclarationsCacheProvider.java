@@ -32,6 +32,7 @@ import org.jetbrains.jet.lang.resolve.AnalyzerScriptParameter;
 import org.jetbrains.jet.lang.resolve.BindingContext;
 import org.jetbrains.jet.lang.resolve.BindingTrace;
 import org.jetbrains.jet.lang.resolve.BindingTraceContext;
+import org.jetbrains.jet.lang.resolve.LockBasedBindingTrace;
 import org.jetbrains.jet.lang.resolve.java.AnalyzerFacadeForJVM;
 import org.jetbrains.jet.lang.resolve.java.JetFilesProvider;
 import org.jetbrains.jet.plugin.project.TargetPlatform;
@@ -57,7 +58,9 @@ class JvmDeclarationsCacheProvider extends DeclarationsCacheProvider {
                 // This lock is already acquired by the calling method,
                 // but we put it here to guard for the case of further modifications
                 synchronized (declarationAnalysisLock) {
-                    BindingTraceContext trace = new BindingTraceContext();
+                    // Bodies of different files are resolved against this trace at the same time,
+                    // and Java classes they resolve lazily are recorded into it
+                    BindingTrace trace = new LockBasedBindingTrace(new BindingTraceContext());
 
                     incompleteTrace = trace;
                     AnalyzeExhaust analyzeExhaust;
@@ -22,7 +22,13 @@ import com.intellij.debugger.SourcePosition;
 import com.intellij.debugger.engine.DebugProcess;
 import com.intellij.debugger.requests.ClassPrepareRequestor;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleUtilCore;
+import com.intellij.openapi.roots.CompilerModuleExtension;
+import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.Ref;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.search.GlobalSearchScope;
@@ -38,9 +44,11 @@ import org.jetbrains.asm4.Type;
 import org.jetbrains.jet.analyzer.AnalyzeExhaust;
 import org.jetbrains.jet.codegen.ClassBuilderMode;
 import org.jetbrains.jet.codegen.NamespaceCodegen;
+import org.jetbrains.jet.codegen.SourceLineIndex;
 import org.jetbrains.jet.codegen.binding.CodegenBinding;
 import org.jetbrains.jet.codegen.state.JetTypeMapper;
 import org.jetbrains.jet.lang.descriptors.ClassDescriptor;
+import org.jetbrains.jet.lang.diagnostics.DiagnosticUtils;
 import org.jetbrains.jet.lang.psi.*;
 import org.jetbrains.jet.lang.resolve.BindingContext;
 import org.jetbrains.jet.lang.resolve.DelegatingBindingTrace;
@@ -50,16 +58,17 @@ import org.jetbrains.jet.lang.resolve.name.FqName;
 import org.jetbrains.jet.plugin.project.AnalyzerFacadeWithCache;
 import org.jetbrains.jet.plugin.util.DebuggerUtils;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-import java.util.WeakHashMap;
+import java.io.IOException;
+import java.util.*;
 
 import static org.jetbrains.jet.codegen.binding.CodegenBinding.asmTypeForAnonymousClass;
 
 public class JetPositionManager implements PositionManager {
     private final DebugProcess myDebugProcess;
     private final WeakHashMap<FqName, CachedValue<JetTypeMapper>> myTypeMappers = new WeakHashMap<FqName, CachedValue<JetTypeMapper>>();
+    private final Map<VirtualFile, Pair<Long, SourceLineIndex>> myLineIndices =
+            Collections.synchronizedMap(new WeakHashMap<VirtualFile, Pair<Long, SourceLineIndex>>());
+    private final WeakHashMap<JetFile, SourceLineIndex> myLineIndicesForTest = new WeakHashMap<JetFile, SourceLineIndex>();
 
     public JetPositionManager(DebugProcess debugProcess) {
         myDebugProcess = debugProcess;
@@ -132,6 +141,15 @@ public class JetPositionManager implements PositionManager {
             @SuppressWarnings("unchecked")
             public void run() {
                 JetFile namespace = (JetFile) sourcePosition.getFile();
+
+                SourceLineIndex lineIndex = findLineIndex(namespace);
+                if (lineIndex != null) {
+                    String className = getClassNameFromLineIndex(lineIndex, sourcePosition);
+                    result.set(className != null ? className : NamespaceCodegen.getNamespacePartInternalName(namespace));
+                    return;
+                }
+
+                // The file has not been compiled yet
                 JetTypeMapper typeMapper = prepareTypeMapper(namespace);
 
                 PsiElement element = PsiTreeUtil.getParentOfType(sourcePosition.getElementAt(), JetClassOrObject.class, JetFunctionLiteral.class, JetNamedFunction.class);
@@ -162,6 +180,60 @@ public class JetPositionManager implements PositionManager {
         return result.get();
     }
 
+    @Nullable
+    private static String getClassNameFromLineIndex(@NotNull SourceLineIndex lineIndex, @NotNull SourcePosition sourcePosition) {
+        PsiElement element = sourcePosition.getElementAt();
+        if (element == null) {
+            return lineIndex.findClassName(sourcePosition.getLine() + 1, 1);
+        }
+
+        DiagnosticUtils.LineAndColumn position = DiagnosticUtils.getLineAndColumnInPsiFile(sourcePosition.getFile(), element.getTextRange());
+        return lineIndex.findClassName(position.getLine(), position.getColumn());
+    }
+
+    /**
+     * Finds the line index written by the compiler next to the classes of the file in the output of its module
+     */
+    @Nullable
+    private SourceLineIndex findLineIndex(@NotNull JetFile file) {
+        SourceLineIndex indexForTest = myLineIndicesForTest.get(file);
+        if (indexForTest != null) {
+            return indexForTest;
+        }
+
+        Module module = ModuleUtilCore.findModuleForPsiElement(file);
+        CompilerModuleExtension extension = module != null ? CompilerModuleExtension.getInstance(module) : null;
+        if (extension == null) {
+            return null;
+        }
+
+        String indexPath = SourceLineIndex.getIndexFilePath(file);
+        for (VirtualFile outputDir : new VirtualFile[] {extension.getCompilerOutputPath(), extension.getCompilerOutputPathForTests()}) {
+            VirtualFile indexFile = outputDir != null ? outputDir.findFileByRelativePath(indexPath) : null;
+            if (indexFile != null) {
+                return loadLineIndex(indexFile);
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private SourceLineIndex loadLineIndex(@NotNull VirtualFile indexFile) {
+        Pair<Long, SourceLineIndex> cached = myLineIndices.get(indexFile);
+        if (cached != null && cached.first == indexFile.getModificationStamp()) {
+            return cached.second;
+        }
+
+        try {
+            SourceLineIndex index = SourceLineIndex.parse(VfsUtilCore.loadText(indexFile));
+            myLineIndices.put(indexFile, Pair.create(indexFile.getModificationStamp(), index));
+            return index;
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
     @Nullable
     private static String getJvmInternalNameForImpl(JetTypeMapper typeMapper, JetClassOrObject jetClass) {
         ClassDescriptor classDescriptor = typeMapper.getBindingContext().get(BindingContext.CLASS, jetClass);
@@ -244,4 +316,9 @@ public class JetPositionManager implements PositionManager {
         }, false);
         myTypeMappers.put(fqName, value);
     }
+
+    @TestOnly
+    public void addLineIndex(@NotNull JetFile file, @NotNull SourceLineIndex lineIndex) {
+        myLineIndicesForTest.put(file, lineIndex);
+    }
 }
@@ -52,6 +52,7 @@ public class JetBlock extends AbstractBlock {
 
     private static final TokenSet CODE_BLOCKS = TokenSet.create(
             BLOCK,
+            LAZY_BLOCK,
             CLASS_BODY,
             FUNCTION_LITERAL);
 
@@ -297,13 +298,13 @@ public class JetBlock extends AbstractBlock {
 
     static ASTIndentStrategy[] INDENT_RULES = new ASTIndentStrategy[] {
             ASTIndentStrategy.forNode("No indent for braces in blocks")
-                    .in(BLOCK, CLASS_BODY, FUNCTION_LITERAL)
+                    .in(BLOCK, LAZY_BLOCK, CLASS_BODY, FUNCTION_LITERAL)
                     .forType(RBRACE, LBRACE)
                     .set(Indent.getNoneIndent()),
 
             ASTIndentStrategy.forNode("Indent for block content")
-                    .in(BLOCK, CLASS_BODY, FUNCTION_LITERAL)
-                    .notForType(RBRACE, LBRACE, BLOCK)
+                    .in(BLOCK, LAZY_BLOCK, CLASS_BODY, FUNCTION_LITERAL)
+                    .notForType(RBRACE, LBRACE, BLOCK, LAZY_BLOCK)
                     .set(Indent.getNormalIndent()),
 
             ASTIndentStrategy.forNode("Indent for property accessors")
@@ -327,7 +328,7 @@ public class JetBlock extends AbstractBlock {
 
             ASTIndentStrategy.forNode("Indent for parts")
                     .in(PROPERTY, FUN)
-                    .notForType(BLOCK, FUN_KEYWORD, VAL_KEYWORD, VAR_KEYWORD)
+                    .notForType(BLOCK, LAZY_BLOCK, FUN_KEYWORD, VAL_KEYWORD, VAR_KEYWORD)
                     .set(Indent.getContinuationWithoutFirstIndent()),
 
             ASTIndentStrategy.forNode("KDoc comment indent")
@@ -61,8 +61,10 @@ public class JetFormattingModelBuilder implements FormattingModelBuilder {
                 .between(FUN, PROPERTY).blankLines(1)
 
                 .afterInside(LBRACE, BLOCK).lineBreakInCode()
+                .afterInside(LBRACE, LAZY_BLOCK).lineBreakInCode()
                 .beforeInside(RBRACE, CLASS_BODY).lineBreakInCode()
                 .beforeInside(RBRACE, BLOCK).lineBreakInCode()
+                .beforeInside(RBRACE, LAZY_BLOCK).lineBreakInCode()
 
                 // =============== Spacing ================
                 .before(COMMA).spaceIf(jetCommonSettings.SPACE_BEFORE_COMMA)
@@ -77,7 +79,7 @@ public class JetFormattingModelBuilder implements FormattingModelBuilder {
                 .around(TokenSet.create(PLUSPLUS, MINUSMINUS, EXCLEXCL, MINUS, PLUS, EXCL)).spaceIf(jetCommonSettings.SPACE_AROUND_UNARY_OPERATOR)
                 .around(RANGE).spaceIf(jetSettings.SPACE_AROUND_RANGE)
 
-                .beforeInside(BLOCK, FUN).spaceIf(jetCommonSettings.SPACE_BEFORE_METHOD_LBRACE)
+                .beforeInside(LAZY_BLOCK, FUN).spaceIf(jetCommonSettings.SPACE_BEFORE_METHOD_LBRACE)
 
                 .afterInside(LPAR, VALUE_PARAMETER_LIST).spaces(0)
                 .beforeInside(RPAR, VALUE_PARAMETER_LIST).spaces(0)
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.plugin.project;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Computes values for different keys in parallel, while concurrent requests for the same key wait for the computation
+ * which is already in progress. Keeps at most {@code maxSize} recently used values, and only softly, so that the garbage
+ * collector can free them on low memory.
+ *
+ * A computation that finishes with an exception is not cached: the exception is rethrown to the thread which has
+ * started it, and the threads waiting for it retry the computation.
+ */
+public abstract class AnalysisResultCache<K, V> {
+    private static final long WAIT_INTERVAL_MILLIS = 20;
+
+    private final int maxSize;
+
+    // Values are either Computation or SoftReference objects
+    private final ConcurrentMap<K, Object> entries = new ConcurrentHashMap<K, Object>();
+    // Keys of computed values, from the least recently used
+    private final LinkedHashMap<K, Boolean> usageOrder = new LinkedHashMap<K, Boolean>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong waits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong collected = new AtomicLong();
+
+    protected AnalysisResultCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    @NotNull
+    protected abstract V compute(@NotNull K key);
+
+    /**
+     * Called periodically while waiting for a computation started by another thread
+     */
+    protected void checkCanceled() {
+    }
+
+    @NotNull
+    @SuppressWarnings("unchecked")
+    public V get(@NotNull K key) {
+        while (true) {
+            Object entry = entries.get(key);
+
+            if (entry instanceof SoftReference) {
+                V value = ((SoftReference<V>) entry).get();
+                if (value != null) {
+                    hits.incrementAndGet();
+                    markUsed(key);
+                    return value;
+                }
+                collected.incrementAndGet();
+                entries.remove(key, entry);
+                continue;
+            }
+
+            if (entry instanceof Computation) {
+                Computation<V> computation = (Computation<V>) entry;
+                if (computation.thread == Thread.currentThread()) {
+                    // Recursive request: can't wait for ourselves
+                    return compute(key);
+                }
+                waits.incrementAndGet();
+                V value = computation.await(this);
+                if (value != null) return value;
+                // The computation has failed, try again
+                continue;
+            }
+
+            Computation<V> computation = new Computation<V>();
+            if (entries.putIfAbsent(key, computation) != null) continue;
+            misses.incrementAndGet();
+            return runComputation(key, computation);
+        }
+    }
+
+    @NotNull
+    private V runComputation(@NotNull K key, @NotNull Computation<V> computation) {
+        V value = null;
+        try {
+            value = compute(key);
+            entries.replace(key, computation, new SoftReference<V>(value));
+            markUsed(key);
+            return value;
+        }
+        finally {
+            if (value == null) {
+                entries.remove(key, computation);
+            }
+            computation.finish(value);
+        }
+    }
+
+    private void markUsed(@NotNull K key) {
+        synchronized (usageOrder) {
+            usageOrder.put(key, Boolean.TRUE);
+            Iterator<K> iterator = usageOrder.keySet().iterator();
+            while (usageOrder.size() > maxSize) {
+                K eldest = iterator.next();
+                iterator.remove();
+                Object entry = entries.get(eldest);
+                // Never evict a computation which has been started after the value was computed
+                if (entry instanceof SoftReference && entries.remove(eldest, entry)) {
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public String toString() {
+        return "AnalysisResultCache: " + entries.size() + " entries, " +
+               hits.get() + " hits, " + waits.get() + " waits for computations in progress, " + misses.get() + " misses, " +
+               evictions.get() + " evicted, " + collected.get() + " collected";
+    }
+
+    private static class Computation<V> {
+        private final Thread thread = Thread.currentThread();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile V value;
+
+        private void finish(V value) {
+            this.value = value;
+            done.countDown();
+        }
+
+        /**
+         * @return the computed value or {@code null} if the computation has failed
+         */
+        private V await(@NotNull AnalysisResultCache<?, V> cache) {
+            try {
+                while (!done.await(WAIT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    cache.checkCanceled();
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            return value;
+        }
+    }
+}
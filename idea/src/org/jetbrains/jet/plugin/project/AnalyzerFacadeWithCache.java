@@ -17,8 +17,10 @@
 package org.jetbrains.jet.plugin.project;
 
 import com.google.common.base.Predicates;
+import com.google.common.collect.MapMaker;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.libraries.LibraryUtil;
@@ -49,12 +51,19 @@ import org.jetbrains.jet.plugin.util.ApplicationUtils;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 public final class AnalyzerFacadeWithCache {
 
     private static final Logger LOG = Logger.getInstance("org.jetbrains.jet.plugin.project.AnalyzerFacadeWithCache");
 
-    private final static Key<CachedValue<SLRUCache<JetFile, AnalyzeExhaust>>> ANALYZE_EXHAUST_FULL = Key.create("ANALYZE_EXHAUST_FULL");
+    private final static Key<CachedValue<AnalysisResultCache<JetFile, AnalyzeExhaust>>> ANALYZE_EXHAUST_FULL =
+            Key.create("ANALYZE_EXHAUST_FULL");
+
+    private static final int MAX_CACHED_EXHAUSTS = 20;
 
     private static final Object lock = new Object();
 
@@ -67,15 +76,29 @@ public final class AnalyzerFacadeWithCache {
     // TODO: Also need to pass several files when user have multi-file environment
     @NotNull
     public static AnalyzeExhaust analyzeFileWithCache(@NotNull JetFile file) {
+        // Requests for a file being analyzed wait for the analysis in progress. Bodies resolved against the same headers
+        // are analyzed one at a time, see AnalyzeExhaustCacheProvider
+        return getAnalyzeExhaustCache(file.getProject()).get(file);
+    }
+
+    /**
+     * Hit and miss counts of the analysis results cache, which is recreated on every PSI modification
+     */
+    @NotNull
+    public static String getCacheStatistics(@NotNull Project project) {
+        return getAnalyzeExhaustCache(project).toString();
+    }
+
+    @NotNull
+    private static AnalysisResultCache<JetFile, AnalyzeExhaust> getAnalyzeExhaustCache(@NotNull Project project) {
         // Need lock, because parallel threads can start evaluation of compute() simultaneously
         synchronized (lock) {
-            Project project = file.getProject();
             return CachedValuesManager.getManager(project).getCachedValue(
                     project,
                     ANALYZE_EXHAUST_FULL,
-                    new SLRUCachedAnalyzeExhaustProvider(),
+                    new AnalyzeExhaustCacheProvider(),
                     false
-            ).get(file);
+            );
         }
     }
 
@@ -144,15 +167,27 @@ public final class AnalyzerFacadeWithCache {
         }
     };
 
-    private static class SLRUCachedAnalyzeExhaustProvider implements CachedValueProvider<SLRUCache<JetFile, AnalyzeExhaust>> {
+    private static class AnalyzeExhaustCacheProvider implements CachedValueProvider<AnalysisResultCache<JetFile, AnalyzeExhaust>> {
+        // Bodies are resolved against shared headers. Deferred types of the headers are computed on demand without locking
+        // and record into the trace of the headers, which is not thread-safe. So the analyses sharing headers take turns,
+        // while files with different headers (another platform, library sources) are still analyzed in parallel
+        private static final ConcurrentMap<AnalyzeExhaust, Lock> BODIES_LOCKS = new MapMaker().weakKeys().makeMap();
+
+        private static final long CANCEL_CHECK_INTERVAL_MS = 50;
+
         @Nullable
         @Override
-        public Result<SLRUCache<JetFile, AnalyzeExhaust>> compute() {
-            SLRUCache<JetFile, AnalyzeExhaust> cache = new SLRUCache<JetFile, AnalyzeExhaust>(3, 8) {
+        public Result<AnalysisResultCache<JetFile, AnalyzeExhaust>> compute() {
+            AnalysisResultCache<JetFile, AnalyzeExhaust> cache =
+                    new AnalysisResultCache<JetFile, AnalyzeExhaust>(MAX_CACHED_EXHAUSTS) {
+                @Override
+                protected void checkCanceled() {
+                    ProgressManager.checkCanceled();
+                }
 
                 @NotNull
                 @Override
-                public AnalyzeExhaust createValue(JetFile file) {
+                protected AnalyzeExhaust compute(@NotNull JetFile file) {
                     try {
                         if (DumbService.isDumb(file.getProject())) {
                             return AnalyzeExhaust.EMPTY;
@@ -203,15 +238,48 @@ public final class AnalyzerFacadeWithCache {
             BodiesResolveContext context = analyzeExhaustHeaders.getBodiesResolveContext();
             assert context != null : "Headers resolver should prepare and stored information for bodies resolve";
 
-            // Need to resolve bodies in given file and all in the same package
-            return AnalyzerFacadeProvider.getAnalyzerFacadeForFile(file).analyzeBodiesInFiles(
-                    file.getProject(),
-                    Collections.<AnalyzerScriptParameter>emptyList(),
-                    new JetFilesProvider.SameJetFilePredicate(file),
-                    new DelegatingBindingTrace(analyzeExhaustHeaders.getBindingContext(),
-                                               "trace to resolve bodies in file", file.getName()),
-                    context,
-                    analyzeExhaustHeaders.getModuleDescriptor());
+            Lock lock = getBodiesLock(analyzeExhaustHeaders);
+            lockCancelably(lock);
+            try {
+                // Need to resolve bodies in given file and all in the same package
+                return AnalyzerFacadeProvider.getAnalyzerFacadeForFile(file).analyzeBodiesInFiles(
+                        file.getProject(),
+                        Collections.<AnalyzerScriptParameter>emptyList(),
+                        new JetFilesProvider.SameJetFilePredicate(file),
+                        new DelegatingBindingTrace(analyzeExhaustHeaders.getBindingContext(),
+                                                   "trace to resolve bodies in file", file.getName()),
+                        context,
+                        analyzeExhaustHeaders.getModuleDescriptor());
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        @NotNull
+        private static Lock getBodiesLock(@NotNull AnalyzeExhaust analyzeExhaustHeaders) {
+            Lock lock = BODIES_LOCKS.get(analyzeExhaustHeaders);
+            if (lock == null) {
+                Lock newLock = new ReentrantLock();
+                lock = BODIES_LOCKS.putIfAbsent(analyzeExhaustHeaders, newLock);
+                if (lock == null) {
+                    lock = newLock;
+                }
+            }
+            return lock;
+        }
+
+        // A thread waiting for its turn should still react to cancellation
+        private static void lockCancelably(@NotNull Lock lock) {
+            try {
+                while (!lock.tryLock(CANCEL_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                    ProgressManager.checkCanceled();
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ProcessCanceledException();
+            }
         }
 
         private static void handleError(@NotNull Throwable e) {
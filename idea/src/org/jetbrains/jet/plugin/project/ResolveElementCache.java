@@ -19,13 +19,15 @@ package org.jetbrains.jet.plugin.project;
 import com.google.common.base.Function;
 import com.google.common.base.Functions;
 import com.google.common.base.Predicates;
+import com.google.common.collect.MapMaker;
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.util.*;
-import jet.Function1;
+import jet.Function0;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.asJava.JetCodeBlockModificationListener;
 import org.jetbrains.jet.di.InjectorForBodyResolve;
 import org.jetbrains.jet.lang.descriptors.*;
 import org.jetbrains.jet.lang.descriptors.annotations.Annotated;
@@ -39,43 +41,44 @@ import org.jetbrains.jet.lang.resolve.lazy.ResolveSession;
 import org.jetbrains.jet.lang.resolve.lazy.ScopeProvider;
 import org.jetbrains.jet.lang.resolve.lazy.descriptors.LazyClassDescriptor;
 import org.jetbrains.jet.lang.resolve.lazy.descriptors.LazyPackageDescriptor;
-import org.jetbrains.jet.lang.resolve.lazy.storage.LazyResolveStorageManager;
 import org.jetbrains.jet.lang.resolve.name.FqName;
 import org.jetbrains.jet.lang.resolve.name.Name;
 import org.jetbrains.jet.lang.resolve.scopes.JetScope;
 import org.jetbrains.jet.lang.resolve.scopes.WritableScope;
 import org.jetbrains.jet.lang.types.TypeConstructor;
-import org.jetbrains.jet.storage.MemoizedFunctionToNotNull;
 
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Caches the results of resolving elements inside declarations. An edit inside a code block only drops the results
+ * for the declaration containing the block, the results for all other declarations are reused.
+ *
+ * Which descriptors each result has read is not recorded, so an edit outside code blocks (a changed signature, for example)
+ * drops all the results, and the resolve session itself is recreated.
+ */
 public class ResolveElementCache {
     private static final BodyResolveContextForLazy EMPTY_CONTEXT = new BodyResolveContextForLazy(Functions.<JetScope>constant(null));
 
-    private final CachedValue<MemoizedFunctionToNotNull<JetElement, BindingContext>> additionalResolveCache;
+    private final CachedValue<ConcurrentMap<JetElement, CachedResolveResult>> additionalResolveCache;
     private final ResolveSession resolveSession;
 
     public ResolveElementCache(ResolveSession resolveSession, Project project) {
         this.resolveSession = resolveSession;
 
-        // Recreate internal cache after change of modification count
+        // Recreate internal cache after out-of-block modifications: they may change the descriptors that the cached results refer to.
+        // Modifications inside a code block invalidate only the results for the declaration containing the block, see getResolveResult().
+        // Which descriptors each result has read is not tracked, so any out-of-block modification drops all the results
         this.additionalResolveCache =
-                CachedValuesManager.getManager(project).createCachedValue(new CachedValueProvider<MemoizedFunctionToNotNull<JetElement, BindingContext>>() {
+                CachedValuesManager.getManager(project).createCachedValue(new CachedValueProvider<ConcurrentMap<JetElement, CachedResolveResult>>() {
                             @Nullable
                             @Override
-                            public Result<MemoizedFunctionToNotNull<JetElement, BindingContext>> compute() {
-                                LazyResolveStorageManager manager = ResolveElementCache.this.resolveSession.getStorageManager();
-                                MemoizedFunctionToNotNull<JetElement, BindingContext> elementsCacheFunction =
-                                        manager.createWeaklyRetainedMemoizedFunction(new Function1<JetElement, BindingContext>() {
-                                            @Override
-                                            public BindingContext invoke(JetElement jetElement) {
-                                                return elementAdditionalResolve(jetElement);
-                                            }
-                                        });
-
-                                return Result.create(elementsCacheFunction, PsiModificationTracker.MODIFICATION_COUNT);
+                            public Result<ConcurrentMap<JetElement, CachedResolveResult>> compute() {
+                                ConcurrentMap<JetElement, CachedResolveResult> elementsCache =
+                                        new MapMaker().weakKeys().makeMap();
+                                return Result.create(elementsCache, PsiModificationTracker.OUT_OF_CODE_BLOCK_MODIFICATION_COUNT);
                             }
                         },
                         false);
@@ -100,14 +103,14 @@ public class ResolveElementCache {
                 elementOfAdditionalResolve = jetElement;
             }
 
-            return additionalResolveCache.getValue().invoke(elementOfAdditionalResolve);
+            return getResolveResult(elementOfAdditionalResolve);
         }
 
         JetParameter parameter = PsiTreeUtil.getTopmostParentOfType(jetElement, JetParameter.class);
         if (parameter != null) {
             JetClass klass = PsiTreeUtil.getParentOfType(parameter, JetClass.class);
             if (klass != null && parameter.getParent() == klass.getPrimaryConstructorParameterList()) {
-                return additionalResolveCache.getValue().invoke(klass);
+                return getResolveResult(klass);
             }
 
             // Parameters for function literal could be met inside other parameters. We can't make resolveToDescriptors for internal elements.
@@ -123,6 +126,57 @@ public class ResolveElementCache {
         return resolveSession.getBindingContext();
     }
 
+    @NotNull
+    private BindingContext getResolveResult(@NotNull final JetElement resolveElement) {
+        final ConcurrentMap<JetElement, CachedResolveResult> cache = additionalResolveCache.getValue();
+        final long stamp = getModificationStamp(resolveElement);
+
+        CachedResolveResult cached = cache.get(resolveElement);
+        if (cached != null && cached.stamp == stamp) {
+            return cached.bindingContext;
+        }
+
+        // Computed under the lock of the storage manager, as the memoized functions of the session are
+        return resolveSession.getStorageManager().compute(new Function0<BindingContext>() {
+            @Override
+            public BindingContext invoke() {
+                CachedResolveResult cached = cache.get(resolveElement);
+                if (cached != null && cached.stamp == stamp) {
+                    return cached.bindingContext;
+                }
+
+                BindingContext bindingContext = elementAdditionalResolve(resolveElement);
+                cache.put(resolveElement, new CachedResolveResult(bindingContext, stamp));
+                return bindingContext;
+            }
+        });
+    }
+
+    /**
+     * The result of an additional resolve depends on the signatures of other declarations, which only change on an out-of-block
+     * modification (the whole cache is dropped then), and on the contents of the declaration itself: this stamp is checked for each
+     * cached result. Physical files are tracked by {@link JetCodeBlockModificationListener}, the others are checked as a whole
+     */
+    private static long getModificationStamp(@NotNull JetElement resolveElement) {
+        PsiFile file = resolveElement.getContainingFile();
+        if (!file.isPhysical()) {
+            return file.getModificationStamp();
+        }
+
+        PsiElement stampHolder = PsiTreeUtil.getParentOfType(resolveElement, JetDeclaration.class, false);
+        return JetCodeBlockModificationListener.getModificationStamp(stampHolder != null ? stampHolder : file);
+    }
+
+    private static class CachedResolveResult {
+        private final BindingContext bindingContext;
+        private final long stamp;
+
+        private CachedResolveResult(@NotNull BindingContext bindingContext, long stamp) {
+            this.bindingContext = bindingContext;
+            this.stamp = stamp;
+        }
+    }
+
     @NotNull
     private BindingContext elementAdditionalResolve(@NotNull JetElement resolveElement) {
         // All additional resolve should be done to separate trace
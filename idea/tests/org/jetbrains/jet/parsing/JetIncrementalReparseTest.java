@@ -0,0 +1,126 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.jet.parsing;
+
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.impl.DebugUtil;
+import com.intellij.testFramework.LightCodeInsightTestCase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.JetNodeTypes;
+import org.jetbrains.jet.lang.psi.*;
+
+/**
+ * Edits in the editor are reparsed incrementally; the result must be the same as parsing the new text from scratch
+ */
+public class JetIncrementalReparseTest extends LightCodeInsightTestCase {
+    public void testEditInFunctionBodyKeepsOtherDeclarations() {
+        configureFromFileText("a.kt", "fun f() {\n    val x = 1<caret>\n}\n\nfun g() {\n    val y = 2\n}\n");
+        JetNamedFunction f = getFunction(0);
+        JetNamedFunction g = getFunction(1);
+        JetExpression otherBody = g.getBodyExpression();
+
+        typeAndCommit("0");
+
+        assertTrue(f.isValid());
+        assertSame(f, getFunction(0));
+        assertSame(g, getFunction(1));
+        assertSame(otherBody, g.getBodyExpression());
+        assertEquals("val x = 10", ((JetBlockExpression) f.getBodyExpression()).getStatements().get(0).getText());
+        checkSameAsFreshParse();
+    }
+
+    public void testEditInNestedFunctionBody() {
+        configureFromFileText("a.kt", "fun f() {\n    fun local() {\n        foo(<caret>)\n    }\n}\n");
+        JetNamedFunction f = getFunction(0);
+
+        typeAndCommit("1");
+
+        assertSame(f, getFunction(0));
+        checkSameAsFreshParse();
+    }
+
+    public void testUnbalancedBraceInFunctionBody() {
+        configureFromFileText("a.kt", "fun f() {\n    <caret>\n}\n\nfun g() {\n}\n");
+
+        typeAndCommit("if (x) {");
+
+        checkSameAsFreshParse();
+    }
+
+    public void testClosingBraceInFunctionBody() {
+        configureFromFileText("a.kt", "fun f() {\n    foo()<caret>\n}\n\nfun g() {\n}\n");
+
+        typeAndCommit("\n}\nfun h() {");
+
+        assertEquals(3, ((JetFile) getFile()).getDeclarations().size());
+        checkSameAsFreshParse();
+    }
+
+    public void testEditInIfBlock() {
+        configureFromFileText("a.kt", "fun f() {\n    if (x) {\n        foo(<caret>)\n    }\n}\n");
+
+        typeAndCommit("1");
+
+        JetBlockExpression body = (JetBlockExpression) getFunction(0).getBodyExpression();
+        JetIfExpression ifExpression = (JetIfExpression) body.getStatements().get(0);
+        assertEquals(JetNodeTypes.BLOCK, ifExpression.getThen().getNode().getElementType());
+        checkSameAsFreshParse();
+    }
+
+    public void testEditInFunctionLiteral() {
+        configureFromFileText("a.kt", "val l = { a -> foo(<caret>) }\n");
+
+        typeAndCommit("1");
+
+        checkSameAsFreshParse();
+    }
+
+    public void testEditInFunctionLiteralWithoutParameters() {
+        configureFromFileText("a.kt", "val l = { foo(<caret>) }\n");
+
+        typeAndCommit("{");
+
+        checkSameAsFreshParse();
+    }
+
+    public void testEditInScript() {
+        configureFromFileText("a.ktscript", "val x = 1<caret>\nfun f() {\n}\n");
+
+        typeAndCommit("0");
+
+        JetScript script = ((JetFile) getFile()).getScript();
+        assertNotNull(script);
+        assertEquals(JetNodeTypes.BLOCK, script.getBlockExpression().getNode().getElementType());
+        checkSameAsFreshParse();
+    }
+
+    private static void typeAndCommit(@NotNull String text) {
+        type(text);
+        PsiDocumentManager.getInstance(getProject()).commitAllDocuments();
+    }
+
+    @NotNull
+    private static JetNamedFunction getFunction(int index) {
+        return (JetNamedFunction) ((JetFile) getFile()).getDeclarations().get(index);
+    }
+
+    private static void checkSameAsFreshParse() {
+        JetFile fresh = JetPsiFactory.createFile(getProject(), getFile().getName(), getFile().getText());
+        assertEquals(DebugUtil.psiToString(fresh, false), DebugUtil.psiToString(getFile(), false));
+    }
+}
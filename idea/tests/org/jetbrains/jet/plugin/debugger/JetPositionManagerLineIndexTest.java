@@ -0,0 +1,45 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.plugin.debugger;
+
+import com.intellij.debugger.engine.DebugProcess;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.codegen.SourceLineIndex;
+import org.jetbrains.jet.codegen.state.GenerationState;
+import org.jetbrains.jet.lang.psi.JetFile;
+
+import java.util.List;
+
+/**
+ * Runs the same breakpoints against the line indices written by the compiler instead of the type mapper
+ */
+public class JetPositionManagerLineIndexTest extends JetPositionManagerTest {
+    @Override
+    @NotNull
+    protected JetPositionManager createPositionManager(DebugProcess process, List<JetFile> files, GenerationState state) {
+        JetPositionManager positionManager = (JetPositionManager) new JetPositionManagerFactory().createPositionManager(process);
+        assertNotNull(positionManager);
+
+        for (JetFile file : files) {
+            SourceLineIndex lineIndex = state.getFactory().getLineIndex(file);
+            assertNotNull("No line index for " + file.getName(), lineIndex);
+            positionManager.addLineIndex(file, SourceLineIndex.parse(lineIndex.serialize()));
+        }
+
+        return positionManager;
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.plugin.project;
+
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AnalysisResultCacheTest extends TestCase {
+    private static final int THREADS = 8;
+
+    public void testConcurrentRequestsForOneKeyComputeOnce() throws Exception {
+        final AtomicInteger computations = new AtomicInteger();
+        final AnalysisResultCache<String, String> cache = new AnalysisResultCache<String, String>(10) {
+            @NotNull
+            @Override
+            protected String compute(@NotNull String key) {
+                computations.incrementAndGet();
+                sleep(100);
+                return key + "!";
+            }
+        };
+
+        for (String result : invokeConcurrently(new Callable<String>() {
+            @Override
+            public String call() {
+                return cache.get("a");
+            }
+        })) {
+            assertEquals("a!", result);
+        }
+        assertEquals(1, computations.get());
+    }
+
+    public void testDifferentKeysAreComputedInParallel() throws Exception {
+        final CountDownLatch allStarted = new CountDownLatch(THREADS);
+        final AtomicInteger keys = new AtomicInteger();
+        final AnalysisResultCache<Integer, String> cache = new AnalysisResultCache<Integer, String>(THREADS) {
+            @NotNull
+            @Override
+            protected String compute(@NotNull Integer key) {
+                // Would never finish if the computations were serialized
+                allStarted.countDown();
+                try {
+                    assertTrue(allStarted.await(10, TimeUnit.SECONDS));
+                }
+                catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return "v" + key;
+            }
+        };
+
+        invokeConcurrently(new Callable<String>() {
+            @Override
+            public String call() {
+                return cache.get(keys.getAndIncrement());
+            }
+        });
+        assertEquals(THREADS, cache.size());
+    }
+
+    public void testLeastRecentlyUsedValuesAreEvicted() {
+        final AtomicInteger computations = new AtomicInteger();
+        AnalysisResultCache<Integer, String> cache = new AnalysisResultCache<Integer, String>(2) {
+            @NotNull
+            @Override
+            protected String compute(@NotNull Integer key) {
+                computations.incrementAndGet();
+                return "v" + key;
+            }
+        };
+
+        cache.get(1);
+        cache.get(2);
+        cache.get(1);
+        cache.get(3);
+        assertEquals(2, cache.size());
+        assertEquals(3, computations.get());
+
+        cache.get(1);
+        assertEquals(3, computations.get());
+        cache.get(2);
+        assertEquals(4, computations.get());
+    }
+
+    public void testFailedComputationIsNotCached() {
+        final AtomicInteger computations = new AtomicInteger();
+        AnalysisResultCache<String, String> cache = new AnalysisResultCache<String, String>(10) {
+            @NotNull
+            @Override
+            protected String compute(@NotNull String key) {
+                if (computations.incrementAndGet() == 1) {
+                    throw new IllegalStateException("first");
+                }
+                return key;
+            }
+        };
+
+        try {
+            cache.get("a");
+            fail();
+        }
+        catch (IllegalStateException e) {
+            assertEquals("first", e.getMessage());
+        }
+        assertEquals("a", cache.get("a"));
+        assertEquals("a", cache.get("a"));
+        assertEquals(2, computations.get());
+    }
+
+    public void testRecursiveRequestDoesNotWaitForItself() {
+        final boolean[] inside = new boolean[1];
+        final List<AnalysisResultCache<String, String>> cache = new ArrayList<AnalysisResultCache<String, String>>();
+        cache.add(new AnalysisResultCache<String, String>(10) {
+            @NotNull
+            @Override
+            protected String compute(@NotNull String key) {
+                if (inside[0]) return "inner";
+                inside[0] = true;
+                try {
+                    return "outer(" + cache.get(0).get(key) + ")";
+                }
+                finally {
+                    inside[0] = false;
+                }
+            }
+        });
+        assertEquals("outer(inner)", cache.get(0).get("a"));
+        assertEquals("outer(inner)", cache.get(0).get("a"));
+    }
+
+    @NotNull
+    private static <T> List<T> invokeConcurrently(@NotNull Callable<T> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<T>> futures = new ArrayList<Future<T>>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(task));
+            }
+            List<T> results = new ArrayList<T>();
+            for (Future<T> future : futures) {
+                results.add(future.get(10, TimeUnit.SECONDS));
+            }
+            return results;
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
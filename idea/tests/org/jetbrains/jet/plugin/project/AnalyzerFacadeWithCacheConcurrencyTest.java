@@ -0,0 +1,115 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.jet.plugin.project;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.util.Computable;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiNameIdentifierOwner;
+import com.intellij.psi.impl.PsiModificationTrackerImpl;
+import com.intellij.testFramework.LightProjectDescriptor;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.analyzer.AnalyzeExhaust;
+import org.jetbrains.jet.lang.diagnostics.Diagnostic;
+import org.jetbrains.jet.lang.diagnostics.Errors;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.plugin.JetWithJdkAndRuntimeLightProjectDescriptor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Analyzes two files at once against the same cached headers: each analysis has to see the diagnostics
+ * of its own file only, and Java classes resolved from both bodies must not break the shared trace
+ */
+public class AnalyzerFacadeWithCacheConcurrencyTest extends LightCodeInsightFixtureTestCase {
+    private static final int ROUNDS = 20;
+
+    @NotNull
+    @Override
+    protected LightProjectDescriptor getProjectDescriptor() {
+        return JetWithJdkAndRuntimeLightProjectDescriptor.INSTANCE;
+    }
+
+    public void testTwoFilesAtOnce() throws Exception {
+        JetFile first = (JetFile) myFixture.addFileToProject("first.kt", fileText("first", "java.util.concurrent.ConcurrentHashMap<String, Int>()"));
+        JetFile second = (JetFile) myFixture.addFileToProject("second.kt", fileText("second", "java.util.LinkedList<java.util.Date>()"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < ROUNDS; i++) {
+                // Drops the cached bodies, but not the headers
+                ((PsiModificationTrackerImpl) PsiManager.getInstance(getProject()).getModificationTracker()).incCounter();
+
+                CyclicBarrier barrier = new CyclicBarrier(2);
+                Future<AnalyzeExhaust> firstResult = executor.submit(analyze(first, barrier));
+                Future<AnalyzeExhaust> secondResult = executor.submit(analyze(second, barrier));
+
+                assertEquals(Collections.singletonList("first"), unusedVariables(firstResult.get(1, TimeUnit.MINUTES), first));
+                assertEquals(Collections.singletonList("second"), unusedVariables(secondResult.get(1, TimeUnit.MINUTES), second));
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @NotNull
+    private static String fileText(@NotNull String name, @NotNull String javaExpression) {
+        return "package " + name + "\n\n" +
+               "fun " + name + "(): Int {\n" +
+               "    val " + name + " = " + javaExpression + "\n" +
+               "    return " + javaExpression + ".size()\n" +
+               "}\n";
+    }
+
+    @NotNull
+    private static Callable<AnalyzeExhaust> analyze(@NotNull final JetFile file, @NotNull final CyclicBarrier barrier) {
+        return new Callable<AnalyzeExhaust>() {
+            @Override
+            public AnalyzeExhaust call() throws Exception {
+                barrier.await(1, TimeUnit.MINUTES);
+                return ApplicationManager.getApplication().runReadAction(new Computable<AnalyzeExhaust>() {
+                    @Override
+                    public AnalyzeExhaust compute() {
+                        return AnalyzerFacadeWithCache.analyzeFileWithCache(file);
+                    }
+                });
+            }
+        };
+    }
+
+    // Unused variables are only reported when the file is analyzed completely
+    @NotNull
+    private static List<String> unusedVariables(@NotNull AnalyzeExhaust exhaust, @NotNull JetFile file) {
+        assertFalse(exhaust.isError());
+        List<String> names = new ArrayList<String>();
+        for (Diagnostic diagnostic : exhaust.getBindingContext().getDiagnostics().all()) {
+            if (diagnostic.getFactory() == Errors.EXCEPTION_WHILE_ANALYZING) {
+                fail(diagnostic.toString());
+            }
+            if (diagnostic.getFactory() == Errors.UNUSED_VARIABLE && diagnostic.getPsiFile() == file) {
+                names.add(((PsiNameIdentifierOwner) diagnostic.getPsiElement()).getName());
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.jet.plugin.project;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.testFramework.LightProjectDescriptor;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.asJava.JetCodeBlockModificationListener;
+import org.jetbrains.jet.lang.psi.JetExpression;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.psi.JetNamedFunction;
+import org.jetbrains.jet.lang.psi.JetPsiFactory;
+import org.jetbrains.jet.lang.psi.JetReturnExpression;
+import org.jetbrains.jet.lang.resolve.BindingContext;
+import org.jetbrains.jet.plugin.JetLightProjectDescriptor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ResolveElementCacheTest extends LightCodeInsightFixtureTestCase {
+    @NotNull
+    @Override
+    protected LightProjectDescriptor getProjectDescriptor() {
+        return JetLightProjectDescriptor.INSTANCE;
+    }
+
+    public void testEditInsideBodyKeepsOtherResults() {
+        configure("fun first(): Int {\n" +
+                  "    return 1\n" +
+                  "}\n" +
+                  "\n" +
+                  "fun second(): Int {\n" +
+                  "    return <caret>2\n" +
+                  "}\n");
+
+        CancelableResolveSession session = getSession();
+        BindingContext firstContext = session.resolveToElement(getReturnedExpression(0));
+        BindingContext secondContext = session.resolveToElement(getReturnedExpression(1));
+        assertSame(firstContext, session.resolveToElement(getReturnedExpression(0)));
+        assertSame(secondContext, session.resolveToElement(getReturnedExpression(1)));
+
+        long firstStamp = JetCodeBlockModificationListener.getModificationStamp(getFunction(0));
+        long secondStamp = JetCodeBlockModificationListener.getModificationStamp(getFunction(1));
+
+        type("1");
+
+        assertEquals(firstStamp, JetCodeBlockModificationListener.getModificationStamp(getFunction(0)));
+        assertFalse(secondStamp == JetCodeBlockModificationListener.getModificationStamp(getFunction(1)));
+
+        // An edit inside a body keeps the session
+        assertSame(session, getSession());
+        assertSame(firstContext, session.resolveToElement(getReturnedExpression(0)));
+
+        JetExpression edited = getReturnedExpression(1);
+        assertEquals("12", edited.getText());
+        BindingContext editedContext = session.resolveToElement(edited);
+        assertNotSame(secondContext, editedContext);
+        assertNotNull(editedContext.get(BindingContext.EXPRESSION_TYPE, edited));
+        assertSame(editedContext, session.resolveToElement(getReturnedExpression(1)));
+    }
+
+    public void testEditInsideMethodBodyKeepsOtherResults() {
+        configure("class A {\n" +
+                  "    fun first(): Int {\n" +
+                  "        return 1\n" +
+                  "    }\n" +
+                  "\n" +
+                  "    fun second(): Int {\n" +
+                  "        return <caret>2\n" +
+                  "    }\n" +
+                  "}\n" +
+                  "\n" +
+                  "fun third(): Int {\n" +
+                  "    return A().first()\n" +
+                  "}\n");
+
+        CancelableResolveSession session = getSession();
+        BindingContext firstContext = session.resolveToElement(getReturnedExpressions().get(0));
+        BindingContext thirdContext = session.resolveToElement(getReturnedExpressions().get(2));
+
+        type("1");
+
+        // Neither the other member of the class nor the top-level function is resolved again
+        assertSame(session, getSession());
+        assertSame(firstContext, session.resolveToElement(getReturnedExpressions().get(0)));
+        assertSame(thirdContext, session.resolveToElement(getReturnedExpressions().get(2)));
+        assertEquals("12", getReturnedExpressions().get(1).getText());
+    }
+
+    public void testReplacedBodyKeepsOtherResults() {
+        configure("fun first(): Int {\n" +
+                  "    return 1\n" +
+                  "}\n" +
+                  "\n" +
+                  "fun second(): Int {\n" +
+                  "    return 2\n" +
+                  "}\n");
+
+        CancelableResolveSession session = getSession();
+        BindingContext firstContext = session.resolveToElement(getReturnedExpression(0));
+        PsiModificationTracker tracker = PsiManager.getInstance(getProject()).getModificationTracker();
+        long outOfBlockCount = tracker.getOutOfCodeBlockModificationCount();
+
+        // The same happens when the reparser replaces an edited body as a whole
+        ApplicationManager.getApplication().runWriteAction(new Runnable() {
+            @Override
+            public void run() {
+                JetExpression body = getFunction(1).getBodyExpression();
+                assertNotNull(body);
+                body.replace(JetPsiFactory.createFunctionBody(getProject(), "    return 3"));
+            }
+        });
+
+        assertEquals(outOfBlockCount, tracker.getOutOfCodeBlockModificationCount());
+        assertSame(session, getSession());
+        assertSame(firstContext, session.resolveToElement(getReturnedExpression(0)));
+        assertEquals("3", getReturnedExpression(1).getText());
+    }
+
+    public void testEditOutsideBodiesDropsAllResults() {
+        configure("fun first(): Int {\n" +
+                  "    return 1\n" +
+                  "}\n" +
+                  "\n" +
+                  "fun second(<caret>): Int {\n" +
+                  "    return 2\n" +
+                  "}\n");
+
+        BindingContext firstContext = getSession().resolveToElement(getReturnedExpression(0));
+        BindingContext secondContext = getSession().resolveToElement(getReturnedExpression(1));
+
+        type("a: Int");
+
+        // The signature of second() has changed, and the result for first() may refer to it.
+        // Which declarations each result has read is not tracked, so all the results are dropped, not only the dependent ones
+        assertNotSame(firstContext, getSession().resolveToElement(getReturnedExpression(0)));
+        assertNotSame(secondContext, getSession().resolveToElement(getReturnedExpression(1)));
+    }
+
+    private void configure(@NotNull String text) {
+        myFixture.configureByText("a.kt", text);
+    }
+
+    private void type(@NotNull String text) {
+        myFixture.type(text);
+        PsiDocumentManager.getInstance(getProject()).commitAllDocuments();
+    }
+
+    @NotNull
+    private CancelableResolveSession getSession() {
+        return AnalyzerFacadeWithCache.getLazyResolveSessionForFile(getJetFile());
+    }
+
+    @NotNull
+    private JetFile getJetFile() {
+        return (JetFile) myFixture.getFile();
+    }
+
+    @NotNull
+    private JetNamedFunction getFunction(int index) {
+        return (JetNamedFunction) getJetFile().getDeclarations().get(index);
+    }
+
+    @NotNull
+    private List<JetExpression> getReturnedExpressions() {
+        List<JetExpression> result = new ArrayList<JetExpression>();
+        for (JetReturnExpression returnExpression : PsiTreeUtil.findChildrenOfType(getJetFile(), JetReturnExpression.class)) {
+            JetExpression returnedExpression = returnExpression.getReturnedExpression();
+            assertNotNull(returnedExpression);
+            result.add(returnedExpression);
+        }
+        return result;
+    }
+
+    @NotNull
+    private JetExpression getReturnedExpression(int index) {
+        JetExpression body = getFunction(index).getBodyExpression();
+        assertNotNull(body);
+        JetReturnExpression returnExpression = PsiTreeUtil.findChildOfType(body, JetReturnExpression.class);
+        assertNotNull(returnExpression);
+        JetExpression returnedExpression = returnExpression.getReturnedExpression();
+        assertNotNull(returnedExpression);
+        return returnedExpression;
+    }
+}
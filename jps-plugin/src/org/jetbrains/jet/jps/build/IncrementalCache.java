@@ -0,0 +1,360 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.jps.build;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.PersistentHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.asm4.*;
+import org.jetbrains.asm4.util.Textifier;
+import org.jetbrains.asm4.util.TraceMethodVisitor;
+import org.jetbrains.jps.builders.storage.StorageProvider;
+import org.jetbrains.jps.incremental.storage.StorageOwner;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+import static org.jetbrains.asm4.ClassReader.*;
+import static org.jetbrains.asm4.Opcodes.ACC_PRIVATE;
+import static org.jetbrains.asm4.Opcodes.ACC_STATIC;
+import static org.jetbrains.asm4.Opcodes.ASM4;
+
+/**
+ * What the previous builds of a target produced: the class files generated from each Kotlin source file
+ * and the ABI hash of each class file.
+ *
+ * The ABI hash covers everything in a class file that other files may depend on: the header of the class,
+ * non-private members and all annotations, including the serialized descriptors Kotlin stores in
+ * KotlinClass and KotlinPackage annotations. Method bodies do not affect it, except for the bodies of the methods
+ * which may be {@code inline} functions: their bytecode is copied into the callers compiled against the class file.
+ */
+public class IncrementalCache implements StorageOwner {
+    public static final StorageProvider<IncrementalCache> PROVIDER = new StorageProvider<IncrementalCache>() {
+        @NotNull
+        @Override
+        public IncrementalCache createStorage(File targetDataDir) throws IOException {
+            return new IncrementalCache(new File(targetDataDir, "kotlin"));
+        }
+    };
+
+    private final File storageDir;
+    private PersistentHashMap<String, List<String>> sourceToOutputs;
+    private PersistentHashMap<String, byte[]> abiHashes;
+
+    private IncrementalCache(@NotNull File storageDir) throws IOException {
+        this.storageDir = storageDir;
+        open();
+    }
+
+    private void open() throws IOException {
+        sourceToOutputs = new PersistentHashMap<String, List<String>>(
+                new File(storageDir, "source-to-outputs"), new EnumeratorStringDescriptor(), new StringListExternalizer());
+        abiHashes = new PersistentHashMap<String, byte[]>(
+                new File(storageDir, "abi-hashes"), new EnumeratorStringDescriptor(), new ByteArrayExternalizer());
+    }
+
+    public boolean isEmpty() throws IOException {
+        return sourceToOutputs.getAllKeysWithExistingMapping().isEmpty();
+    }
+
+    @NotNull
+    public Collection<String> getSourceFiles() throws IOException {
+        return sourceToOutputs.getAllKeysWithExistingMapping();
+    }
+
+    @NotNull
+    public List<String> getOutputs(@NotNull String sourceFile) throws IOException {
+        List<String> outputs = sourceToOutputs.get(sourceFile);
+        return outputs != null ? outputs : Collections.<String>emptyList();
+    }
+
+    /**
+     * Records the outputs of a recompiled source file
+     * @return true if the ABI of the source file has changed since the previous compilation
+     */
+    public boolean update(@NotNull String sourceFile, @NotNull Collection<File> outputs) throws IOException {
+        List<String> oldOutputs = getOutputs(sourceFile);
+
+        List<String> newOutputs = new ArrayList<String>(outputs.size());
+        boolean abiChanged = false;
+        for (File output : outputs) {
+            String outputPath = output.getPath();
+            newOutputs.add(outputPath);
+            // Other outputs, like the line indices, are not compiled against
+            if (!isClassFile(outputPath)) continue;
+
+            byte[] newHash = computeAbiHash(output);
+            byte[] oldHash = abiHashes.get(outputPath);
+            if (oldHash == null || !Arrays.equals(oldHash, newHash)) {
+                abiChanged = true;
+                if (newHash != null) {
+                    abiHashes.put(outputPath, newHash);
+                }
+            }
+        }
+
+        for (String oldOutput : oldOutputs) {
+            if (!newOutputs.contains(oldOutput)) {
+                abiChanged |= isClassFile(oldOutput);
+                abiHashes.remove(oldOutput);
+            }
+        }
+
+        sourceToOutputs.put(sourceFile, newOutputs);
+        return abiChanged;
+    }
+
+    /**
+     * @return true if the removed file had any outputs
+     */
+    public boolean remove(@NotNull String sourceFile) throws IOException {
+        List<String> outputs = getOutputs(sourceFile);
+        for (String output : outputs) {
+            abiHashes.remove(output);
+        }
+        sourceToOutputs.remove(sourceFile);
+        return !outputs.isEmpty();
+    }
+
+    private static boolean isClassFile(@NotNull String path) {
+        return path.endsWith(".class");
+    }
+
+    @Nullable
+    private static byte[] computeAbiHash(@NotNull File classFile) throws IOException {
+        if (!classFile.exists()) return null;
+
+        final MessageDigest digest = createDigest();
+        final AnnotationVisitor annotationDigest = new AnnotationVisitor(ASM4) {
+            @Override
+            public void visit(String name, Object value) {
+                update(digest, name, valueToString(value));
+            }
+
+            @Override
+            public void visitEnum(String name, String desc, String value) {
+                update(digest, name, desc, value);
+            }
+
+            @Override
+            public AnnotationVisitor visitAnnotation(String name, String desc) {
+                update(digest, name, desc);
+                return this;
+            }
+
+            @Override
+            public AnnotationVisitor visitArray(String name) {
+                update(digest, name, "[");
+                return this;
+            }
+
+            @Override
+            public void visitEnd() {
+                update(digest, "end");
+            }
+        };
+
+        new ClassReader(FileUtil.loadFileBytes(classFile)).accept(new ClassVisitor(ASM4) {
+            @Override
+            public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                update(digest, String.valueOf(access), name, signature, superName);
+                update(digest, interfaces);
+            }
+
+            @Override
+            public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+                update(digest, desc);
+                return annotationDigest;
+            }
+
+            @Override
+            public void visitInnerClass(String name, String outerName, String innerName, int access) {
+                update(digest, name, outerName, innerName, String.valueOf(access));
+            }
+
+            @Override
+            public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+                if ((access & ACC_PRIVATE) != 0) return null;
+                update(digest, "field", String.valueOf(access), name, desc, signature, String.valueOf(value));
+                return new FieldVisitor(ASM4) {
+                    @Override
+                    public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+                        update(digest, desc);
+                        return annotationDigest;
+                    }
+                };
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+                if ((access & ACC_PRIVATE) != 0) return null;
+                update(digest, "method", String.valueOf(access), name, desc, signature);
+                update(digest, exceptions);
+                MethodVisitor annotationsDigest = new MethodVisitor(ASM4) {
+                    @Override
+                    public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+                        update(digest, desc);
+                        return annotationDigest;
+                    }
+
+                    @Override
+                    public AnnotationVisitor visitParameterAnnotation(int parameter, String desc, boolean visible) {
+                        update(digest, String.valueOf(parameter), desc);
+                        return annotationDigest;
+                    }
+
+                    @Override
+                    public AnnotationVisitor visitAnnotationDefault() {
+                        update(digest, "default");
+                        return annotationDigest;
+                    }
+                };
+                if (!mayBeInlined(access, desc)) return annotationsDigest;
+
+                final Textifier code = new Textifier();
+                return new TraceMethodVisitor(annotationsDigest, code) {
+                    @Override
+                    public void visitEnd() {
+                        super.visitEnd();
+                        update(digest, "code", code.getText().toString());
+                    }
+                };
+            }
+        }, SKIP_DEBUG | SKIP_FRAMES);
+
+        return digest.digest();
+    }
+
+    // Only static functions with parameters of function types are inlined (see InlineFunctionBodies).
+    // The inline modifier itself is known only from the serialized descriptors, so other such functions are hashed too
+    private static boolean mayBeInlined(int access, @NotNull String desc) {
+        if ((access & ACC_STATIC) == 0) return false;
+        for (Type type : Type.getArgumentTypes(desc)) {
+            if (type.getSort() == Type.OBJECT && type.getInternalName().startsWith("jet/Function")) return true;
+        }
+        return false;
+    }
+
+    @NotNull
+    private static String valueToString(@NotNull Object value) {
+        if (!value.getClass().isArray()) return value.toString();
+
+        // Arrays of primitives are passed as Java arrays, which have no meaningful toString()
+        StringBuilder result = new StringBuilder("[");
+        for (int i = 0; i < Array.getLength(value); i++) {
+            result.append(Array.get(value, i)).append(',');
+        }
+        return result.append(']').toString();
+    }
+
+    @NotNull
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(@NotNull MessageDigest digest, @Nullable String... strings) {
+        if (strings == null) {
+            digest.update((byte) 0);
+            return;
+        }
+        for (String string : strings) {
+            if (string != null) {
+                digest.update(string.getBytes());
+            }
+            // Separates the strings, so that different sequences of strings do not produce the same bytes
+            digest.update((byte) 0);
+        }
+    }
+
+    @Override
+    public void flush(boolean memoryCachesOnly) {
+        if (memoryCachesOnly) {
+            if (sourceToOutputs.isDirty()) {
+                sourceToOutputs.dropMemoryCaches();
+            }
+            if (abiHashes.isDirty()) {
+                abiHashes.dropMemoryCaches();
+            }
+        }
+        else {
+            sourceToOutputs.force();
+            abiHashes.force();
+        }
+    }
+
+    @Override
+    public void clean() throws IOException {
+        close();
+        FileUtil.delete(storageDir);
+        open();
+    }
+
+    @Override
+    public void close() throws IOException {
+        sourceToOutputs.close();
+        abiHashes.close();
+    }
+
+    private static class StringListExternalizer implements DataExternalizer<List<String>> {
+        @Override
+        public void save(DataOutput out, List<String> value) throws IOException {
+            out.writeInt(value.size());
+            for (String string : value) {
+                out.writeUTF(string);
+            }
+        }
+
+        @Override
+        public List<String> read(DataInput in) throws IOException {
+            int size = in.readInt();
+            List<String> result = new ArrayList<String>(size);
+            for (int i = 0; i < size; i++) {
+                result.add(in.readUTF());
+            }
+            return result;
+        }
+    }
+
+    private static class ByteArrayExternalizer implements DataExternalizer<byte[]> {
+        @Override
+        public void save(DataOutput out, byte[] value) throws IOException {
+            out.writeInt(value.length);
+            out.write(value);
+        }
+
+        @Override
+        public byte[] read(DataInput in) throws IOException {
+            byte[] result = new byte[in.readInt()];
+            in.readFully(result);
+            return result;
+        }
+    }
+}
@@ -16,10 +16,12 @@
 
 package org.jetbrains.jet.jps.build;
 
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.util.Function;
 import com.intellij.util.containers.ContainerUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.cli.common.KotlinVersion;
 import org.jetbrains.jet.cli.common.arguments.CommonCompilerArguments;
 import org.jetbrains.jet.cli.common.arguments.K2JSCompilerArguments;
@@ -84,7 +86,7 @@ public class KotlinBuilder extends ModuleLevelBuilder {
             DirtyFilesHolder<JavaSourceRootDescriptor, ModuleBuildTarget> dirtyFilesHolder,
             OutputConsumer outputConsumer
     ) throws ProjectBuildException, IOException {
-        MessageCollector messageCollector = new MessageCollectorAdapter(context);
+        MessageCollectorAdapter messageCollector = new MessageCollectorAdapter(context);
         // Workaround for Android Studio
         if (!isJavaPluginEnabled(context)) {
             messageCollector.report(INFO, "Kotlin JPS plugin is disabled", CompilerMessageLocation.NO_LOCATION);
@@ -155,18 +157,155 @@ public class KotlinBuilder extends ModuleLevelBuilder {
                         CompilerMessageLocation.NO_LOCATION);
             }
 
+            K2JVMCompilerArguments k2JvmArguments = JpsKotlinCompilerSettings.getK2JvmCompilerArguments(project);
+
+            IncrementalCache cache = chunk.getTargets().size() == 1
+                                     ? context.getProjectDescriptor().dataManager.getStorage(representativeTarget, IncrementalCache.PROVIDER)
+                                     : null;
+            List<File> allSourceFiles = KotlinSourceFileCollector.getAllKotlinSourceFiles(representativeTarget);
+            List<File> filesToRecompile = cache != null ? getFilesToRecompile(cache, representativeTarget, allSourceFiles, dirtyFilesHolder) : null;
+
+            if (filesToRecompile != null && filesToRecompile.size() < allSourceFiles.size()) {
+                messageCollector.report(INFO, "Compiling " + filesToRecompile.size() + " of " + allSourceFiles.size() + " Kotlin files",
+                                        CompilerMessageLocation.NO_LOCATION);
+
+                Map<ModuleBuildTarget, List<File>> sourceFiles = Collections.singletonMap(representativeTarget, filesToRecompile);
+                File moduleFile = KotlinBuilderModuleScriptGenerator.generateModuleDescription(context, chunk, sourceFiles, false);
+                assert moduleFile != null : "No module script generated for " + filesToRecompile;
+
+                deleteOutputs(cache, filesToRecompile);
+
+                runK2JvmCompiler(commonArguments, k2JvmArguments, compilerSettings, messageCollector, environment,
+                                 moduleFile, outputItemCollector);
+
+                if (messageCollector.hasErrors() || !updateIncrementalCache(cache, filesToRecompile, outputItemCollector)) {
+                    registerOutputs(chunk, outputItemCollector, outputConsumer);
+                    return ExitCode.OK;
+                }
+
+                // Other files may depend on the ABI that has changed: the whole module is recompiled
+                messageCollector.report(INFO, "ABI of the recompiled files has changed, compiling all Kotlin files",
+                                        CompilerMessageLocation.NO_LOCATION);
+                outputItemCollector = new OutputItemsCollectorImpl();
+            }
+
             File moduleFile = KotlinBuilderModuleScriptGenerator.generateModuleDescription(context, chunk);
             if (moduleFile == null) {
                 // No Kotlin sources found
                 return ExitCode.NOTHING_DONE;
             }
 
-            K2JVMCompilerArguments k2JvmArguments = JpsKotlinCompilerSettings.getK2JvmCompilerArguments(project);
-
             runK2JvmCompiler(commonArguments, k2JvmArguments, compilerSettings, messageCollector, environment,
                              moduleFile, outputItemCollector);
+
+            if (cache != null && !messageCollector.hasErrors()) {
+                for (String removedFile : cache.getSourceFiles()) {
+                    if (!allSourceFiles.contains(new File(removedFile))) {
+                        cache.remove(removedFile);
+                    }
+                }
+                updateIncrementalCache(cache, allSourceFiles, outputItemCollector);
+            }
+        }
+
+        registerOutputs(chunk, outputItemCollector, outputConsumer);
+
+        return ExitCode.OK;
+    }
+
+    /**
+     * Files of a package are compiled together, because the package class is generated from all of them.
+     * Compiled files share an output with each other if and only if they are in the same package.
+     *
+     * @return null if the whole module must be compiled
+     */
+    @Nullable
+    private static List<File> getFilesToRecompile(
+            @NotNull IncrementalCache cache,
+            @NotNull ModuleBuildTarget target,
+            @NotNull List<File> allSourceFiles,
+            @NotNull DirtyFilesHolder<JavaSourceRootDescriptor, ModuleBuildTarget> dirtyFilesHolder
+    ) throws IOException {
+        if (cache.isEmpty()) return null;
+
+        // It's not known which Kotlin files depend on the Java ones
+        if (KotlinSourceFileCollector.hasDirtyJavaSourceFiles(dirtyFilesHolder)) return null;
+
+        for (String removedFile : dirtyFilesHolder.getRemovedFiles(target)) {
+            // Removed declarations may be used anywhere
+            if (KotlinSourceFileCollector.isJavaSourceFile(new File(removedFile))) return null;
+            if (!cache.getOutputs(removedFile).isEmpty()) return null;
+        }
+
+        Set<String> dirtyOutputs = new HashSet<String>();
+        Set<File> result = new LinkedHashSet<File>();
+        for (File dirtyFile : KotlinSourceFileCollector.getDirtySourceFiles(dirtyFilesHolder)) {
+            List<String> outputs = cache.getOutputs(dirtyFile.getPath());
+            // A new file may belong to any package
+            if (outputs.isEmpty()) return null;
+
+            dirtyOutputs.addAll(outputs);
+            result.add(dirtyFile);
         }
 
+        // No Kotlin file is dirty, there is no partial compilation to run
+        if (result.isEmpty()) return null;
+
+        for (File file : allSourceFiles) {
+            if (result.contains(file)) continue;
+            List<String> outputs = cache.getOutputs(file.getPath());
+            if (!Collections.disjoint(outputs, dirtyOutputs)) {
+                result.add(file);
+            }
+        }
+
+        return new ArrayList<File>(result);
+    }
+
+    // Outputs of the files that are not dirty themselves are still there: they would clash with the recompiled classes
+    private static void deleteOutputs(@NotNull IncrementalCache cache, @NotNull List<File> sourceFiles) throws IOException {
+        for (File file : sourceFiles) {
+            for (String output : cache.getOutputs(file.getPath())) {
+                FileUtil.delete(new File(output));
+            }
+        }
+    }
+
+    /**
+     * @return true if the ABI of any of the compiled files has changed
+     */
+    private static boolean updateIncrementalCache(
+            @NotNull IncrementalCache cache,
+            @NotNull List<File> compiledFiles,
+            @NotNull OutputItemsCollectorImpl outputItemCollector
+    ) throws IOException {
+        Map<File, List<File>> sourceToOutputs = new HashMap<File, List<File>>();
+        for (SimpleOutputItem outputItem : outputItemCollector.getOutputs()) {
+            for (File sourceFile : outputItem.getSourceFiles()) {
+                List<File> outputs = sourceToOutputs.get(sourceFile);
+                if (outputs == null) {
+                    outputs = new ArrayList<File>();
+                    sourceToOutputs.put(sourceFile, outputs);
+                }
+                outputs.add(outputItem.getOutputFile());
+            }
+        }
+
+        boolean abiChanged = false;
+        for (File sourceFile : compiledFiles) {
+            List<File> outputs = sourceToOutputs.get(sourceFile);
+            abiChanged |= cache.update(sourceFile.getPath(), outputs != null ? outputs : Collections.<File>emptyList());
+        }
+        return abiChanged;
+    }
+
+    private static void registerOutputs(
+            @NotNull ModuleChunk chunk,
+            @NotNull OutputItemsCollectorImpl outputItemCollector,
+            @NotNull OutputConsumer outputConsumer
+    ) throws IOException {
+        ModuleBuildTarget representativeTarget = chunk.representativeTarget();
+
         // If there's only one target, this map is empty: get() always returns null, and the representativeTarget will be used below
         Map<File, BuildTarget<?>> sourceToTarget = new HashMap<File, BuildTarget<?>>();
         if (chunk.getTargets().size() > 1) {
@@ -184,8 +323,6 @@ public class KotlinBuilder extends ModuleLevelBuilder {
                     outputItem.getOutputFile(),
                     paths(outputItem.getSourceFiles()));
         }
-
-        return ExitCode.OK;
     }
 
     private static boolean hasKotlinFiles(@NotNull ModuleChunk chunk) {
@@ -222,17 +359,23 @@ public class KotlinBuilder extends ModuleLevelBuilder {
     public static class MessageCollectorAdapter implements MessageCollector {
 
         private final CompileContext context;
+        private boolean hasErrors = false;
 
         public MessageCollectorAdapter(@NotNull CompileContext context) {
             this.context = context;
         }
 
+        public boolean hasErrors() {
+            return hasErrors;
+        }
+
         @Override
         public void report(
                 @NotNull CompilerMessageSeverity severity,
                 @NotNull String message,
                 @NotNull CompilerMessageLocation location
         ) {
+            hasErrors |= CompilerMessageSeverity.ERRORS.contains(severity);
             String prefix = "";
             if (severity == EXCEPTION) {
                 prefix = CompilerRunnerConstants.INTERNAL_ERROR_PREFIX;
@@ -55,27 +55,49 @@ public class KotlinBuilderModuleScriptGenerator {
     public static File generateModuleDescription(CompileContext context, ModuleChunk chunk)
             throws IOException
     {
+        Map<ModuleBuildTarget, List<File>> sourceFiles = new LinkedHashMap<ModuleBuildTarget, List<File>>();
+        for (ModuleBuildTarget target : chunk.getTargets()) {
+            sourceFiles.put(target, KotlinSourceFileCollector.getAllKotlinSourceFiles(target));
+        }
+        return generateModuleDescription(context, chunk, sourceFiles, true);
+    }
+
+    /**
+     * @param excludeOutputDirs false when only some of the sources are compiled,
+     *                          so that the rest of the module is loaded from its output directory
+     */
+    @Nullable
+    public static File generateModuleDescription(
+            CompileContext context,
+            ModuleChunk chunk,
+            Map<ModuleBuildTarget, List<File>> sourceFiles,
+            boolean excludeOutputDirs
+    ) throws IOException {
         KotlinModuleDescriptionBuilder builder = FACTORY.create();
 
         boolean noSources = true;
 
         Set<File> outputDirs = new HashSet<File>();
-        for (ModuleBuildTarget target : chunk.getTargets()) {
-            outputDirs.add(getOutputDir(target));
+        if (excludeOutputDirs) {
+            for (ModuleBuildTarget target : chunk.getTargets()) {
+                outputDirs.add(getOutputDir(target));
+            }
         }
         for (ModuleBuildTarget target : chunk.getTargets()) {
             File outputDir = getOutputDir(target);
 
-            List<File> sourceFiles = KotlinSourceFileCollector.getAllKotlinSourceFiles(target);
-            noSources &= sourceFiles.isEmpty();
+            List<File> targetSourceFiles = sourceFiles.get(target);
+            if (targetSourceFiles == null) {
+                targetSourceFiles = Collections.emptyList();
+            }
+            noSources &= targetSourceFiles.isEmpty();
 
             builder.addModule(
                     target.getId(),
                     outputDir.getAbsolutePath(),
                     getKotlinModuleDependencies(context, target),
-                    sourceFiles,
+                    targetSourceFiles,
                     target.isTests(),
-                    // this excludes the output directories from the class path, to be removed for true incremental compilation
                     outputDirs
             );
         }
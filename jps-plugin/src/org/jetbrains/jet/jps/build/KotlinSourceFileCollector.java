@@ -50,6 +50,24 @@ public class KotlinSourceFileCollector {
         return sourceFiles;
     }
 
+    public static boolean hasDirtyJavaSourceFiles(DirtyFilesHolder<JavaSourceRootDescriptor, ModuleBuildTarget> dirtyFilesHolder)
+            throws IOException
+    {
+        final boolean[] result = {false};
+
+        dirtyFilesHolder.processDirtyFiles(new FileProcessor<JavaSourceRootDescriptor, ModuleBuildTarget>() {
+            @Override
+            public boolean apply(ModuleBuildTarget target, File file, JavaSourceRootDescriptor root) throws IOException {
+                if (isJavaSourceFile(file)) {
+                    result[0] = true;
+                    return false;
+                }
+                return true;
+            }
+        });
+        return result[0];
+    }
+
     @NotNull
     public static List<File> getAllKotlinSourceFiles(@NotNull ModuleBuildTarget target) {
         final List<File> result = ContainerUtil.newArrayList();
@@ -78,5 +96,9 @@ public class KotlinSourceFileCollector {
         return file.getPath().endsWith(".kt");
     }
 
+    public static boolean isJavaSourceFile(File file) {
+        return file.getPath().endsWith(".java");
+    }
+
     private KotlinSourceFileCollector() {}
 }
@@ -20,16 +20,21 @@ import com.intellij.openapi.util.Condition;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.testFramework.LightVirtualFile;
 import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.codegen.NamespaceCodegen;
 import org.jetbrains.jet.lang.resolve.name.FqName;
 import org.jetbrains.jps.builders.BuildResult;
+import org.jetbrains.jps.incremental.messages.BuildMessage;
 import org.jetbrains.jps.model.java.JpsJavaDependencyScope;
 import org.jetbrains.jps.model.java.JpsJavaExtensionService;
 import org.jetbrains.jps.model.module.JpsModule;
 import org.jetbrains.jps.util.JpsPathUtil;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 
 public class KotlinJpsBuildTestCase extends AbstractKotlinJpsBuildTestCase {
     private static final String PROJECT_NAME = "kotlinProject";
@@ -83,6 +88,91 @@ public class KotlinJpsBuildTestCase extends AbstractKotlinJpsBuildTestCase {
         assertOutputDeleted("src/test2.kt", "_DefaultPackage", "kotlinProject");
     }
 
+    public void testIncrementalCompilation() throws IOException {
+        doTest();
+
+        File otherPackageOutput = new File(workDir, "out/production/kotlinProject/b/BPackage.class");
+        assertTrue(otherPackageOutput.exists());
+        long timeStamp = otherPackageOutput.lastModified();
+
+        // The ABI of package 'a' does not change, so package 'b' is not recompiled
+        File changedFile = new File(workDir, "src/a/a1.kt");
+        FileUtil.writeToFile(changedFile, "package a\n\nfun foo() = 2\n");
+        change(changedFile.getAbsolutePath());
+        makeAll().assertSuccessful();
+
+        assertEquals(timeStamp, otherPackageOutput.lastModified());
+    }
+
+    public void testIncrementalCompilationBodyChange() throws IOException {
+        doTest();
+
+        // Only the class files are compared: the line index of 'b' changes on every edit, but nobody depends on it
+        File changedFile = new File(workDir, "src/b/b.kt");
+        FileUtil.writeToFile(changedFile, "package b\n\n\nfun baz() = a.bar() + 1\n");
+        change(changedFile.getAbsolutePath());
+        BuildResult result = makeAll();
+        result.assertSuccessful();
+
+        assertEquals("Compiling 1 of 3 Kotlin files", findInfoMessage(result, "Compiling "));
+        assertNull(findInfoMessage(result, "ABI of the recompiled files has changed"));
+    }
+
+    public void testIncrementalCompilationInline() throws IOException {
+        doTestWithRuntime();
+
+        // Now 'b' is compiled against the class files of 'a', and the body of 'twice' is inlined into it
+        File caller = new File(workDir, "src/b/b.kt");
+        change(caller.getAbsolutePath());
+        makeAll().assertSuccessful();
+        String inlinedOutput = dirContents(new File(workDir, "out/production/kotlinProject/b"));
+        byte[] inlinedBytes = loadPackageOutput("b");
+
+        // Only the body of the inline function changes, but the code inlined into 'b' has to be recompiled
+        File inlineFunction = new File(workDir, "src/a/a.kt");
+        FileUtil.writeToFile(inlineFunction, "package a\n\ninline fun twice(f: () -> Unit) {\n    f()\n    f()\n    f()\n}\n");
+        change(inlineFunction.getAbsolutePath());
+        makeAll().assertSuccessful();
+
+        assertFalse(inlinedOutput, Arrays.equals(inlinedBytes, loadPackageOutput("b")));
+    }
+
+    public void testIncrementalCompilationJava() throws IOException {
+        doTest();
+
+        // A Java file may be used by any Kotlin file, so the whole module is compiled even though the Kotlin change is local
+        File kotlinFile = new File(workDir, "src/a/a.kt");
+        FileUtil.writeToFile(kotlinFile, "package a\n\nfun foo() = 3\n");
+        change(kotlinFile.getAbsolutePath());
+        change(new File(workDir, "src/J.java").getAbsolutePath());
+        BuildResult result = makeAll();
+        result.assertSuccessful();
+
+        assertNull(findInfoMessage(result, "Compiling "));
+    }
+
+    @Nullable
+    private static String findInfoMessage(@NotNull BuildResult result, @NotNull String prefix) {
+        for (BuildMessage message : result.getMessages(BuildMessage.Kind.INFO)) {
+            if (message.getMessageText().startsWith(prefix)) {
+                return message.getMessageText();
+            }
+        }
+        return null;
+    }
+
+    @NotNull
+    private byte[] loadPackageOutput(@NotNull String packageName) throws IOException {
+        File[] classFiles = new File(workDir, "out/production/kotlinProject/" + packageName).listFiles();
+        assertNotNull(classFiles);
+        Arrays.sort(classFiles);
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        for (File classFile : classFiles) {
+            result.write(FileUtil.loadFileBytes(classFile));
+        }
+        return result.toByteArray();
+    }
+
     public void testKotlinJavaProject() {
         doTest();
     }
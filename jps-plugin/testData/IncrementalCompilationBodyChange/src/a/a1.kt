@@ -0,0 +1,3 @@
+package a
+
+fun foo() = 1
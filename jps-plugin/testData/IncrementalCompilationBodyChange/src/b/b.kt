@@ -0,0 +1,3 @@
+package b
+
+fun baz() = a.bar()
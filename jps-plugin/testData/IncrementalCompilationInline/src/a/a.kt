@@ -0,0 +1,6 @@
+package a
+
+inline fun twice(f: () -> Unit) {
+    f()
+    f()
+}
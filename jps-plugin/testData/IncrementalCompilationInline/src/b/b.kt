@@ -0,0 +1,7 @@
+package b
+
+fun baz(): Int {
+    var i = 0
+    a.twice { i++ }
+    return i
+}
@@ -0,0 +1,5 @@
+class J {
+    int f() {
+        return a.APackage.foo();
+    }
+}
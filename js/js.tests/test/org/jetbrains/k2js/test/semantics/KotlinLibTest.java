@@ -62,6 +62,23 @@ public final class KotlinLibTest extends SingleFileTranslationTest {
         runJavascriptTest("hashMap.js");
     }
 
+    public void testComplexHashMap() throws Exception {
+        runJavascriptTest("complexHashMap.js");
+    }
+
+    public void testComplexHashSet() throws Exception {
+        runJavascriptTest("complexHashSet.js");
+    }
+
+    public void testHashMapKeys() throws Exception {
+        runJavascriptTest("hashMapKeys.js");
+    }
+
+    // Prints the times of HashTable and ComplexHashMap, run it by hand
+    public void DISABLED_testHashMapBenchmark() throws Exception {
+        runJavascriptTest("hashMapBenchmark.js");
+    }
+
 
     private void runJavascriptTest(@NotNull String filename) throws Exception {
         runRhinoTest(withAdditionalFiles(cases(filename), EcmaVersion.defaultVersion()),
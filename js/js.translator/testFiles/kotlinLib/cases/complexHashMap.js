@@ -0,0 +1,118 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+function Point(x, y) {
+    this.x = x;
+    this.y = y;
+}
+
+Point.prototype.hashCode = function () {
+    return 31 * this.x + this.y;
+};
+
+Point.prototype.equals = function (o) {
+    return o instanceof Point && o.x === this.x && o.y === this.y;
+};
+
+function Colliding(id) {
+    this.id = id;
+}
+
+Colliding.prototype.hashCode = function () {
+    return 42;
+};
+
+Colliding.prototype.equals = function (o) {
+    return o instanceof Colliding && o.id === this.id;
+};
+
+function testPoints() {
+    var map = new Kotlin.ComplexHashMap();
+    for (var i = 0; i < 100; i++) {
+        map.put(new Point(i, -i), i);
+    }
+    if (map.size() !== 100) return false;
+    if (map.get(new Point(10, -10)) !== 10) return false;
+    if (map.put(new Point(10, -10), "ten") !== 10) return false;
+    if (map.get(new Point(10, -10)) !== "ten" || map.size() !== 100) return false;
+    if (map.containsKey(new Point(10, 10))) return false;
+    if (map.remove(new Point(10, -10)) !== "ten") return false;
+    if (map.remove(new Point(10, -10)) !== null || map.size() !== 99) return false;
+    return map.containsValue(99) && !map.containsValue(10);
+}
+
+function testCollisions() {
+    var map = new Kotlin.ComplexHashMap();
+    for (var i = 0; i < 50; i++) {
+        map.put(new Colliding(i), i);
+    }
+    for (i = 0; i < 50; i += 2) {
+        if (map.remove(new Colliding(i)) !== i) return false;
+    }
+    if (map.size() !== 25) return false;
+    for (i = 0; i < 50; i++) {
+        if (map.containsKey(new Colliding(i)) !== (i % 2 === 1)) return false;
+    }
+    return true;
+}
+
+function testPrimitiveKeys() {
+    var map = new Kotlin.HashMap();
+    for (var i = -1000; i < 1000; i++) {
+        map.put(i, "i" + i);
+        map.put("s" + i, i);
+    }
+    map.put(0.5, "half");
+    map.put(true, "true");
+    map.put(null, "null");
+    if (map.size() !== 4003) return false;
+    if (map.get(-1000) !== "i-1000" || map.get("s999") !== 999 || map.get("999") !== null) return false;
+    if (map.get(0.5) !== "half" || map.get(true) !== "true" || map.get(false) !== null) return false;
+    if (map.get(null) !== "null" || !map.containsKey(null)) return false;
+    map.clear();
+    return map.isEmpty() && map.get(1) === null;
+}
+
+function testIdentityKeys() {
+    var map = new Kotlin.ComplexHashMap();
+    var a = {}, b = {};
+    map.put(a, 1);
+    map.put(b, 2);
+    return map.get(a) === 1 && map.get(b) === 2 && map.get({}) === null && map.size() === 2;
+}
+
+function testCopies() {
+    var map = new Kotlin.ComplexHashMap();
+    map.put(new Point(1, 2), "a");
+    map.put(new Point(3, 4), "b");
+
+    var primitive = new Kotlin.PrimitiveHashMap();
+    primitive.put("c", "d");
+
+    var copy = map.clone();
+    copy.putAll(primitive);
+    if (copy.size() !== 3 || map.size() !== 2 || copy.get("c") !== "d") return false;
+
+    var keys = map.keySet();
+    if (keys.size() !== 2 || !keys.contains(new Point(3, 4))) return false;
+
+    var values = map.values();
+    return values.size() === 2 && values.contains("a") && values.contains("b");
+}
+
+function test() {
+    return testPoints() && testCollisions() && testPrimitiveKeys() && testIdentityKeys() && testCopies();
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+function Point(x, y) {
+    this.x = x;
+    this.y = y;
+}
+
+Point.prototype.hashCode = function () {
+    return 31 * this.x + this.y;
+};
+
+Point.prototype.equals = function (o) {
+    return o instanceof Point && o.x === this.x && o.y === this.y;
+};
+
+function test() {
+    var set = new Kotlin.ComplexHashSet();
+    for (var i = 0; i < 100; i++) {
+        if (!set.add(new Point(i, i))) return false;
+    }
+    if (set.add(new Point(5, 5)) || set.size() !== 100) return false;
+    if (!set.contains(new Point(7, 7)) || set.contains(new Point(7, 8))) return false;
+    if (!set.remove(new Point(7, 7)) || set.remove(new Point(7, 7)) || set.size() !== 99) return false;
+
+    var count = 0;
+    var iterator = set.iterator();
+    while (iterator.hasNext()) {
+        if (!(iterator.next() instanceof Point)) return false;
+        count++;
+    }
+    if (count !== 99 || set.toArray().length !== 99) return false;
+
+    var other = new Kotlin.HashSet();
+    for (i = 99; i >= 0; i--) {
+        if (i !== 7) other.add(new Point(i, i));
+    }
+    if (!set.equals(other) || !other.equals(set)) return false;
+    other.add(new Point(7, 7));
+    if (set.equals(other)) return false;
+
+    set.clear();
+    return set.isEmpty() && !set.contains(new Point(1, 1));
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+// Puts, gets and removes keys of different kinds in ComplexHashMap and in the table the maps used to be built on
+
+var KEYS = 500;
+
+function Point(x, y) {
+    this.x = x;
+    this.y = y;
+}
+
+Point.prototype.hashCode = function () {
+    return 31 * this.x + this.y;
+};
+
+Point.prototype.equals = function (o) {
+    return o instanceof Point && o.x === this.x && o.y === this.y;
+};
+
+function createKeys(kind) {
+    var keys = [];
+    for (var i = 0; i < KEYS; i++) {
+        keys.push(kind === "Int" ? i : kind === "String" ? "key" + i : new Point(i, i % 100));
+    }
+    return keys;
+}
+
+function check(map, keys) {
+    for (var i = 0; i < keys.length; i++) {
+        map.put(keys[i], i);
+    }
+    for (i = 0; i < keys.length; i++) {
+        if (map.get(keys[i]) !== i) return false;
+    }
+    for (i = 0; i < keys.length; i += 2) {
+        map.remove(keys[i]);
+    }
+    if (map.size() !== keys.length / 2) return false;
+    for (i = 0; i < keys.length; i++) {
+        if (map.containsKey(keys[i]) !== (i % 2 === 1)) return false;
+    }
+    return true;
+}
+
+function test() {
+    var kinds = ["Int", "String", "Point"];
+    for (var i = 0; i < kinds.length; i++) {
+        if (!check(new Kotlin.HashTable(), createKeys(kinds[i]))) return false;
+        if (!check(new Kotlin.ComplexHashMap(), createKeys(kinds[i]))) return false;
+    }
+    return true;
+}
@@ -382,18 +382,311 @@
     };
 
 
+    // The maps and sets used to be built on this table, it is kept for the code which uses it directly
     Kotlin.HashTable = Hashtable;
 })();
 
 Kotlin.Map = Kotlin.createClass();
 
-Kotlin.HashMap = Kotlin.createClass(Kotlin.Map,
-    function () {
-        Kotlin.HashTable.call(this);
+(function () {
+    var FUNCTION = "function";
+    var INITIAL_CAPACITY = 16;
+    var LOAD_FACTOR = 0.75;
+
+    function stringHash(str) {
+        var hash = 0;
+        for (var i = 0, len = str.length; i < len; i++) {
+            hash = (31 * hash + str.charCodeAt(i)) | 0;
+        }
+        return hash;
+    }
+
+    function hashCodeOf(key) {
+        if (key == null) {
+            return 0;
+        }
+        switch (typeof key) {
+            case "number":
+                return (key | 0) === key ? key : stringHash(String(key));
+            case "string":
+                return stringHash(key);
+            case "boolean":
+                return key ? 1231 : 1237;
+        }
+        if (typeof key.hashCode == FUNCTION) {
+            var hashCode = key.hashCode();
+            return (typeof hashCode == "number") ? (hashCode | 0) : hashCodeOf(hashCode);
+        }
+        if (typeof key.equals != FUNCTION && Object.isExtensible(key)) {
+            return identityHash(key);
+        }
+        // Other objects are hashed by their string representation, so that equal objects get equal hashes
+        return stringHash(typeof key.toString == FUNCTION ? key.toString() : Object.prototype.toString.call(key));
+    }
+
+    var lastIdentityHash = 0;
+
+    // Objects without equals() are compared by identity, so a hash stored in the object is enough for them
+    function identityHash(obj) {
+        var hash = obj.$identityHash$;
+        if (hash === undefined) {
+            hash = lastIdentityHash = (lastIdentityHash + 0x61c88647) | 0;
+            Object.defineProperty(obj, "$identityHash$", {value: hash});
+        }
+        return hash;
+    }
+
+    function keysEqual(fixedKey, variableKey) {
+        if (fixedKey === variableKey) {
+            return true;
+        }
+        if (fixedKey == null || variableKey == null) {
+            return false;
+        }
+        if (typeof fixedKey.equals == FUNCTION) {
+            return fixedKey.equals(variableKey);
+        }
+        return (typeof variableKey.equals == FUNCTION) && variableKey.equals(fixedKey);
+    }
+
+    function indexFor(hash, length) {
+        return (hash ^ (hash >>> 16)) & (length - 1);
     }
-);
 
-Kotlin.ComplexHashMap = Kotlin.HashMap;
+    // All entries have the same shape, and the chain of a slot is linked through them
+    function Entry(key, value, hash, next) {
+        this.key = key;
+        this.value = value;
+        this.hash = hash;
+        this.next = next;
+    }
+
+    Entry.prototype.getKey = function () {
+        return this.key;
+    };
+
+    Entry.prototype.getValue = function () {
+        return this.value;
+    };
+
+    Entry.prototype.setValue = function (value) {
+        var oldValue = this.value;
+        this.value = value;
+        return oldValue;
+    };
+
+    // The table functions below are shared by maps and sets, which keep the table in $table (null until the first put) and $size
+
+    function getEntry(owner, key) {
+        var table = owner.$table;
+        if (table === null) {
+            return null;
+        }
+        var hash = hashCodeOf(key);
+        var entry = table[indexFor(hash, table.length)];
+        while (entry != null) {
+            if (entry.hash === hash && keysEqual(key, entry.key)) {
+                return entry;
+            }
+            entry = entry.next;
+        }
+        return null;
+    }
+
+    // Returns the entry previously mapped to the key, or null if a new entry was added
+    function putEntry(owner, key, value) {
+        var table = owner.$table;
+        if (table === null) {
+            table = owner.$table = new Array(INITIAL_CAPACITY);
+        }
+        var hash = hashCodeOf(key);
+        var index = indexFor(hash, table.length);
+        for (var entry = table[index]; entry != null; entry = entry.next) {
+            if (entry.hash === hash && keysEqual(key, entry.key)) {
+                return entry;
+            }
+        }
+        table[index] = new Entry(key, value, hash, table[index]);
+        if (++owner.$size > table.length * LOAD_FACTOR) {
+            resize(owner, table.length * 2);
+        }
+        return null;
+    }
+
+    function removeEntry(owner, key) {
+        var table = owner.$table;
+        if (table === null) {
+            return null;
+        }
+        var hash = hashCodeOf(key);
+        var index = indexFor(hash, table.length);
+        var previous = null;
+        for (var entry = table[index]; entry != null; entry = entry.next) {
+            if (entry.hash === hash && keysEqual(key, entry.key)) {
+                if (previous === null) {
+                    table[index] = entry.next;
+                }
+                else {
+                    previous.next = entry.next;
+                }
+                owner.$size--;
+                return entry;
+            }
+            previous = entry;
+        }
+        return null;
+    }
+
+    function resize(owner, length) {
+        var oldTable = owner.$table;
+        var table = new Array(length);
+        for (var i = 0, oldLength = oldTable.length; i < oldLength; i++) {
+            var entry = oldTable[i];
+            while (entry != null) {
+                var next = entry.next;
+                var index = indexFor(entry.hash, length);
+                entry.next = table[index];
+                table[index] = entry;
+                entry = next;
+            }
+        }
+        owner.$table = table;
+    }
+
+    function forEachEntry(owner, callback) {
+        var table = owner.$table;
+        if (table === null) {
+            return;
+        }
+        for (var i = 0, length = table.length; i < length; i++) {
+            for (var entry = table[i]; entry != null; entry = entry.next) {
+                callback(entry);
+            }
+        }
+    }
+
+    Kotlin.ComplexHashMap = Kotlin.createClass(Kotlin.Map,
+        function () {
+            this.$table = null;
+            this.$size = 0;
+        }, {
+            size: function () {
+                return this.$size;
+            },
+            isEmpty: function () {
+                return this.$size === 0;
+            },
+            get: function (key) {
+                var entry = getEntry(this, key);
+                return entry === null ? null : entry.value;
+            },
+            containsKey: function (key) {
+                return getEntry(this, key) !== null;
+            },
+            containsValue: function (value) {
+                var table = this.$table;
+                if (table === null) {
+                    return false;
+                }
+                for (var i = 0, length = table.length; i < length; i++) {
+                    for (var entry = table[i]; entry != null; entry = entry.next) {
+                        if (Kotlin.equals(value, entry.value)) {
+                            return true;
+                        }
+                    }
+                }
+                return false;
+            },
+            put: function (key, value) {
+                var entry = putEntry(this, key, value);
+                return entry === null ? null : entry.setValue(value);
+            },
+            remove: function (key) {
+                var entry = removeEntry(this, key);
+                return entry === null ? null : entry.value;
+            },
+            clear: function () {
+                this.$table = null;
+                this.$size = 0;
+            },
+            putAll: function (fromMap) {
+                var that = this;
+                if (fromMap instanceof Kotlin.ComplexHashMap) {
+                    forEachEntry(fromMap, function (entry) {
+                        that.put(entry.key, entry.value);
+                    });
+                    return;
+                }
+                var iterator = fromMap.keySet().iterator();
+                while (iterator.hasNext()) {
+                    var key = iterator.next();
+                    this.put(key, fromMap.get(key));
+                }
+            },
+            keySet: function () {
+                var result = new Kotlin.ComplexHashSet();
+                forEachEntry(this, function (entry) {
+                    result.add(entry.key);
+                });
+                return result;
+            },
+            values: function () {
+                var result = new Kotlin.ArrayList();
+                forEachEntry(this, function (entry) {
+                    result.add(entry.value);
+                });
+                return result;
+            },
+            clone: function () {
+                var result = new Kotlin.ComplexHashMap();
+                result.putAll(this);
+                return result;
+            }
+    });
+
+    Kotlin.HashMap = Kotlin.ComplexHashMap;
+
+    Kotlin.ComplexHashSet = Kotlin.createClass(Kotlin.AbstractCollection,
+        function () {
+            this.$table = null;
+            this.$size = 0;
+        }, {
+            contains: function (element) {
+                return getEntry(this, element) !== null;
+            },
+            add: function (element) {
+                return putEntry(this, element, true) === null;
+            },
+            remove: function (element) {
+                return removeEntry(this, element) !== null;
+            },
+            clear: function () {
+                this.$table = null;
+                this.$size = 0;
+            },
+            toArray: function () {
+                var result = [];
+                forEachEntry(this, function (entry) {
+                    result.push(entry.key);
+                });
+                return result;
+            },
+            equals: function (o) {
+                if (o == null || typeof o.size != FUNCTION || this.size() !== o.size()) {
+                    return false;
+                }
+                var iterator = o.iterator();
+                while (iterator.hasNext()) {
+                    if (!this.contains(iterator.next())) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+    });
+
+    Kotlin.HashSet = Kotlin.ComplexHashSet;
+}());
 
 (function () {
     var PrimitiveHashMapValuesIterator = Kotlin.createClass(Kotlin.Iterator,
@@ -541,132 +834,3 @@ Kotlin.PrimitiveHashSet = Kotlin.createClass(Kotlin.AbstractCollection,
             return Object.keys(this.map);
         }
 });
-
-(function () {
-    function HashSet(hashingFunction, equalityFunction) {
-        var hashTable = new Kotlin.HashTable(hashingFunction, equalityFunction);
-
-        this.add = function (o) {
-            hashTable.put(o, true);
-        };
-
-        this.addAll = function (arr) {
-            var i = arr.length;
-            while (i--) {
-                hashTable.put(arr[i], true);
-            }
-        };
-
-        this.values = function () {
-            return hashTable._keys();
-        };
-
-        this.iterator = function () {
-            return Kotlin.arrayIterator(this.values());
-        };
-
-        this.remove = function (o) {
-            return hashTable.remove(o) ? o : null;
-        };
-
-        this.contains = function (o) {
-            return hashTable.containsKey(o);
-        };
-
-        this.clear = function () {
-            hashTable.clear();
-        };
-
-        this.size = function () {
-            return hashTable.size();
-        };
-
-        this.isEmpty = function () {
-            return hashTable.isEmpty();
-        };
-
-        this.clone = function () {
-            var h = new HashSet(hashingFunction, equalityFunction);
-            h.addAll(hashTable.keys());
-            return h;
-        };
-
-        this.equals = function (o) {
-            if (o === null || o === undefined) return false;
-            if (this.size() === o.size()) {
-                var iter1 = this.iterator();
-                var iter2 = o.iterator();
-                while (true) {
-                    var hn1 = iter1.hasNext();
-                    var hn2 = iter2.hasNext();
-                    if (hn1 != hn2) return false;
-                    if (!hn2)
-                        return true;
-                    else {
-                        var o1 = iter1.next();
-                        var o2 = iter2.next();
-                        if (!Kotlin.equals(o1, o2)) return false;
-                    }
-                }
-            }
-            return false;
-        };
-
-        this.toString = function() {
-            var builder = "[";
-            var iter = this.iterator();
-            var first = true;
-            while (iter.hasNext()) {
-                if (first)
-                    first = false;
-                else
-                    builder += ", ";
-                builder += iter.next();
-            }
-            builder += "]";
-            return builder;
-        };
-
-        this.intersection = function (hashSet) {
-            var intersection = new HashSet(hashingFunction, equalityFunction);
-            var values = hashSet.values(), i = values.length, val;
-            while (i--) {
-                val = values[i];
-                if (hashTable.containsKey(val)) {
-                    intersection.add(val);
-                }
-            }
-            return intersection;
-        };
-
-        this.union = function (hashSet) {
-            var union = this.clone();
-            var values = hashSet.values(), i = values.length, val;
-            while (i--) {
-                val = values[i];
-                if (!hashTable.containsKey(val)) {
-                    union.add(val);
-                }
-            }
-            return union;
-        };
-
-        this.isSubsetOf = function (hashSet) {
-            var values = hashTable.keys(), i = values.length;
-            while (i--) {
-                if (!hashSet.contains(values[i])) {
-                    return false;
-                }
-            }
-            return true;
-        };
-    }
-
-    Kotlin.HashSet = Kotlin.createClass(Kotlin.Set,
-        function () {
-            HashSet.call(this);
-        }
-    );
-
-    Kotlin.ComplexHashSet = Kotlin.HashSet;
-}());
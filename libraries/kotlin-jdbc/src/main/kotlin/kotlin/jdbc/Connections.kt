@@ -3,6 +3,7 @@ package kotlin.jdbc
 import java.sql.*
 import kotlin.template.StringTemplate
 import java.math.BigDecimal
+import java.util.ArrayList
 import java.util.Properties
 
 /**
@@ -54,8 +55,28 @@ fun Connection.update(sql: String): Int {
  * Performs the SQL update using the [[StringTemplate]]
  */
 fun Connection.update(template : StringTemplate) : Int {
-    val preparedStatement = prepare(template)
-    return preparedStatement.update()
+    val builder = PreparedStatementBuilder(template, this, statementCache())
+    try {
+        builder.bind()
+        return builder.statement.executeUpdate()
+    } finally {
+        builder.release()
+    }
+}
+
+/**
+ * Performs the SQL updates of the templates in batches of up to [[flushSize]] rows,
+ * reusing a [[PreparedStatement]] for consecutive templates with the same SQL, and returns their update counts
+ */
+fun Connection.batchUpdate(templates : Iterable<StringTemplate>, flushSize : Int = DEFAULT_BATCH_SIZE) : IntArray {
+    return cachingStatements {
+        val batch = BatchUpdate(it, flushSize)
+        for (template in templates) {
+            batch.add(template)
+        }
+        batch.close()
+        batch.getUpdateCounts()
+    }
 }
 
 
@@ -76,12 +97,22 @@ fun <T> Connection.query(sql: String, block: (ResultSet) -> T): T {
  * and processes the result set with a function
  */
 fun <T> Connection.query(template : StringTemplate, resultBlock : (ResultSet) -> T) : T {
-    val preparedStatement = prepare(template)
-    return preparedStatement.query(resultBlock)
+    val builder = PreparedStatementBuilder(template, this, statementCache())
+    try {
+        builder.bind()
+        val resultSet = builder.statement.executeQuery()
+        if (resultSet == null) {
+            throw IllegalStateException("No ResultSet returned from ${builder.statement}")
+        }
+        return resultSet.use(resultBlock)
+    } finally {
+        builder.release()
+    }
 }
 
 /**
- * Creates a [[PreparedStatement]] from the [[StringTemplate]]
+ * Creates a [[PreparedStatement]] from the [[StringTemplate]].
+ * The statement never comes from the statement cache, it belongs to the caller who should close it
  */
 fun Connection.prepare(template : StringTemplate) : PreparedStatement {
     val builder = PreparedStatementBuilder(template, this)
@@ -89,12 +120,29 @@ fun Connection.prepare(template : StringTemplate) : PreparedStatement {
     return builder.statement
 }
 
-class PreparedStatementBuilder(val template : StringTemplate, val connection : Connection) {
+/**
+ * Binds a [[StringTemplate]] to a [[PreparedStatement]]. The statement is checked out of the [[cache]] if there is one,
+ * and is prepared on the connection otherwise. A [[reused]] statement with the same SQL is bound instead, if given
+ */
+class PreparedStatementBuilder(val template : StringTemplate, val connection : Connection,
+                               val cache : StatementCache? = null, reused : PreparedStatement? = null) {
     private var parameterIndex = 0
 
     public val sql : String = createSql()
 
-    public val statement: PreparedStatement = lookupOrCreateStatement()
+    public val statement: PreparedStatement = reused ?: lookupOrCreateStatement()
+
+    /**
+     * Gives the statement back to the cache it was checked out of, or closes it if it is not cached
+     */
+    fun release() : Unit {
+        val statementCache = cache
+        if (statementCache != null) {
+            statementCache.checkIn(statement)
+        } else {
+            statement.close()
+        }
+    }
 
     /**
      * Binds the values in the [[StringTemplate]] to the [[PreparedStatement]]
@@ -198,9 +246,14 @@ class PreparedStatementBuilder(val template : StringTemplate, val connection : C
     // TODO bind other kinds!
 
     /**
-     * Looks up the [[PreparedStatement]] in a cache or creates a new one
+     * Checks the [[PreparedStatement]] out of the cache or creates a new one
      */
     protected fun lookupOrCreateStatement(): PreparedStatement {
+        val statementCache = cache
+        if (statementCache != null) {
+            return statementCache.checkOut(sql)
+        }
+
         val answer = connection.prepareStatement(sql)
         if (answer == null) {
             throw IllegalStateException("No PreparedStatement returned from $connection")
@@ -211,14 +264,98 @@ class PreparedStatementBuilder(val template : StringTemplate, val connection : C
 
     protected fun nextParameterIndex() : Int = ++parameterIndex
 
-    protected fun createSql() : String {
-        val out = StringBuilder()
-        var constantText = true
-        template.forEach {
-            out.append(if (constantText) it else "?")
-            constantText = !constantText
+    protected fun createSql() : String = preparedSql(template)
+}
+
+private fun preparedSql(template : StringTemplate) : String {
+    val out = StringBuilder()
+    var constantText = true
+    template.forEach {
+        out.append(if (constantText) it else "?")
+        constantText = !constantText
+    }
+    return out.toString()
+}
+
+/**
+ * The number of rows [[BatchUpdate]] adds to a batch before executing it by default
+ */
+public val DEFAULT_BATCH_SIZE: Int = 100
+
+/**
+ * Adds templates as rows to batches of [[PreparedStatement]]s checked out of the statement cache of the connection,
+ * see [[Connection.cachingStatements]]. A batch is executed once it has [[flushSize]] rows,
+ * before a template with different SQL is added, on [[flush]] and on [[close]]
+ */
+class BatchUpdate(val connection : Connection, val flushSize : Int = DEFAULT_BATCH_SIZE) {
+    private var builder : PreparedStatementBuilder? = null
+    private var rows = 0
+    private val updateCounts = ArrayList<Int>()
+
+    /**
+     * Binds the values in the [[StringTemplate]] and adds them to the batch of its SQL
+     */
+    fun add(template : StringTemplate) : Unit {
+        val cache = connection.statementCache()
+        if (cache == null) {
+            throw IllegalStateException("No statement cache on $connection, batches must be added inside cachingStatements()")
+        }
+
+        if (preparedSql(template) != builder?.sql) {
+            close()
+        }
+        val next = PreparedStatementBuilder(template, connection, cache, builder?.statement)
+        next.bind()
+        next.statement.addBatch()
+        if (builder == null) {
+            builder = next
+        }
+
+        if (++rows >= flushSize) {
+            flush()
+        }
+    }
+
+    /**
+     * Executes the rows added since the last flush
+     */
+    fun flush() : Unit {
+        val current = builder
+        if (current == null || rows == 0) return
+
+        rows = 0
+        val counts = current.statement.executeBatch()
+        if (counts != null) {
+            for (count in counts) {
+                updateCounts.add(count)
+            }
+        }
+    }
+
+    /**
+     * Executes the rows added since the last flush and gives the statement back to the statement cache
+     */
+    fun close() : Unit {
+        val current = builder
+        if (current == null) return
+
+        try {
+            flush()
+        } finally {
+            builder = null
+            current.release()
+        }
+    }
+
+    /**
+     * Returns the update counts of the executed rows in the order they were added
+     */
+    fun getUpdateCounts() : IntArray {
+        val answer = IntArray(updateCounts.size())
+        for (i in answer.indices) {
+            answer[i] = updateCounts[i]
         }
-        return out.toString()
+        return answer
     }
 }
 
@@ -48,6 +48,13 @@ fun DataSource.update(template : StringTemplate) : Int {
     return useDataSource{ it.update(template) }
 }
 
+/**
+ * Performs the updates of the [[StringTemplate]]s in batches on a single connection
+ */
+fun DataSource.batchUpdate(templates : Iterable<StringTemplate>, flushSize : Int = DEFAULT_BATCH_SIZE) : IntArray {
+    return useDataSource{ it.batchUpdate(templates, flushSize) }
+}
+
 /**
  * Perform a query on the connection using the SQL from the [[StringTemplate]] and processes the result set with a function
  */
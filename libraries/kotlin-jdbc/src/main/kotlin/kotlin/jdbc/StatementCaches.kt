@@ -0,0 +1,122 @@
+package kotlin.jdbc
+
+import java.sql.Connection
+import java.sql.PreparedStatement
+import java.util.IdentityHashMap
+import java.util.LinkedHashMap
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * The number of statements cached by [[Connection.cachingStatements]] by default
+ */
+public val DEFAULT_STATEMENT_CACHE_SIZE: Int = 32
+
+private val statementCachesLock = ReentrantLock()
+private val statementCaches = IdentityHashMap<Connection, StatementCache>()
+
+/**
+ * Keeps up to [[maxSize]] idle [[PreparedStatement]]s of a connection by their SQL, and closes the least recently used ones.
+ * A statement is taken out of the cache with [[checkOut]] while it is in use and given back with [[checkIn]],
+ * so that nested queries with the same SQL never share a statement
+ */
+class StatementCache(val connection : Connection, val maxSize : Int) {
+    private val idle = LinkedHashMap<String, PreparedStatement>(16, 0.75.toFloat(), true)
+    private val checkedOut = IdentityHashMap<PreparedStatement, String>()
+    private var closed = false
+
+    /**
+     * Takes the idle statement for the SQL out of the cache with its parameters cleared, or prepares a new one
+     * if there is none, e.g. because the statement is in use by an enclosing query. A statement closed by its user
+     * is prepared again
+     */
+    fun checkOut(sql : String) : PreparedStatement {
+        if (closed) {
+            throw IllegalStateException("Statement cache of $connection is closed")
+        }
+
+        val cached = idle.remove(sql)
+        val answer = if (cached != null && !cached.isClosed()) {
+            cached.clearParameters()
+            cached
+        } else {
+            prepare(sql)
+        }
+        checkedOut.put(answer, sql)
+        return answer
+    }
+
+    /**
+     * Gives a statement taken with [[checkOut]] back to the cache. The statement is closed instead
+     * if the cache already has an idle statement with the same SQL or is closed
+     */
+    fun checkIn(statement : PreparedStatement) : Unit {
+        if (closed) {
+            statement.close()
+            return
+        }
+
+        val sql = checkedOut.remove(statement)
+        if (sql == null) {
+            throw IllegalArgumentException("$statement is not checked out of the statement cache of $connection")
+        }
+        if (statement.isClosed() || idle.containsKey(sql)) {
+            statement.close()
+            return
+        }
+
+        idle.put(sql, statement)
+        if (idle.size() > maxSize) {
+            val eldest = idle.keySet().iterator().next()
+            idle.remove(eldest)?.close()
+        }
+    }
+
+    /**
+     * Closes all the statements of the cache, including the ones which are checked out
+     */
+    fun close() : Unit {
+        closed = true
+        for (statement in idle.values()) {
+            statement.close()
+        }
+        for (statement in checkedOut.keySet()) {
+            statement.close()
+        }
+        idle.clear()
+        checkedOut.clear()
+    }
+
+    private fun prepare(sql : String) : PreparedStatement {
+        val answer = connection.prepareStatement(sql)
+        if (answer == null) {
+            throw IllegalStateException("No PreparedStatement returned from $connection")
+        }
+        return answer
+    }
+}
+
+/**
+ * Returns the statement cache installed on this connection by [[cachingStatements]], if any
+ */
+fun Connection.statementCache() : StatementCache? = statementCachesLock.withLock { statementCaches.get(this) }
+
+/**
+ * Executes the block caching the [[PreparedStatement]]s that [[update]], [[query]] and [[BatchUpdate]] create
+ * from templates on this connection, so that executing a template with the same SQL again does not prepare a new statement.
+ * The cached statements are closed after the block
+ */
+fun <T> Connection.cachingStatements(maxSize : Int = DEFAULT_STATEMENT_CACHE_SIZE, block : (Connection) -> T) : T {
+    if (statementCache() != null) {
+        return block(this)
+    }
+
+    val cache = StatementCache(this, maxSize)
+    statementCachesLock.withLock { statementCaches.put(this, cache) }
+    try {
+        return block(this)
+    } finally {
+        statementCachesLock.withLock { statementCaches.remove(this) }
+        cache.close()
+    }
+}
@@ -0,0 +1,168 @@
+package test.kotlin.jdbc
+
+import java.util.ArrayList
+import kotlin.jdbc.*
+import kotlin.template.StringTemplate
+import kotlin.test.*
+import org.junit.Test as test
+
+class JdbcBatchTest {
+    test fun cachedStatementIsReused() {
+        dataSource.useDataSource {
+            it.cachingStatements {
+                val cache = it.statementCache()!!
+                val first = cache.checkOut("select name from foo where id = ?")
+                cache.checkIn(first)
+                val second = cache.checkOut("select name from foo where id = ?")
+                assertTrue(first === second)
+                second.setInt(1, 2)
+                assertEquals("Andrey", second.executeQuery()?.use { it.next(); it["name"] })
+                cache.checkIn(second)
+            }
+        }
+    }
+
+    test fun checkedOutStatementIsNotShared() {
+        dataSource.useDataSource {
+            it.cachingStatements {
+                val cache = it.statementCache()!!
+                val first = cache.checkOut("select name from foo where id = ?")
+                val second = cache.checkOut("select name from foo where id = ?")
+                assertFalse(first === second)
+                cache.checkIn(second)
+                cache.checkIn(first)
+                // Only one idle statement is kept per SQL
+                assertTrue(first.isClosed())
+                assertFalse(second.isClosed())
+            }
+        }
+    }
+
+    test fun nestedQueriesWithSameSql() {
+        dataSource.useDataSource {
+            it.cachingStatements {
+                val names = it.query(StringTemplate(array("select name from foo where id = ", 1))) { outer ->
+                    outer.next()
+                    val inner = it.query(StringTemplate(array("select name from foo where id = ", 2))) {
+                        it.next()
+                        it["name"]
+                    }
+                    arrayList(outer["name"], inner)
+                }
+                assertEquals(arrayList<Any?>("James", "Andrey"), names)
+            }
+        }
+    }
+
+    test fun preparedStatementIsNotCached() {
+        dataSource.useDataSource {
+            it.cachingStatements {
+                val first = it.prepare(StringTemplate(array("select name from foo where id = ", 1)))
+                val second = it.prepare(StringTemplate(array("select name from foo where id = ", 2)))
+                assertFalse(first === second)
+                first.close()
+                assertEquals("Andrey", second.query { it.next(); it["name"] })
+            }
+        }
+    }
+
+    test fun cachedStatementsAreClosedAfterBlock() {
+        dataSource.useDataSource {
+            val statements = it.cachingStatements {
+                val cache = it.statementCache()!!
+                val idle = cache.checkOut("select name from foo where id = ?")
+                cache.checkIn(idle)
+                arrayList(idle, cache.checkOut("select id from foo where id = ?"))
+            }
+            for (statement in statements) {
+                assertTrue(statement.isClosed())
+            }
+            assertNull(it.statementCache())
+        }
+    }
+
+    test fun leastRecentlyUsedStatementIsEvicted() {
+        dataSource.useDataSource {
+            it.cachingStatements(2) {
+                val cache = it.statementCache()!!
+                val first = cache.checkOut("select id from foo where id = ?")
+                cache.checkIn(first)
+                val second = cache.checkOut("select name from foo where id = ?")
+                cache.checkIn(second)
+                // Use the first statement again, so that the second one is the eldest
+                val again = cache.checkOut("select id from foo where id = ?")
+                assertTrue(first === again)
+                cache.checkIn(again)
+                cache.checkIn(cache.checkOut("select * from foo where id = ?"))
+                assertTrue(second.isClosed())
+                assertFalse(first.isClosed())
+            }
+        }
+    }
+
+    test fun updateAndQueryInsideCache() {
+        dataSource.useDataSource {
+            it.update("create table batch_cached (id int primary key, name varchar(100))")
+            it.cachingStatements {
+                for (id in 1..5) {
+                    assertEquals(1, it.update(StringTemplate(array("insert into batch_cached (id, name) values (", id, ", ", "n$id", ")"))))
+                }
+                for (id in 1..5) {
+                    assertEquals("n$id", it.query(StringTemplate(array("select name from batch_cached where id = ", id))) {
+                        it.next()
+                        it["name"]
+                    })
+                }
+            }
+            it.update("drop table batch_cached")
+        }
+    }
+
+    test fun batchUpdate() {
+        dataSource.update("create table batch_rows (id int primary key, name varchar(100))")
+        val templates = ArrayList<StringTemplate>()
+        for (id in 1..25) {
+            templates.add(StringTemplate(array("insert into batch_rows (id, name) values (", id, ", ", "row$id", ")")))
+        }
+
+        val counts = dataSource.batchUpdate(templates, 10)
+        assertEquals(25, counts.size)
+        for (count in counts) {
+            assertEquals(1, count)
+        }
+        assertEquals(25, dataSource.query("select count(*) from batch_rows") { it.singleInt() })
+        assertEquals("row17", dataSource.query(StringTemplate(array("select name from batch_rows where id = ", 17))) {
+            it.next()
+            it["name"]
+        })
+        dataSource.update("drop table batch_rows")
+    }
+
+    test fun batchUpdateWithDifferentSql() {
+        dataSource.update("create table batch_mixed (id int primary key, name varchar(100))")
+        val templates = arrayListOf(
+                StringTemplate(array("insert into batch_mixed (id, name) values (", 1, ", ", "a", ")")),
+                StringTemplate(array("insert into batch_mixed (id, name) values (", 2, ", ", "b", ")")),
+                StringTemplate(array("update batch_mixed set name = ", "c", " where id < ", 3)),
+                StringTemplate(array("insert into batch_mixed (id, name) values (", 3, ", ", "d", ")"))
+        )
+
+        val counts = dataSource.batchUpdate(templates)
+        assertEquals(4, counts.size)
+        assertEquals(1, counts[0])
+        assertEquals(1, counts[1])
+        assertEquals(2, counts[2])
+        assertEquals(1, counts[3])
+        assertEquals(2, dataSource.query("select count(*) from batch_mixed where name = 'c'") { it.singleInt() })
+        dataSource.update("drop table batch_mixed")
+    }
+
+    test fun batchNeedsStatementCache() {
+        dataSource.useDataSource {
+            val batch = BatchUpdate(it)
+            failsWith(javaClass<IllegalStateException>()) {
+                batch.add(StringTemplate(array("select * from foo where id = ", 1)))
+            }
+        }
+    }
+}
@@ -47,6 +47,15 @@ public inline fun BooleanArray.filter(predicate: (Boolean) -> Boolean) : List<Bo
     return filterTo(ArrayList<Boolean>(), predicate)
 }
 
+/**
+ * Returns a primitive list containing all elements which match the given *predicate*
+ */
+public inline fun BooleanArray.filterToBooleanList(predicate: (Boolean) -> Boolean) : BooleanList {
+    val result = BooleanListBuilder()
+    for (element in this) if (predicate(element)) result.add(element)
+    return result.build()
+}
+
 /**
  * Filters all elements which match the given predicate into the given list
  */
@@ -210,6 +219,14 @@ public inline fun BooleanArray.drop(n: Int) : List<Boolean> {
     return dropWhile(countTo(n))
 }
 
+/**
+ * Returns a primitive list containing everything but the first *n* elements
+ */
+public inline fun BooleanArray.dropToBooleanList(n: Int) : BooleanList {
+    val start = Math.min(Math.max(n, 0), size)
+    return BooleanList(copyOfRange(start, size))
+}
+
 /**
  * Returns a list containing the everything but the first elements that satisfy the given *predicate*
  */
@@ -240,6 +257,14 @@ public inline fun BooleanArray.take(n: Int) : List<Boolean> {
     return takeWhile(countTo(n))
 }
 
+/**
+ * Returns a primitive list containing the first *n* elements
+ */
+public inline fun BooleanArray.takeToBooleanList(n: Int) : BooleanList {
+    val end = Math.min(Math.max(n, 0), size)
+    return BooleanList(copyOfRange(0, end))
+}
+
 /**
  * Returns a list containing the first elements that satisfy the given *predicate*
  */
@@ -272,6 +297,15 @@ public inline fun BooleanArray.reverse() : List<Boolean> {
     return list
 }
 
+/**
+ * Reverses the order the elements into a primitive list
+ */
+public inline fun BooleanArray.reverseToBooleanList() : BooleanList {
+    val result = BooleanArray(size)
+    for (index in 0..size - 1) result[size - 1 - index] = this[index]
+    return BooleanList(result)
+}
+
 /**
  * Copies all elements into a [[LinkedList]]
  */
@@ -286,6 +320,13 @@ public inline fun BooleanArray.toList() : List<Boolean> {
     return toCollection(ArrayList<Boolean>())
 }
 
+/**
+ * Copies all elements into a primitive list, which doesn't box them
+ */
+public inline fun BooleanArray.toBooleanList() : BooleanList {
+    return BooleanList(copyOf())
+}
+
 /**
  * Copies all elements into a [[Set]]
  */
@@ -47,6 +47,15 @@ public inline fun ByteArray.filter(predicate: (Byte) -> Boolean) : List<Byte> {
     return filterTo(ArrayList<Byte>(), predicate)
 }
 
+/**
+ * Returns a primitive list containing all elements which match the given *predicate*
+ */
+public inline fun ByteArray.filterToByteList(predicate: (Byte) -> Boolean) : ByteList {
+    val result = ByteListBuilder()
+    for (element in this) if (predicate(element)) result.add(element)
+    return result.build()
+}
+
 /**
  * Filters all elements which match the given predicate into the given list
  */
@@ -210,6 +219,14 @@ public inline fun ByteArray.drop(n: Int) : List<Byte> {
     return dropWhile(countTo(n))
 }
 
+/**
+ * Returns a primitive list containing everything but the first *n* elements
+ */
+public inline fun ByteArray.dropToByteList(n: Int) : ByteList {
+    val start = Math.min(Math.max(n, 0), size)
+    return ByteList(copyOfRange(start, size))
+}
+
 /**
  * Returns a list containing the everything but the first elements that satisfy the given *predicate*
  */
@@ -240,6 +257,14 @@ public inline fun ByteArray.take(n: Int) : List<Byte> {
     return takeWhile(countTo(n))
 }
 
+/**
+ * Returns a primitive list containing the first *n* elements
+ */
+public inline fun ByteArray.takeToByteList(n: Int) : ByteList {
+    val end = Math.min(Math.max(n, 0), size)
+    return ByteList(copyOfRange(0, end))
+}
+
 /**
  * Returns a list containing the first elements that satisfy the given *predicate*
  */
@@ -272,6 +297,15 @@ public inline fun ByteArray.reverse() : List<Byte> {
     return list
 }
 
+/**
+ * Reverses the order the elements into a primitive list
+ */
+public inline fun ByteArray.reverseToByteList() : ByteList {
+    val result = ByteArray(size)
+    for (index in 0..size - 1) result[size - 1 - index] = this[index]
+    return ByteList(result)
+}
+
 /**
  * Copies all elements into a [[LinkedList]]
  */
@@ -286,6 +320,13 @@ public inline fun ByteArray.toList() : List<Byte> {
     return toCollection(ArrayList<Byte>())
 }
 
+/**
+ * Copies all elements into a primitive list, which doesn't box them
+ */
+public inline fun ByteArray.toByteList() : ByteList {
+    return ByteList(copyOf())
+}
+
 /**
  * Copies all elements into a [[Set]]
  */
@@ -47,6 +47,15 @@ public inline fun CharArray.filter(predicate: (Char) -> Boolean) : List<Char> {
     return filterTo(ArrayList<Char>(), predicate)
 }
 
+/**
+ * Returns a primitive list containing all elements which match the given *predicate*
+ */
+public inline fun CharArray.filterToCharList(predicate: (Char) -> Boolean) : CharList {
+    val result = CharListBuilder()
+    for (element in this) if (predicate(element)) result.add(element)
+    return result.build()
+}
+
 /**
  * Filters all elements which match the given predicate into the given list
  */
@@ -210,6 +219,14 @@ public inline fun CharArray.drop(n: Int) : List<Char> {
     return dropWhile(countTo(n))
 }
 
+/**
+ * Returns a primitive list containing everything but the first *n* elements
+ */
+public inline fun CharArray.dropToCharList(n: Int) : CharList {
+    val start = Math.min(Math.max(n, 0), size)
+    return CharList(copyOfRange(start, size))
+}
+
 /**
  * Returns a list containing the everything but the first elements that satisfy the given *predicate*
  */
@@ -240,6 +257,14 @@ public inline fun CharArray.take(n: Int) : List<Char> {
     return takeWhile(countTo(n))
 }
 
+/**
+ * Returns a primitive list containing the first *n* elements
+ */
+public inline fun CharArray.takeToCharList(n: Int) : CharList {
+    val end = Math.min(Math.max(n, 0), size)
+    return CharList(copyOfRange(0, end))
+}
+
 /**
  * Returns a list containing the first elements that satisfy the given *predicate*
  */
@@ -272,6 +297,15 @@ public inline fun CharArray.reverse() : List<Char> {
     return list
 }
 
+/**
+ * Reverses the order the elements into a primitive list
+ */
+public inline fun CharArray.reverseToCharList() : CharList {
+    val result = CharArray(size)
+    for (index in 0..size - 1) result[size - 1 - index] = this[index]
+    return CharList(result)
+}
+
 /**
  * Copies all elements into a [[LinkedList]]
  */
@@ -286,6 +320,13 @@ public inline fun CharArray.toList() : List<Char> {
     return toCollection(ArrayList<Char>())
 }
 
+/**
+ * Copies all elements into a primitive list, which doesn't box them
+ */
+public inline fun CharArray.toCharList() : CharList {
+    return CharList(copyOf())
+}
+
 /**
  * Copies all elements into a [[Set]]
  */
@@ -47,6 +47,15 @@ public inline fun DoubleArray.filter(predicate: (Double) -> Boolean) : List<Doub
     return filterTo(ArrayList<Double>(), predicate)
 }
 
+/**
+ * Returns a primitive list containing all elements which match the given *predicate*
+ */
+public inline fun DoubleArray.filterToDoubleList(predicate: (Double) -> Boolean) : DoubleList {
+    val result = DoubleListBuilder()
+    for (element in this) if (predicate(element)) result.add(element)
+    return result.build()
+}
+
 /**
  * Filters all elements which match the given predicate into the given list
  */
@@ -210,6 +219,14 @@ public inline fun DoubleArray.drop(n: Int) : List<Double> {
     return dropWhile(countTo(n))
 }
 
+/**
+ * Returns a primitive list containing everything but the first *n* elements
+ */
+public inline fun DoubleArray.dropToDoubleList(n: Int) : DoubleList {
+    val start = Math.min(Math.max(n, 0), size)
+    return DoubleList(copyOfRange(start, size))
+}
+
 /**
  * Returns a list containing the everything but the first elements that satisfy the given *predicate*
  */
@@ -240,6 +257,14 @@ public inline fun DoubleArray.take(n: Int) : List<Double> {
     return takeWhile(countTo(n))
 }
 
+/**
+ * Returns a primitive list containing the first *n* elements
+ */
+public inline fun DoubleArray.takeToDoubleList(n: Int) : DoubleList {
+    val end = Math.min(Math.max(n, 0), size)
+    return DoubleList(copyOfRange(0, end))
+}
+
 /**
  * Returns a list containing the first elements that satisfy the given *predicate*
  */
@@ -272,6 +297,15 @@ public inline fun DoubleArray.reverse() : List<Double> {
     return list
 }
 
+/**
+ * Reverses the order the elements into a primitive list
+ */
+public inline fun DoubleArray.reverseToDoubleList() : DoubleList {
+    val result = DoubleArray(size)
+    for (index in 0..size - 1) result[size - 1 - index] = this[index]
+    return DoubleList(result)
+}
+
 /**
  * Copies all elements into a [[LinkedList]]
  */
@@ -286,6 +320,13 @@ public inline fun DoubleArray.toList() : List<Double> {
     return toCollection(ArrayList<Double>())
 }
 
+/**
+ * Copies all elements into a primitive list, which doesn't box them
+ */
+public inline fun DoubleArray.toDoubleList() : DoubleList {
+    return DoubleList(copyOf())
+}
+
 /**
  * Copies all elements into a [[Set]]
  */
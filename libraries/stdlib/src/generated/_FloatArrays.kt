@@ -47,6 +47,15 @@ public inline fun FloatArray.filter(predicate: (Float) -> Boolean) : List<Float>
     return filterTo(ArrayList<Float>(), predicate)
 }
 
+/**
+ * Returns a primitive list containing all elements which match the given *predicate*
+ */
+public inline fun FloatArray.filterToFloatList(predicate: (Float) -> Boolean) : FloatList {
+    val result = FloatListBuilder()
+    for (element in this) if (predicate(element)) result.add(element)
+    return result.build()
+}
+
 /**
  * Filters all elements which match the given predicate into the given list
  */
@@ -210,6 +219,14 @@ public inline fun FloatArray.drop(n: Int) : List<Float> {
     return dropWhile(countTo(n))
 }
 
+/**
+ * Returns a primitive list containing everything but the first *n* elements
+ */
+public inline fun FloatArray.dropToFloatList(n: Int) : FloatList {
+    val start = Math.min(Math.max(n, 0), size)
+    return FloatList(copyOfRange(start, size))
+}
+
 /**
  * Returns a list containing the everything but the first elements that satisfy the given *predicate*
  */
@@ -240,6 +257,14 @@ public inline fun FloatArray.take(n: Int) : List<Float> {
     return takeWhile(countTo(n))
 }
 
+/**
+ * Returns a primitive list containing the first *n* elements
+ */
+public inline fun FloatArray.takeToFloatList(n: Int) : FloatList {
+    val end = Math.min(Math.max(n, 0), size)
+    return FloatList(copyOfRange(0, end))
+}
+
 /**
  * Returns a list containing the first elements that satisfy the given *predicate*
  */
@@ -272,6 +297,15 @@ public inline fun FloatArray.reverse() : List<Float> {
     return list
 }
 
+/**
+ * Reverses the order the elements into a primitive list
+ */
+public inline fun FloatArray.reverseToFloatList() : FloatList {
+    val result = FloatArray(size)
+    for (index in 0..size - 1) result[size - 1 - index] = this[index]
+    return FloatList(result)
+}
+
 /**
  * Copies all elements into a [[LinkedList]]
  */
@@ -286,6 +320,13 @@ public inline fun FloatArray.toList() : List<Float> {
     return toCollection(ArrayList<Float>())
 }
 
+/**
+ * Copies all elements into a primitive list, which doesn't box them
+ */
+public inline fun FloatArray.toFloatList() : FloatList {
+    return FloatList(copyOf())
+}
+
 /**
  * Copies all elements into a [[Set]]
  */
@@ -47,6 +47,15 @@ public inline fun IntArray.filter(predicate: (Int) -> Boolean) : List<Int> {
     return filterTo(ArrayList<Int>(), predicate)
 }
 
+/**
+ * Returns a primitive list containing all elements which match the given *predicate*
+ */
+public inline fun IntArray.filterToIntList(predicate: (Int) -> Boolean) : IntList {
+    val result = IntListBuilder()
+    for (element in this) if (predicate(element)) result.add(element)
+    return result.build()
+}
+
 /**
  * Filters all elements which match the given predicate into the given list
  */
@@ -210,6 +219,14 @@ public inline fun IntArray.drop(n: Int) : List<Int> {
     return dropWhile(countTo(n))
 }
 
+/**
+ * Returns a primitive list containing everything but the first *n* elements
+ */
+public inline fun IntArray.dropToIntList(n: Int) : IntList {
+    val start = Math.min(Math.max(n, 0), size)
+    return IntList(copyOfRange(start, size))
+}
+
 /**
  * Returns a list containing the everything but the first elements that satisfy the given *predicate*
  */
@@ -240,6 +257,14 @@ public inline fun IntArray.take(n: Int) : List<Int> {
     return takeWhile(countTo(n))
 }
 
+/**
+ * Returns a primitive list containing the first *n* elements
+ */
+public inline fun IntArray.takeToIntList(n: Int) : IntList {
+    val end = Math.min(Math.max(n, 0), size)
+    return IntList(copyOfRange(0, end))
+}
+
 /**
  * Returns a list containing the first elements that satisfy the given *predicate*
  */
@@ -272,6 +297,15 @@ public inline fun IntArray.reverse() : List<Int> {
     return list
 }
 
+/**
+ * Reverses the order the elements into a primitive list
+ */
+public inline fun IntArray.reverseToIntList() : IntList {
+    val result = IntArray(size)
+    for (index in 0..size - 1) result[size - 1 - index] = this[index]
+    return IntList(result)
+}
+
 /**
  * Copies all elements into a [[LinkedList]]
  */
@@ -286,6 +320,13 @@ public inline fun IntArray.toList() : List<Int> {
     return toCollection(ArrayList<Int>())
 }
 
+/**
+ * Copies all elements into a primitive list, which doesn't box them
+ */
+public inline fun IntArray.toIntList() : IntList {
+    return IntList(copyOf())
+}
+
 /**
  * Copies all elements into a [[Set]]
  */
@@ -47,6 +47,15 @@ public inline fun LongArray.filter(predicate: (Long) -> Boolean) : List<Long> {
     return filterTo(ArrayList<Long>(), predicate)
 }
 
+/**
+ * Returns a primitive list containing all elements which match the given *predicate*
+ */
+public inline fun LongArray.filterToLongList(predicate: (Long) -> Boolean) : LongList {
+    val result = LongListBuilder()
+    for (element in this) if (predicate(element)) result.add(element)
+    return result.build()
+}
+
 /**
  * Filters all elements which match the given predicate into the given list
  */
@@ -210,6 +219,14 @@ public inline fun LongArray.drop(n: Int) : List<Long> {
     return dropWhile(countTo(n))
 }
 
+/**
+ * Returns a primitive list containing everything but the first *n* elements
+ */
+public inline fun LongArray.dropToLongList(n: Int) : LongList {
+    val start = Math.min(Math.max(n, 0), size)
+    return LongList(copyOfRange(start, size))
+}
+
 /**
  * Returns a list containing the everything but the first elements that satisfy the given *predicate*
  */
@@ -240,6 +257,14 @@ public inline fun LongArray.take(n: Int) : List<Long> {
     return takeWhile(countTo(n))
 }
 
+/**
+ * Returns a primitive list containing the first *n* elements
+ */
+public inline fun LongArray.takeToLongList(n: Int) : LongList {
+    val end = Math.min(Math.max(n, 0), size)
+    return LongList(copyOfRange(0, end))
+}
+
 /**
  * Returns a list containing the first elements that satisfy the given *predicate*
  */
@@ -272,6 +297,15 @@ public inline fun LongArray.reverse() : List<Long> {
     return list
 }
 
+/**
+ * Reverses the order the elements into a primitive list
+ */
+public inline fun LongArray.reverseToLongList() : LongList {
+    val result = LongArray(size)
+    for (index in 0..size - 1) result[size - 1 - index] = this[index]
+    return LongList(result)
+}
+
 /**
  * Copies all elements into a [[LinkedList]]
  */
@@ -286,6 +320,13 @@ public inline fun LongArray.toList() : List<Long> {
     return toCollection(ArrayList<Long>())
 }
 
+/**
+ * Copies all elements into a primitive list, which doesn't box them
+ */
+public inline fun LongArray.toLongList() : LongList {
+    return LongList(copyOf())
+}
+
 /**
  * Copies all elements into a [[Set]]
  */
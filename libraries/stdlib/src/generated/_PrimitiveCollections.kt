@@ -0,0 +1,629 @@
+package kotlin
+
+//
+// NOTE THIS FILE IS AUTO-GENERATED by the GenerateStandardLib.kt
+// See: https://github.com/JetBrains/kotlin/tree/master/libraries/stdlib
+//
+
+import java.util.*
+
+/**
+ * A read-only list backed by a [[BooleanArray]], the elements are boxed only when they are requested through the [[List]] interface
+ */
+public class BooleanList(
+        private val array: BooleanArray,
+        private val offset: Int = 0,
+        private val length: Int = array.size
+) : AbstractList<Boolean>(), RandomAccess {
+    {
+        if (offset < 0 || length < 0 || offset + length > array.size) {
+            throw IllegalArgumentException("offset = " + offset + ", length = " + length + ", array size = " + array.size)
+        }
+    }
+
+    public override fun get(index: Int): Boolean {
+        if (index < 0 || index >= length) {
+            throw IndexOutOfBoundsException("index = " + index + ", size = " + length)
+        }
+        return array[offset + index]
+    }
+
+    public override fun size(): Int = length
+
+    /**
+     * Copies the elements into a new [[BooleanArray]]
+     */
+    public fun toBooleanArray(): BooleanArray = Arrays.copyOfRange(array, offset, offset + length)
+}
+
+/**
+ * Collects [[Boolean]] values into a [[BooleanList]] without boxing them
+ */
+public class BooleanListBuilder(initialCapacity: Int = 10) {
+    private var array = BooleanArray(initialCapacity)
+    private var length = 0
+
+    public fun add(element: Boolean) {
+        if (length == array.size) {
+            array = Arrays.copyOf(array, array.size * 2 + 1)
+        }
+        array[length++] = element
+    }
+
+    public fun size(): Int = length
+
+    /**
+     * Returns the collected elements and leaves the builder empty
+     */
+    public fun build(): BooleanList {
+        val result = BooleanList(array, 0, length)
+        array = BooleanArray(0)
+        length = 0
+        return result
+    }
+}
+
+/**
+ * A read-only list backed by a [[ByteArray]], the elements are boxed only when they are requested through the [[List]] interface
+ */
+public class ByteList(
+        private val array: ByteArray,
+        private val offset: Int = 0,
+        private val length: Int = array.size
+) : AbstractList<Byte>(), RandomAccess {
+    {
+        if (offset < 0 || length < 0 || offset + length > array.size) {
+            throw IllegalArgumentException("offset = " + offset + ", length = " + length + ", array size = " + array.size)
+        }
+    }
+
+    public override fun get(index: Int): Byte {
+        if (index < 0 || index >= length) {
+            throw IndexOutOfBoundsException("index = " + index + ", size = " + length)
+        }
+        return array[offset + index]
+    }
+
+    public override fun size(): Int = length
+
+    /**
+     * Copies the elements into a new [[ByteArray]]
+     */
+    public fun toByteArray(): ByteArray = Arrays.copyOfRange(array, offset, offset + length)
+}
+
+/**
+ * Collects [[Byte]] values into a [[ByteList]] without boxing them
+ */
+public class ByteListBuilder(initialCapacity: Int = 10) {
+    private var array = ByteArray(initialCapacity)
+    private var length = 0
+
+    public fun add(element: Byte) {
+        if (length == array.size) {
+            array = Arrays.copyOf(array, array.size * 2 + 1)
+        }
+        array[length++] = element
+    }
+
+    public fun size(): Int = length
+
+    /**
+     * Returns the collected elements and leaves the builder empty
+     */
+    public fun build(): ByteList {
+        val result = ByteList(array, 0, length)
+        array = ByteArray(0)
+        length = 0
+        return result
+    }
+}
+
+/**
+ * A read-only list backed by a [[CharArray]], the elements are boxed only when they are requested through the [[List]] interface
+ */
+public class CharList(
+        private val array: CharArray,
+        private val offset: Int = 0,
+        private val length: Int = array.size
+) : AbstractList<Char>(), RandomAccess {
+    {
+        if (offset < 0 || length < 0 || offset + length > array.size) {
+            throw IllegalArgumentException("offset = " + offset + ", length = " + length + ", array size = " + array.size)
+        }
+    }
+
+    public override fun get(index: Int): Char {
+        if (index < 0 || index >= length) {
+            throw IndexOutOfBoundsException("index = " + index + ", size = " + length)
+        }
+        return array[offset + index]
+    }
+
+    public override fun size(): Int = length
+
+    /**
+     * Copies the elements into a new [[CharArray]]
+     */
+    public fun toCharArray(): CharArray = Arrays.copyOfRange(array, offset, offset + length)
+}
+
+/**
+ * Collects [[Char]] values into a [[CharList]] without boxing them
+ */
+public class CharListBuilder(initialCapacity: Int = 10) {
+    private var array = CharArray(initialCapacity)
+    private var length = 0
+
+    public fun add(element: Char) {
+        if (length == array.size) {
+            array = Arrays.copyOf(array, array.size * 2 + 1)
+        }
+        array[length++] = element
+    }
+
+    public fun size(): Int = length
+
+    /**
+     * Returns the collected elements and leaves the builder empty
+     */
+    public fun build(): CharList {
+        val result = CharList(array, 0, length)
+        array = CharArray(0)
+        length = 0
+        return result
+    }
+}
+
+/**
+ * A read-only list backed by a [[ShortArray]], the elements are boxed only when they are requested through the [[List]] interface
+ */
+public class ShortList(
+        private val array: ShortArray,
+        private val offset: Int = 0,
+        private val length: Int = array.size
+) : AbstractList<Short>(), RandomAccess {
+    {
+        if (offset < 0 || length < 0 || offset + length > array.size) {
+            throw IllegalArgumentException("offset = " + offset + ", length = " + length + ", array size = " + array.size)
+        }
+    }
+
+    public override fun get(index: Int): Short {
+        if (index < 0 || index >= length) {
+            throw IndexOutOfBoundsException("index = " + index + ", size = " + length)
+        }
+        return array[offset + index]
+    }
+
+    public override fun size(): Int = length
+
+    /**
+     * Copies the elements into a new [[ShortArray]]
+     */
+    public fun toShortArray(): ShortArray = Arrays.copyOfRange(array, offset, offset + length)
+}
+
+/**
+ * Collects [[Short]] values into a [[ShortList]] without boxing them
+ */
+public class ShortListBuilder(initialCapacity: Int = 10) {
+    private var array = ShortArray(initialCapacity)
+    private var length = 0
+
+    public fun add(element: Short) {
+        if (length == array.size) {
+            array = Arrays.copyOf(array, array.size * 2 + 1)
+        }
+        array[length++] = element
+    }
+
+    public fun size(): Int = length
+
+    /**
+     * Returns the collected elements and leaves the builder empty
+     */
+    public fun build(): ShortList {
+        val result = ShortList(array, 0, length)
+        array = ShortArray(0)
+        length = 0
+        return result
+    }
+}
+
+/**
+ * A read-only list backed by a [[IntArray]], the elements are boxed only when they are requested through the [[List]] interface
+ */
+public class IntList(
+        private val array: IntArray,
+        private val offset: Int = 0,
+        private val length: Int = array.size
+) : AbstractList<Int>(), RandomAccess {
+    {
+        if (offset < 0 || length < 0 || offset + length > array.size) {
+            throw IllegalArgumentException("offset = " + offset + ", length = " + length + ", array size = " + array.size)
+        }
+    }
+
+    public override fun get(index: Int): Int {
+        if (index < 0 || index >= length) {
+            throw IndexOutOfBoundsException("index = " + index + ", size = " + length)
+        }
+        return array[offset + index]
+    }
+
+    public override fun size(): Int = length
+
+    /**
+     * Copies the elements into a new [[IntArray]]
+     */
+    public fun toIntArray(): IntArray = Arrays.copyOfRange(array, offset, offset + length)
+}
+
+/**
+ * Collects [[Int]] values into a [[IntList]] without boxing them
+ */
+public class IntListBuilder(initialCapacity: Int = 10) {
+    private var array = IntArray(initialCapacity)
+    private var length = 0
+
+    public fun add(element: Int) {
+        if (length == array.size) {
+            array = Arrays.copyOf(array, array.size * 2 + 1)
+        }
+        array[length++] = element
+    }
+
+    public fun size(): Int = length
+
+    /**
+     * Returns the collected elements and leaves the builder empty
+     */
+    public fun build(): IntList {
+        val result = IntList(array, 0, length)
+        array = IntArray(0)
+        length = 0
+        return result
+    }
+}
+
+/**
+ * A read-only list backed by a [[LongArray]], the elements are boxed only when they are requested through the [[List]] interface
+ */
+public class LongList(
+        private val array: LongArray,
+        private val offset: Int = 0,
+        private val length: Int = array.size
+) : AbstractList<Long>(), RandomAccess {
+    {
+        if (offset < 0 || length < 0 || offset + length > array.size) {
+            throw IllegalArgumentException("offset = " + offset + ", length = " + length + ", array size = " + array.size)
+        }
+    }
+
+    public override fun get(index: Int): Long {
+        if (index < 0 || index >= length) {
+            throw IndexOutOfBoundsException("index = " + index + ", size = " + length)
+        }
+        return array[offset + index]
+    }
+
+    public override fun size(): Int = length
+
+    /**
+     * Copies the elements into a new [[LongArray]]
+     */
+    public fun toLongArray(): LongArray = Arrays.copyOfRange(array, offset, offset + length)
+}
+
+/**
+ * Collects [[Long]] values into a [[LongList]] without boxing them
+ */
+public class LongListBuilder(initialCapacity: Int = 10) {
+    private var array = LongArray(initialCapacity)
+    private var length = 0
+
+    public fun add(element: Long) {
+        if (length == array.size) {
+            array = Arrays.copyOf(array, array.size * 2 + 1)
+        }
+        array[length++] = element
+    }
+
+    public fun size(): Int = length
+
+    /**
+     * Returns the collected elements and leaves the builder empty
+     */
+    public fun build(): LongList {
+        val result = LongList(array, 0, length)
+        array = LongArray(0)
+        length = 0
+        return result
+    }
+}
+
+/**
+ * A read-only list backed by a [[FloatArray]], the elements are boxed only when they are requested through the [[List]] interface
+ */
+public class FloatList(
+        private val array: FloatArray,
+        private val offset: Int = 0,
+        private val length: Int = array.size
+) : AbstractList<Float>(), RandomAccess {
+    {
+        if (offset < 0 || length < 0 || offset + length > array.size) {
+            throw IllegalArgumentException("offset = " + offset + ", length = " + length + ", array size = " + array.size)
+        }
+    }
+
+    public override fun get(index: Int): Float {
+        if (index < 0 || index >= length) {
+            throw IndexOutOfBoundsException("index = " + index + ", size = " + length)
+        }
+        return array[offset + index]
+    }
+
+    public override fun size(): Int = length
+
+    /**
+     * Copies the elements into a new [[FloatArray]]
+     */
+    public fun toFloatArray(): FloatArray = Arrays.copyOfRange(array, offset, offset + length)
+}
+
+/**
+ * Collects [[Float]] values into a [[FloatList]] without boxing them
+ */
+public class FloatListBuilder(initialCapacity: Int = 10) {
+    private var array = FloatArray(initialCapacity)
+    private var length = 0
+
+    public fun add(element: Float) {
+        if (length == array.size) {
+            array = Arrays.copyOf(array, array.size * 2 + 1)
+        }
+        array[length++] = element
+    }
+
+    public fun size(): Int = length
+
+    /**
+     * Returns the collected elements and leaves the builder empty
+     */
+    public fun build(): FloatList {
+        val result = FloatList(array, 0, length)
+        array = FloatArray(0)
+        length = 0
+        return result
+    }
+}
+
+/**
+ * A read-only list backed by a [[DoubleArray]], the elements are boxed only when they are requested through the [[List]] interface
+ */
+public class DoubleList(
+        private val array: DoubleArray,
+        private val offset: Int = 0,
+        private val length: Int = array.size
+) : AbstractList<Double>(), RandomAccess {
+    {
+        if (offset < 0 || length < 0 || offset + length > array.size) {
+            throw IllegalArgumentException("offset = " + offset + ", length = " + length + ", array size = " + array.size)
+        }
+    }
+
+    public override fun get(index: Int): Double {
+        if (index < 0 || index >= length) {
+            throw IndexOutOfBoundsException("index = " + index + ", size = " + length)
+        }
+        return array[offset + index]
+    }
+
+    public override fun size(): Int = length
+
+    /**
+     * Copies the elements into a new [[DoubleArray]]
+     */
+    public fun toDoubleArray(): DoubleArray = Arrays.copyOfRange(array, offset, offset + length)
+}
+
+/**
+ * Collects [[Double]] values into a [[DoubleList]] without boxing them
+ */
+public class DoubleListBuilder(initialCapacity: Int = 10) {
+    private var array = DoubleArray(initialCapacity)
+    private var length = 0
+
+    public fun add(element: Double) {
+        if (length == array.size) {
+            array = Arrays.copyOf(array, array.size * 2 + 1)
+        }
+        array[length++] = element
+    }
+
+    public fun size(): Int = length
+
+    /**
+     * Returns the collected elements and leaves the builder empty
+     */
+    public fun build(): DoubleList {
+        val result = DoubleList(array, 0, length)
+        array = DoubleArray(0)
+        length = 0
+        return result
+    }
+}
+
+private fun hashTableCapacity(expectedSize: Int): Int {
+    // Tables are kept at most half full
+    var capacity = 4
+    while (capacity < expectedSize * 2 && capacity < (1 shl 30)) capacity = capacity shl 1
+    return capacity
+}
+
+private fun intHash(key: Int): Int {
+    val h = key * -1640531527
+    return h xor (h ushr 16)
+}
+
+/**
+ * Returns the slot of the table which contains the key, or the empty slot where it should be put
+ */
+private fun intSlotOf(table: IntArray, key: Int): Int {
+    val mask = table.size - 1
+    var index = intHash(key) and mask
+    while (table[index] != 0 && table[index] != key) {
+        index = (index + 1) and mask
+    }
+    return index
+}
+
+/**
+ * A set of [[Int]] values kept in an open-addressing hash table, the elements are boxed only when they are iterated.
+ * Elements can't be removed, the iteration order is unspecified
+ */
+public class IntSet(expectedSize: Int = 4) : AbstractSet<Int>() {
+    private var table = IntArray(hashTableCapacity(expectedSize))
+    // 0 marks an empty slot of the table, so it is kept separately
+    private var containsZero = false
+    private var count = 0
+
+    public override fun size(): Int = count
+
+    public fun contains(element: Int): Boolean {
+        if (element == 0) return containsZero
+        return table[intSlotOf(table, element)] == element
+    }
+
+    public override fun contains(o: Any?): Boolean = o is Int && contains(o as Int)
+
+    public override fun add(e: Int): Boolean {
+        if (e == 0) {
+            if (containsZero) return false
+            containsZero = true
+            count++
+            return true
+        }
+        val slot = intSlotOf(table, e)
+        if (table[slot] == e) return false
+        table[slot] = e
+        count++
+        if (count * 2 > table.size) rehash()
+        return true
+    }
+
+    public override fun iterator(): MutableIterator<Int> {
+        return object : MutableIterator<Int> {
+            private var zeroReturned = !containsZero
+            private var index = nextUsedSlot(0)
+
+            public override fun hasNext(): Boolean = !zeroReturned || index < table.size
+
+            public override fun next(): Int {
+                if (!zeroReturned) {
+                    zeroReturned = true
+                    return 0
+                }
+                if (index >= table.size) throw NoSuchElementException()
+                val result = table[index]
+                index = nextUsedSlot(index + 1)
+                return result
+            }
+
+            public override fun remove() {
+                throw UnsupportedOperationException("Elements can't be removed from IntSet")
+            }
+        }
+    }
+
+    private fun nextUsedSlot(from: Int): Int {
+        var index = from
+        while (index < table.size && table[index] == 0) index++
+        return index
+    }
+
+    private fun rehash() {
+        val oldTable = table
+        table = IntArray(oldTable.size * 2)
+        for (element in oldTable) {
+            if (element != 0) table[intSlotOf(table, element)] = element
+        }
+    }
+}
+
+/**
+ * A map from [[Int]] to [[Int]] kept in an open-addressing hash table, neither keys nor values are boxed.
+ * Keys can't be removed
+ */
+public class IntIntMap(expectedSize: Int = 4) {
+    private var keyTable = IntArray(hashTableCapacity(expectedSize))
+    private var valueTable = IntArray(keyTable.size)
+    // 0 marks an empty slot of the table, so the value for it is kept separately
+    private var containsZeroKey = false
+    private var zeroKeyValue = 0
+    private var count = 0
+
+    public fun size(): Int = count
+
+    public fun isEmpty(): Boolean = count == 0
+
+    public fun containsKey(key: Int): Boolean {
+        if (key == 0) return containsZeroKey
+        return keyTable[intSlotOf(keyTable, key)] == key
+    }
+
+    /**
+     * Returns the value for the given key, or *defaultValue* if there is no such key in the map
+     */
+    public fun get(key: Int, defaultValue: Int): Int {
+        if (key == 0) return if (containsZeroKey) zeroKeyValue else defaultValue
+        val slot = intSlotOf(keyTable, key)
+        return if (keyTable[slot] == key) valueTable[slot] else defaultValue
+    }
+
+    public fun put(key: Int, value: Int) {
+        if (key == 0) {
+            if (!containsZeroKey) {
+                containsZeroKey = true
+                count++
+            }
+            zeroKeyValue = value
+            return
+        }
+        val slot = intSlotOf(keyTable, key)
+        if (keyTable[slot] != key) {
+            keyTable[slot] = key
+            count++
+        }
+        valueTable[slot] = value
+        if (count * 2 > keyTable.size) rehash()
+    }
+
+    /**
+     * Returns the keys of the map in no particular order
+     */
+    public fun keys(): IntList {
+        val result = IntListBuilder(count)
+        if (containsZeroKey) result.add(0)
+        for (key in keyTable) {
+            if (key != 0) result.add(key)
+        }
+        return result.build()
+    }
+
+    private fun rehash() {
+        val oldKeys = keyTable
+        val oldValues = valueTable
+        keyTable = IntArray(oldKeys.size * 2)
+        valueTable = IntArray(keyTable.size)
+        for (index in 0..oldKeys.size - 1) {
+            val key = oldKeys[index]
+            if (key != 0) {
+                val slot = intSlotOf(keyTable, key)
+                keyTable[slot] = key
+                valueTable[slot] = oldValues[index]
+            }
+        }
+    }
+}
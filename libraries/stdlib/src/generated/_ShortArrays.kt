@@ -47,6 +47,15 @@ public inline fun ShortArray.filter(predicate: (Short) -> Boolean) : List<Short>
     return filterTo(ArrayList<Short>(), predicate)
 }
 
+/**
+ * Returns a primitive list containing all elements which match the given *predicate*
+ */
+public inline fun ShortArray.filterToShortList(predicate: (Short) -> Boolean) : ShortList {
+    val result = ShortListBuilder()
+    for (element in this) if (predicate(element)) result.add(element)
+    return result.build()
+}
+
 /**
  * Filters all elements which match the given predicate into the given list
  */
@@ -210,6 +219,14 @@ public inline fun ShortArray.drop(n: Int) : List<Short> {
     return dropWhile(countTo(n))
 }
 
+/**
+ * Returns a primitive list containing everything but the first *n* elements
+ */
+public inline fun ShortArray.dropToShortList(n: Int) : ShortList {
+    val start = Math.min(Math.max(n, 0), size)
+    return ShortList(copyOfRange(start, size))
+}
+
 /**
  * Returns a list containing the everything but the first elements that satisfy the given *predicate*
  */
@@ -240,6 +257,14 @@ public inline fun ShortArray.take(n: Int) : List<Short> {
     return takeWhile(countTo(n))
 }
 
+/**
+ * Returns a primitive list containing the first *n* elements
+ */
+public inline fun ShortArray.takeToShortList(n: Int) : ShortList {
+    val end = Math.min(Math.max(n, 0), size)
+    return ShortList(copyOfRange(0, end))
+}
+
 /**
  * Returns a list containing the first elements that satisfy the given *predicate*
  */
@@ -272,6 +297,15 @@ public inline fun ShortArray.reverse() : List<Short> {
     return list
 }
 
+/**
+ * Reverses the order the elements into a primitive list
+ */
+public inline fun ShortArray.reverseToShortList() : ShortList {
+    val result = ShortArray(size)
+    for (index in 0..size - 1) result[size - 1 - index] = this[index]
+    return ShortList(result)
+}
+
 /**
  * Copies all elements into a [[LinkedList]]
  */
@@ -286,6 +320,13 @@ public inline fun ShortArray.toList() : List<Short> {
     return toCollection(ArrayList<Short>())
 }
 
+/**
+ * Copies all elements into a primitive list, which doesn't box them
+ */
+public inline fun ShortArray.toShortList() : ShortList {
+    return ShortList(copyOf())
+}
+
 /**
  * Copies all elements into a [[Set]]
  */
@@ -0,0 +1,119 @@
+package test.collections
+
+import kotlin.test.*
+
+import junit.framework.TestCase
+import java.util.ArrayList
+import java.util.HashSet
+import java.util.Random
+
+class PrimitiveCollectionsJVMTest() : TestCase() {
+
+    fun testArrayFunctions() {
+        val array = intArray(1, 2, 3, 4, 5)
+        assertEquals(arrayList(2, 4), array.filterToIntList { it % 2 == 0 })
+        assertEquals(arrayList(1, 2), array.takeToIntList(2))
+        assertEquals(arrayList<Int>(), array.takeToIntList(-1))
+        assertEquals(arrayList(1, 2, 3, 4, 5), array.takeToIntList(10))
+        assertEquals(arrayList(4, 5), array.dropToIntList(3))
+        assertEquals(arrayList<Int>(), array.dropToIntList(10))
+        assertEquals(arrayList(5, 4, 3, 2, 1), array.reverseToIntList())
+        assertEquals(arrayList(1, 2, 3, 4, 5), array.toIntList())
+    }
+
+    fun testBoxedFunctionsStillReturnMutableLists() {
+        val array = intArray(1, 2, 3, 4, 5)
+        assertTrue(array.filter { it % 2 == 0 } is ArrayList<*>)
+        assertTrue(array.take(2) is ArrayList<*>)
+        assertTrue(array.drop(3) is ArrayList<*>)
+        assertTrue(array.reverse() is ArrayList<*>)
+
+        val list = array.toList() as ArrayList<Int>
+        list.add(6)
+        assertEquals(arrayList(1, 2, 3, 4, 5, 6), list)
+    }
+
+    fun testListIsNotAViewOfTheArray() {
+        val array = intArray(1, 2, 3)
+        val list = array.toIntList()
+        array[0] = 10
+        assertEquals(1, list[0])
+    }
+
+    fun testListRange() {
+        val list = IntList(intArray(1, 2, 3, 4), 1, 2)
+        assertEquals(2, list.size())
+        assertEquals(arrayList(2, 3), list)
+        assertEquals(arrayList(2, 3), list.toIntArray().toList())
+        fails { list[2] }
+        fails { IntList(intArray(1, 2), 1, 2) }
+    }
+
+    fun testListBuilder() {
+        val builder = LongListBuilder(0)
+        for (i in 0..99) builder.add(i.toLong())
+        assertEquals(100, builder.size())
+        val list = builder.build()
+        assertEquals(100, list.size())
+        assertEquals(99.toLong(), list[99])
+        assertEquals(0, builder.size())
+    }
+
+    fun testIntSet() {
+        val random = Random(42)
+        val set = IntSet()
+        val expected = HashSet<Int>()
+        for (i in 0..9999) {
+            val element = random.nextInt(5000) - 2500
+            assertEquals(expected.add(element), set.add(element))
+        }
+        assertEquals(expected.size(), set.size())
+        assertEquals(expected, HashSet<Int>(set))
+        for (element in -3000..3000) {
+            assertEquals(expected.contains(element), set.contains(element))
+        }
+        assertFalse(set.contains("0" as Any?))
+    }
+
+    fun testIntSetZero() {
+        val set = IntSet()
+        assertFalse(set.contains(0))
+        assertTrue(set.add(0))
+        assertFalse(set.add(0))
+        assertTrue(set.contains(0))
+        assertEquals(arrayList(0), ArrayList<Int>(set))
+    }
+
+    fun testIntIntMap() {
+        val random = Random(42)
+        val map = IntIntMap()
+        val expected = java.util.HashMap<Int, Int>()
+        for (i in 0..9999) {
+            val key = random.nextInt(5000) - 2500
+            map.put(key, i)
+            expected.put(key, i)
+        }
+        assertEquals(expected.size(), map.size())
+        for (key in -3000..3000) {
+            assertEquals(expected.containsKey(key), map.containsKey(key))
+            assertEquals(expected.get(key) ?: -1, map.get(key, -1))
+        }
+        assertEquals(expected.keySet(), HashSet<Int>(map.keys()))
+    }
+
+    fun testPrimitiveAndBoxedResultsAreEqual() {
+        val array = IntArray(10000)
+        for (i in array.indices) array[i] = i
+
+        assertEquals(array.filterTo(ArrayList<Int>()) { it % 3 != 0 }, array.filterToIntList { it % 3 != 0 })
+        assertEquals(array.toCollection(ArrayList<Int>()), array.toIntList())
+
+        val boxed = HashSet<Int>()
+        val primitive = IntSet()
+        for (element in array) {
+            boxed.add(element and 0xff)
+            primitive.add(element and 0xff)
+        }
+        assertEquals(boxed, HashSet<Int>(primitive))
+    }
+}
@@ -0,0 +1,271 @@
+package generators
+
+import java.io.File
+import java.io.FileWriter
+import java.io.PrintWriter
+
+/**
+ * Generates read-only lists backed by primitive arrays, and hash tables for [[Int]] values,
+ * which are returned by the functions of primitive arrays instead of boxed collections
+ */
+private fun generatePrimitiveCollections(outputFile: File, header: String) {
+
+    fun generateList(writer: PrintWriter, type: String) {
+        writer.println("""
+/**
+ * A read-only list backed by a [[${type}Array]], the elements are boxed only when they are requested through the [[List]] interface
+ */
+public class ${type}List(
+        private val array: ${type}Array,
+        private val offset: Int = 0,
+        private val length: Int = array.size
+) : AbstractList<${type}>(), RandomAccess {
+    {
+        if (offset < 0 || length < 0 || offset + length > array.size) {
+            throw IllegalArgumentException("offset = " + offset + ", length = " + length + ", array size = " + array.size)
+        }
+    }
+
+    public override fun get(index: Int): ${type} {
+        if (index < 0 || index >= length) {
+            throw IndexOutOfBoundsException("index = " + index + ", size = " + length)
+        }
+        return array[offset + index]
+    }
+
+    public override fun size(): Int = length
+
+    /**
+     * Copies the elements into a new [[${type}Array]]
+     */
+    public fun to${type}Array(): ${type}Array = Arrays.copyOfRange(array, offset, offset + length)
+}
+
+/**
+ * Collects [[${type}]] values into a [[${type}List]] without boxing them
+ */
+public class ${type}ListBuilder(initialCapacity: Int = 10) {
+    private var array = ${type}Array(initialCapacity)
+    private var length = 0
+
+    public fun add(element: ${type}) {
+        if (length == array.size) {
+            array = Arrays.copyOf(array, array.size * 2 + 1)
+        }
+        array[length++] = element
+    }
+
+    public fun size(): Int = length
+
+    /**
+     * Returns the collected elements and leaves the builder empty
+     */
+    public fun build(): ${type}List {
+        val result = ${type}List(array, 0, length)
+        array = ${type}Array(0)
+        length = 0
+        return result
+    }
+}""")
+    }
+
+    fun generateIntHashTables(writer: PrintWriter) {
+        writer.println("""
+private fun hashTableCapacity(expectedSize: Int): Int {
+    // Tables are kept at most half full
+    var capacity = 4
+    while (capacity < expectedSize * 2 && capacity < (1 shl 30)) capacity = capacity shl 1
+    return capacity
+}
+
+private fun intHash(key: Int): Int {
+    val h = key * -1640531527
+    return h xor (h ushr 16)
+}
+
+/**
+ * Returns the slot of the table which contains the key, or the empty slot where it should be put
+ */
+private fun intSlotOf(table: IntArray, key: Int): Int {
+    val mask = table.size - 1
+    var index = intHash(key) and mask
+    while (table[index] != 0 && table[index] != key) {
+        index = (index + 1) and mask
+    }
+    return index
+}""")
+
+        writer.println("""
+/**
+ * A set of [[Int]] values kept in an open-addressing hash table, the elements are boxed only when they are iterated.
+ * Elements can't be removed, the iteration order is unspecified
+ */
+public class IntSet(expectedSize: Int = 4) : AbstractSet<Int>() {
+    private var table = IntArray(hashTableCapacity(expectedSize))
+    // 0 marks an empty slot of the table, so it is kept separately
+    private var containsZero = false
+    private var count = 0
+
+    public override fun size(): Int = count
+
+    public fun contains(element: Int): Boolean {
+        if (element == 0) return containsZero
+        return table[intSlotOf(table, element)] == element
+    }
+
+    public override fun contains(o: Any?): Boolean = o is Int && contains(o as Int)
+
+    public override fun add(e: Int): Boolean {
+        if (e == 0) {
+            if (containsZero) return false
+            containsZero = true
+            count++
+            return true
+        }
+        val slot = intSlotOf(table, e)
+        if (table[slot] == e) return false
+        table[slot] = e
+        count++
+        if (count * 2 > table.size) rehash()
+        return true
+    }
+
+    public override fun iterator(): MutableIterator<Int> {
+        return object : MutableIterator<Int> {
+            private var zeroReturned = !containsZero
+            private var index = nextUsedSlot(0)
+
+            public override fun hasNext(): Boolean = !zeroReturned || index < table.size
+
+            public override fun next(): Int {
+                if (!zeroReturned) {
+                    zeroReturned = true
+                    return 0
+                }
+                if (index >= table.size) throw NoSuchElementException()
+                val result = table[index]
+                index = nextUsedSlot(index + 1)
+                return result
+            }
+
+            public override fun remove() {
+                throw UnsupportedOperationException("Elements can't be removed from IntSet")
+            }
+        }
+    }
+
+    private fun nextUsedSlot(from: Int): Int {
+        var index = from
+        while (index < table.size && table[index] == 0) index++
+        return index
+    }
+
+    private fun rehash() {
+        val oldTable = table
+        table = IntArray(oldTable.size * 2)
+        for (element in oldTable) {
+            if (element != 0) table[intSlotOf(table, element)] = element
+        }
+    }
+}""")
+
+        writer.println("""
+/**
+ * A map from [[Int]] to [[Int]] kept in an open-addressing hash table, neither keys nor values are boxed.
+ * Keys can't be removed
+ */
+public class IntIntMap(expectedSize: Int = 4) {
+    private var keyTable = IntArray(hashTableCapacity(expectedSize))
+    private var valueTable = IntArray(keyTable.size)
+    // 0 marks an empty slot of the table, so the value for it is kept separately
+    private var containsZeroKey = false
+    private var zeroKeyValue = 0
+    private var count = 0
+
+    public fun size(): Int = count
+
+    public fun isEmpty(): Boolean = count == 0
+
+    public fun containsKey(key: Int): Boolean {
+        if (key == 0) return containsZeroKey
+        return keyTable[intSlotOf(keyTable, key)] == key
+    }
+
+    /**
+     * Returns the value for the given key, or *defaultValue* if there is no such key in the map
+     */
+    public fun get(key: Int, defaultValue: Int): Int {
+        if (key == 0) return if (containsZeroKey) zeroKeyValue else defaultValue
+        val slot = intSlotOf(keyTable, key)
+        return if (keyTable[slot] == key) valueTable[slot] else defaultValue
+    }
+
+    public fun put(key: Int, value: Int) {
+        if (key == 0) {
+            if (!containsZeroKey) {
+                containsZeroKey = true
+                count++
+            }
+            zeroKeyValue = value
+            return
+        }
+        val slot = intSlotOf(keyTable, key)
+        if (keyTable[slot] != key) {
+            keyTable[slot] = key
+            count++
+        }
+        valueTable[slot] = value
+        if (count * 2 > keyTable.size) rehash()
+    }
+
+    /**
+     * Returns the keys of the map in no particular order
+     */
+    public fun keys(): IntList {
+        val result = IntListBuilder(count)
+        if (containsZeroKey) result.add(0)
+        for (key in keyTable) {
+            if (key != 0) result.add(key)
+        }
+        return result.build()
+    }
+
+    private fun rehash() {
+        val oldKeys = keyTable
+        val oldValues = valueTable
+        keyTable = IntArray(oldKeys.size * 2)
+        valueTable = IntArray(keyTable.size)
+        for (index in 0..oldKeys.size - 1) {
+            val key = oldKeys[index]
+            if (key != 0) {
+                val slot = intSlotOf(keyTable, key)
+                keyTable[slot] = key
+                valueTable[slot] = oldValues[index]
+            }
+        }
+    }
+}""")
+    }
+
+    println("Writing $outputFile")
+
+    outputFile.getParentFile()?.mkdirs()
+    val writer = PrintWriter(FileWriter(outputFile))
+    try {
+        writer.println(header)
+
+        writer.println("""
+$COMMON_AUTOGENERATED_WARNING
+
+import java.util.*""")
+
+        val types = array("Boolean", "Byte", "Char", "Short", "Int", "Long", "Float", "Double")
+        for (type in types) {
+            generateList(writer, type)
+        }
+
+        generateIntHashTables(writer)
+    } finally {
+        writer.close()
+    }
+}
@@ -62,6 +62,7 @@ fun main(args: Array<String>) {
     }
 
     generateDownTos(File(outDir, "_DownTo.kt"), "package kotlin")
+    generatePrimitiveCollections(File(outDir, "_PrimitiveCollections.kt"), "package kotlin")
 }
 
 fun String.flat() = this.replaceAll(" ", "")
@@ -67,6 +67,20 @@ fun collections() {
         }
     }
 
+    f("filterToTList(predicate: (T) -> Boolean)") {
+        doc = "Returns a primitive list containing all elements which match the given *predicate*"
+        absentFor(Iterators, Iterables, Collections, Arrays)
+        returns("TList")
+
+        body {
+            """
+                val result = TListBuilder()
+                for (element in this) if (predicate(element)) result.add(element)
+                return result.build()
+            """
+        }
+    }
+
     f("filterTo(result: C, predicate: (T) -> Boolean)") {
         doc = "Filters all elements which match the given predicate into the given list"
         typeParam("C: MutableCollection<in T>")
@@ -332,6 +346,19 @@ fun collections() {
         }
     }
 
+    f("dropToTList(n: Int)") {
+        doc = "Returns a primitive list containing everything but the first *n* elements"
+        absentFor(Iterators, Iterables, Collections, Arrays)
+        returns("TList")
+
+        body {
+            """
+                val start = Math.min(Math.max(n, 0), size)
+                return TList(copyOfRange(start, size))
+            """
+        }
+    }
+
     f("dropWhile(predicate: (T) -> Boolean)") {
         doc = "Returns a list containing the everything but the first elements that satisfy the given *predicate*"
         returns("List<T>")
@@ -370,6 +397,19 @@ fun collections() {
         }
     }
 
+    f("takeToTList(n: Int)") {
+        doc = "Returns a primitive list containing the first *n* elements"
+        absentFor(Iterators, Iterables, Collections, Arrays)
+        returns("TList")
+
+        body {
+            """
+                val end = Math.min(Math.max(n, 0), size)
+                return TList(copyOfRange(0, end))
+            """
+        }
+    }
+
     f("takeWhile(predicate: (T) -> Boolean)") {
         doc = "Returns a list containing the first elements that satisfy the given *predicate*"
         returns("List<T>")
@@ -417,6 +457,20 @@ fun collections() {
         }
     }
 
+    f("reverseToTList()") {
+        doc = "Reverses the order the elements into a primitive list"
+        absentFor(Iterators, Iterables, Collections, Arrays)
+        returns("TList")
+
+        body {
+            """
+                val result = SELF(size)
+                for (index in 0..size - 1) result[size - 1 - index] = this[index]
+                return TList(result)
+            """
+        }
+    }
+
     f("toLinkedList()") {
         doc = "Copies all elements into a [[LinkedList]]"
         returns("LinkedList<T>")
@@ -431,6 +485,14 @@ fun collections() {
         body { "return toCollection(ArrayList<T>())" }
     }
 
+    f("toTList()") {
+        doc = "Copies all elements into a primitive list, which doesn't box them"
+        absentFor(Iterators, Iterables, Collections, Arrays)
+        returns("TList")
+
+        body { "return TList(copyOf())" }
+    }
+
     f("toSet()") {
         doc = "Copies all elements into a [[Set]]"
         returns("Set<T>")
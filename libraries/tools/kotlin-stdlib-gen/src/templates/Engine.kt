@@ -90,7 +90,7 @@ class GenericFunction(val signature : String, val erasedSignature: String) {
                 answer.append(when (token) {
                     "SELF" -> selftype
                     "T" -> if (f == Family.PrimitiveArrays) arrName else token
-                    else -> token
+                    else -> if (f == Family.PrimitiveArrays && token.contains("TList")) token.replace("TList", arrName + "List") else token
                 })
             }
 